@@ -45,14 +45,24 @@
  */
 package org.lsc;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.naming.CommunicationException;
 
@@ -62,14 +72,29 @@ import org.lsc.LscDatasetModification.LscDatasetModificationType;
 import org.lsc.beans.BeanComparator;
 import org.lsc.beans.IBean;
 import org.lsc.beans.syncoptions.ISyncOptions;
+import org.lsc.configuration.CleanStrategyType;
 import org.lsc.configuration.LscConfiguration;
 import org.lsc.configuration.PivotTransformationType.Transformation;
+import org.lsc.exception.LscConfigurationException;
 import org.lsc.exception.LscServiceCommunicationException;
 import org.lsc.exception.LscServiceException;
+import org.lsc.persistence.Checkpoint;
+import org.lsc.persistence.FingerprintStore;
+import org.lsc.service.AbstractPivotCursor;
+import org.lsc.service.IApplyListener;
 import org.lsc.service.IAsynchronousService;
+import org.lsc.service.IBatchLookupService;
+import org.lsc.service.IChangeListener;
+import org.lsc.service.IPipelinedWritableService;
+import org.lsc.service.IPushAsynchronousService;
+import org.lsc.service.IPivotCursor;
 import org.lsc.service.IService;
+import org.lsc.service.ISortedService;
+import org.lsc.service.IStreamingService;
+import org.lsc.service.IWritableService;
 import org.lsc.utils.LSCStructuralLogger;
 import org.lsc.utils.ScriptingEvaluator;
+import org.lsc.utils.VirtualThreads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -82,6 +107,12 @@ public abstract class AbstractSynchronize {
 
 	static final Logger LOGGER = LoggerFactory.getLogger(AbstractSynchronize.class);
 
+	/**
+	 * Number of source entries submitted to the synchronizing threads as a
+	 * single work item, when they are not looked up by blocks
+	 */
+	static final int CHUNK_SIZE = 16;
+
 	/** List of configured options. */
 	private static Options options = new Options();
 
@@ -91,6 +122,13 @@ public abstract class AbstractSynchronize {
 		options.addOption("nd", "nodelete", false, "Don't delete");
 		options.addOption("nr", "nomodrdn", false, "Don't rename (MODRDN)");
 		options.addOption("n", "dryrun", false, "Don't update the directory at all");
+		options.addOption("fv", "fullverify", false, "Compare all the entries, even the ones unchanged since the last synchronization");
+		options.addOption("r", "resume", false, "Skip the entries already synchronized by an interrupted run of the tasks with a checkpoint");
+		options.addOption("at", "adaptive-threads", true, "Adapt the number of threads of each task to the destination response time, between this minimum and the number of threads");
+		options.addOption("sh", "shard", true, "Handle only the shard index/count (index from 0) of the entries of each task, or */count to take over the shards of failed processes");
+		options.addOption("sd", "shard-directory", true, "Directory shared by the processes sharing the tasks, to coordinate them and report their status");
+		options.addOption("vt", "virtual-threads", true, "Run the entries on virtual threads, at most this number at a time on each destination (requires Java 21 or later)");
+		options.addOption("pl", "pipeline", true, "Read, compare and write the entries with separate pools of threads, sized read,compute,write (e.g. 8,2,4)");
 	}
 	
 	/**
@@ -117,12 +155,71 @@ public abstract class AbstractSynchronize {
 	 */
 	protected boolean nomodrdn = false;
 
+	/**
+	 * This is the flag to ignore the fingerprint store and compare every
+	 * source entry with the destination.
+	 */
+	protected boolean fullVerify = false;
+
+	/**
+	 * This is the flag to skip the source entries recorded in the task
+	 * checkpoint by an interrupted run.
+	 */
+	protected boolean resume = false;
+
+	/**
+	 * The part of the entries of each task handled by this process, or null
+	 * to handle all of them.
+	 */
+	protected Shard shard;
+
+	/**
+	 * The directory shared by the processes sharing the tasks, or null if
+	 * they are not coordinated.
+	 */
+	protected File shardDirectory;
+
 	/**
 	 * Number of parallel threads handling synchronization and cleaning
 	 * Default to 5
 	 */
 	private int threads;
 
+	/**
+	 * Minimum number of threads of a task when it is adapted to the
+	 * destination, 0 to always use the configured number
+	 */
+	private int minThreads;
+
+	/**
+	 * Number of threads of the read, compute and write stages of the
+	 * synchronizations, or null to handle each entry with a single thread
+	 */
+	private int[] pipelineThreads;
+
+	/**
+	 * Maximum number of entries handled at a time on each destination by
+	 * virtual threads, or 0 to use a pool of platform threads
+	 */
+	private int virtualThreads;
+
+	/**
+	 * Permits of the virtual threads, shared by the tasks writing to the same
+	 * destination connection
+	 */
+	private Map<String, Semaphore> destinationPermits;
+
+	/**
+	 * Adaptive concurrency of the tasks being synchronized or cleaned
+	 */
+	private Map<Task, AdaptiveConcurrency> concurrencies;
+
+	/**
+	 * Counters of the running or last synchronization, clean or merge of
+	 * each task, by task name
+	 */
+	private Map<String, InfoCounter> counters;
+
 	/**
 	 * Maximum time waiting for synchronizing threads tasks to finish (in seconds)
 	 * This is the global synchronization task time - 3600 by default
@@ -146,11 +243,15 @@ public abstract class AbstractSynchronize {
 		timeLimit = 3600;
 		asynchronousThreads = new HashMap<String, Thread>();
 		mapSTasks = new HashMap<String, AsynchronousRunner>();
+		concurrencies = new ConcurrentHashMap<Task, AdaptiveConcurrency>();
+		counters = new ConcurrentHashMap<String, InfoCounter>();
+		destinationPermits = new HashMap<String, Semaphore>();
 	}
 
 	/**
 	 * Clean the destination LDAP directory (delete objects not present in
-	 * source).
+	 * source). Entries are checked in parallel by the same thread pool as
+	 * the synchronization.
 	 * 
 	 * @param syncName
 	 *            the synchronization name
@@ -162,6 +263,7 @@ public abstract class AbstractSynchronize {
 	protected final boolean clean2Ldap(Task task) {
 
 		InfoCounter counter = new InfoCounter();
+		counters.put(task.getName(), counter);
 
 		// Get list of all entries from the destination
 		Set<Entry<String, LscDatasets>> ids = null;
@@ -179,104 +281,253 @@ public abstract class AbstractSynchronize {
 			return false;
 		}
 
-		ISyncOptions syncOptions = task.getSyncOptions();
-
-		LscModifications lm = null;
+		// When the task is shared between processes, only one shard is cleaned
+		ShardLease lease = null;
+		try {
+			lease = acquireShard(task, Task.Mode.clean);
+		} catch (LscConfigurationException e) {
+			LOGGER.error(e.getMessage());
+			return false;
+		}
+		Shard taskShard = (lease != null ? lease.getShard() : shard);
+		if (taskShard != null) {
+			if (taskShard.isAny()) {
+				LOGGER.info("No shard of task {} to take over", task.getName());
+				return true;
+			}
+			Set<Entry<String, LscDatasets>> shardIds = new HashSet<Entry<String, LscDatasets>>();
+			for (Entry<String, LscDatasets> id : ids) {
+				if (taskShard.contains(id.getKey())) {
+					shardIds.add(id);
+				}
+			}
+			ids = shardIds;
+		}
 
-		/** Hash table to pass objects into JavaScript condition */
-		Map<String, Object> conditionObjects = null;
+		// With the anti-join strategy, only the entries missing from the
+		// source list are candidates, and there is no lookup in the source
+		Map<String, LscDatasets> candidates = null;
+		if (task.getTaskType().getCleanStrategy() == CleanStrategyType.ANTIJOIN) {
+			try {
+				candidates = getMissingFromSource(task, ids);
+			} catch (LscServiceException e) {
+				LOGGER.error("Error comparing the lists of IDs for task {}", task.getName());
+				LOGGER.debug(e.toString(), e);
+				candidates = null;
+			}
+			if (candidates == null) {
+				if (lease != null) {
+					lease.release(counter);
+				}
+				return false;
+			}
+		}
 
-		IBean taskBean;
+		SynchronizeThreadPoolExecutor threadPool = newThreadPool(task);
+		AtomicBoolean aborted = new AtomicBoolean(false);
 
 		// Loop on all entries in the destination and delete them if they're not
 		// found in the source
 		for (Entry<String, LscDatasets> id : ids) {
-			counter.incrementCountAll();
+			if (aborted.get()) {
+				break;
+			}
+			if (candidates == null) {
+				threadPool.runTask(new CleanTask(task, counter, this, id, null, true, aborted));
+			} else if (candidates.containsKey(id.getKey())) {
+				threadPool.runTask(new CleanTask(task, counter, this, id, null, false, aborted));
+			} else {
+				counter.incrementCountAll();
+			}
+		}
+		try {
+			threadPool.shutdown();
+			threadPool.awaitTermination(timeLimit, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			LOGGER.error("Tasks terminated according to time limit: " + e.toString(), e);
+			LOGGER.info("If you want to avoid this message, " + "increase the time limit by using dedicated parameter.");
+		}
+		flushDestination(task);
+		concurrencies.remove(task);
 
-			try {
-				// Search for the corresponding object in the source
-				taskBean = getBean(task, task.getSourceService(), id.getKey(), id.getValue(), false, false);
-
-				// If we didn't find the object in the source, delete it in the
-				// destination
-				if (taskBean == null) {
-					// Retrieve condition to evaluate before deleting
-					Boolean doDelete = null;
-					String conditionString = syncOptions.getDeleteCondition();
-
-					// Don't use JavaScript evaluator for primitive cases
-					if (conditionString.matches("true")) {
-						doDelete = true;
-					} else if (conditionString.matches("false")) {
-						doDelete = false;
-					} else {
-						IBean dstBean = getBean(task, task.getDestinationService(), id.getKey(), id.getValue(), true, false);
-						// Log an error if the bean could not be retrieved!
-						// This shouldn't happen.
-						if (dstBean == null) {
-							LOGGER.error("Could not retrieve the object {} from the directory!", id.getKey());
-							counter.incrementCountError();
-							continue;
-						}
-
-						// Put the bean in a map to pass to JavaScript
-						// evaluator
-						conditionObjects = new HashMap<String, Object>();
-						conditionObjects.put("dstBean", dstBean);
-						conditionObjects.putAll(task.getScriptingVars());
-
-						// Evaluate if we have to do something
-						doDelete = ScriptingEvaluator.evalToBoolean(task, conditionString, conditionObjects);
-					}
+		if (aborted.get()) {
+			if (lease != null) {
+				lease.release(counter);
+			}
+			return false;
+		}
+		logStatus(counter);
+		if (lease != null) {
+			lease.release(counter);
+		}
+		return counter.getCountError() == 0;
+	}
 
-					if (doDelete) {
-						lm = new LscModifications(LscModificationType.DELETE_OBJECT, task.getName());
-						lm.setMainIdentifer(id.getKey());
-
-						List<LscDatasetModification> attrsMod = new ArrayList<LscDatasetModification>();
-						for (Entry<String,Object> attr : id.getValue().getDatasets().entrySet()) {
-							attrsMod.add(new LscDatasetModification(LscDatasetModificationType.DELETE_VALUES, attr.getKey(), Collections.singletonList(attr.getValue())));
-						}
-						lm.setLscAttributeModifications(attrsMod);
-
-	                    counter.incrementCountModifiable();
-	                    
-						// if "nodelete" was specified in command line options,
-						// log action for debugging purposes and continue
-	                    if (nodelete) {
-							logShouldAction(lm, task.getName());
-	                    	continue;
-	                    }
-					} else {
-						continue;
-					}
+	/**
+	 * Find the destination entries missing from the source with an in memory
+	 * anti-join: the source pivot list is read once and indexed, and the
+	 * destination pivots, once transformed, are looked up in this index.
+	 * Pivots are compared on the attributes names they have in common,
+	 * ignoring case. The source is read through a cursor, so that an
+	 * incomplete list fails the comparison instead of having entries deleted.
+	 * 
+	 * @param task the task
+	 * @param ids the destination pivots
+	 * @return the destination pivots missing from the source, by identifier,
+	 *         or null if the pivots can not be compared
+	 * @throws LscServiceException if the source list could not be read entirely
+	 */
+	protected final Map<String, LscDatasets> getMissingFromSource(Task task, Set<Entry<String, LscDatasets>> ids) throws LscServiceException {
+		List<LscDatasets> srcPivots = new ArrayList<LscDatasets>();
+		IPivotCursor srcCursor = getPivotCursor(task.getSourceService());
+		try {
+			while (srcCursor.hasNext()) {
+				srcPivots.add(srcCursor.next().getValue());
+			}
+		} finally {
+			srcCursor.close();
+		}
+		if (srcPivots.isEmpty()) {
+			LOGGER.error("Empty or non existant source (no IDs found), refusing to clean everything");
+			return null;
+		}
 
-					// if we got here, we have a modification to apply - let's
-					// do it!
-					if (task.getDestinationService().apply(lm)) {
-						counter.incrementCountCompleted();
-						logAction(lm, id, task.getName());
-					} else {
-						counter.incrementCountError();
-						logActionError(lm, id.getValue(), new Exception("Technical problem while applying modifications to destination service"));
-					}
-				}
-			} catch (LscServiceException e) {
-				counter.incrementCountError();
-				logActionError(lm, id.getValue(), e);
-				if(e.getCause().getClass().isAssignableFrom(CommunicationException.class)) {
-					// we lost the connection to the source or destination, stop
-					// everything!
-					LOGGER.error("Connection lost! Aborting.");
-					return false;
-				} else {
-					LOGGER.error("Unable to delete object {} ({})", id.getKey(), e.toString());
+		// Apply pivot transformations to all destination pivots
+		Map<String, LscDatasets> dstPivots = new HashMap<String, LscDatasets>(ids.size());
+		Set<String> dstNames = new HashSet<String>();
+		for (Entry<String, LscDatasets> id : ids) {
+			LscDatasets pivots = transformPivots(task, id.getValue(), false);
+			dstPivots.put(id.getKey(), pivots);
+			for (String name : pivots.getAttributesNames()) {
+				dstNames.add(name.toLowerCase());
+			}
+		}
+
+		// Join on the pivot attributes known on both sides
+		Set<String> joinNames = new TreeSet<String>();
+		for (LscDatasets pivots : srcPivots) {
+			for (String name : pivots.getAttributesNames()) {
+				if (dstNames.contains(name.toLowerCase())) {
+					joinNames.add(name.toLowerCase());
 				}
 			}
 		}
+		if (joinNames.isEmpty()) {
+			LOGGER.error("Source pivots {} and destination pivots {} have no attribute in common, use the LOOKUP clean strategy for task {}",
+							new Object[] { srcPivots.iterator().next().getAttributesNames(), dstNames, task.getName() });
+			return null;
+		}
 
-		logStatus(counter);
-		return counter.getCountError() == 0;
+		Set<String> srcKeys = new HashSet<String>(srcPivots.size());
+		for (LscDatasets pivots : srcPivots) {
+			srcKeys.add(getJoinKey(pivots, joinNames));
+		}
+
+		Map<String, LscDatasets> missing = new HashMap<String, LscDatasets>();
+		for (Entry<String, LscDatasets> id : ids) {
+			if (!srcKeys.contains(getJoinKey(dstPivots.get(id.getKey()), joinNames))) {
+				missing.put(id.getKey(), id.getValue());
+			}
+		}
+		LOGGER.debug("{} of {} destination entries are missing from the source", missing.size(), ids.size());
+		return missing;
+	}
+
+	private static String getJoinKey(LscDatasets pivots, Set<String> joinNames) {
+		StringBuilder key = new StringBuilder();
+		for (String name : joinNames) {
+			String value = pivots.getStringValueAttribute(name);
+			key.append(value != null ? value.toLowerCase() : "").append('\u0000');
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Delete an entry from the destination because it is missing from the
+	 * source, if the delete condition and the nodelete option allow it.
+	 * 
+	 * @param task the task
+	 * @param counter the counter to update
+	 * @param id the destination entry identifier and its pivot attributes
+	 * @param dstBean the destination entry if it is already known, or null to
+	 *            read it only when the delete condition needs it
+	 * @return false if the connection was lost and the task must be aborted,
+	 *         true otherwise
+	 */
+	final boolean delete(Task task, InfoCounter counter, Entry<String, LscDatasets> id, IBean dstBean) {
+		ISyncOptions syncOptions = task.getSyncOptions();
+		LscModifications lm = null;
+
+		try {
+			// Retrieve condition to evaluate before deleting
+			Boolean doDelete = null;
+			String conditionString = syncOptions.getDeleteCondition();
+
+			// Don't use JavaScript evaluator for primitive cases
+			if (conditionString.matches("true")) {
+				doDelete = true;
+			} else if (conditionString.matches("false")) {
+				doDelete = false;
+			} else {
+				if (dstBean == null) {
+					dstBean = getBean(task, task.getDestinationService(), id.getKey(), id.getValue(), true, false);
+				}
+				// Log an error if the bean could not be retrieved!
+				// This shouldn't happen.
+				if (dstBean == null) {
+					LOGGER.error("Could not retrieve the object {} from the directory!", id.getKey());
+					counter.incrementCountError();
+					return true;
+				}
+
+				// Put the bean in a map to pass to JavaScript
+				// evaluator
+				Map<String, Object> conditionObjects = new HashMap<String, Object>();
+				conditionObjects.put("dstBean", dstBean);
+				conditionObjects.putAll(task.getScriptingVars());
+
+				// Evaluate if we have to do something
+				doDelete = ScriptingEvaluator.evalToBoolean(task, conditionString, conditionObjects);
+			}
+
+			if (!doDelete) {
+				return true;
+			}
+
+			lm = new LscModifications(LscModificationType.DELETE_OBJECT, task.getName());
+			lm.setMainIdentifer(id.getKey());
+
+			List<LscDatasetModification> attrsMod = new ArrayList<LscDatasetModification>();
+			for (Entry<String,Object> attr : id.getValue().getDatasets().entrySet()) {
+				attrsMod.add(new LscDatasetModification(LscDatasetModificationType.DELETE_VALUES, attr.getKey(), Collections.singletonList(attr.getValue())));
+			}
+			lm.setLscAttributeModifications(attrsMod);
+
+			counter.incrementCountModifiable();
+
+			// if "nodelete" was specified in command line options,
+			// log action for debugging purposes and continue
+			if (nodelete) {
+				logShouldAction(lm, task.getName());
+				return true;
+			}
+
+			// if we got here, we have a modification to apply - let's
+			// do it!
+			applyModifications(task, counter, lm, id, id.getValue());
+		} catch (LscServiceException e) {
+			counter.incrementCountError();
+			logActionError(lm, id.getValue(), e);
+			if(e.getCause().getClass().isAssignableFrom(CommunicationException.class)) {
+				// we lost the connection to the source or destination, stop
+				// everything!
+				LOGGER.error("Connection lost! Aborting.");
+				return false;
+			} else {
+				LOGGER.error("Unable to delete object {} ({})", id.getKey(), e.toString());
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -298,32 +549,341 @@ public abstract class AbstractSynchronize {
 		final Object customLibrary*/
 
 		InfoCounter counter = new InfoCounter();
-		// Get list of all entries from the source
-		Set<Entry<String, LscDatasets>> ids = null;
+		counters.put(task.getName(), counter);
+		// Get a cursor on all entries from the source, read while they are synchronized
+		IPivotCursor ids = null;
 		SynchronizeThreadPoolExecutor threadPool = null;
+		boolean complete = true;
 
 		try {
-			ids = task.getSourceService().getListPivots().entrySet();
+			ids = getPivotCursor(task.getSourceService());
+
+			// Make sure we have at least one entry to work on
+			if (!ids.hasNext()) {
+				LOGGER.error("Empty or non existant source (no IDs found)");
+				ids.close();
+				return false;
+			}
 		} catch (Exception e) {
 			LOGGER.error("Error getting list of IDs in the source for task {}", task.getName());
 			LOGGER.debug(e.toString(), e);
+			if (ids != null) {
+				ids.close();
+			}
 			return false;
 		}
 
-		// Make sure we have at least one entry to work on
-		if (ids.isEmpty()) {
-			LOGGER.error("Empty or non existant source (no IDs found)");
+		// When the task is shared between processes, only one shard is synchronized
+		ShardLease lease = null;
+		try {
+			lease = acquireShard(task, Task.Mode.sync);
+		} catch (LscConfigurationException e) {
+			LOGGER.error(e.getMessage());
+			ids.close();
 			return false;
 		}
+		Shard taskShard = (lease != null ? lease.getShard() : shard);
+		if (taskShard != null && taskShard.isAny()) {
+			LOGGER.info("No shard of task {} to take over", task.getName());
+			ids.close();
+			return true;
+		}
 
-		threadPool = new SynchronizeThreadPoolExecutor(getThreads());
+		// Entries unchanged since the last run may be skipped
+		FingerprintStore fingerprints = null;
+		if (task.getTaskType().getFingerprintStore() != null) {
+			try {
+				fingerprints = FingerprintStore.open(task, fullVerify);
+			} catch (LscConfigurationException e) {
+				LOGGER.error("{}, all the entries of task {} will be compared", e.getMessage(), task.getName());
+				LOGGER.debug(e.toString(), e);
+			}
+		}
+
+		// The entries synchronized may be recorded, to resume the run if it is interrupted
+		Checkpoint checkpoint = null;
+		if (task.getTaskType().getCheckpoint() != null) {
+			try {
+				checkpoint = Checkpoint.open(task, resume);
+			} catch (LscConfigurationException e) {
+				LOGGER.error("{}, task {} will not be resumable", e.getMessage(), task.getName());
+				LOGGER.debug(e.toString(), e);
+			}
+		}
+		int skipped = 0;
+
+		// In pipeline mode, this pool only reads the entries and the adaptive
+		// concurrency applies to the threads writing them
+		SynchronizePipeline pipeline = null;
+		if (pipelineThreads != null) {
+			pipeline = new SynchronizePipeline(new SynchronizeThreadPoolExecutor(task.getName() + "-read", pipelineThreads[0]),
+							new SynchronizeThreadPoolExecutor(task.getName() + "-compute", pipelineThreads[1]),
+							newThreadPool(task, pipelineThreads[2]));
+			threadPool = (SynchronizeThreadPoolExecutor) pipeline.getReadStage();
+		} else {
+			threadPool = newThreadPool(task);
+		}
+
+		// Destination entries may be looked up by blocks instead of one by one
+		IBatchLookupService lookupService = null;
+		if (task.getDestinationService() instanceof IBatchLookupService
+						&& ((IBatchLookupService) task.getDestinationService()).getLookupBatchSize() > 1) {
+			lookupService = (IBatchLookupService) task.getDestinationService();
+		}
+		// Entries are submitted by chunks, or by blocks sharing a lookup
+		int blockSize = (lookupService != null ? lookupService.getLookupBatchSize() : CHUNK_SIZE);
+		List<SynchronizeTask> block = new ArrayList<SynchronizeTask>(blockSize);
 
 		/*
 		 * Loop on all entries in the source and add or update them in the
-		 * destination
+		 * destination. The pool queue is bounded, so the source is read
+		 * no faster than the entries are synchronized.
 		 */
-		for (Entry<String, LscDatasets> id : ids) {
-			threadPool.runTask(new SynchronizeTask(task, counter, this, id, true));
+		try {
+			while (ids.hasNext()) {
+				Entry<String, LscDatasets> id = ids.next();
+				if (taskShard != null && !taskShard.contains(id.getKey())) {
+					continue;
+				}
+				if (checkpoint != null && checkpoint.isCompleted(id.getKey())) {
+					skipped++;
+					continue;
+				}
+				IBean srcBean = ids.getBean();
+				SynchronizeTask synchronizeTask = (srcBean != null
+								? new SynchronizeTask(task, counter, this, id, srcBean)
+								: new SynchronizeTask(task, counter, this, id, true));
+				synchronizeTask.setFingerprints(fingerprints);
+				synchronizeTask.setCheckpoint(checkpoint);
+				synchronizeTask.setPipeline(pipeline);
+				synchronizeTask.setLookups(threadPool);
+				block.add(synchronizeTask);
+				if (block.size() >= blockSize) {
+					runBlock(threadPool, task, lookupService, block);
+					block = new ArrayList<SynchronizeTask>(blockSize);
+				}
+			}
+		} catch (LscServiceException e) {
+			LOGGER.error("Error getting list of IDs in the source for task {}", task.getName());
+			LOGGER.debug(e.toString(), e);
+			complete = false;
+		} finally {
+			ids.close();
+			if (!block.isEmpty()) {
+				runBlock(threadPool, task, lookupService, block);
+			}
+		}
+		boolean terminated = false;
+		try {
+			if (pipeline != null) {
+				terminated = pipeline.awaitTermination(timeLimit, TimeUnit.SECONDS);
+			} else {
+				threadPool.shutdown();
+				terminated = threadPool.awaitTermination(timeLimit, TimeUnit.SECONDS);
+			}
+		} catch (InterruptedException e) {
+			LOGGER.error("Tasks terminated according to time limit: " + e.toString(), e);
+			LOGGER.info("If you want to avoid this message, " + "increase the time limit by using dedicated parameter.");
+		}
+		flushDestination(task);
+		concurrencies.remove(task);
+		if (fingerprints != null) {
+			// fingerprints are purged only if every source entry has been seen
+			fingerprints.close(complete && terminated && skipped == 0 && taskShard == null);
+		}
+		if (checkpoint != null) {
+			if (skipped > 0) {
+				LOGGER.info("{} entries skipped, already synchronized by the interrupted run", skipped);
+			}
+			checkpoint.close(complete && terminated && counter.getCountError() == 0);
+		}
+
+		logStatus(counter);
+		if (lease != null) {
+			lease.release(counter);
+		}
+		return complete && counter.getCountError() == 0;
+	}
+
+	/**
+	 * Submit a block of contiguous synchronization tasks as a single work item
+	 * @param threadPool the pool
+	 * @param task the task
+	 * @param lookupService the destination, if it looks the block entries up at once
+	 * @param block the synchronization tasks
+	 */
+	private void runBlock(SynchronizeThreadPoolExecutor threadPool, Task task,
+					IBatchLookupService lookupService, List<SynchronizeTask> block) {
+		if (lookupService != null) {
+			threadPool.runTask(new LookupBatchTask(task, this, lookupService, block));
+		} else {
+			threadPool.runTask(new TaskChunk(block));
+		}
+	}
+
+	/**
+	 * Take the lease of the shard of a task handled by this process, when the
+	 * processes sharing the task are coordinated through a directory.
+	 * @param task the task
+	 * @param mode the phase of the task
+	 * @return the lease, or null if the processes are not coordinated or if
+	 * 			there is no shard left to take over
+	 * @throws LscConfigurationException if the shard is held by another process
+	 */
+	private ShardLease acquireShard(Task task, Task.Mode mode) throws LscConfigurationException {
+		if (shard == null || shardDirectory == null) {
+			return null;
+		}
+		return ShardLease.acquire(shardDirectory, task.getName() + "." + mode, shard);
+	}
+
+	/**
+	 * Create the pool of threads synchronizing or cleaning a task. In adaptive
+	 * mode, the number of threads then follows the destination response time.
+	 * @param task the task
+	 * @return the pool
+	 */
+	private SynchronizeThreadPoolExecutor newThreadPool(Task task) {
+		return newThreadPool(task, getThreads(task));
+	}
+
+	/**
+	 * Create a pool of threads accessing the destination of a task. With
+	 * virtual threads, the tasks sharing a destination connection share its
+	 * permits instead of being limited by their own number of threads.
+	 * @param task the task
+	 * @param maxThreads the number of threads, or their maximum in adaptive mode
+	 * @return the pool
+	 */
+	private SynchronizeThreadPoolExecutor newThreadPool(Task task, int maxThreads) {
+		SynchronizeThreadPoolExecutor threadPool = null;
+		ThreadFactory virtualThreadFactory = (virtualThreads > 0 ? VirtualThreads.newFactory(task.getName() + "-") : null);
+		if (virtualThreadFactory != null) {
+			// Virtual threads are cheap enough to have as many as the entries
+			// allowed at a time on the destination, whatever the other tasks
+			maxThreads = virtualThreads;
+			threadPool = new SynchronizeThreadPoolExecutor(maxThreads, virtualThreadFactory, getDestinationPermits(task));
+		} else {
+			threadPool = new SynchronizeThreadPoolExecutor(task.getName(), maxThreads);
+		}
+		if (minThreads > 0) {
+			concurrencies.put(task, new AdaptiveConcurrency(task.getName(), threadPool, Math.min(minThreads, maxThreads), maxThreads));
+		}
+		return threadPool;
+	}
+
+	/**
+	 * Get the permits of the virtual threads working on the destination of a
+	 * task, shared with the other tasks using the same connection
+	 * @param task the task
+	 * @return the permits
+	 */
+	private Semaphore getDestinationPermits(Task task) {
+		String connectionName = task.getDestinationConnectionName();
+		String key = (connectionName != null ? connectionName : "task:" + task.getName());
+		synchronized (destinationPermits) {
+			Semaphore permits = destinationPermits.get(key);
+			if (permits == null) {
+				permits = new Semaphore(virtualThreads, true);
+				destinationPermits.put(key, permits);
+			}
+			return permits;
+		}
+	}
+
+	/**
+	 * Get a cursor on the identifiers of a service, streamed if the service
+	 * supports it.
+	 * @param service the service
+	 * @return the cursor, to be closed
+	 * @throws LscServiceException if the identifiers could not be read
+	 */
+	private static IPivotCursor getPivotCursor(IService service) throws LscServiceException {
+		if (service instanceof IStreamingService) {
+			return ((IStreamingService) service).getPivotCursor();
+		}
+		return AbstractPivotCursor.fromMap(service.getListPivots());
+	}
+
+	/**
+	 * Reconcile the destination with the source in a single pass: both
+	 * services return all their entries sorted on their first pivot through
+	 * a cursor, and both cursors are advanced together to find the entries to
+	 * create, update or delete. No lookup is done per entry. The entries
+	 * missing from the source are only deleted once both services have been
+	 * read to their end in order. Both services must implement
+	 * {@link ISortedService} and the task must not use pivot transformations.
+	 * 
+	 * @param task the task to reconcile
+	 * @return true if no error was encountered
+	 */
+	protected final boolean merge2Ldap(final Task task) {
+		if (!(task.getSourceService() instanceof ISortedService) || !(task.getDestinationService() instanceof ISortedService)) {
+			LOGGER.error("Merge is only possible when both source and destination services return sorted entries (task {})", task.getName());
+			return false;
+		}
+		List<Transformation> transformations = LscConfiguration.getPivotTransformation(task.getTaskType());
+		if (transformations != null && !transformations.isEmpty()) {
+			LOGGER.error("Merge is not possible with pivot transformations, they change the pivot order (task {})", task.getName());
+			return false;
+		}
+		if (shard != null) {
+			LOGGER.error("Merge is not possible on a shard of the entries (task {})", task.getName());
+			return false;
+		}
+		ISortedService srcService = (ISortedService) task.getSourceService();
+		ISortedService dstService = (ISortedService) task.getDestinationService();
+
+		final InfoCounter counter = new InfoCounter();
+		counters.put(task.getName(), counter);
+		MergeCursor src = null;
+		MergeCursor dst = null;
+		SynchronizeThreadPoolExecutor threadPool = null;
+		final AtomicBoolean aborted = new AtomicBoolean(false);
+		try {
+			IPivotCursor srcCursor = srcService.getSortedCursor();
+			// Make sure we have at least one entry to work on, or we would delete everything
+			if (!srcCursor.hasNext()) {
+				srcCursor.close();
+				LOGGER.error("Empty or non existant source (no IDs found)");
+				return false;
+			}
+			src = new MergeCursor(srcCursor, srcService.getSortedBy(), "source");
+			dst = new MergeCursor(dstService.getSortedCursor(), dstService.getSortedBy(), "destination");
+
+			threadPool = newThreadPool(task);
+			final SynchronizeThreadPoolExecutor pool = threadPool;
+			MergeCursor.merge(src, dst, counter, aborted, new MergeCursor.Handler() {
+				public void create(IBean srcBean) {
+					pool.runTask(new SynchronizeTask(task, counter, AbstractSynchronize.this, srcBean, null));
+				}
+
+				public void update(IBean srcBean, IBean dstBean) {
+					pool.runTask(new SynchronizeTask(task, counter, AbstractSynchronize.this, srcBean, dstBean));
+				}
+
+				public void delete(Entry<String, LscDatasets> id, IBean dstBean) {
+					pool.runTask(new CleanTask(task, counter, AbstractSynchronize.this, id, dstBean, false, aborted));
+				}
+			});
+		} catch (LscServiceException e) {
+			LOGGER.error("Error getting sorted entries for task {}", task.getName());
+			LOGGER.debug(e.toString(), e);
+			aborted.set(true);
+		} catch (IllegalStateException e) {
+			LOGGER.error(e.getMessage() + " Aborting.");
+			aborted.set(true);
+		} finally {
+			if (src != null) {
+				src.close();
+			}
+			if (dst != null) {
+				dst.close();
+			}
+		}
+
+		if (threadPool == null) {
+			return false;
 		}
 		try {
 			threadPool.shutdown();
@@ -332,9 +892,11 @@ public abstract class AbstractSynchronize {
 			LOGGER.error("Tasks terminated according to time limit: " + e.toString(), e);
 			LOGGER.info("If you want to avoid this message, " + "increase the time limit by using dedicated parameter.");
 		}
+		flushDestination(task);
+		concurrencies.remove(task);
 
 		logStatus(counter);
-		return counter.getCountError() == 0;
+		return !aborted.get() && counter.getCountError() == 0;
 	}
 
 	public final synchronized void startAsynchronousSynchronize2Ldap(Task task) {
@@ -395,15 +957,27 @@ public abstract class AbstractSynchronize {
 		}
 	}
 	
+	/**
+	 * Get the counters of a running asynchronous task, or of the running or
+	 * last synchronization, clean or merge of a task, followed by the time
+	 * spent in each phase of the synchronization of its entries.
+	 * @param syncName the task name
+	 * @return the status lines, or null if the task has not been run
+	 */
 	public final String getTaskFullStatus(final String syncName) {
+		InfoCounter counter;
 		Thread asyncThread = asynchronousThreads.get(syncName);
 		if(asyncThread != null && asyncThread.isAlive()) {
 			AsynchronousRunner asyncRunner = mapSTasks.get(syncName);
-			InfoCounter counter = asyncRunner.getCounter();
-			return getLogStatus(counter);
+			counter = asyncRunner.getCounter();
 		} else {
+			counter = counters.get(syncName);
+		}
+		if (counter == null) {
 			return null;
 		}
+		String phasesStatus = counter.getPhasesStatus();
+		return getLogStatus(counter) + (phasesStatus.length() > 0 ? "\n" + phasesStatus : "");
 	}
 	
 	public abstract boolean isAsynchronousTask(String taskName);
@@ -470,6 +1044,109 @@ public abstract class AbstractSynchronize {
 		LSCStructuralLogger.DESTINATION.info("", lm);
 	}
 
+	/**
+	 * Apply modifications to the destination, then update the counters and
+	 * log the action. When the destination pipelines its writes, this is
+	 * done by the listener once the result arrives, and the modifications
+	 * are considered successful until then.
+	 *
+	 * @param task the task
+	 * @param counter the counters to update
+	 * @param lm the modifications to apply
+	 * @param id the entry identifier
+	 * @param identifier the identifier to log on error
+	 * @return false if the modifications were not applied
+	 * @throws LscServiceException if the destination could not be reached
+	 */
+	final boolean applyModifications(final Task task, final InfoCounter counter, final LscModifications lm,
+					final Entry<String, LscDatasets> id, final Object identifier) throws LscServiceException {
+		return applyModifications(task, counter, lm, id, identifier, null);
+	}
+
+	/**
+	 * Apply modifications like {@link #applyModifications(Task, InfoCounter, LscModifications, Entry, Object)},
+	 * then notify the listener once the result is known.
+	 * @param listener notified after the counters are updated, may be null
+	 */
+	final boolean applyModifications(final Task task, final InfoCounter counter, final LscModifications lm,
+					final Entry<String, LscDatasets> id, final Object identifier,
+					final IApplyListener listener) throws LscServiceException {
+		IWritableService destination = task.getDestinationService();
+		final AdaptiveConcurrency concurrency = concurrencies.get(task);
+		throttleDestination(task);
+		final long start = System.nanoTime();
+		if (destination instanceof IPipelinedWritableService
+						&& ((IPipelinedWritableService) destination).isPipelined()) {
+			((IPipelinedWritableService) destination).applyAsync(lm, new IApplyListener() {
+				public void applied(LscModifications applied) {
+					counter.record(InfoCounter.Phase.APPLY, start);
+					if (concurrency != null) {
+						concurrency.sample(System.nanoTime() - start, true);
+					}
+					counter.incrementCountCompleted();
+					logAction(applied, id, task.getName());
+					if (listener != null) {
+						listener.applied(applied);
+					}
+				}
+
+				public void failed(LscModifications failed, Exception e) {
+					counter.record(InfoCounter.Phase.APPLY, start);
+					if (concurrency != null) {
+						concurrency.sample(System.nanoTime() - start, false);
+					}
+					counter.incrementCountError();
+					logActionError(failed, identifier, e);
+					if (listener != null) {
+						listener.failed(failed, e);
+					}
+				}
+			});
+			return true;
+		}
+
+		boolean applied = false;
+		try {
+			applied = destination.apply(lm);
+		} finally {
+			counter.record(InfoCounter.Phase.APPLY, start);
+			if (concurrency != null) {
+				concurrency.sample(System.nanoTime() - start, applied);
+			}
+		}
+		if (applied) {
+			counter.incrementCountCompleted();
+			logAction(lm, id, task.getName());
+			if (listener != null) {
+				listener.applied(lm);
+			}
+			return true;
+		} else {
+			counter.incrementCountError();
+			Exception e = new Exception("Technical problem while applying modifications to the destination");
+			logActionError(lm, identifier, e);
+			if (listener != null) {
+				listener.failed(lm, e);
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Wait for the modifications still in flight to the destination, so that
+	 * the counters are complete.
+	 * @param task the task
+	 */
+	final void flushDestination(Task task) {
+		if (task.getDestinationService() instanceof IPipelinedWritableService) {
+			try {
+				((IPipelinedWritableService) task.getDestinationService()).flush();
+			} catch (LscServiceException e) {
+				LOGGER.error("Error while waiting for the modifications sent to the destination: " + e.toString(), e);
+			}
+		}
+	}
+
 	/**
 	 * @param jm
 	 * @param id
@@ -508,6 +1185,7 @@ public abstract class AbstractSynchronize {
 		} else {
 			LOGGER.info(totalsLogMessage);
 		}
+		LOGGER.debug("Time spent per phase:\n{}", counter.getPhasesStatus());
 	}
 	
 	protected String getLogStatus(InfoCounter counter) {
@@ -520,19 +1198,49 @@ public abstract class AbstractSynchronize {
 	}
 	
 	protected IBean getBean(Task task, IService service, String pivotName, LscDatasets pivotAttributes, boolean fromSameService, boolean fromSource) throws LscServiceException {
+		if (service == task.getDestinationService()) {
+			throttleDestination(task);
+		}
+		if (! fromSameService) {
+			return service.getBean(pivotName, transformPivots(task, pivotAttributes, fromSource), fromSameService);
+		}
+		return service.getBean(pivotName, pivotAttributes, fromSameService);
+	}
+
+	/**
+	 * Wait until a request may be sent to the destination of a task, when its
+	 * connection limits the number of operations per second.
+	 * @param task the task
+	 */
+	final void throttleDestination(Task task) {
+		if (task.getDestinationRateLimiter() != null) {
+			task.getDestinationRateLimiter().acquire();
+		}
+	}
+
+	/**
+	 * Apply the pivot transformations of the task to pivot attributes read
+	 * from one service, before using them against the other one.
+	 * @param task the task
+	 * @param pivotAttributes the pivot attributes
+	 * @param fromSource true if the pivot attributes come from the source
+	 * @return the transformed pivot attributes, or the same ones if there is no transformation
+	 * @throws LscServiceException
+	 */
+	protected LscDatasets transformPivots(Task task, LscDatasets pivotAttributes, boolean fromSource) throws LscServiceException {
 		List<Transformation> transformations = LscConfiguration.getPivotTransformation(task.getTaskType());
-		if (! fromSameService && transformations != null) {
-			LscDatasets newPivots = new LscDatasets(pivotAttributes.getDatasets());
-			for (Entry<String, Object> pivot: pivotAttributes.getDatasets().entrySet()) {
-				for (Transformation transformation: transformations) {
-					if (pivot.getKey().equalsIgnoreCase(transformation.getFromAttribute()) && LscConfiguration.pivotOriginMatchesFromSource(transformation.getPivotOrigin(), fromSource)) {
-						newPivots.put(transformation.getToAttribute(), transform(task, transformation, pivot.getValue()));
-					}
+		if (transformations == null) {
+			return pivotAttributes;
+		}
+		LscDatasets newPivots = new LscDatasets(pivotAttributes.getDatasets());
+		for (Entry<String, Object> pivot: pivotAttributes.getDatasets().entrySet()) {
+			for (Transformation transformation: transformations) {
+				if (pivot.getKey().equalsIgnoreCase(transformation.getFromAttribute()) && LscConfiguration.pivotOriginMatchesFromSource(transformation.getPivotOrigin(), fromSource)) {
+					newPivots.put(transformation.getToAttribute(), transform(task, transformation, pivot.getValue()));
 				}
 			}
-			return service.getBean(pivotName, newPivots, fromSameService);
 		}
-		return service.getBean(pivotName, pivotAttributes, fromSameService);
+		return newPivots;
 	}
 
 	protected Object transform(Task task, Transformation transformation, Object value) throws LscServiceException{
@@ -576,9 +1284,81 @@ public abstract class AbstractSynchronize {
 			nodelete = true;
 			nomodrdn = true;
 		}
+		if (cmdLine.hasOption("fv")) {
+			fullVerify = true;
+		}
+		if (cmdLine.hasOption("r")) {
+			resume = true;
+		}
+		if (cmdLine.hasOption("sh")) {
+			try {
+				shard = Shard.parse(cmdLine.getOptionValue("sh"));
+			} catch (IllegalArgumentException e) {
+				LOGGER.error(e.getMessage());
+				return false;
+			}
+		}
+		if (cmdLine.hasOption("sd")) {
+			shardDirectory = new File(cmdLine.getOptionValue("sd"));
+		}
+		if (shard != null && shard.isAny() && shardDirectory == null) {
+			LOGGER.error("Taking over the shards of failed processes requires a shard directory");
+			return false;
+		}
+		if (cmdLine.hasOption("at")) {
+			try {
+				minThreads = Integer.parseInt(cmdLine.getOptionValue("at"));
+			} catch (NumberFormatException e) {
+				LOGGER.error("Invalid minimum number of threads: {}", cmdLine.getOptionValue("at"));
+				return false;
+			}
+		}
+		if (cmdLine.hasOption("vt")) {
+			try {
+				virtualThreads = Integer.parseInt(cmdLine.getOptionValue("vt"));
+			} catch (NumberFormatException e) {
+				LOGGER.error("Invalid number of virtual threads: {}", cmdLine.getOptionValue("vt"));
+				return false;
+			}
+			if (virtualThreads > 0 && !VirtualThreads.isSupported()) {
+				LOGGER.warn("Virtual threads are not supported by this JVM, using the configured number of threads");
+				virtualThreads = 0;
+			}
+		}
+		if (cmdLine.hasOption("pl")) {
+			pipelineThreads = parsePipelineThreads(cmdLine.getOptionValue("pl"));
+			if (pipelineThreads == null) {
+				LOGGER.error("Invalid number of threads of the pipeline stages: {}", cmdLine.getOptionValue("pl"));
+				return false;
+			}
+		}
 		return true;
 	}
 
+	/**
+	 * Parse the number of threads of the read, compute and write stages
+	 * @param value the numbers, separated by commas
+	 * @return the numbers, or null if they are invalid
+	 */
+	static int[] parsePipelineThreads(String value) {
+		String[] values = value.split(",");
+		if (values.length != 3) {
+			return null;
+		}
+		int[] stageThreads = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			try {
+				stageThreads[i] = Integer.parseInt(values[i].trim());
+			} catch (NumberFormatException e) {
+				return null;
+			}
+			if (stageThreads[i] < 1) {
+				return null;
+			}
+		}
+		return stageThreads;
+	}
+
 	/**
 	 * Get options against which the command line is analyzed.
 	 * 
@@ -609,6 +1389,18 @@ public abstract class AbstractSynchronize {
 		this.threads = threads;
 	}
 
+	/**
+	 * Parallel synchronizing threads of a task: its own number of threads
+	 * if configured, the global one otherwise
+	 * 
+	 * @param task the task
+	 * @return the number of parallels threads dedicated to the task
+	 */
+	public int getThreads(Task task) {
+		Integer taskThreads = task.getTaskType().getThreads();
+		return (taskThreads != null && taskThreads > 0 ? taskThreads : threads);
+	}
+
 	/**
 	 * Time limit accessor
 	 * @return the number of seconds
@@ -644,7 +1436,7 @@ class AsynchronousRunner implements Runnable {
     public void run() {
         counter = new InfoCounter();
 
-        SynchronizeThreadPoolExecutor threadPool = new SynchronizeThreadPoolExecutor(abstractSynchronize.getThreads());
+        SynchronizeThreadPoolExecutor threadPool = new SynchronizeThreadPoolExecutor(task.getName(), abstractSynchronize.getThreads(task));
 
         Entry<String, LscDatasets> nextId = null;
         try {
@@ -662,17 +1454,21 @@ class AsynchronousRunner implements Runnable {
 
             AbstractSynchronize.LOGGER.debug("Asynchronous synchronize {}", task.getName());
 
-            boolean interrupted = false;
-            while (!interrupted) {
-                nextId = aService.getNextId();
-                if (nextId != null) {
-                    threadPool.runTask(new SynchronizeTask(task, counter, abstractSynchronize, nextId, fromSource));
-                } else {
-                    try {
-                        Thread.sleep(aService.getInterval());
-                    } catch (InterruptedException e) {
-                        AbstractSynchronize.LOGGER.debug("Synchronization thread interrupted !");
-                        interrupted = true;
+            if (aService instanceof IPushAsynchronousService) {
+                listen((IPushAsynchronousService) aService, threadPool, fromSource);
+            } else {
+                boolean interrupted = false;
+                while (!interrupted) {
+                    nextId = aService.getNextId();
+                    if (nextId != null) {
+                        threadPool.runTask(new SynchronizeTask(task, counter, abstractSynchronize, nextId, fromSource));
+                    } else {
+                        try {
+                            Thread.sleep(aService.getInterval());
+                        } catch (InterruptedException e) {
+                            AbstractSynchronize.LOGGER.debug("Synchronization thread interrupted !");
+                            interrupted = true;
+                        }
                     }
                 }
             }
@@ -688,9 +1484,41 @@ class AsynchronousRunner implements Runnable {
 			LOGGER.error("Tasks terminated according to time limit: " + e.toString(), e);
 			LOGGER.info("If you want to avoid this message, " + "increase the time limit by using dedicated parameter.");
 		}
+		abstractSynchronize.flushDestination(task);
 
     }
     
+    /**
+     * Synchronize the changes pushed by a service as soon as they are
+     * received, until this thread is interrupted or the service fails.
+     * @param service the service
+     * @param threadPool the pool synchronizing the changes
+     * @param fromSource true if the service is the source
+     * @throws LscServiceException if the changes could not be listened to
+     */
+    private void listen(IPushAsynchronousService service, final SynchronizeThreadPoolExecutor threadPool,
+    				final boolean fromSource) throws LscServiceException {
+        final CountDownLatch failure = new CountDownLatch(1);
+        service.start(new IChangeListener() {
+            public void changed(Entry<String, LscDatasets> id) {
+                threadPool.runTask(new SynchronizeTask(task, counter, abstractSynchronize, id, fromSource));
+            }
+
+            public void failed(LscServiceException e) {
+                counter.incrementCountError();
+                abstractSynchronize.logActionError(null, null, e);
+                failure.countDown();
+            }
+        });
+        try {
+            failure.await();
+        } catch (InterruptedException e) {
+            AbstractSynchronize.LOGGER.debug("Synchronization thread interrupted !");
+        } finally {
+            service.stop();
+        }
+    }
+
     public InfoCounter getCounter() {
     	return counter;
     }
@@ -709,6 +1537,21 @@ class SynchronizeTask implements Runnable {
 	private Entry<String, LscDatasets> id;
 	private Task task;
 	private boolean fromSource;
+	/** Source and destination beans, when already known */
+	private IBean srcBean;
+	private IBean dstBean;
+	private boolean beansKnown;
+	private boolean dstBeanKnown;
+	/** Fingerprints of the entries synchronized by the previous runs, if any */
+	private FingerprintStore fingerprints;
+	private byte[] fingerprint;
+	private boolean upToDate;
+	/** Record of the entries synchronized during this run, if any */
+	private Checkpoint checkpoint;
+	/** Stages the comparison and the write are handed over to, if pipelined */
+	private SynchronizePipeline pipeline;
+	/** Pool looking the destination entry up while the source entry is read, if any */
+	private SynchronizeThreadPoolExecutor lookups;
 
 	public SynchronizeTask(final Task task, InfoCounter counter,
 			AbstractSynchronize abstractSynchronize,
@@ -722,10 +1565,116 @@ class SynchronizeTask implements Runnable {
 		this.fromSource = fromSource;
 	}
 
+	/**
+	 * Synchronize beans already read from both services (merge mode), without
+	 * any lookup
+	 * @param srcBean the source bean
+	 * @param dstBean the destination bean, or null if there is no matching entry
+	 */
+	public SynchronizeTask(final Task task, InfoCounter counter,
+			AbstractSynchronize abstractSynchronize,
+			IBean srcBean, IBean dstBean) {
+		this(task, counter, abstractSynchronize, (Entry<String, LscDatasets>) null, true);
+		this.srcBean = srcBean;
+		this.dstBean = dstBean;
+		this.beansKnown = true;
+	}
+
+	/**
+	 * Synchronize a source bean already read while listing the source
+	 * entries: only the destination entry is looked up
+	 * @param id the source entry name and pivot attributes
+	 * @param srcBean the source bean
+	 */
+	public SynchronizeTask(final Task task, InfoCounter counter,
+			AbstractSynchronize abstractSynchronize,
+			Entry<String, LscDatasets> id, IBean srcBean) {
+		this(task, counter, abstractSynchronize, id, true);
+		this.srcBean = srcBean;
+	}
+
+	/**
+	 * Set the destination bean, when it has been looked up beforehand
+	 * @param dstBean the destination bean, or null if there is no matching entry
+	 */
+	public void setDstBean(IBean dstBean) {
+		this.dstBean = dstBean;
+		this.dstBeanKnown = true;
+	}
+
+	/**
+	 * @return true if the destination bean has been looked up beforehand
+	 */
+	boolean isDstBeanKnown() {
+		return beansKnown || dstBeanKnown;
+	}
+
+	IBean getDstBean() {
+		return dstBean;
+	}
+
+	public void setFingerprints(FingerprintStore fingerprints) {
+		this.fingerprints = fingerprints;
+	}
+
+	public void setCheckpoint(Checkpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	public void setPipeline(SynchronizePipeline pipeline) {
+		this.pipeline = pipeline;
+	}
+
+	public void setLookups(SynchronizeThreadPoolExecutor lookups) {
+		this.lookups = lookups;
+	}
+
+	public IBean getSrcBean() {
+		return srcBean;
+	}
+
+	/**
+	 * Check, once, whether the source entry is unchanged since its last
+	 * successful synchronization.
+	 * @param entry the source bean
+	 * @return true if the entry does not need to be compared with the destination
+	 */
+	boolean isUpToDate(IBean entry) {
+		if (fingerprints == null || id == null || entry == null) {
+			return false;
+		}
+		if (fingerprint == null) {
+			fingerprint = FingerprintStore.getFingerprint(entry);
+			upToDate = fingerprints.isUnchanged(id.getKey(), fingerprint);
+		}
+		return upToDate;
+	}
+
 	public void run() {
         counter.incrementCountAll();
+		if (beansKnown || srcBean != null) {
+			runStages(srcBean);
+			return;
+		}
 		try {
-            run(abstractSynchronize.getBean(task, fromSource ? task.getSourceService() : task.getDestinationService(), id.getKey(), id.getValue(), true, fromSource));
+			// The destination entry is looked up by the source pivot attributes
+			// while the source entry is read, unless the source entry may be
+			// found unchanged and not compared at all
+			FutureTask<IBean> dstLookup = null;
+			if (fromSource && !dstBeanKnown && fingerprints == null && lookups != null) {
+				dstLookup = lookups.submitLookup(new Callable<IBean>() {
+					public IBean call() throws LscServiceException {
+						return lookupDestination(null);
+					}
+				});
+			}
+			long start = System.nanoTime();
+			IBean entry = abstractSynchronize.getBean(task, fromSource ? task.getSourceService() : task.getDestinationService(), id.getKey(), id.getValue(), true, fromSource);
+			counter.record(fromSource ? InfoCounter.Phase.SOURCE_FETCH : InfoCounter.Phase.DESTINATION_FETCH, start);
+			if (dstLookup != null) {
+				setDstBean(SynchronizeThreadPoolExecutor.join(dstLookup));
+			}
+            runStages(entry);
 		} catch (RuntimeException e) {
 			counter.incrementCountError();
 			abstractSynchronize.logActionError(null, id.getValue(), e);
@@ -739,7 +1688,32 @@ class SynchronizeTask implements Runnable {
 		}
 	}
 
-	public boolean run(IBean entry) {
+	/**
+	 * Synchronize an entry or, in pipeline mode, look its destination entry
+	 * up and hand the comparison over to the compute stage.
+	 * @param entry the source bean
+	 */
+	private void runStages(final IBean entry) {
+		if (pipeline == null) {
+			run(entry);
+			return;
+		}
+		if (entry != null && !isUpToDate(entry)) {
+			try {
+				setDstBean(lookupDestination(entry));
+			} catch (Exception e) {
+				failed(null, entry, e);
+				return;
+			}
+		}
+		pipeline.getComputeStage().execute(new Runnable() {
+			public void run() {
+				SynchronizeTask.this.run(entry);
+			}
+		});
+	}
+
+	public boolean run(final IBean entry) {
 		
 		LscModifications lm = null;
 		IBean dstBean = null;
@@ -757,19 +1731,18 @@ class SynchronizeTask implements Runnable {
 				return false;
 			}
 
-			// Search destination for matching object
-			if(id != null) {
-				dstBean = abstractSynchronize.getBean(task, task.getDestinationService(), id.getKey(), id.getValue(), ! fromSource, fromSource);
-			} else {
-				LscDatasets entryDatasets = new LscDatasets();
-				for(String datasetName: entry.datasets().getAttributesNames()) {
-					entryDatasets.getDatasets().put(datasetName, entry.getDatasetById(datasetName));
-				}
-				dstBean = abstractSynchronize.getBean(task, task.getDestinationService(), entry.getMainIdentifier(), entryDatasets, ! fromSource, fromSource);
+			if (isUpToDate(entry)) {
+				AbstractSynchronize.LOGGER.debug("Skipping {}, unchanged since its last synchronization", id.getKey());
+				return completed();
 			}
 
+			// Search destination for matching object
+			dstBean = lookupDestination(entry);
+
 			// Calculate operation that would be performed
+			long start = System.nanoTime();
 			LscModificationType modificationType = BeanComparator.calculateModificationType(task, entry, dstBean);
+			counter.record(InfoCounter.Phase.DIFF, start);
 
 			// Retrieve condition to evaluate before creating/updating
 			Boolean applyCondition = null;
@@ -787,15 +1760,22 @@ class SynchronizeTask implements Runnable {
 				conditionObjects.putAll(task.getScriptingVars());
 
 				// Evaluate if we have to do something
+				start = System.nanoTime();
 				applyCondition = ScriptingEvaluator.evalToBoolean(task, conditionString, conditionObjects);
+				counter.record(InfoCounter.Phase.SCRIPT, start);
 			}
 
 			if (applyCondition) {
+				start = System.nanoTime();
 				lm = BeanComparator.calculateModifications(task, entry, dstBean);
+				counter.record(InfoCounter.Phase.DIFF, start);
 
 				// if there's nothing to do, skip to the next object
 				if (lm == null) {
-					return true;
+					if (fingerprint != null) {
+						fingerprints.update(id.getKey(), fingerprint, null);
+					}
+					return completed();
 				}
 
 	            counter.incrementCountModifiable();
@@ -805,123 +1785,137 @@ class SynchronizeTask implements Runnable {
 						|| (modificationType == LscModificationType.UPDATE_OBJECT && abstractSynchronize.noupdate)
 						|| (modificationType == LscModificationType.CHANGE_ID && (abstractSynchronize.nomodrdn || abstractSynchronize.noupdate))) {
 					abstractSynchronize.logShouldAction(lm, syncName);
-					return true;
+					return completed();
 				}
 
 			} else {
-				return true;
+				return completed();
 			}
 
 			// if we got here, we have a modification to apply - let's do it!
-			if (task.getDestinationService().apply(lm)) {
-				counter.incrementCountCompleted();
-				abstractSynchronize.logAction(lm, id, syncName);
+			if (pipeline != null) {
+				final LscModifications modifications = lm;
+				pipeline.getWriteStage().execute(new Runnable() {
+					public void run() {
+						apply(modifications, entry);
+					}
+				});
 				return true;
-			} else {
-				counter.incrementCountError();
-				abstractSynchronize.logActionError(lm, (id != null ? id.getValue() : entry.getMainIdentifier()), new Exception("Technical problem while applying modifications to the destination"));
-				return false;
 			}
-		} catch (RuntimeException e) {
-			counter.incrementCountError();
-			abstractSynchronize.logActionError(lm, (id != null ? id.getValue() : ( entry != null ? entry.getMainIdentifier() : e.toString())), e);
-			
-			if (e.getCause() instanceof LscServiceCommunicationException) {
-				AbstractSynchronize.LOGGER.error("Connection lost! Aborting.");
-			}
-			return false;
+			return apply(lm, entry);
 		} catch (Exception e) {
-			counter.incrementCountError();
-			abstractSynchronize.logActionError(lm, (id != null ? id.getValue() : entry.getMainIdentifier()), e);
-			return false;
+			return failed(lm, entry, e);
 		}
 	}
 
-	public String getSyncName() {
-		return syncName;
+	/**
+	 * Look the destination entry matching a source entry up, unless it is
+	 * already known
+	 * @param entry the source bean
+	 * @return the destination bean, or null if there is no matching entry
+	 * @throws LscServiceException if the lookup failed
+	 */
+	private IBean lookupDestination(IBean entry) throws LscServiceException {
+		if (beansKnown || dstBeanKnown) {
+			return this.dstBean;
+		}
+		long start = System.nanoTime();
+		IBean found = null;
+		if(id != null) {
+			found = abstractSynchronize.getBean(task, task.getDestinationService(), id.getKey(), id.getValue(), ! fromSource, fromSource);
+		} else {
+			LscDatasets entryDatasets = new LscDatasets();
+			for(String datasetName: entry.datasets().getAttributesNames()) {
+				entryDatasets.getDatasets().put(datasetName, entry.getDatasetById(datasetName));
+			}
+			found = abstractSynchronize.getBean(task, task.getDestinationService(), entry.getMainIdentifier(), entryDatasets, ! fromSource, fromSource);
+		}
+		counter.record(InfoCounter.Phase.DESTINATION_FETCH, start);
+		return found;
 	}
 
-	public InfoCounter getCounter() {
-		return counter;
+	/**
+	 * Apply the modifications computed for an entry
+	 * @param lm the modifications
+	 * @param entry the source bean
+	 * @return the modifications status
+	 */
+	private boolean apply(LscModifications lm, IBean entry) {
+		try {
+			return abstractSynchronize.applyModifications(task, counter, lm, id,
+							(id != null ? id.getValue() : entry.getMainIdentifier()),
+							(fingerprint != null || checkpoint != null ? new ApplyListener() : null));
+		} catch (Exception e) {
+			return failed(lm, entry, e);
+		}
 	}
 
-	public AbstractSynchronize getAbstractSynchronize() {
-		return abstractSynchronize;
-	}
+	/**
+	 * Report the failure of the synchronization of an entry
+	 * @param lm the modifications, if already computed
+	 * @param entry the source bean
+	 * @param e the cause of the failure
+	 * @return false
+	 */
+	private boolean failed(LscModifications lm, IBean entry, Exception e) {
+		forgetFingerprint();
+		counter.incrementCountError();
+		abstractSynchronize.logActionError(lm, (id != null ? id.getValue() : ( entry != null ? entry.getMainIdentifier() : e.toString())), e);
 
-	public Entry<String, LscDatasets> getId() {
-		return id;
+		if (e instanceof RuntimeException && e.getCause() instanceof LscServiceCommunicationException) {
+			AbstractSynchronize.LOGGER.error("Connection lost! Aborting.");
+		}
+		return false;
 	}
 
-}
-
-/**
- * This object is storing counters across all tasks Update methods are specified
- * as synchronized to avoid loosing counts of operations
- * 
- * @author Sebastien Bahloul <seb@lsc-project.org>
- */
-class InfoCounter {
-
-	private int countAll = 0;
-	private int countError = 0;
-	private int countModifiable = 0;
-	private int countCompleted = 0;
-
-	public synchronized void incrementCountAll() {
-		countAll++;
+	/** A failed entry must be compared again on the next run */
+	private void forgetFingerprint() {
+		if (fingerprint != null) {
+			fingerprints.remove(id.getKey());
+		}
 	}
 
-	public synchronized void incrementCountError() {
-		countError++;
+	/**
+	 * Record the source entry as synchronized, once there is nothing left to
+	 * apply for it
+	 * @return true
+	 */
+	private boolean completed() {
+		if (checkpoint != null && id != null) {
+			checkpoint.completed(id.getKey());
+		}
+		return true;
 	}
 
-	public synchronized void incrementCountModifiable() {
-		countModifiable++;
-	}
+	/** Record the source entry and its fingerprint once its modifications are applied */
+	private class ApplyListener implements IApplyListener {
+
+		public void applied(LscModifications applied) {
+			if (fingerprint != null) {
+				fingerprints.update(id.getKey(), fingerprint, applied);
+			}
+			completed();
+		}
 
-	public synchronized void incrementCountCompleted() {
-		countCompleted++;
+		public void failed(LscModifications failed, Exception e) {
+			forgetFingerprint();
+		}
 	}
 
-	/**
-	 * Return the count of all objects concerned by synchronization It does not
-	 * include objects in data source that are not selected by requests or
-	 * filters, but it includes any of the objects retrieved from the data
-	 * source
-	 * 
-	 * @return the count of all objects taken from the data source
-	 */
-	public synchronized int getCountAll() {
-		return countAll;
+	public String getSyncName() {
+		return syncName;
 	}
 
-	/**
-	 * Return the count of all objects that have encountered an error while
-	 * synchronizing, either for a technical or for a functional reason
-	 * 
-	 * @return the number of objects in error
-	 */
-	public synchronized int getCountError() {
-		return countError;
+	public InfoCounter getCounter() {
+		return counter;
 	}
 
-	/**
-	 * Return the count of all objects that should be modify
-	 * 
-	 * @return the count of all updates to do
-	 */
-	public synchronized int getCountModifiable() {
-		return countModifiable;
+	public AbstractSynchronize getAbstractSynchronize() {
+		return abstractSynchronize;
 	}
 
-	/**
-	 * Return the count of all objects that have been embraced in a data
-	 * modification successfully
-	 * 
-	 * @return the count of all successful updates
-	 */
-	public synchronized int getCountCompleted() {
-		return countCompleted;
+	public Entry<String, LscDatasets> getId() {
+		return id;
 	}
+
 }
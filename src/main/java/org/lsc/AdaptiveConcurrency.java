@@ -0,0 +1,177 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adapt the number of threads synchronizing a task to its destination. The
+ * modifications applied to the destination are timed and, about every
+ * second, the number of threads is increased by one while the destination
+ * keeps up, or reduced by a quarter as soon as its response time or error
+ * rate degrades (additive increase, multiplicative decrease).
+ * 
+ * The response time is compared with the best one seen recently: this
+ * reference slowly rises when the destination becomes durably slower, so
+ * that the number of threads can grow again.
+ */
+class AdaptiveConcurrency {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveConcurrency.class);
+
+	/** Minimum duration of a measure, in nanoseconds */
+	private static final long WINDOW_DURATION = TimeUnit.SECONDS.toNanos(1);
+
+	/** Minimum number of operations of a measure */
+	private static final int WINDOW_OPERATIONS = 20;
+
+	/** Ratio to the reference response time above which the destination is overloaded */
+	private static final double LATENCY_TOLERANCE = 2;
+
+	/** Proportion of failed operations above which the destination is overloaded */
+	private static final double ERROR_TOLERANCE = 0.05;
+
+	/** Proportion of threads kept when the destination is overloaded */
+	private static final double DECREASE_FACTOR = 0.75;
+
+	/** Growth of the reference response time at each measure */
+	private static final double REFERENCE_DRIFT = 1.01;
+
+	private final String taskName;
+
+	private final ThreadPoolExecutor pool;
+
+	private final int minThreads;
+
+	private final int maxThreads;
+
+	private int threads;
+
+	/** Reference response time, in nanoseconds, or 0 before the first measure */
+	private double reference;
+
+	private long windowStart;
+
+	private int operations;
+
+	private int errors;
+
+	private long latencies;
+
+	/**
+	 * Start with the minimum number of threads.
+	 * @param taskName the task name, for logging
+	 * @param pool the pool running the task, with maxThreads threads
+	 * @param minThreads the minimum number of threads
+	 * @param maxThreads the maximum number of threads
+	 */
+	public AdaptiveConcurrency(String taskName, ThreadPoolExecutor pool, int minThreads, int maxThreads) {
+		this.taskName = taskName;
+		this.pool = pool;
+		this.minThreads = minThreads;
+		this.maxThreads = maxThreads;
+		this.threads = maxThreads;
+		resize(minThreads);
+		windowStart = System.nanoTime();
+	}
+
+	/**
+	 * Account for an operation on the destination, and adapt the number of
+	 * threads at the end of each measure.
+	 * @param latency the duration of the operation, in nanoseconds
+	 * @param success false if the operation failed
+	 */
+	public synchronized void sample(long latency, boolean success) {
+		operations++;
+		latencies += latency;
+		if (!success) {
+			errors++;
+		}
+		long now = System.nanoTime();
+		if (operations < WINDOW_OPERATIONS || now - windowStart < WINDOW_DURATION) {
+			return;
+		}
+
+		double average = (double) latencies / operations;
+		boolean overloaded = errors > operations * ERROR_TOLERANCE
+						|| (reference > 0 && average > reference * LATENCY_TOLERANCE);
+		reference = (reference > 0 ? Math.min(average, reference * REFERENCE_DRIFT) : average);
+		if (overloaded) {
+			resize(Math.max(minThreads, (int) (threads * DECREASE_FACTOR)));
+		} else if (threads < maxThreads) {
+			resize(threads + 1);
+		}
+
+		windowStart = now;
+		operations = 0;
+		errors = 0;
+		latencies = 0;
+	}
+
+	public synchronized int getThreads() {
+		return threads;
+	}
+
+	private void resize(int newThreads) {
+		if (newThreads == threads) {
+			return;
+		}
+		LOGGER.debug("Task {}: {} threads instead of {}", new Object[] { taskName, newThreads, threads });
+		// the core size may never exceed the maximum size
+		if (newThreads > threads) {
+			pool.setMaximumPoolSize(newThreads);
+			pool.setCorePoolSize(newThreads);
+		} else {
+			pool.setCorePoolSize(newThreads);
+			pool.setMaximumPoolSize(newThreads);
+		}
+		threads = newThreads;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.naming.CommunicationException;
+
+import org.lsc.beans.IBean;
+import org.lsc.exception.LscServiceException;
+
+/**
+ * Cleaning task: look for a destination entry in the source and delete it
+ * from the destination if it is missing. All the tasks of a clean phase share
+ * an abort flag, raised as soon as the connection to a service is lost, so
+ * that the remaining queued entries are skipped.
+ */
+class CleanTask implements Runnable {
+
+	private Task task;
+	private InfoCounter counter;
+	private AbstractSynchronize abstractSynchronize;
+	private Entry<String, LscDatasets> id;
+	private IBean dstBean;
+	private boolean lookupSource;
+	private AtomicBoolean aborted;
+
+	/**
+	 * @param id the destination entry identifier and its pivot attributes
+	 * @param dstBean the destination entry if it is already known, or null
+	 * @param lookupSource true to look for the entry in the source first,
+	 *            false if it is already known to be missing from the source
+	 * @param aborted the flag shared by all the tasks of the phase
+	 */
+	public CleanTask(final Task task, InfoCounter counter,
+			AbstractSynchronize abstractSynchronize,
+			Entry<String, LscDatasets> id, IBean dstBean,
+			boolean lookupSource, AtomicBoolean aborted) {
+		this.task = task;
+		this.counter = counter;
+		this.abstractSynchronize = abstractSynchronize;
+		this.id = id;
+		this.dstBean = dstBean;
+		this.lookupSource = lookupSource;
+		this.aborted = aborted;
+	}
+
+	public void run() {
+		if (aborted.get()) {
+			return;
+		}
+		counter.incrementCountAll();
+
+		if (lookupSource) {
+			IBean srcBean;
+			try {
+				// Search for the corresponding object in the source
+				srcBean = abstractSynchronize.getBean(task, task.getSourceService(), id.getKey(), id.getValue(), false, false);
+			} catch (LscServiceException e) {
+				counter.incrementCountError();
+				abstractSynchronize.logActionError(null, id.getValue(), e);
+				if(e.getCause().getClass().isAssignableFrom(CommunicationException.class)) {
+					// we lost the connection to the source or destination, stop
+					// everything!
+					if (aborted.compareAndSet(false, true)) {
+						AbstractSynchronize.LOGGER.error("Connection lost! Aborting.");
+					}
+				} else {
+					AbstractSynchronize.LOGGER.error("Unable to delete object {} ({})", id.getKey(), e.toString());
+				}
+				return;
+			}
+			if (srcBean != null) {
+				return;
+			}
+		}
+
+		// If we didn't find the object in the source, delete it in the
+		// destination
+		if (!abstractSynchronize.delete(task, counter, id, dstBean)) {
+			aborted.set(true);
+		}
+	}
+
+	public String getSyncName() {
+		return task.getName();
+	}
+}
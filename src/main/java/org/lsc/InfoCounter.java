@@ -0,0 +1,172 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import org.lsc.utils.LatencyHistogram;
+import org.lsc.utils.StripedCounter;
+
+/**
+ * This object is storing counters across all tasks. The counters are
+ * striped, so that the threads updating them do not wait for each other,
+ * and the time spent in each phase of the synchronization of an entry is
+ * recorded in histograms.
+ * 
+ * @author Sebastien Bahloul <seb@lsc-project.org>
+ */
+class InfoCounter {
+
+	/**
+	 * The timed phases of the synchronization of an entry
+	 */
+	enum Phase {
+		SOURCE_FETCH("source fetch"),
+		DESTINATION_FETCH("destination fetch"),
+		SCRIPT("script evaluation"),
+		DIFF("diff"),
+		APPLY("apply");
+
+		private final String label;
+
+		private Phase(String label) {
+			this.label = label;
+		}
+	}
+
+	private final StripedCounter countAll = new StripedCounter();
+	private final StripedCounter countError = new StripedCounter();
+	private final StripedCounter countModifiable = new StripedCounter();
+	private final StripedCounter countCompleted = new StripedCounter();
+	private final LatencyHistogram[] latencies = new LatencyHistogram[Phase.values().length];
+
+	public InfoCounter() {
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = new LatencyHistogram();
+		}
+	}
+
+	public void incrementCountAll() {
+		countAll.increment();
+	}
+
+	public void incrementCountError() {
+		countError.increment();
+	}
+
+	public void incrementCountModifiable() {
+		countModifiable.increment();
+	}
+
+	public void incrementCountCompleted() {
+		countCompleted.increment();
+	}
+
+	/**
+	 * Record the time spent in a phase for an entry
+	 * @param phase the phase
+	 * @param start the start of the phase, as given by {@link System#nanoTime()}
+	 */
+	public void record(Phase phase, long start) {
+		latencies[phase.ordinal()].record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Return the count of all objects concerned by synchronization It does not
+	 * include objects in data source that are not selected by requests or
+	 * filters, but it includes any of the objects retrieved from the data
+	 * source
+	 * 
+	 * @return the count of all objects taken from the data source
+	 */
+	public int getCountAll() {
+		return (int) countAll.sum();
+	}
+
+	/**
+	 * Return the count of all objects that have encountered an error while
+	 * synchronizing, either for a technical or for a functional reason
+	 * 
+	 * @return the number of objects in error
+	 */
+	public int getCountError() {
+		return (int) countError.sum();
+	}
+
+	/**
+	 * Return the count of all objects that should be modify
+	 * 
+	 * @return the count of all updates to do
+	 */
+	public int getCountModifiable() {
+		return (int) countModifiable.sum();
+	}
+
+	/**
+	 * Return the count of all objects that have been embraced in a data
+	 * modification successfully
+	 * 
+	 * @return the count of all successful updates
+	 */
+	public int getCountCompleted() {
+		return (int) countCompleted.sum();
+	}
+
+	/**
+	 * Return the time spent in each phase which has been recorded, one phase
+	 * per line
+	 * 
+	 * @return the phases timings, empty if none has been recorded
+	 */
+	public String getPhasesStatus() {
+		StringBuilder status = new StringBuilder();
+		for (Phase phase : Phase.values()) {
+			String summary = latencies[phase.ordinal()].getSummary();
+			if (summary != null) {
+				status.append(status.length() > 0 ? "\n" : "").append(phase.label).append(": ").append(summary);
+			}
+		}
+		return status.toString();
+	}
+}
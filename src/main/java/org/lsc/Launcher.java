@@ -84,6 +84,9 @@ public final class Launcher {
 	/** List of the cleaning types. */
 	private List<String> cleanType;
 
+	/** List of the merge types. */
+	private List<String> mergeType;
+
 	/** Configuration files location */
 	private String configurationLocation;
 
@@ -93,6 +96,9 @@ public final class Launcher {
 	/** Number of parallel threads to run a task */
 	private int threads;
 
+	/** Number of tasks to run at the same time */
+	private int parallelTasks;
+
 	/** Time limit in seconds*/
 	private int timeLimit;
 	
@@ -115,9 +121,11 @@ public final class Launcher {
 						"Asynchronous synchronization task (one of the available tasks or 'all')");
 		options.addOption("s", "synchronize", true, "Synchronization task (one of the available tasks or 'all')");
 		options.addOption("c", "clean", true, "Cleaning type (one of the available tasks or 'all')");
+		options.addOption("m", "merge", true, "Synchronize and clean in a single pass over sorted entries (one of the available tasks or 'all')");
 		options.addOption("v", "validate", false, "Validate configuration (check connections ...)");
 		options.addOption("f", "config", true, "Specify configuration directory");
-		options.addOption("t", "threads", true, "Number of parallel threads to synchronize a task (default: 5)");
+		options.addOption("t", "threads", true, "Number of parallel threads to synchronize or clean a task (default: 5)");
+		options.addOption("p", "parallel-tasks", true, "Number of tasks to synchronize or clean at the same time (default: 1)");
 		options.addOption("i", "time-limit", true, "Time limit in parallel server mode in seconds (default: 3600)");
 		options.addOption("x", "convert", false, "Convert lsc.properties to lsc.xml (-f is mandatory while converting)");
 		options.addOption("h", "help", false, "Get this text");
@@ -130,6 +138,7 @@ public final class Launcher {
 		syncType = new ArrayList<String>();
 		asyncType = new ArrayList<String>();
 		cleanType = new ArrayList<String>();
+		mergeType = new ArrayList<String>();
 	}
 
 	/**
@@ -220,7 +229,10 @@ public final class Launcher {
 			if (timeLimit > 0) {
 				sync.setTimeLimit( timeLimit );
 			}
-			sync.launch(asyncType, syncType, cleanType);
+			if (parallelTasks > 0) {
+				sync.setParallelTasks( parallelTasks );
+			}
+			sync.launch(asyncType, syncType, cleanType, mergeType);
 		} catch (Exception e) {
 			if (!Configuration.isLoggingSetup()) {
 				System.err.println("Error: " + e.toString());
@@ -257,12 +269,18 @@ public final class Launcher {
 			if (cmdLine.hasOption("t")) {
 				threads = Integer.parseInt(cmdLine.getOptionValue("t"));
 			}
+			if (cmdLine.hasOption("p")) {
+				parallelTasks = Integer.parseInt(cmdLine.getOptionValue("p"));
+			}
 			if (cmdLine.hasOption("i")) {
 				timeLimit = Integer.parseInt(cmdLine.getOptionValue("i"));
 			}
 			if (cmdLine.hasOption("c")) {
 				cleanType = parseSyncType(cmdLine.getOptionValue("c"));
 			}
+			if (cmdLine.hasOption("m")) {
+				mergeType = parseSyncType(cmdLine.getOptionValue("m"));
+			}
 			if (cmdLine.hasOption("x")) {
 				convertConfiguration = true;
 			}
@@ -272,13 +290,13 @@ public final class Launcher {
 		
 			if(cmdLine.getOptions().length == 0 || 
 							cmdLine.hasOption("h") || 
-							((asyncType.size() == 0) && (syncType.size() == 0) && (cleanType.size() == 0)) 
+							((asyncType.size() == 0) && (syncType.size() == 0) && (cleanType.size() == 0) && (mergeType.size() == 0)) 
 							&& ! convertConfiguration && ! validateConfiguration ) {
 				printHelp();
 				return 1;
 			}
-			if(!asyncType.isEmpty() && (!syncType.isEmpty() || !cleanType.isEmpty())) {
-				System.err.println("Asynchronous synchronization is mutually exclusive with synchronous synchronizing and cleaning !");
+			if(!asyncType.isEmpty() && (!syncType.isEmpty() || !cleanType.isEmpty() || !mergeType.isEmpty())) {
+				System.err.println("Asynchronous synchronization is mutually exclusive with synchronous synchronizing, cleaning and merging !");
 				printHelp();
 				return 1;
 			}
@@ -0,0 +1,112 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.lsc.beans.IBean;
+import org.lsc.service.IBatchLookupService;
+
+/**
+ * Look the destination entries of a block of synchronization tasks up with a
+ * single request, then run these tasks one after the other. The entries which
+ * could not be resolved by the block lookup are looked up by their own task.
+ */
+class LookupBatchTask extends TaskChunk {
+
+	private Task task;
+	private AbstractSynchronize abstractSynchronize;
+	private IBatchLookupService service;
+	private List<SynchronizeTask> tasks;
+
+	public LookupBatchTask(Task task, AbstractSynchronize abstractSynchronize,
+			IBatchLookupService service, List<SynchronizeTask> tasks) {
+		super(tasks);
+		this.task = task;
+		this.abstractSynchronize = abstractSynchronize;
+		this.service = service;
+		this.tasks = tasks;
+	}
+
+	@Override
+	protected void prepare() {
+		try {
+			// results are indexed by name, so names must be unique in the block
+			Map<String, Integer> names = new HashMap<String, Integer>();
+			for (SynchronizeTask synchronizeTask : tasks) {
+				String name = synchronizeTask.getId().getKey();
+				names.put(name, names.containsKey(name) ? names.get(name) + 1 : 1);
+			}
+			List<Entry<String, LscDatasets>> ids = new ArrayList<Entry<String, LscDatasets>>(tasks.size());
+			for (SynchronizeTask synchronizeTask : tasks) {
+				Entry<String, LscDatasets> id = synchronizeTask.getId();
+				if (names.get(id.getKey()) == 1 && !synchronizeTask.isUpToDate(synchronizeTask.getSrcBean())) {
+					ids.add(new SimpleImmutableEntry<String, LscDatasets>(id.getKey(),
+									abstractSynchronize.transformPivots(task, id.getValue(), true)));
+				}
+			}
+			abstractSynchronize.throttleDestination(task);
+			long start = System.nanoTime();
+			Map<String, IBean> dstBeans = service.getBeans(ids, false);
+			tasks.get(0).getCounter().record(InfoCounter.Phase.DESTINATION_FETCH, start);
+			for (SynchronizeTask synchronizeTask : tasks) {
+				String name = synchronizeTask.getId().getKey();
+				if (names.get(name) == 1 && dstBeans.containsKey(name)) {
+					synchronizeTask.setDstBean(dstBeans.get(name));
+				}
+			}
+		} catch (Exception e) {
+			// each task reports its own error while looking its entry up
+			AbstractSynchronize.LOGGER.warn("Unable to look {} entries up at once, looking them up one by one ({})", tasks.size(), e.toString());
+			AbstractSynchronize.LOGGER.debug(e.toString(), e);
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.naming.NamingException;
+
+import org.lsc.beans.IBean;
+import org.lsc.exception.LscServiceException;
+import org.lsc.service.IPivotCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Walk through a cursor on beans sorted on a dataset, as read by the merge
+ * mode, one entry at a time. Entries without key or with a duplicated key are
+ * counted as errors and skipped. An IllegalStateException is thrown if the
+ * entries are not sorted.
+ */
+class MergeCursor {
+
+	static final Logger LOGGER = LoggerFactory.getLogger(MergeCursor.class);
+
+	/**
+	 * Receives the decisions of {@link MergeCursor#merge(MergeCursor, MergeCursor, InfoCounter, AtomicBoolean, Handler)}.
+	 */
+	interface Handler {
+
+		/**
+		 * The entry only exists in the source.
+		 * @param srcBean the source entry
+		 */
+		void create(IBean srcBean);
+
+		/**
+		 * The entry exists on both sides.
+		 * @param srcBean the source entry
+		 * @param dstBean the destination entry
+		 */
+		void update(IBean srcBean, IBean dstBean);
+
+		/**
+		 * The entry only exists in the destination. This is only called once
+		 * both sides have been read to their end in order.
+		 * @param id the destination entry name with its pivot datasets
+		 * @param dstBean the destination entry
+		 */
+		void delete(Entry<String, LscDatasets> id, IBean dstBean);
+	}
+
+	private IPivotCursor cursor;
+	private String sortedBy;
+	private String side;
+	private Entry<String, LscDatasets> entry;
+	private IBean bean;
+	private String key;
+
+	public MergeCursor(IPivotCursor cursor, String sortedBy, String side) {
+		this.cursor = cursor;
+		this.sortedBy = sortedBy;
+		this.side = side;
+	}
+
+	/**
+	 * Walk both sides together, one step at a time, and hand each entry over
+	 * to the handler. An unsorted side is only noticed when its next entry is
+	 * read, so an entry which exists on both sides may first look missing from
+	 * the source: the entries to delete are kept until both sides have been
+	 * read to their end, and are not handed over if the merge is aborted or
+	 * fails.
+	 * @param src the source side
+	 * @param dst the destination side
+	 * @param counter the counter to update with skipped entries
+	 * @param aborted stops the merge when set
+	 * @param handler receives the entries to create, update or delete
+	 * @throws LscServiceException if one of the cursors could not be read
+	 * @throws IllegalStateException if one side is not sorted
+	 */
+	static void merge(MergeCursor src, MergeCursor dst, InfoCounter counter, AtomicBoolean aborted,
+					Handler handler) throws LscServiceException {
+		List<Entry<Entry<String, LscDatasets>, IBean>> deleted = new ArrayList<Entry<Entry<String, LscDatasets>, IBean>>();
+		src.next(counter);
+		dst.next(counter);
+
+		while (!aborted.get() && (src.getBean() != null || dst.getBean() != null)) {
+			int cmp;
+			if (src.getBean() == null) {
+				cmp = 1;
+			} else if (dst.getBean() == null) {
+				cmp = -1;
+			} else {
+				cmp = String.CASE_INSENSITIVE_ORDER.compare(src.getKey(), dst.getKey());
+			}
+
+			if (cmp < 0) {
+				// only in the source: create
+				handler.create(src.getBean());
+				src.next(counter);
+			} else if (cmp > 0) {
+				// only in the destination: delete, once the merge is over
+				deleted.add(new SimpleImmutableEntry<Entry<String, LscDatasets>, IBean>(dst.getEntry(), dst.getBean()));
+				dst.next(counter);
+			} else {
+				// in both: update
+				handler.update(src.getBean(), dst.getBean());
+				src.next(counter);
+				dst.next(counter);
+			}
+		}
+
+		if (aborted.get()) {
+			return;
+		}
+		for (Entry<Entry<String, LscDatasets>, IBean> delete : deleted) {
+			handler.delete(delete.getKey(), delete.getValue());
+		}
+	}
+
+	/**
+	 * Move to the next usable bean, or to the end of the cursor
+	 * @param counter the counter to update with skipped entries
+	 * @throws LscServiceException if the cursor could not be read
+	 */
+	public void next(InfoCounter counter) throws LscServiceException {
+		while (cursor.hasNext()) {
+			Entry<String, LscDatasets> candidateEntry = cursor.next();
+			IBean candidate = cursor.getBean();
+			if (candidate == null) {
+				throw new IllegalStateException("The " + side + " entries are not returned with their datasets !");
+			}
+			String candidateKey;
+			try {
+				candidateKey = candidate.getDatasetFirstValueById(sortedBy);
+			} catch (NamingException e) {
+				candidateKey = "";
+			}
+
+			if (candidateKey == null || "".equals(candidateKey)) {
+				counter.incrementCountAll();
+				counter.incrementCountError();
+				LOGGER.error("No value for {} in {} entry {}, skipping it", new Object[] { sortedBy, side, candidateEntry.getKey() });
+				continue;
+			}
+			if (key != null) {
+				int cmp = String.CASE_INSENSITIVE_ORDER.compare(candidateKey, key);
+				if (cmp < 0) {
+					throw new IllegalStateException("The " + side + " entries are not sorted on " + sortedBy + " (" + candidateKey + " found after " + key + ") !");
+				} else if (cmp == 0) {
+					counter.incrementCountAll();
+					counter.incrementCountError();
+					LOGGER.error("Duplicated value {} for {} in {} entry {}, skipping it", new Object[] { candidateKey, sortedBy, side, candidateEntry.getKey() });
+					continue;
+				}
+			}
+			entry = candidateEntry;
+			bean = candidate;
+			key = candidateKey;
+			return;
+		}
+		entry = null;
+		bean = null;
+	}
+
+	/**
+	 * @return the current entry name with its pivot datasets, or null at the end
+	 */
+	public Entry<String, LscDatasets> getEntry() {
+		return entry;
+	}
+
+	public IBean getBean() {
+		return bean;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Stop reading the underlying cursor.
+	 */
+	public void close() {
+		cursor.close();
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import java.util.Locale;
+
+/**
+ * Part of the entries of a task handled by one process, when the task is
+ * shared between several processes: shard i of N holds the entries whose
+ * name hash, modulo N, is i. The hash only depends on the lower cased entry
+ * name, so that all the processes agree on the shard of each entry.
+ */
+public class Shard {
+
+	/** Index of the shard, or -1 for any shard left by a failed process */
+	private final int index;
+
+	private final int count;
+
+	public Shard(int index, int count) {
+		if (count < 1 || index < -1 || index >= count) {
+			throw new IllegalArgumentException("Invalid shard " + index + "/" + count);
+		}
+		this.index = index;
+		this.count = count;
+	}
+
+	/**
+	 * @param value the shard as "index/count", with an index from 0 to count - 1,
+	 * 			or "*" as index for any shard left by a failed process
+	 * @return the shard
+	 * @throws IllegalArgumentException if the value is not a valid shard
+	 */
+	public static Shard parse(String value) {
+		int separator = value.indexOf('/');
+		if (separator < 0) {
+			throw new IllegalArgumentException("Invalid shard " + value + ", expected index/count");
+		}
+		String index = value.substring(0, separator).trim();
+		try {
+			return new Shard("*".equals(index) ? -1 : Integer.parseInt(index),
+							Integer.parseInt(value.substring(separator + 1).trim()));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid shard " + value + ", expected index/count");
+		}
+	}
+
+	/**
+	 * @param name an entry name
+	 * @return true if the entry belongs to this shard
+	 */
+	public boolean contains(String name) {
+		return getIndex(name, count) == index;
+	}
+
+	/**
+	 * @param name an entry name
+	 * @param count the number of shards
+	 * @return the index of the shard of the entry
+	 */
+	static int getIndex(String name, int count) {
+		// String.hashCode() is specified, its bits are then mixed to spread
+		// names sharing a suffix across all the shards
+		int hash = name.toLowerCase(Locale.ENGLISH).hashCode();
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return (hash & Integer.MAX_VALUE) % count;
+	}
+
+	/**
+	 * @return true if this process stands in for any failed process
+	 */
+	public boolean isAny() {
+		return index < 0;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return (index < 0 ? "*" : Integer.toString(index)) + "/" + count;
+	}
+}
@@ -0,0 +1,314 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileLock;
+import java.util.Date;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.lsc.exception.LscConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coordination, through a shared directory only, of the processes sharing a
+ * task. A process holds a lease on its shard while it synchronizes or cleans
+ * it, and renews it in the background. When a process dies, its lease
+ * expires and a stand-in process, started for any shard, takes the shard
+ * over. The leases are read and written under a lock file.
+ * 
+ * Each process writes the counters of its shard once done, and logs the
+ * counters of all the shards reported so far.
+ */
+class ShardLease {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ShardLease.class);
+
+	/** Duration of a lease, in milliseconds */
+	static final long DURATION = TimeUnit.MINUTES.toMillis(1);
+
+	/** Identifies this process in the leases: pid@host */
+	private static final String OWNER = ManagementFactory.getRuntimeMXBean().getName();
+
+	private final File directory;
+
+	/** The task name and mode */
+	private final String name;
+
+	private final Shard shard;
+
+	private final Timer renewal;
+
+	private ShardLease(File directory, String name, Shard shard) {
+		this.directory = directory;
+		this.name = name;
+		this.shard = shard;
+		renewal = new Timer("lease-" + name + "-" + shard.getIndex(), true);
+		renewal.schedule(new TimerTask() {
+			public void run() {
+				renew();
+			}
+		}, DURATION / 3, DURATION / 3);
+	}
+
+	/**
+	 * Take the lease of a shard.
+	 * 
+	 * @param directory the directory shared by the processes
+	 * @param name the task name and mode
+	 * @param shard the shard, or any shard to stand in for a failed process
+	 * @return the lease, or null if no process failed
+	 * @throws LscConfigurationException if the shard is held by another
+	 * 			process or the directory can not be used
+	 */
+	static ShardLease acquire(final File directory, final String name, final Shard shard) throws LscConfigurationException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new LscConfigurationException("Unable to create the shards directory " + directory.getAbsolutePath());
+		}
+		Shard acquired = locked(directory, name, new Callable<Shard>() {
+			public Shard call() throws Exception {
+				Shard acquired = null;
+				if (shard.isAny()) {
+					for (int i = 0; i < shard.getCount() && acquired == null; i++) {
+						Properties lease = read(getLeaseFile(directory, name, i));
+						if (lease != null && isExpired(lease)) {
+							LOGGER.warn("Taking over shard {}/{} of {}, left by {}",
+											new Object[] { i, shard.getCount(), name, lease.getProperty("owner") });
+							acquired = new Shard(i, shard.getCount());
+						}
+					}
+					if (acquired == null) {
+						return null;
+					}
+				} else {
+					Properties lease = read(getLeaseFile(directory, name, shard.getIndex()));
+					if (lease != null && !isExpired(lease) && !OWNER.equals(lease.getProperty("owner"))) {
+						throw new LscConfigurationException("Shard " + shard + " of " + name + " is held by " + lease.getProperty("owner"));
+					}
+					acquired = shard;
+				}
+				writeLease(directory, name, acquired.getIndex());
+				// the counters of a previous run are obsolete
+				getStatusFile(directory, name, acquired.getIndex()).delete();
+				return acquired;
+			}
+		});
+		return (acquired != null ? new ShardLease(directory, name, acquired) : null);
+	}
+
+	/**
+	 * @return the shard held
+	 */
+	public Shard getShard() {
+		return shard;
+	}
+
+	/**
+	 * Record the counters of the shard, give the lease up and log the
+	 * counters of all the shards reported.
+	 * @param counter the counters of the shard
+	 */
+	public void release(final InfoCounter counter) {
+		renewal.cancel();
+		try {
+			Properties total = locked(directory, name, new Callable<Properties>() {
+				public Properties call() throws Exception {
+					Properties status = new Properties();
+					status.setProperty("owner", OWNER);
+					status.setProperty("date", new Date().toString());
+					status.setProperty("all", Integer.toString(counter.getCountAll()));
+					status.setProperty("modifiable", Integer.toString(counter.getCountModifiable()));
+					status.setProperty("completed", Integer.toString(counter.getCountCompleted()));
+					status.setProperty("errors", Integer.toString(counter.getCountError()));
+					write(getStatusFile(directory, name, shard.getIndex()), status);
+
+					Properties lease = read(getLeaseFile(directory, name, shard.getIndex()));
+					if (lease != null && OWNER.equals(lease.getProperty("owner"))) {
+						getLeaseFile(directory, name, shard.getIndex()).delete();
+					}
+					return readTotal();
+				}
+			});
+			LOGGER.info("Shards of {} reported: {}/{}. All entries: {}, to modify entries: {}, successfully modified entries: {}, errors: {}",
+							new Object[] { name, total.getProperty("shards"), shard.getCount(), total.getProperty("all"),
+							total.getProperty("modifiable"), total.getProperty("completed"), total.getProperty("errors") });
+		} catch (LscConfigurationException e) {
+			LOGGER.error("Unable to record the status of shard {} of {} ({})", new Object[] { shard, name, e.getMessage() });
+			LOGGER.debug(e.toString(), e);
+		}
+	}
+
+	private void renew() {
+		try {
+			locked(directory, name, new Callable<Void>() {
+				public Void call() throws Exception {
+					Properties lease = read(getLeaseFile(directory, name, shard.getIndex()));
+					if (lease != null && !OWNER.equals(lease.getProperty("owner"))) {
+						LOGGER.error("Shard {} of {} has been taken over by {}", new Object[] { shard, name, lease.getProperty("owner") });
+						renewal.cancel();
+					} else {
+						writeLease(directory, name, shard.getIndex());
+					}
+					return null;
+				}
+			});
+		} catch (LscConfigurationException e) {
+			LOGGER.error("Unable to renew the lease of shard {} of {} ({})", new Object[] { shard, name, e.getMessage() });
+			LOGGER.debug(e.toString(), e);
+		}
+	}
+
+	/** Sum the counters of all the shards reported */
+	private Properties readTotal() throws IOException {
+		long[] total = new long[4];
+		String[] keys = new String[] { "all", "modifiable", "completed", "errors" };
+		int shards = 0;
+		for (int i = 0; i < shard.getCount(); i++) {
+			Properties status = read(getStatusFile(directory, name, i));
+			if (status != null) {
+				shards++;
+				for (int k = 0; k < keys.length; k++) {
+					total[k] += Long.parseLong(status.getProperty(keys[k], "0"));
+				}
+			}
+		}
+		Properties result = new Properties();
+		result.setProperty("shards", Integer.toString(shards));
+		for (int k = 0; k < keys.length; k++) {
+			result.setProperty(keys[k], Long.toString(total[k]));
+		}
+		return result;
+	}
+
+	/**
+	 * Run an action while holding the lock file of a task, which is also
+	 * locked against the other threads of this process.
+	 */
+	private static <T> T locked(File directory, String name, Callable<T> action) throws LscConfigurationException {
+		synchronized (ShardLease.class) {
+			try {
+				RandomAccessFile lockFile = new RandomAccessFile(new File(directory, name + ".lock"), "rw");
+				try {
+					FileLock lock = lockFile.getChannel().lock();
+					try {
+						return action.call();
+					} finally {
+						lock.release();
+					}
+				} finally {
+					lockFile.close();
+				}
+			} catch (LscConfigurationException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new LscConfigurationException("Unable to use the shards directory " + directory.getAbsolutePath(), e);
+			}
+		}
+	}
+
+	private static void writeLease(File directory, String name, int index) throws IOException {
+		Properties lease = new Properties();
+		lease.setProperty("owner", OWNER);
+		lease.setProperty("expires", Long.toString(System.currentTimeMillis() + DURATION));
+		write(getLeaseFile(directory, name, index), lease);
+	}
+
+	private static boolean isExpired(Properties lease) {
+		try {
+			return Long.parseLong(lease.getProperty("expires", "0")) < System.currentTimeMillis();
+		} catch (NumberFormatException e) {
+			return true;
+		}
+	}
+
+	private static File getLeaseFile(File directory, String name, int index) {
+		return new File(directory, name + "." + index + ".lease");
+	}
+
+	private static File getStatusFile(File directory, String name, int index) {
+		return new File(directory, name + "." + index + ".status");
+	}
+
+	private static Properties read(File file) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(file);
+		try {
+			properties.load(in);
+		} finally {
+			in.close();
+		}
+		return properties;
+	}
+
+	/** Write a file through a temporary one, so that it is never read partially */
+	private static void write(File file, Properties properties) throws IOException {
+		File temporary = new File(file.getPath() + ".tmp");
+		OutputStream out = new FileOutputStream(temporary);
+		try {
+			properties.store(out, null);
+		} finally {
+			out.close();
+		}
+		if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+			throw new IOException("Unable to write " + file.getAbsolutePath());
+		}
+	}
+}
@@ -52,11 +52,13 @@ import java.lang.reflect.Method;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.lsc.beans.IBean;
@@ -85,10 +87,14 @@ public class SimpleSynchronize extends AbstractSynchronize {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(SimpleSynchronize.class);
 
-	public static final List<String> EMPTY_LIST = new ArrayList<String>();
+	/** An empty task list, which can not be changed */
+	public static final List<String> EMPTY_LIST = Collections.<String>emptyList();
 
 	Map<String, Task> cache;
 
+	/** Maximum number of tasks launched at the same time */
+	private int parallelTasks = 1;
+
 	/**
 	 * Default constructor
 	 */
@@ -138,6 +144,24 @@ public class SimpleSynchronize extends AbstractSynchronize {
 	 */
 	public final boolean launch(final List<String> asyncTasks, final List<String> syncTasks,
 					final List<String> cleanTasks) throws Exception {
+		return launch(asyncTasks, syncTasks, cleanTasks, EMPTY_LIST);
+	}
+
+	/**
+	 * Main method Check properties, and for each task, launch the
+	 * synchronization, the cleaning and the merge phases.
+	 * @param asyncTasks 
+	 *                string list of the asynchronous synchronization tasks to launch
+	 * @param syncTasks string list of the synchronization tasks to launch
+	 * @param cleanTasks string list of the cleaning tasks to launch
+	 * @param mergeTasks string list of the tasks to reconcile in a single sorted merge pass
+	 *
+	 * @return the launch status - true if all tasks executed successfully, 
+	 * 				false if no tasks were executed or any failed
+	 * @throws Exception
+	 */
+	public final boolean launch(final List<String> asyncTasks, final List<String> syncTasks,
+					final List<String> cleanTasks, final List<String> mergeTasks) throws Exception {
 		Boolean foundATask = false;
 		boolean canClose = true;
 		boolean launchResult = true;
@@ -147,6 +171,7 @@ public class SimpleSynchronize extends AbstractSynchronize {
 		boolean isASyncTaskAll = asyncTasks.contains(ALL_TASKS_KEYWORD);
 		boolean isSyncTaskAll = syncTasks.contains(ALL_TASKS_KEYWORD);
 		boolean isCleanTaskAll = cleanTasks.contains(ALL_TASKS_KEYWORD);
+		boolean isMergeTaskAll = mergeTasks.contains(ALL_TASKS_KEYWORD);
 		
 		if(getTasksName() == null) {
 			return false;
@@ -157,30 +182,28 @@ public class SimpleSynchronize extends AbstractSynchronize {
             LscServerImpl.startJmx(this);
 		}
 		
-		for (Task task: cache.values()) {
+		// Tasks run once the tasks they depend on are completed, several of them
+		// at the same time if allowed
+		TaskScheduler scheduler = new TaskScheduler(parallelTasks);
+
+		for (final Task task: cache.values()) {
 
 			// Launch the task either if explicitly specified or if "all" magic keyword used
-			if (isSyncTaskAll || syncTasks.contains(task.getName())) {
+			final boolean sync = isSyncTaskAll || syncTasks.contains(task.getName());
+			final boolean clean = isCleanTaskAll || cleanTasks.contains(task.getName());
+			final boolean merge = isMergeTaskAll || mergeTasks.contains(task.getName());
+			if (sync || clean || merge) {
 				foundATask = true;
 
-				if (!launchTask(task, Task.Mode.sync)) {
-					launchResult = false;
-				} else {
-					if(task.getSyncHook() != null && task.getSyncHook() != "") {
-						runPostHook(task.getName(), task.getSyncHook(), task.getTaskType());
-					}
+				List<String> dependsOn = new ArrayList<String>();
+				for (TaskType dependency: task.getTaskType().getDependsOn()) {
+					dependsOn.add(dependency.getName());
 				}
-			}
-			if (isCleanTaskAll || cleanTasks.contains(task.getName())) {
-				foundATask = true;
-
-				if (!launchTask(task, Task.Mode.clean)) {
-					launchResult = false;
-				} else {
-					if(task.getCleanHook() != null && task.getCleanHook() != "") {
-						runPostHook(task.getName(), task.getCleanHook(), task.getTaskType());
+				scheduler.add(task.getName(), new Callable<Boolean>() {
+					public Boolean call() throws Exception {
+						return launchPhases(task, sync, clean, merge);
 					}
-				}
+				}, dependsOn);
 			}
 			if (isASyncTaskAll || asyncTasks.contains(task.getName())) {
 				foundATask = true;
@@ -192,6 +215,10 @@ public class SimpleSynchronize extends AbstractSynchronize {
 				}
 			}
 		}
+
+		if (!scheduler.run()) {
+			launchResult = false;
+		}
 		
 		if (canClose) {
 			close();
@@ -205,13 +232,57 @@ public class SimpleSynchronize extends AbstractSynchronize {
 		return launchResult;
 	}
 
+	/**
+	 * Launch the requested phases of a task, one after the other, each
+	 * followed by its post hook if it succeeded.
+	 *
+	 * @param task the task
+	 * @param sync true to synchronize the task
+	 * @param clean true to clean the task
+	 * @param merge true to merge the task
+	 * @return true if all the phases succeeded
+	 * @throws Exception
+	 */
+	private boolean launchPhases(final Task task, final boolean sync, final boolean clean,
+					final boolean merge) throws Exception {
+		boolean launchResult = true;
+		if (sync) {
+			if (!launchTask(task, Task.Mode.sync)) {
+				launchResult = false;
+			} else {
+				if(task.getSyncHook() != null && task.getSyncHook() != "") {
+					runPostHook(task.getName(), task.getSyncHook(), task.getTaskType());
+				}
+			}
+		}
+		if (clean) {
+			if (!launchTask(task, Task.Mode.clean)) {
+				launchResult = false;
+			} else {
+				if(task.getCleanHook() != null && task.getCleanHook() != "") {
+					runPostHook(task.getName(), task.getCleanHook(), task.getTaskType());
+				}
+			}
+		}
+		if (merge) {
+			if (!launchTask(task, Task.Mode.merge)) {
+				launchResult = false;
+			} else {
+				if(task.getSyncHook() != null && task.getSyncHook() != "") {
+					runPostHook(task.getName(), task.getSyncHook(), task.getTaskType());
+				}
+			}
+		}
+		return launchResult;
+	}
+
 	/**
 	 * Launch a task. Call this for once each task type and task mode.
 	 *
 	 * @param taskName
 	 *                the task name (historically the LDAP object class name, but can be any string)
 	 * @param taskMode
-	 *                the task mode (clean or sync)
+	 *                the task mode (clean, sync, merge or async)
 	 *
 	 * @return boolean true on success, false if an error occurred
 	 * @throws Exception
@@ -231,6 +302,9 @@ public class SimpleSynchronize extends AbstractSynchronize {
 				case sync:
 					status = synchronize2Ldap(task);
 					break;
+				case merge:
+					status = merge2Ldap(task);
+					break;
 				case async:
 					if(task.getSourceService() instanceof IAsynchronousService
 					        || task.getDestinationService() instanceof IAsynchronousService) {
@@ -331,6 +405,25 @@ public class SimpleSynchronize extends AbstractSynchronize {
 		}
 	}
 
+	/**
+	 * Maximum number of tasks launched at the same time accessor
+	 * 
+	 * @return the number of tasks, 1 to launch them one after the other
+	 */
+	public int getParallelTasks() {
+		return parallelTasks;
+	}
+
+	/**
+	 * Maximum number of tasks launched at the same time accessor. Each task
+	 * still uses its own number of threads.
+	 * 
+	 * @param parallelTasks the number of tasks
+	 */
+	public void setParallelTasks(int parallelTasks) {
+		this.parallelTasks = parallelTasks;
+	}
+
 	public Set<Entry<String, Task>> getTasksName() {
 		return cache.entrySet();
 	}
@@ -0,0 +1,104 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stages of a pipelined synchronization: the entries are read, compared and
+ * written by separate pools of threads, each stage handing its entries over
+ * to the next one through the bounded queue of its pool. A slow destination
+ * then only holds the threads writing to it, while the conditions and the
+ * comparisons keep their own threads.
+ */
+class SynchronizePipeline {
+
+	/** Pools of the read, compute and write stages, in this order */
+	private ThreadPoolExecutor[] stages;
+
+	/**
+	 * @param readStage the pool looking the source and destination entries up
+	 * @param computeStage the pool evaluating the conditions and comparing the entries
+	 * @param writeStage the pool applying the modifications
+	 */
+	public SynchronizePipeline(ThreadPoolExecutor readStage, ThreadPoolExecutor computeStage,
+			ThreadPoolExecutor writeStage) {
+		this.stages = new ThreadPoolExecutor[] {readStage, computeStage, writeStage};
+	}
+
+	public ThreadPoolExecutor getReadStage() {
+		return stages[0];
+	}
+
+	public ThreadPoolExecutor getComputeStage() {
+		return stages[1];
+	}
+
+	public ThreadPoolExecutor getWriteStage() {
+		return stages[2];
+	}
+
+	/**
+	 * Shut the stages down one after the other, each one once the previous
+	 * one, which feeds it, has terminated. If the time limit is reached, the
+	 * remaining stages are shut down anyway and the entries the previous ones
+	 * still hand over to them may be lost.
+	 * @param timeout the maximum time to wait for all the stages
+	 * @param unit the time unit of the timeout
+	 * @return true if all the stages have terminated
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		boolean terminated = true;
+		for (ThreadPoolExecutor stage : stages) {
+			stage.shutdown();
+			terminated = stage.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS) && terminated;
+		}
+		return terminated;
+	}
+}
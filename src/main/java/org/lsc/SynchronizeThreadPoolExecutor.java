@@ -1,10 +1,21 @@
 package org.lsc;
 
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,12 +33,43 @@ public class SynchronizeThreadPoolExecutor extends ThreadPoolExecutor {
 
 	BlockingQueue<Runnable> queue;
 
+	/**
+	 * Permits shared by the pools working on the same destination, or null
+	 * if the tasks are only limited by the number of threads
+	 */
+	private Semaphore permits;
+
+	/**
+	 * Threads looking entries up in the background for the tasks of this
+	 * pool, at most as many as the threads of the pool
+	 */
+	private ThreadPoolExecutor lookups;
+
+	/** Chunks of tasks being run, whose remaining tasks may be stolen */
+	private Set<TaskChunk> runningChunks = Collections.newSetFromMap(new ConcurrentHashMap<TaskChunk, Boolean>());
+
 	/** Default logger */
 	final Logger LOGGER = LoggerFactory
 			.getLogger(SynchronizeThreadPoolExecutor.class);
 
-	protected SynchronizeThreadPoolExecutor(int threads) {
-		super(threads, threads, keepAliveTime, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity), new RejectedExecutionHandler() {
+	/**
+	 * @param name the prefix of the threads names, usually the task name
+	 * @param threads the number of threads
+	 */
+	protected SynchronizeThreadPoolExecutor(String name, int threads) {
+		this(threads, newThreadFactory(name), null);
+	}
+
+	/**
+	 * Create a pool whose tasks also wait for a permit before running, for
+	 * instance to run them on many virtual threads while limiting the
+	 * concurrency on their destination.
+	 * @param threads the number of threads
+	 * @param threadFactory the factory of the threads
+	 * @param permits the permits taken by each task while it runs, or null
+	 */
+	protected SynchronizeThreadPoolExecutor(int threads, ThreadFactory threadFactory, Semaphore permits) {
+		super(threads, threads, keepAliveTime, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity), threadFactory, new RejectedExecutionHandler() {
 			public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
 				// this will block if the queue is full
 				try {
@@ -40,6 +82,40 @@ public class SynchronizeThreadPoolExecutor extends ThreadPoolExecutor {
 			}
 		);
 		queue = getQueue(); 
+		this.permits = permits;
+		// a lookup finding no idle thread is run by the task waiting for it
+		lookups = new ThreadPoolExecutor(0, threads, keepAliveTime, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+						threadFactory, new ThreadPoolExecutor.DiscardPolicy());
+	}
+
+	/**
+	 * Resize the lookup threads along with the pool, when its concurrency is
+	 * adapted.
+	 */
+	@Override
+	public void setMaximumPoolSize(int maximumPoolSize) {
+		super.setMaximumPoolSize(maximumPoolSize);
+		if (lookups != null) {
+			lookups.setMaximumPoolSize(maximumPoolSize);
+		}
+	}
+
+	/**
+	 * Name the threads once, when they are created, rather than for each task
+	 * @param name the prefix of the names
+	 * @return the factory
+	 */
+	private static ThreadFactory newThreadFactory(final String name) {
+		return new ThreadFactory() {
+			private ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+			private AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread thread = defaultFactory.newThread(r);
+				thread.setName(name + "-" + count.incrementAndGet());
+				return thread;
+			}
+		};
 	}
 
 	/**
@@ -55,7 +131,6 @@ public class SynchronizeThreadPoolExecutor extends ThreadPoolExecutor {
 //					+ queue.size());
 //		}
 		execute(task);
-		this.beforeExecute(new Thread(task.getSyncName() + "-" + task.getId().getKey()), task);
 //		if (LOGGER.isDebugEnabled()) {
 //			LOGGER.debug("Queue Size after assigning the task: {}", queue.size());
 //			LOGGER.debug("Pool Size after assigning the task: {}", getActiveCount());
@@ -64,17 +139,126 @@ public class SynchronizeThreadPoolExecutor extends ThreadPoolExecutor {
 	}
 	
 	/**
-	 * This method just rename the thread with the taskname as prefix 
-	 * suffixed by a threads counter
+	 * Run a cleaning task, the same way as a synchronization task
+	 * @param task the runnable object
+	 */
+	protected void runTask(CleanTask task) {
+		execute(task);
+	}
+
+	/**
+	 * Run a block of synchronization tasks sharing a destination lookup
+	 * @param task the runnable object
+	 */
+	protected void runTask(LookupBatchTask task) {
+		execute(task);
+	}
+
+	/**
+	 * Run a block of tasks as a single work item
+	 * @param chunk the runnable object
+	 */
+	protected void runTask(TaskChunk chunk) {
+		execute(chunk);
+	}
+
+	/**
+	 * Start a lookup in the background, while the task submitting it goes on.
+	 * It is run by an idle lookup thread, once it gets a permit of the
+	 * destination like the tasks of the pool. Otherwise it is run by the task
+	 * waiting for its result, see {@link #join(FutureTask)}, so that the
+	 * lookups never add to the permits of the pool. They do add to its
+	 * threads: there are at most as many lookup threads as threads in the
+	 * pool, so a pool of platform threads may run up to twice its size.
+	 * @param lookup the lookup
+	 * @return the pending result of the lookup
+	 */
+	protected <V> FutureTask<V> submitLookup(Callable<V> lookup) {
+		final FutureTask<V> future = new FutureTask<V>(lookup);
+		lookups.execute(new Runnable() {
+			public void run() {
+				if (permits != null && !permits.tryAcquire()) {
+					return;
+				}
+				try {
+					future.run();
+				} finally {
+					if (permits != null) {
+						permits.release();
+					}
+				}
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Wait for the result of a lookup, running it in the current thread if
+	 * no lookup thread has started it yet.
+	 * @param lookup the pending lookup
+	 * @return the result of the lookup
+	 * @throws Exception the failure of the lookup
+	 */
+	protected static <V> V join(FutureTask<V> lookup) throws Exception {
+		// does nothing if the lookup is already running or done
+		lookup.run();
+		try {
+			return lookup.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Once all the queued work items have been taken, the threads left idle
+	 * help the ones still running chunks of tasks, instead of waiting for
+	 * them. The pool is then shut down as usual.
+	 */
+	@Override
+	public void shutdown() {
+		if (!isShutdown()) {
+			for (int i = 0; i < getMaximumPoolSize(); i++) {
+				execute(new Runnable() {
+					public void run() {
+						for (TaskChunk chunk : runningChunks) {
+							chunk.steal();
+						}
+					}
+				});
+			}
+		}
+		super.shutdown();
+		lookups.shutdown();
+	}
+
+	/**
+	 * Take a permit of the destination, if its concurrency is limited
 	 * @param t the thread
 	 * @param r the runnable task
 	 */
 	@Override
 	protected void beforeExecute(Thread t, Runnable r) {
 		super.beforeExecute(t, r);
-		if(r instanceof SynchronizeTask) {
-			SynchronizeTask task = (SynchronizeTask) r;
-			t.setName(task.getSyncName() + "-" + t.getId());
+		if (r instanceof TaskChunk) {
+			runningChunks.add((TaskChunk) r);
+		}
+		if (permits != null) {
+			// released by afterExecute, which is called whatever the outcome
+			permits.acquireUninterruptibly();
+		}
+	}
+
+	@Override
+	protected void afterExecute(Runnable r, Throwable t) {
+		if (r instanceof TaskChunk) {
+			runningChunks.remove(r);
+		}
+		if (permits != null) {
+			permits.release();
 		}
+		super.afterExecute(r, t);
 	}
 }
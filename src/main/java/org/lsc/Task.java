@@ -56,10 +56,12 @@ import org.lsc.beans.syncoptions.ForceSyncOptions;
 import org.lsc.beans.syncoptions.ISyncOptions;
 import org.lsc.beans.syncoptions.SyncOptionsFactory;
 import org.lsc.configuration.LscConfiguration;
+import org.lsc.configuration.ServiceType;
 import org.lsc.configuration.TaskType;
 import org.lsc.exception.LscConfigurationException;
 import org.lsc.service.IService;
 import org.lsc.service.IWritableService;
+import org.lsc.utils.RateLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,7 +77,8 @@ public class Task {
 	public enum Mode {
 		clean,
 		sync,
-		async;
+		async,
+		merge;
 	}
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(Task.class);
@@ -83,6 +86,12 @@ public class Task {
 	private String name;
 
 	private IWritableService destinationService;
+
+	/** Limits the operations on the destination connection, if configured */
+	private RateLimiter destinationRateLimiter;
+
+	/** Name of the destination connection, if the destination uses one */
+	private String destinationConnectionName;
 	
 	private IService sourceService;
 
@@ -115,6 +124,11 @@ public class Task {
 			}
 			Constructor<?> constr = LscConfiguration.getServiceImplementation(LscConfiguration.getDestinationService(t)).getConstructor(new Class[]{TaskType.class});
 			destinationService = (IWritableService) constr.newInstance(new Object[]{t});
+			ServiceType.Connection connection = LscConfiguration.getDestinationService(t).getConnection();
+			if (connection != null && connection.getReference() != null) {
+				destinationRateLimiter = RateLimiter.get(connection.getReference());
+				destinationConnectionName = connection.getReference().getName();
+			}
 	
 			// Instantiate custom JavaScript library from properties
 			if (t.getCustomLibrary() != null && t.getCustomLibrary().getString() != null) {
@@ -192,6 +206,20 @@ public class Task {
 	public IWritableService getDestinationService() {
 		return destinationService;
 	}
+
+	/**
+	 * @return the limiter of the operations on the destination, or null if they are not limited
+	 */
+	public RateLimiter getDestinationRateLimiter() {
+		return destinationRateLimiter;
+	}
+
+	/**
+	 * @return the name of the destination connection, or null if the destination does not use one
+	 */
+	public String getDestinationConnectionName() {
+		return destinationConnectionName;
+	}
 	
 	public ISyncOptions getSyncOptions() {
 		return syncOptions;
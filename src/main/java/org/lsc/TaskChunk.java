@@ -0,0 +1,117 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A block of contiguous tasks submitted to a pool as a single work item, to
+ * save one queue operation per task. The tasks are taken one at a time, so
+ * that idle threads may steal the remaining tasks of a chunk while the
+ * thread running it is held by a slow one.
+ */
+class TaskChunk implements Runnable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TaskChunk.class);
+
+	private List<? extends Runnable> tasks;
+
+	/** Index of the next task to run */
+	private AtomicInteger next = new AtomicInteger();
+
+	/** Released once the tasks may be run by other threads */
+	private CountDownLatch prepared = new CountDownLatch(1);
+
+	public TaskChunk(List<? extends Runnable> tasks) {
+		this.tasks = tasks;
+	}
+
+	public final void run() {
+		try {
+			prepare();
+		} finally {
+			prepared.countDown();
+		}
+		runTasks();
+	}
+
+	/**
+	 * Prepare the tasks, before any of them runs
+	 */
+	protected void prepare() {
+	}
+
+	/**
+	 * Run the remaining tasks from another thread, once they are prepared
+	 */
+	void steal() {
+		try {
+			prepared.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		runTasks();
+	}
+
+	private void runTasks() {
+		int i;
+		while ((i = next.getAndIncrement()) < tasks.size()) {
+			try {
+				tasks.get(i).run();
+			} catch (RuntimeException e) {
+				// the other tasks of the chunk must still run
+				LOGGER.error("Unexpected error: {}", e.toString());
+				LOGGER.debug(e.toString(), e);
+			}
+		}
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Run tasks in the order given by their dependencies: a task is launched as
+ * soon as all the tasks it depends on have succeeded, and tasks that do not
+ * depend on each other run at the same time, up to a maximum number.
+ * 
+ * Dependencies on tasks which were not added are ignored, and a task is not
+ * launched at all when one of its dependencies failed.
+ */
+class TaskScheduler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TaskScheduler.class);
+
+	/** Maximum number of tasks running at the same time */
+	private final int parallelTasks;
+
+	/** The tasks to run, in the order they are launched when they are ready together */
+	private final Map<String, Callable<Boolean>> tasks;
+
+	/** The names of the tasks each task depends on */
+	private final Map<String, Collection<String>> dependencies;
+
+	/** Names of the tasks which have not been launched yet */
+	private Set<String> pending;
+
+	private Set<String> succeeded;
+
+	private Set<String> failed;
+
+	/**
+	 * @param parallelTasks the maximum number of tasks running at the same time
+	 */
+	public TaskScheduler(int parallelTasks) {
+		this.parallelTasks = parallelTasks;
+		tasks = new LinkedHashMap<String, Callable<Boolean>>();
+		dependencies = new HashMap<String, Collection<String>>();
+	}
+
+	/**
+	 * Add a task to run
+	 * @param name the task name
+	 * @param task the task, returning true on success
+	 * @param dependsOn the names of the tasks that must succeed before this one is launched
+	 */
+	public void add(String name, Callable<Boolean> task, Collection<String> dependsOn) {
+		tasks.put(name, task);
+		dependencies.put(name, dependsOn);
+	}
+
+	/**
+	 * Run all the tasks and wait for them to complete. When tasks run at the
+	 * same time, the first exception is thrown once the others completed.
+	 * @return true if all the tasks were launched and succeeded
+	 * @throws Exception thrown by a task
+	 */
+	public boolean run() throws Exception {
+		pending = new LinkedHashSet<String>(tasks.keySet());
+		succeeded = new HashSet<String>();
+		failed = new HashSet<String>();
+		if (parallelTasks > 1) {
+			runInParallel();
+		} else {
+			for (List<String> ready = getReadyTasks(); !ready.isEmpty(); ready = getReadyTasks()) {
+				for (String name : ready) {
+					completed(name, tasks.get(name).call());
+				}
+			}
+		}
+		if (!pending.isEmpty()) {
+			// Only possible if the configuration check was bypassed
+			LOGGER.error("Tasks {} not launched because of a dependency cycle", pending);
+			return false;
+		}
+		return failed.isEmpty();
+	}
+
+	private void runInParallel() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(parallelTasks, new ThreadFactory() {
+			private AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "task-" + count.incrementAndGet());
+			}
+		});
+		CompletionService<Boolean> completion = new ExecutorCompletionService<Boolean>(pool);
+		Map<Future<Boolean>, String> running = new HashMap<Future<Boolean>, String>();
+		Exception failure = null;
+		try {
+			while (true) {
+				for (String name : getReadyTasks()) {
+					running.put(completion.submit(tasks.get(name)), name);
+				}
+				if (running.isEmpty()) {
+					break;
+				}
+				Future<Boolean> result = completion.take();
+				String name = running.remove(result);
+				try {
+					completed(name, result.get());
+				} catch (ExecutionException e) {
+					completed(name, false);
+					if (e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					} else if (failure == null) {
+						failure = (Exception) e.getCause();
+					} else {
+						LOGGER.error("Error while running task {}: {}", name, e.getCause().toString());
+						LOGGER.debug(e.getCause().toString(), e.getCause());
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private void completed(String name, boolean success) {
+		(success ? succeeded : failed).add(name);
+	}
+
+	/**
+	 * Remove from the pending tasks the ones whose dependencies all succeeded,
+	 * and give up the ones depending on a failed task.
+	 * @return the names of the tasks to launch now
+	 */
+	private List<String> getReadyTasks() {
+		List<String> ready = new ArrayList<String>();
+		boolean givenUp;
+		do {
+			givenUp = false;
+			for (Iterator<String> it = pending.iterator(); it.hasNext();) {
+				String name = it.next();
+				String failedDependency = null;
+				boolean waiting = false;
+				for (String dependency : dependencies.get(name)) {
+					if (failed.contains(dependency)) {
+						failedDependency = dependency;
+						break;
+					} else if (tasks.containsKey(dependency) && !succeeded.contains(dependency)) {
+						waiting = true;
+					}
+				}
+				if (failedDependency != null) {
+					LOGGER.error("Task {} not launched because task {} failed", name, failedDependency);
+					failed.add(name);
+					it.remove();
+					givenUp = true;
+				} else if (!waiting) {
+					ready.add(name);
+					it.remove();
+				}
+			}
+		} while (givenUp);
+		return ready;
+	}
+}
@@ -34,6 +34,7 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
  *         &lt;element name="url" type="{http://www.w3.org/2001/XMLSchema}string"/>
  *         &lt;element name="username" type="{http://www.w3.org/2001/XMLSchema}string"/>
  *         &lt;element name="password" type="{http://www.w3.org/2001/XMLSchema}string"/>
+ *         &lt;element name="maxOperationsPerSecond" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
  *       &lt;/sequence>
  *       &lt;attribute name="id" type="{http://www.w3.org/2001/XMLSchema}string" />
  *     &lt;/restriction>
@@ -48,7 +49,8 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
     "name",
     "url",
     "username",
-    "password"
+    "password",
+    "maxOperationsPerSecond"
 })
 @XmlSeeAlso({
     PluginConnectionType.class,
@@ -68,6 +70,7 @@ public class ConnectionType {
     protected String username;
     @XmlElement(required = true)
     protected String password;
+    protected Integer maxOperationsPerSecond;
     @XmlAttribute(name = "id")
     protected String id;
 
@@ -167,6 +170,30 @@ public class ConnectionType {
         this.password = value;
     }
 
+    /**
+     * Gets the value of the maxOperationsPerSecond property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getMaxOperationsPerSecond() {
+        return maxOperationsPerSecond;
+    }
+
+    /**
+     * Sets the value of the maxOperationsPerSecond property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setMaxOperationsPerSecond(Integer value) {
+        this.maxOperationsPerSecond = value;
+    }
+
     /**
      * Gets the value of the id property.
      * 
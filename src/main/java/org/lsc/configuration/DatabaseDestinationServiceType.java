@@ -29,6 +29,10 @@ import javax.xml.bind.annotation.XmlType;
  *         &lt;element name="requestsNameForInsert" type="{http://lsc-project.org/XSD/lsc-core-2.2.xsd}valuesType"/>
  *         &lt;element name="requestsNameForUpdate" type="{http://lsc-project.org/XSD/lsc-core-2.2.xsd}valuesType"/>
  *         &lt;element name="requestsNameForDelete" type="{http://lsc-project.org/XSD/lsc-core-2.2.xsd}valuesType"/>
+ *         &lt;element name="batchSize" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
+ *         &lt;element name="batchTimeout" type="{http://www.w3.org/2001/XMLSchema}long" minOccurs="0"/>
+ *         &lt;element name="requestNameForObjectBatch" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
+ *         &lt;element name="lookupBatchSize" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
  *       &lt;/sequence>
  *     &lt;/extension>
  *   &lt;/complexContent>
@@ -43,7 +47,11 @@ import javax.xml.bind.annotation.XmlType;
     "requestNameForObject",
     "requestsNameForInsert",
     "requestsNameForUpdate",
-    "requestsNameForDelete"
+    "requestsNameForDelete",
+    "batchSize",
+    "batchTimeout",
+    "requestNameForObjectBatch",
+    "lookupBatchSize"
 })
 public class DatabaseDestinationServiceType
     extends ServiceType
@@ -59,6 +67,13 @@ public class DatabaseDestinationServiceType
     protected ValuesType requestsNameForUpdate;
     @XmlElement(required = true)
     protected ValuesType requestsNameForDelete;
+    @XmlElement(defaultValue = "0")
+    protected Integer batchSize = 0;
+    @XmlElement(defaultValue = "1000")
+    protected Long batchTimeout = 1000L;
+    protected String requestNameForObjectBatch;
+    @XmlElement(defaultValue = "0")
+    protected Integer lookupBatchSize = 0;
 
     /**
      * Gets the value of the requestNameForList property.
@@ -180,4 +195,100 @@ public class DatabaseDestinationServiceType
         this.requestsNameForDelete = value;
     }
 
+    /**
+     * Gets the value of the batchSize property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the value of the batchSize property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setBatchSize(Integer value) {
+        this.batchSize = value;
+    }
+
+    /**
+     * Gets the value of the batchTimeout property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Long }
+     *     
+     */
+    public Long getBatchTimeout() {
+        return batchTimeout;
+    }
+
+    /**
+     * Sets the value of the batchTimeout property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Long }
+     *     
+     */
+    public void setBatchTimeout(Long value) {
+        this.batchTimeout = value;
+    }
+
+    /**
+     * Gets the value of the requestNameForObjectBatch property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getRequestNameForObjectBatch() {
+        return requestNameForObjectBatch;
+    }
+
+    /**
+     * Sets the value of the requestNameForObjectBatch property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setRequestNameForObjectBatch(String value) {
+        this.requestNameForObjectBatch = value;
+    }
+
+    /**
+     * Gets the value of the lookupBatchSize property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getLookupBatchSize() {
+        return lookupBatchSize;
+    }
+
+    /**
+     * Sets the value of the lookupBatchSize property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setLookupBatchSize(Integer value) {
+        this.lookupBatchSize = value;
+    }
+
 }
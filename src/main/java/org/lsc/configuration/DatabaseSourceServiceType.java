@@ -29,6 +29,9 @@ import javax.xml.bind.annotation.XmlType;
  *         &lt;element name="requestNameForObject" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
  *         &lt;element name="requestNameForNextId" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
  *         &lt;element name="requestNameForClean" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
+ *         &lt;element name="requestNameForSortedList" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
+ *         &lt;element name="sortedBy" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
+ *         &lt;element name="listFullEntries" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/>
  *       &lt;/sequence>
  *     &lt;/extension>
  *   &lt;/complexContent>
@@ -43,7 +46,10 @@ import javax.xml.bind.annotation.XmlType;
     "requestNameForList",
     "requestNameForObject",
     "requestNameForNextId",
-    "requestNameForClean"
+    "requestNameForClean",
+    "requestNameForSortedList",
+    "sortedBy",
+    "listFullEntries"
 })
 public class DatabaseSourceServiceType
     extends ServiceType
@@ -55,6 +61,10 @@ public class DatabaseSourceServiceType
     protected String requestNameForObject;
     protected String requestNameForNextId;
     protected String requestNameForClean;
+    protected String requestNameForSortedList;
+    protected String sortedBy;
+    @XmlElement(defaultValue = "false")
+    protected Boolean listFullEntries = false;
 
     /**
      * Gets the value of the interval property.
@@ -176,4 +186,76 @@ public class DatabaseSourceServiceType
         this.requestNameForClean = value;
     }
 
+    /**
+     * Gets the value of the requestNameForSortedList property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getRequestNameForSortedList() {
+        return requestNameForSortedList;
+    }
+
+    /**
+     * Sets the value of the requestNameForSortedList property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setRequestNameForSortedList(String value) {
+        this.requestNameForSortedList = value;
+    }
+
+    /**
+     * Gets the value of the sortedBy property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getSortedBy() {
+        return sortedBy;
+    }
+
+    /**
+     * Sets the value of the sortedBy property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setSortedBy(String value) {
+        this.sortedBy = value;
+    }
+
+    /**
+     * Gets the value of the listFullEntries property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public Boolean isListFullEntries() {
+        return listFullEntries;
+    }
+
+    /**
+     * Sets the value of the listFullEntries property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setListFullEntries(Boolean value) {
+        this.listFullEntries = value;
+    }
+
 }
@@ -49,6 +49,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -59,9 +60,11 @@ import java.util.regex.Pattern;
 
 import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
@@ -192,4 +195,27 @@ public class JaxbXmlConfigurationHelper {
             LOGGER.error("Cannot save configuration file: " + e.toString(), e);
         }
     }
+
+    /**
+     * Dump a configuration object, like a task or a connection, to an XML string
+     * 
+     * @param name
+     *            the element name to use
+     * @param value
+     *            configuration object
+     * @return the XML fragment
+     * @throws LscConfigurationException
+     *             thrown if the object can not be marshalled
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public String toXml(String name, Object value) throws LscConfigurationException {
+        try {
+            Marshaller marshaller = jaxbc.createMarshaller();
+            StringWriter writer = new StringWriter();
+            marshaller.marshal(new JAXBElement(new QName(LSC_NAMESPACE, name), value.getClass(), value), writer);
+            return writer.toString();
+        } catch (JAXBException e) {
+            throw new LscConfigurationException(e);
+        }
+    }
 }
@@ -36,6 +36,10 @@ import javax.xml.bind.annotation.XmlType;
  *         &lt;element name="binaryAttributes" type="{http://lsc-project.org/XSD/lsc-core-2.2.xsd}valuesType" minOccurs="0"/>
  *         &lt;element name="recursiveDelete" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/>
  *         &lt;element name="saslQop" type="{http://lsc-project.org/XSD/lsc-core-2.2.xsd}saslQopType" minOccurs="0"/>
+ *         &lt;element name="poolMinIdle" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
+ *         &lt;element name="poolMaxSize" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
+ *         &lt;element name="poolValidationInterval" type="{http://www.w3.org/2001/XMLSchema}long" minOccurs="0"/>
+ *         &lt;element name="poolMaxWait" type="{http://www.w3.org/2001/XMLSchema}long" minOccurs="0"/>
  *       &lt;/sequence>
  *     &lt;/extension>
  *   &lt;/complexContent>
@@ -57,7 +61,11 @@ import javax.xml.bind.annotation.XmlType;
     "sortedBy",
     "binaryAttributes",
     "recursiveDelete",
-    "saslQop"
+    "saslQop",
+    "poolMinIdle",
+    "poolMaxSize",
+    "poolValidationInterval",
+    "poolMaxWait"
 })
 public class LdapConnectionType
     extends ConnectionType
@@ -85,6 +93,14 @@ public class LdapConnectionType
     protected Boolean recursiveDelete = false;
     @XmlElement(defaultValue = "auth")
     protected SaslQopType saslQop = SaslQopType.AUTH;
+    @XmlElement(defaultValue = "1")
+    protected Integer poolMinIdle = 1;
+    @XmlElement(defaultValue = "10")
+    protected Integer poolMaxSize = 10;
+    @XmlElement(defaultValue = "60000")
+    protected Long poolValidationInterval = 60000L;
+    @XmlElement(defaultValue = "60000")
+    protected Long poolMaxWait = 60000L;
 
     /**
      * Gets the value of the authentication property.
@@ -374,4 +390,100 @@ public class LdapConnectionType
         this.saslQop = value;
     }
 
+    /**
+     * Gets the value of the poolMinIdle property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getPoolMinIdle() {
+        return poolMinIdle;
+    }
+
+    /**
+     * Sets the value of the poolMinIdle property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setPoolMinIdle(Integer value) {
+        this.poolMinIdle = value;
+    }
+
+    /**
+     * Gets the value of the poolMaxSize property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getPoolMaxSize() {
+        return poolMaxSize;
+    }
+
+    /**
+     * Sets the value of the poolMaxSize property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setPoolMaxSize(Integer value) {
+        this.poolMaxSize = value;
+    }
+
+    /**
+     * Gets the value of the poolValidationInterval property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Long }
+     *     
+     */
+    public Long getPoolValidationInterval() {
+        return poolValidationInterval;
+    }
+
+    /**
+     * Sets the value of the poolValidationInterval property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Long }
+     *     
+     */
+    public void setPoolValidationInterval(Long value) {
+        this.poolValidationInterval = value;
+    }
+
+    /**
+     * Gets the value of the poolMaxWait property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Long }
+     *     
+     */
+    public Long getPoolMaxWait() {
+        return poolMaxWait;
+    }
+
+    /**
+     * Sets the value of the poolMaxWait property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Long }
+     *     
+     */
+    public void setPoolMaxWait(Long value) {
+        this.poolMaxWait = value;
+    }
+
 }
@@ -10,6 +10,7 @@ package org.lsc.configuration;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlType;
 
 
@@ -22,6 +23,12 @@ import javax.xml.bind.annotation.XmlType;
  * &lt;complexType name="ldapDestinationServiceType">
  *   &lt;complexContent>
  *     &lt;extension base="{http://lsc-project.org/XSD/lsc-core-2.2.xsd}ldapServiceType">
+ *       &lt;sequence>
+ *         &lt;element name="pipelineWindow" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
+ *         &lt;element name="maxMembersPerModify" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
+ *         &lt;element name="membersFlushInterval" type="{http://www.w3.org/2001/XMLSchema}long" minOccurs="0"/>
+ *         &lt;element name="lookupBatchSize" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
+ *       &lt;/sequence>
  *     &lt;/extension>
  *   &lt;/complexContent>
  * &lt;/complexType>
@@ -30,10 +37,119 @@ import javax.xml.bind.annotation.XmlType;
  * 
  */
 @XmlAccessorType(XmlAccessType.FIELD)
-@XmlType(name = "ldapDestinationServiceType")
+@XmlType(name = "ldapDestinationServiceType", propOrder = {
+    "pipelineWindow",
+    "maxMembersPerModify",
+    "membersFlushInterval",
+    "lookupBatchSize"
+})
 public class LdapDestinationServiceType
     extends LdapServiceType
 {
 
+    @XmlElement(defaultValue = "0")
+    protected Integer pipelineWindow = 0;
+    @XmlElement(defaultValue = "0")
+    protected Integer maxMembersPerModify = 0;
+    @XmlElement(defaultValue = "1000")
+    protected Long membersFlushInterval = 1000L;
+    @XmlElement(defaultValue = "0")
+    protected Integer lookupBatchSize = 0;
+
+    /**
+     * Gets the value of the pipelineWindow property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getPipelineWindow() {
+        return pipelineWindow;
+    }
+
+    /**
+     * Sets the value of the pipelineWindow property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setPipelineWindow(Integer value) {
+        this.pipelineWindow = value;
+    }
+
+    /**
+     * Gets the value of the maxMembersPerModify property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getMaxMembersPerModify() {
+        return maxMembersPerModify;
+    }
+
+    /**
+     * Sets the value of the maxMembersPerModify property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setMaxMembersPerModify(Integer value) {
+        this.maxMembersPerModify = value;
+    }
+
+    /**
+     * Gets the value of the membersFlushInterval property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Long }
+     *     
+     */
+    public Long getMembersFlushInterval() {
+        return membersFlushInterval;
+    }
+
+    /**
+     * Sets the value of the membersFlushInterval property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Long }
+     *     
+     */
+    public void setMembersFlushInterval(Long value) {
+        this.membersFlushInterval = value;
+    }
+
+    /**
+     * Gets the value of the lookupBatchSize property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getLookupBatchSize() {
+        return lookupBatchSize;
+    }
+
+    /**
+     * Sets the value of the lookupBatchSize property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setLookupBatchSize(Integer value) {
+        this.lookupBatchSize = value;
+    }
 
 }
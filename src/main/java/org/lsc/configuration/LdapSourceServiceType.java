@@ -29,6 +29,7 @@ import javax.xml.bind.annotation.XmlType;
  *         &lt;element name="filterAsync" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
  *         &lt;element name="dateFormat" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
  *         &lt;element name="interval" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
+ *         &lt;element name="listFullEntries" type="{http://www.w3.org/2001/XMLSchema}boolean" minOccurs="0"/>
  *       &lt;/sequence>
  *     &lt;/extension>
  *   &lt;/complexContent>
@@ -42,7 +43,8 @@ import javax.xml.bind.annotation.XmlType;
     "cleanFilter",
     "filterAsync",
     "dateFormat",
-    "interval"
+    "interval",
+    "listFullEntries"
 })
 @XmlSeeAlso({
     AsyncLdapSourceServiceType.class
@@ -56,6 +58,8 @@ public class LdapSourceServiceType
     protected String dateFormat;
     @XmlElement(defaultValue = "5")
     protected Integer interval = 5;
+    @XmlElement(defaultValue = "false")
+    protected Boolean listFullEntries = false;
 
     /**
      * Gets the value of the cleanFilter property.
@@ -153,4 +157,28 @@ public class LdapSourceServiceType
         this.interval = value;
     }
 
+    /**
+     * Gets the value of the listFullEntries property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Boolean }
+     *     
+     */
+    public Boolean isListFullEntries() {
+        return listFullEntries;
+    }
+
+    /**
+     * Sets the value of the listFullEntries property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Boolean }
+     *     
+     */
+    public void setListFullEntries(Boolean value) {
+        this.listFullEntries = value;
+    }
+
 }
@@ -50,9 +50,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.StringTokenizer;
 
 import org.lsc.beans.syncoptions.ForceSyncOptions;
@@ -317,11 +319,45 @@ public class LscConfiguration {
 		for(TaskType task: getTasks()) {
 			validate(task);
 		}
+		checkDependencies(getTasks());
 		if(security != null) {
 			validate(security);
 		}
 	}
 
+	/**
+	 * Check that no task depends, directly or through other tasks, on itself
+	 * @param tasks the tasks to check
+	 * @throws LscConfigurationException naming the tasks of the first cycle found
+	 */
+	public static void checkDependencies(Collection<TaskType> tasks) throws LscConfigurationException {
+		// Tasks whose dependencies are all checked
+		Set<TaskType> checked = new HashSet<TaskType>();
+		for(TaskType task: tasks) {
+			checkDependencies(task, new ArrayList<TaskType>(), checked);
+		}
+	}
+
+	private static void checkDependencies(TaskType task, List<TaskType> path, Set<TaskType> checked) throws LscConfigurationException {
+		if(checked.contains(task)) {
+			return;
+		}
+		int start = path.indexOf(task);
+		path.add(task);
+		if(start >= 0) {
+			StringBuilder cycle = new StringBuilder();
+			for(TaskType member: path.subList(start, path.size())) {
+				cycle.append(cycle.length() > 0 ? " -> " : "").append(member.getName());
+			}
+			throw new LscConfigurationException("Tasks dependencies contain a cycle: " + cycle);
+		}
+		for(TaskType dependency: task.getDependsOn()) {
+			checkDependencies(dependency, path, checked);
+		}
+		path.remove(path.size() - 1);
+		checked.add(task);
+	}
+
 	private static void validate(SecurityType security2) {
 		// TODO Auto-generated method stub
 		
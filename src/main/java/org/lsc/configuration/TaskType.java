@@ -56,6 +56,10 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
  *         &lt;/choice>
  *         &lt;element name="customLibrary" type="{http://lsc-project.org/XSD/lsc-core-2.2.xsd}valuesType" minOccurs="0"/>
  *         &lt;element name="scriptInclude" type="{http://lsc-project.org/XSD/lsc-core-2.2.xsd}valuesType" minOccurs="0"/>
+ *         &lt;element name="cleanStrategy" type="{http://lsc-project.org/XSD/lsc-core-2.2.xsd}cleanStrategyType" minOccurs="0"/>
+ *         &lt;element name="fingerprintStore" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
+ *         &lt;element name="threads" type="{http://www.w3.org/2001/XMLSchema}int" minOccurs="0"/>
+ *         &lt;element name="checkpoint" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
  *         &lt;element name="auditLog" maxOccurs="unbounded" minOccurs="0">
  *           &lt;complexType>
  *             &lt;complexContent>
@@ -67,6 +71,7 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
  *         &lt;/element>
  *       &lt;/sequence>
  *       &lt;attribute name="id" type="{http://www.w3.org/2001/XMLSchema}string" />
+ *       &lt;attribute name="dependsOn" type="{http://www.w3.org/2001/XMLSchema}IDREFS" />
  *     &lt;/restriction>
  *   &lt;/complexContent>
  * &lt;/complexType>
@@ -94,6 +99,10 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
     "pluginSyncOptions",
     "customLibrary",
     "scriptInclude",
+    "cleanStrategy",
+    "fingerprintStore",
+    "threads",
+    "checkpoint",
     "auditLog"
 })
 public class TaskType {
@@ -121,9 +130,18 @@ public class TaskType {
     protected PluginSyncOptionsType pluginSyncOptions;
     protected ValuesType customLibrary;
     protected ValuesType scriptInclude;
+    @XmlElement(defaultValue = "LOOKUP")
+    protected CleanStrategyType cleanStrategy = CleanStrategyType.LOOKUP;
+    protected String fingerprintStore;
+    protected Integer threads;
+    protected String checkpoint;
     protected List<TaskType.AuditLog> auditLog;
     @XmlAttribute(name = "id")
     protected String id;
+    @XmlAttribute(name = "dependsOn")
+    @XmlIDREF
+    @XmlSchemaType(name = "IDREFS")
+    protected List<TaskType> dependsOn;
 
     /**
      * Gets the value of the name property.
@@ -557,6 +575,102 @@ public class TaskType {
         this.scriptInclude = value;
     }
 
+    /**
+     * Gets the value of the cleanStrategy property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link CleanStrategyType }
+     *     
+     */
+    public CleanStrategyType getCleanStrategy() {
+        return cleanStrategy;
+    }
+
+    /**
+     * Sets the value of the cleanStrategy property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link CleanStrategyType }
+     *     
+     */
+    public void setCleanStrategy(CleanStrategyType value) {
+        this.cleanStrategy = value;
+    }
+
+    /**
+     * Gets the value of the fingerprintStore property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getFingerprintStore() {
+        return fingerprintStore;
+    }
+
+    /**
+     * Sets the value of the fingerprintStore property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setFingerprintStore(String value) {
+        this.fingerprintStore = value;
+    }
+
+    /**
+     * Gets the value of the threads property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link Integer }
+     *     
+     */
+    public Integer getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the value of the threads property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link Integer }
+     *     
+     */
+    public void setThreads(Integer value) {
+        this.threads = value;
+    }
+
+    /**
+     * Gets the value of the checkpoint property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Sets the value of the checkpoint property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setCheckpoint(String value) {
+        this.checkpoint = value;
+    }
+
     /**
      * Gets the value of the auditLog property.
      * 
@@ -610,6 +724,35 @@ public class TaskType {
         this.id = value;
     }
 
+    /**
+     * Gets the value of the dependsOn property.
+     * 
+     * <p>
+     * This accessor method returns a reference to the live list,
+     * not a snapshot. Therefore any modification you make to the
+     * returned list will be present inside the JAXB object.
+     * This is why there is not a <CODE>set</CODE> method for the dependsOn property.
+     * 
+     * <p>
+     * For example, to add a new item, do as follows:
+     * <pre>
+     *    getDependsOn().add(newItem);
+     * </pre>
+     * 
+     * 
+     * <p>
+     * Objects of the following type(s) are allowed in the list
+     * {@link TaskType }
+     * 
+     * 
+     */
+    public List<TaskType> getDependsOn() {
+        if (dependsOn == null) {
+            dependsOn = new ArrayList<TaskType>();
+        }
+        return this.dependsOn;
+    }
+
 
     /**
      * <p>Java class for anonymous complex type.
@@ -164,14 +164,13 @@ public class LscAgent implements NotificationListener {
 					return 3;
 				}
 				
-				// Display full taks status
-				if (status) {
-					String fullStatus = lscServer.getTaskStatus(taskName);
+				// Display full taks status, the last one if the task is stopped
+				String fullStatus = lscServer.getTaskStatus(taskName);
+				if (fullStatus != null) {
 					LOGGER.info(fullStatus);
-					return 0;
 				}
 				
-				return 1;
+				return (status ? 0 : 1);
 			case TASKS_LIST:
 				LOGGER.info("Available asynchronous tasks are: ");
 				for(String taskName: lscServer.getAsyncTasksName()) {
@@ -140,8 +140,16 @@ public interface LscServer {
 	public void launchCleanTask(String taskName) throws Exception;
 	
 	/**
-	 * Get status line of a task
+	 * Get status lines of a task: its counters, then the time spent in each
+	 * phase of the synchronization of its entries
+	 * @return the status of the running or last run of the task, or null if it has not been run
 	 */
 	public String getTaskStatus(String taskName);
+
+	/**
+	 * Get the usage of the LDAP connection pools
+	 * @return one status line per pool
+	 */
+	public String[] getConnectionPoolsStatus();
 	
 }
@@ -65,6 +65,7 @@ import org.lsc.LscDatasets;
 import org.lsc.SimpleSynchronize;
 import org.lsc.Task;
 import org.lsc.beans.SimpleBean;
+import org.lsc.jndi.JndiServices;
 import org.lsc.utils.PidUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -214,4 +215,8 @@ public class LscServerImpl implements LscServer, Runnable {
 	public String getTaskStatus(String taskName) {
 		return synchronize.getTaskFullStatus(taskName);
 	}
+
+	public String[] getConnectionPoolsStatus() {
+		return JndiServices.getConnectionPoolsStatus();
+	}
 }
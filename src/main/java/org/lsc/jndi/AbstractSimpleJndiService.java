@@ -50,8 +50,13 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -69,6 +74,7 @@ import org.lsc.configuration.LdapConnectionType;
 import org.lsc.configuration.LdapServiceType;
 import org.lsc.exception.LscConfigurationException;
 import org.lsc.exception.LscServiceConfigurationException;
+import org.lsc.service.IPivotCursor;
 import org.lsc.utils.SetUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -112,6 +118,9 @@ public abstract class AbstractSimpleJndiService implements Closeable {
 
 	protected JndiServices jndiServices;
 
+	/** An equality assertion whose value is a placeholder, like (uid={uid}) */
+	private static final Pattern EQUALITY_ASSERTION = Pattern.compile("\\(([^()=~<>:*]+)=\\{([^}]+)\\}\\)");
+
 	/**
 	 * The default initializer.
 	 * 
@@ -244,6 +253,18 @@ public abstract class AbstractSimpleJndiService implements Closeable {
 	 *             the identified object
 	 */
 	public SearchResult get(String id, LscDatasets pivotAttrs, String searchString) throws NamingException {
+		return getJndiServices().getEntry(baseDn, getFilter(id, pivotAttrs, searchString), _filteredSc);
+	}
+
+	/**
+	 * Instantiate a filter template for the specified identifier.
+	 * 
+	 * @param id The object identifiers - used in the directory filter as {0} or any attributes name
+	 * @param pivotAttrs The object pivot attributes
+	 * @param searchString The filter template
+	 * @return The filter
+	 */
+	protected String getFilter(String id, LscDatasets pivotAttrs, String searchString) {
         searchString = Pattern.compile("\\{id\\}", Pattern.CASE_INSENSITIVE).matcher(searchString).replaceAll(Matcher.quoteReplacement(id));
 		if (pivotAttrs != null && pivotAttrs.getDatasets() != null && pivotAttrs.getDatasets().size() > 0) {
 			for (String attributeName : pivotAttrs.getAttributesNames()) {
@@ -259,10 +280,224 @@ public abstract class AbstractSimpleJndiService implements Closeable {
 			// this is kept for backwards compatibility but will be removed
 			searchString = filterIdSync.replaceAll("\\{0\\}", Matcher.quoteReplacement(id));
 		}
+		return searchString;
+	}
 
-		return getJndiServices().getEntry(baseDn, searchString, _filteredSc);
+	/**
+	 * Get the ldap search results for several identifiers with a single
+	 * search on the union of their filters.
+	 * 
+	 * This is only possible when each placeholder of the filter template is
+	 * the value of an equality assertion, like in (&amp;(objectClass=person)(uid={uid})):
+	 * the entries found are routed back to the identifiers through these
+	 * values. Identifiers which cannot be resolved this way - because of the
+	 * template, a binary value, or an entry matching several identifiers - are
+	 * left out of the result, to be looked up on their own with
+	 * {@link #get(String, LscDatasets, String)}.
+	 * 
+	 * @param ids The objects identifiers
+	 * @param searchString The filter template
+	 * @return The ldap search results indexed by main identifier, with a null
+	 * 			value for the objects which do not exist
+	 * @throws NamingException
+	 *             thrown if an directory exception is encountered while searching
+	 */
+	protected Map<String, SearchResult> get(List<Entry<String, LscDatasets>> ids, String searchString) throws NamingException {
+		Map<String, SearchResult> results = new HashMap<String, SearchResult>();
+		List<String[]> assertions = getEqualityAssertions(searchString);
+		if (assertions == null) {
+			return results;
+		}
+
+		List<Entry<String, LscDatasets>> batched = new ArrayList<Entry<String, LscDatasets>>();
+		List<String[]> batchedValues = new ArrayList<String[]>();
+		// values only differing by their case may or may not designate the same entry
+		Map<String, String> signatures = new HashMap<String, String>();
+		Set<String> ambiguous = new HashSet<String>();
+		for (Entry<String, LscDatasets> id : ids) {
+			String[] values = getAssertionValues(id, assertions);
+			if (values == null) {
+				continue;
+			}
+			String signature = Arrays.asList(values).toString();
+			String previous = signatures.put(signature.toLowerCase(), signature);
+			if (previous != null && !previous.equals(signature)) {
+				ambiguous.add(signature.toLowerCase());
+			}
+			batched.add(id);
+			batchedValues.add(values);
+		}
+		for (int i = batched.size() - 1; i >= 0; i--) {
+			if (ambiguous.contains(Arrays.asList(batchedValues.get(i)).toString().toLowerCase())) {
+				batched.remove(i);
+				batchedValues.remove(i);
+			}
+		}
+		if (batched.isEmpty()) {
+			return results;
+		}
+
+		StringBuilder filter = new StringBuilder("(|");
+		for (Entry<String, LscDatasets> id : batched) {
+			String oneFilter = getFilter(id.getKey(), id.getValue(), searchString);
+			filter.append(oneFilter.startsWith("(") ? oneFilter : "(" + oneFilter + ")");
+		}
+		filter.append(")");
+
+		// the asserted attributes are needed to route the entries
+		List<String> attributes = null;
+		List<String> extraAttributes = new ArrayList<String>();
+		if (attrs != null) {
+			attributes = new ArrayList<String>(attrs);
+			for (String[] assertion : assertions) {
+				if (!containsIgnoreCase(attributes, assertion[0])) {
+					attributes.add(assertion[0]);
+					extraAttributes.add(assertion[0]);
+				}
+			}
+		}
+		List<SearchResult> entries = getJndiServices().getEntries(baseDn, filter.toString(),
+						SearchControls.SUBTREE_SCOPE, attributes);
+
+		int[] candidates = new int[batched.size()];
+		SearchResult[] found = new SearchResult[batched.size()];
+		boolean unrouted = false;
+		for (SearchResult sr : entries) {
+			boolean routed = false;
+			for (int i = 0; i < batched.size(); i++) {
+				if (matches(sr, assertions, batchedValues.get(i))) {
+					candidates[i]++;
+					found[i] = sr;
+					routed = true;
+				}
+			}
+			unrouted |= !routed;
+			for (String extraAttribute : extraAttributes) {
+				sr.getAttributes().remove(extraAttribute);
+			}
+		}
+		for (int i = 0; i < batched.size(); i++) {
+			// an entry we could not route may be the missing one
+			if (candidates[i] == 1 || (candidates[i] == 0 && !unrouted)) {
+				results.put(batched.get(i).getKey(), found[i]);
+			}
+		}
+		LOGGER.debug("{} entries looked up at once out of {} ({} found)",
+						new Object[] { results.size(), ids.size(), entries.size() });
+		return results;
 	}
-	
+
+	/**
+	 * Get the equality assertions holding the placeholders of a filter template.
+	 * @param searchString the filter template
+	 * @return the attribute name and placeholder of each assertion, or null
+	 * 			if a placeholder is used anywhere else
+	 */
+	private static List<String[]> getEqualityAssertions(String searchString) {
+		if (searchString.contains("(!")) {
+			return null;
+		}
+		List<String[]> assertions = new ArrayList<String[]>();
+		Matcher matcher = EQUALITY_ASSERTION.matcher(searchString.startsWith("(") ? searchString : "(" + searchString + ")");
+		StringBuffer remaining = new StringBuffer();
+		while (matcher.find()) {
+			assertions.add(new String[] { matcher.group(1).trim(), matcher.group(2) });
+			matcher.appendReplacement(remaining, "");
+		}
+		matcher.appendTail(remaining);
+		if (assertions.isEmpty() || remaining.indexOf("{") >= 0) {
+			return null;
+		}
+		return assertions;
+	}
+
+	/**
+	 * Get the values an identifier gives to the placeholders, the same way
+	 * {@link #getFilter(String, LscDatasets, String)} does.
+	 * @return the values, or null if one of them is missing or binary
+	 */
+	private String[] getAssertionValues(Entry<String, LscDatasets> id, List<String[]> assertions) {
+		LscDatasets pivotAttrs = id.getValue();
+		boolean hasPivots = pivotAttrs != null && pivotAttrs.getDatasets() != null && pivotAttrs.getDatasets().size() > 0;
+		String[] values = new String[assertions.size()];
+		for (int i = 0; i < values.length; i++) {
+			String placeholder = assertions.get(i)[1];
+			if ("id".equalsIgnoreCase(placeholder)) {
+				values[i] = id.getKey();
+			} else if (hasPivots) {
+				Object value = pivotAttrs.getDatasets().get(placeholder.toLowerCase());
+				if (value instanceof byte[]) {
+					return null;
+				}
+				values[i] = pivotAttrs.getStringValueAttribute(placeholder.toLowerCase());
+			} else if (attrsId.size() == 1 && attrsId.get(0).equalsIgnoreCase(placeholder)) {
+				values[i] = id.getKey();
+			}
+			if (values[i] == null) {
+				return null;
+			}
+		}
+		return values;
+	}
+
+	private static boolean matches(SearchResult sr, List<String[]> assertions, String[] values) throws NamingException {
+		for (int i = 0; i < values.length; i++) {
+			Attribute attribute = sr.getAttributes().get(assertions.get(i)[0]);
+			if (attribute == null) {
+				return false;
+			}
+			boolean found = false;
+			NamingEnumeration<?> ne = attribute.getAll();
+			while (ne.hasMore() && !found) {
+				Object value = ne.next();
+				found = value instanceof String && values[i].equalsIgnoreCase((String) value);
+			}
+			if (!found) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean containsIgnoreCase(List<String> names, String name) {
+		for (String candidate : names) {
+			if (candidate.equalsIgnoreCase(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Search all the entries matching the filterAll filter with their fetched
+	 * and pivot attributes, sorted by the directory on the first pivot attribute.
+	 * The results are read page by page while they are consumed.
+	 *
+	 * @param converter builds the entries returned by the cursor
+	 * @return the cursor on the ldap search results
+	 * @throws NamingException
+	 *             thrown if an directory exception is encountered while searching
+	 */
+	protected IPivotCursor getSortedSearchCursor(JndiServices.SearchResultConverter converter) throws NamingException {
+		List<String> attributes = (attrs != null ? new ArrayList<String>(attrs) : new ArrayList<String>());
+		for (String pivotAttr : attrsId) {
+			if (!attributes.contains(pivotAttr)) {
+				attributes.add(pivotAttr);
+			}
+		}
+		return getJndiServices().getSortedSearchCursor(baseDn, filterAll, SearchControls.SUBTREE_SCOPE,
+						attributes, getSortedBy(), converter);
+	}
+
+	/**
+	 * Entries are sorted on the first pivot attribute.
+	 *
+	 * @return the first pivot attribute name
+	 */
+	public String getSortedBy() {
+		return attrsId.get(0);
+	}
+
 	public void close() throws IOException {
 		try {
 			jndiServices.finalize();
@@ -45,6 +45,7 @@
  */
 package org.lsc.jndi;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -62,15 +63,21 @@ import javax.naming.directory.SearchResult;
 
 import org.lsc.LscDatasetModification;
 import org.lsc.LscModifications;
+import org.lsc.configuration.LdapDestinationServiceType;
 import org.lsc.configuration.TaskType;
 import org.lsc.exception.LscServiceConfigurationException;
 import org.lsc.exception.LscServiceException;
+import org.lsc.jndi.GroupMembershipCoalescer.MembershipUpdate;
+import org.lsc.service.IApplyListener;
 import org.lsc.utils.CaseIgnoreStringHashMap;
 
 /**
  * A custom JNDI service to translate modifications on the user's "memberOf"
  * attribute to modifications on the "member" attribute of each groups. This is
  * the way to apply changes on groups with ActiveDirectory.
+ * 
+ * When maxMembersPerModify is set, membership changes of many users are
+ * buffered per group and applied as multi-valued modifications.
  * @author St&eacute;phane Bond &lt;&gt;
  */
 public class ActiveDirectoryDstService extends SimpleJndiDstService {
@@ -79,27 +86,46 @@ public class ActiveDirectoryDstService extends SimpleJndiDstService {
 
 	final String GROUP_MEMBER_ATTR = "member";
 
+	/** Group membership changes buffer, if enabled */
+	private GroupMembershipCoalescer coalescer;
+
 	public ActiveDirectoryDstService(TaskType task)
 			throws LscServiceConfigurationException {
 		super(task);
+		LdapDestinationServiceType conf = task.getLdapDestinationService();
+		if (conf.getMaxMembersPerModify() != null && conf.getMaxMembersPerModify() > 0) {
+			coalescer = new GroupMembershipCoalescer(jndiServices, GROUP_MEMBER_ATTR,
+					conf.getMaxMembersPerModify(),
+					(conf.getMembersFlushInterval() != null ? conf.getMembersFlushInterval() : 1000));
+		}
 	}
 
-	@Override
-	public boolean apply(LscModifications lm) throws LscServiceException {
-		boolean success = true;
-
-		// Convert operations on "memberOf" to operations on the "member"
-		// attribute of the group
-		LscDatasetModification memberOfDm = null;
+	/**
+	 * Remove the modification of the "memberOf" attribute from the
+	 * modifications
+	 * 
+	 * @param lm
+	 * @return the "memberOf" modification, or null
+	 */
+	private LscDatasetModification extractMemberOf(LscModifications lm) {
 		for (int i = 0; i < lm.getLscAttributeModifications().size(); i++) {
 			LscDatasetModification dm = lm.getLscAttributeModifications()
 					.get(i);
 			if (dm.getAttributeName().equals(MEMBER_OF_ATTR)) {
-				memberOfDm = dm;
 				lm.getLscAttributeModifications().remove(i);
-				break;
+				return dm;
 			}
 		}
+		return null;
+	}
+
+	@Override
+	public boolean apply(LscModifications lm) throws LscServiceException {
+		boolean success = true;
+
+		// Convert operations on "memberOf" to operations on the "member"
+		// attribute of the group
+		LscDatasetModification memberOfDm = extractMemberOf(lm);
 
 		// Apply regular changes
 		if (lm.getLscAttributeModifications().size() > 0
@@ -124,6 +150,73 @@ public class ActiveDirectoryDstService extends SimpleJndiDstService {
 		return success;
 	}
 
+	@Override
+	public boolean isPipelined() {
+		return coalescer != null;
+	}
+
+	/**
+	 * Apply regular changes at once, and queue the membership changes.
+	 * The listener is notified once the user's groups are all updated.
+	 */
+	@Override
+	public void applyAsync(LscModifications lm, IApplyListener listener)
+			throws LscServiceException {
+		if (coalescer == null) {
+			if (apply(lm)) {
+				listener.applied(lm);
+			} else {
+				listener.failed(lm, new LscServiceException("Technical problem while applying modifications to the destination"));
+			}
+			return;
+		}
+
+		MembershipUpdate update = new MembershipUpdate(lm, listener);
+		try {
+			LscDatasetModification memberOfDm = extractMemberOf(lm);
+
+			// Apply regular changes
+			if (lm.getLscAttributeModifications().size() > 0
+					|| lm.getNewMainIdentifier() != null) {
+				if (!super.apply(lm)) {
+					update.fail(new LscServiceException("Technical problem while applying modifications to the destination"));
+				}
+			}
+
+			// Queue changes on memberships
+			if (memberOfDm != null) {
+				List<String> oldValues = getAttribute(lm.getMainIdentifier(),
+						MEMBER_OF_ATTR);
+				for (String groupDn : valuesDiff(memberOfDm.getValues(), oldValues)) {
+					coalescer.addMember(groupDn, lm.getMainIdentifier(), update);
+				}
+				for (String groupDn : valuesDiff(oldValues, memberOfDm.getValues())) {
+					coalescer.removeMember(groupDn, lm.getMainIdentifier(), update);
+				}
+			}
+		} catch (LscServiceException e) {
+			update.fail(e);
+		} finally {
+			update.ready();
+		}
+	}
+
+	@Override
+	public void flush() throws LscServiceException {
+		super.flush();
+		if (coalescer != null) {
+			coalescer.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (coalescer != null) {
+			coalescer.close();
+		}
+		super.close();
+	}
+
 	/**
 	 * Compute changes to apply on groups attributes
 	 * 
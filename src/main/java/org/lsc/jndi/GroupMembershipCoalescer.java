@@ -0,0 +1,366 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.jndi;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.naming.CommunicationException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+
+import org.lsc.LscModifications;
+import org.lsc.exception.LscServiceException;
+import org.lsc.service.IApplyListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffer the member additions and removals of each group, coming from many
+ * entries, and apply them as a few multi-valued modifications instead of one
+ * modification per member.
+ *
+ * Buffered changes of a group are sent when the group reaches the maximum
+ * number of values per operation, when the flush interval expires or when
+ * {@link #flush()} is called. If a multi-valued modification is refused,
+ * its values are sent again one by one so that each entry is told whether
+ * its own membership changes were applied.
+ */
+public class GroupMembershipCoalescer {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(GroupMembershipCoalescer.class);
+
+	private final JndiServices jndiServices;
+
+	/** The group attribute holding the members */
+	private final String memberAttribute;
+
+	/** Maximum number of values per modification */
+	private final int maxValues;
+
+	/** Pending changes by lower cased group DN */
+	private final Map<String, GroupChanges> groups = new LinkedHashMap<String, GroupChanges>();
+
+	/** Protects the pending changes */
+	private final Object lock = new Object();
+
+	/**
+	 * Only one group is modified at a time. This lock is held while writing
+	 * to the directory, so it is not a monitor, which would pin a virtual
+	 * thread to its carrier thread.
+	 */
+	private final Lock flushLock = new ReentrantLock();
+
+	private final ScheduledExecutorService timer;
+
+	public GroupMembershipCoalescer(JndiServices jndiServices, String memberAttribute, int maxValues, long flushInterval) {
+		this.jndiServices = jndiServices;
+		this.memberAttribute = memberAttribute;
+		this.maxValues = maxValues;
+		this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "group-membership-flush");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		timer.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					flush();
+				} catch (RuntimeException e) {
+					LOGGER.error("Error while applying group membership changes: " + e.toString(), e);
+				}
+			}
+		}, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Queue the addition of a member to a group.
+	 * @param groupDn the group
+	 * @param memberDn the new member
+	 * @param update the entry the change comes from
+	 */
+	public void addMember(String groupDn, String memberDn, MembershipUpdate update) {
+		queue(groupDn, memberDn, update, true);
+	}
+
+	/**
+	 * Queue the removal of a member from a group.
+	 * @param groupDn the group
+	 * @param memberDn the former member
+	 * @param update the entry the change comes from
+	 */
+	public void removeMember(String groupDn, String memberDn, MembershipUpdate update) {
+		queue(groupDn, memberDn, update, false);
+	}
+
+	private void queue(String groupDn, String memberDn, MembershipUpdate update, boolean add) {
+		String key = groupDn.toLowerCase();
+		update.expect();
+		while (true) {
+			boolean full = false;
+			synchronized (lock) {
+				GroupChanges changes = groups.get(key);
+				if (changes == null) {
+					changes = new GroupChanges(groupDn);
+					groups.put(key, changes);
+				}
+				// the opposite change must reach the directory first
+				if (!changes.contains(memberDn, !add)) {
+					changes.add(new PendingValue(memberDn, update), add);
+					full = changes.additions.size() >= maxValues || changes.removals.size() >= maxValues;
+					if (!full) {
+						return;
+					}
+				}
+			}
+			flushGroup(key);
+			if (full) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Apply all the buffered changes.
+	 */
+	public void flush() {
+		flushLock.lock();
+		try {
+			List<String> keys;
+			synchronized (lock) {
+				keys = new ArrayList<String>(groups.keySet());
+			}
+			for (String key : keys) {
+				flushGroup(key);
+			}
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	/**
+	 * Apply the buffered changes and stop the flush timer.
+	 */
+	public void close() {
+		timer.shutdown();
+		flush();
+	}
+
+	private void flushGroup(String key) {
+		flushLock.lock();
+		try {
+			GroupChanges changes;
+			synchronized (lock) {
+				changes = groups.remove(key);
+			}
+			if (changes != null) {
+				send(changes.groupDn, DirContext.ADD_ATTRIBUTE, changes.additions);
+				send(changes.groupDn, DirContext.REMOVE_ATTRIBUTE, changes.removals);
+			}
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	private void send(String groupDn, int operation, List<PendingValue> values) {
+		for (int i = 0; i < values.size(); i += maxValues) {
+			List<PendingValue> chunk = values.subList(i, Math.min(values.size(), i + maxValues));
+			try {
+				if (apply(groupDn, operation, chunk)) {
+					for (PendingValue value : chunk) {
+						value.update.done(null);
+					}
+				} else if (chunk.size() == 1) {
+					chunk.get(0).update.done(new LscServiceException("Unable to update member " + chunk.get(0).memberDn + " of group " + groupDn));
+				} else {
+					LOGGER.warn("Modification of {} members of group {} failed, applying them one by one", chunk.size(), groupDn);
+					for (PendingValue value : chunk) {
+						if (apply(groupDn, operation, value)) {
+							value.update.done(null);
+						} else {
+							value.update.done(new LscServiceException("Unable to update member " + value.memberDn + " of group " + groupDn));
+						}
+					}
+				}
+			} catch (CommunicationException e) {
+				for (PendingValue value : values.subList(i, values.size())) {
+					value.update.done(new LscServiceException(e));
+				}
+				return;
+			}
+		}
+	}
+
+	private boolean apply(String groupDn, int operation, PendingValue value) throws CommunicationException {
+		List<PendingValue> single = new ArrayList<PendingValue>(1);
+		single.add(value);
+		return apply(groupDn, operation, single);
+	}
+
+	private boolean apply(String groupDn, int operation, List<PendingValue> values) throws CommunicationException {
+		Attribute attr = new BasicAttribute(memberAttribute);
+		for (PendingValue value : values) {
+			attr.add(value.memberDn);
+		}
+		JndiModifications jm = new JndiModifications(JndiModificationType.MODIFY_ENTRY);
+		jm.setDistinguishName(groupDn);
+		List<ModificationItem> items = new ArrayList<ModificationItem>(1);
+		items.add(new ModificationItem(operation, attr));
+		jm.setModificationItems(items);
+		return jndiServices.apply(jm);
+	}
+
+	/**
+	 * Membership changes coming from one entry. The listener is notified
+	 * once every change has been applied or has failed.
+	 */
+	public static final class MembershipUpdate {
+
+		private final LscModifications lm;
+		private final IApplyListener listener;
+
+		/** Changes not applied yet, plus one until {@link #ready()} is called */
+		private final AtomicInteger pending = new AtomicInteger(1);
+
+		private volatile Exception failure;
+
+		public MembershipUpdate(LscModifications lm, IApplyListener listener) {
+			this.lm = lm;
+			this.listener = listener;
+		}
+
+		/**
+		 * Record a failure which is not related to memberships.
+		 * @param e the cause
+		 */
+		public void fail(Exception e) {
+			if (failure == null) {
+				failure = e;
+			}
+		}
+
+		/**
+		 * All the changes of the entry have been queued.
+		 */
+		public void ready() {
+			done(null);
+		}
+
+		private void expect() {
+			pending.incrementAndGet();
+		}
+
+		private void done(Exception e) {
+			if (e != null) {
+				fail(e);
+			}
+			if (pending.decrementAndGet() == 0) {
+				if (failure == null) {
+					listener.applied(lm);
+				} else {
+					listener.failed(lm, failure);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A member waiting to be added or removed.
+	 */
+	private static final class PendingValue {
+		private final String memberDn;
+		private final MembershipUpdate update;
+
+		private PendingValue(String memberDn, MembershipUpdate update) {
+			this.memberDn = memberDn;
+			this.update = update;
+		}
+	}
+
+	/**
+	 * The pending changes of a group.
+	 */
+	private static final class GroupChanges {
+		private final String groupDn;
+		private final List<PendingValue> additions = new ArrayList<PendingValue>();
+		private final List<PendingValue> removals = new ArrayList<PendingValue>();
+		private final Set<String> added = new HashSet<String>();
+		private final Set<String> removed = new HashSet<String>();
+
+		private GroupChanges(String groupDn) {
+			this.groupDn = groupDn;
+		}
+
+		private void add(PendingValue value, boolean addition) {
+			if (addition) {
+				additions.add(value);
+				added.add(value.memberDn.toLowerCase());
+			} else {
+				removals.add(value);
+				removed.add(value.memberDn.toLowerCase());
+			}
+		}
+
+		private boolean contains(String memberDn, boolean addition) {
+			return (addition ? added : removed).contains(memberDn.toLowerCase());
+		}
+	}
+}
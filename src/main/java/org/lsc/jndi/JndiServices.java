@@ -47,6 +47,7 @@ package org.lsc.jndi;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -54,6 +55,7 @@ import java.util.Hashtable;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
 
 import javax.naming.CommunicationException;
@@ -78,8 +80,6 @@ import javax.naming.ldap.LdapName;
 import javax.naming.ldap.PagedResultsControl;
 import javax.naming.ldap.PagedResultsResponseControl;
 import javax.naming.ldap.SortControl;
-import javax.naming.ldap.StartTlsRequest;
-import javax.naming.ldap.StartTlsResponse;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.NameCallback;
@@ -108,6 +108,9 @@ import org.lsc.configuration.LdapReferralType;
 import org.lsc.configuration.LdapVersionType;
 import org.lsc.exception.LscConfigurationException;
 import org.lsc.exception.LscServiceException;
+import org.lsc.jndi.LdapContextPool.LdapOperation;
+import org.lsc.service.AbstractPivotCursor;
+import org.lsc.service.IPivotCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -128,11 +131,11 @@ public final class JndiServices {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(JndiServices.class);
 
-	/** the ldap ctx. */
-	private LdapContext ctx;
+	/** The pool of LDAP contexts used by the directory operations. */
+	private LdapContextPool pool;
 
-	/** TLSResponse in case we use StartTLS */
-	private StartTlsResponse tlsResponse;
+	/** Single context handed out by {@link #getContext()}, outside of the pool, not thread-safe. */
+	private LdapContext dedicatedCtx;
 
 	/** The context base dn. */
 	private Dn contextDn;
@@ -155,67 +158,24 @@ public final class JndiServices {
 	private Properties connProps;
 	
 	/**
-	 * Initiate the object and the connection according to the properties.
+	 * Initiate the object and the connection pool according to the properties.
 	 *
 	 * @param connProps the connection properties to use to instantiate
-	 * connection
+	 * connections
 	 * @throws NamingException thrown if a directory error is encountered
 	 * @throws IOException thrown if an error occurs negotiating StartTLS operation
 	 */
 	private JndiServices(final Properties connProps) throws NamingException, IOException {
 		this.connProps = connProps;
-		initConnection();
-	}
 
-	private void initConnection()
-			throws NamingException, IOException {
 		// log new connection with it's details
 		logConnectingTo(connProps);
 
-		/* should we negotiate TLS? */
-		if (connProps.get(TLS_CONFIGURATION) != null && (Boolean) connProps.get(TLS_CONFIGURATION)) {
-			/* if we're going to do TLS, we mustn't BIND before the STARTTLS operation
-			 * so we remove credentials from the properties to stop JNDI from binding */
-			/* duplicate properties to avoid changing them (they are used as a cache key in getInstance() */
-			Properties localConnProps = new Properties();
-			localConnProps.putAll(connProps);
-			String jndiContextAuthentication = localConnProps.getProperty(Context.SECURITY_AUTHENTICATION);
-			String jndiContextPrincipal = localConnProps.getProperty(Context.SECURITY_PRINCIPAL);
-			String jndiContextCredentials = localConnProps.getProperty(Context.SECURITY_CREDENTIALS);
-			localConnProps.remove(Context.SECURITY_AUTHENTICATION);
-			localConnProps.remove(Context.SECURITY_PRINCIPAL);
-			localConnProps.remove(Context.SECURITY_CREDENTIALS);
-
-			/* open the connection */
-			ctx = new InitialLdapContext(localConnProps, null);
-
-			/* initiate the STARTTLS extended operation */
-			try {
-				tlsResponse = (StartTlsResponse) ctx.extendedOperation(new StartTlsRequest());
-				tlsResponse.negotiate();
-			} catch (IOException e) {
-				LOGGER.error("Error starting TLS encryption on connection to {}", localConnProps.getProperty(Context.PROVIDER_URL));
-				LOGGER.debug(e.toString(), e);
-				throw e;
-			} catch (NamingException e) {
-				LOGGER.error("Error starting TLS encryption on connection to {}", localConnProps.getProperty(Context.PROVIDER_URL));
-				LOGGER.debug(e.toString(), e);
-				throw e;
-			}
-
-			/* now we add the credentials back to the context, to BIND once TLS is started */
-			ctx.addToEnvironment(Context.SECURITY_AUTHENTICATION, jndiContextAuthentication);
-			ctx.addToEnvironment(Context.SECURITY_PRINCIPAL, jndiContextPrincipal);
-			ctx.addToEnvironment(Context.SECURITY_CREDENTIALS, jndiContextCredentials);
-
-		} else {
-			/* don't start TLS, just connect normally (this can be on ldap:// or ldaps://) */
-			ctx = new InitialLdapContext(connProps, null);
-		}
+		pool = new LdapContextPool(connProps);
 
 		/* get LDAP naming context */
 		try {
-			namingContext = new LdapUrl((String) ctx.getEnvironment().get(Context.PROVIDER_URL));
+			namingContext = new LdapUrl(connProps.getProperty(Context.PROVIDER_URL));
 		} catch (LdapURLEncodingException e) {
 			LOGGER.error(e.toString());
 			LOGGER.debug(e.toString(), e);
@@ -225,16 +185,16 @@ public final class JndiServices {
 		/* handle options */
 		contextDn = namingContext.getDn() != null ?  namingContext.getDn() : null;
 
-		String pageSizeStr = (String) ctx.getEnvironment().get("java.naming.ldap.pageSize");
+		String pageSizeStr = connProps.getProperty("java.naming.ldap.pageSize");
 		if (pageSizeStr != null) {
 			pageSize = Integer.parseInt(pageSizeStr);
 		} else {
 			pageSize = -1;
 		}
 
-		sortedBy = (String) ctx.getEnvironment().get("java.naming.ldap.sortedBy");
+		sortedBy = connProps.getProperty("java.naming.ldap.sortedBy");
 		
-		String recursiveDeleteStr = (String) ctx.getEnvironment().get("java.naming.recursivedelete");
+		String recursiveDeleteStr = connProps.getProperty("java.naming.recursivedelete");
 		if (recursiveDeleteStr != null) {
 			recursiveDelete = Boolean.parseBoolean(recursiveDeleteStr);
 		} else {
@@ -250,6 +210,18 @@ public final class JndiServices {
 		ldapApiService.registerControl(factory);
 	}
 
+	private static boolean isConnectionError(NamingException nex) {
+		return LdapContextPool.isConnectionError(nex);
+	}
+
+	private <T> T execute(LdapOperation<T> operation) throws NamingException {
+		return pool.execute(operation);
+	}
+
+	private <T> T executeOnce(LdapOperation<T> operation) throws NamingException {
+		return pool.executeOnce(operation);
+	}
+
 	private void logConnectingTo(Properties connProps) {
 		if (LOGGER.isInfoEnabled()) {
 			StringBuilder sb = new StringBuilder();
@@ -320,17 +292,31 @@ public final class JndiServices {
         if(forceNewConnection) {
             return new JndiServices(props);
         } else {
-        	if (!cache.containsKey(props)) {
-        		cache.put(props, new JndiServices(props));
-        	}
-        	JndiServices instance = cache.get(props);
-        	if (instance.ctx == null) {
-        		instance.initConnection();
+        	synchronized (cache) {
+        		JndiServices instance = cache.get(props);
+        		if (instance == null) {
+        			instance = new JndiServices(props);
+        			cache.put(props, instance);
+        		}
+        		return instance;
         	}
-			return instance;
         }
 	}
 
+	/**
+	 * Get the status of the connection pools of all cached instances.
+	 * @return one status line per pool
+	 */
+	public static String[] getConnectionPoolsStatus() {
+		synchronized (cache) {
+			List<String> status = new ArrayList<String>();
+			for (JndiServices instance : cache.values()) {
+				status.add(instance.pool.getStatus());
+			}
+			return status.toArray(new String[status.size()]);
+		}
+	}
+
 	public static Properties getLdapProperties(LdapConnectionType connection) throws LscConfigurationException {
 		Properties props = new Properties();
 		props.setProperty(DirContext.INITIAL_CONTEXT_FACTORY, (connection.getFactory() != null ? connection.getFactory() : "com.sun.jndi.ldap.LdapCtxFactory"));
@@ -410,6 +396,18 @@ public final class JndiServices {
         if(connection.isRecursiveDelete() != null) {
             props.setProperty("java.naming.recursivedelete", Boolean.toString(connection.isRecursiveDelete()));
         }
+		if(connection.getPoolMinIdle() != null) {
+			props.setProperty(LdapContextPool.MIN_IDLE, "" + connection.getPoolMinIdle());
+		}
+		if(connection.getPoolMaxSize() != null) {
+			props.setProperty(LdapContextPool.MAX_SIZE, "" + connection.getPoolMaxSize());
+		}
+		if(connection.getPoolValidationInterval() != null) {
+			props.setProperty(LdapContextPool.VALIDATION_INTERVAL, "" + connection.getPoolValidationInterval());
+		}
+		if(connection.getPoolMaxWait() != null) {
+			props.setProperty(LdapContextPool.MAX_WAIT, "" + connection.getPoolMaxWait());
+		}
 
 		return props;
 	}
@@ -526,28 +524,14 @@ public final class JndiServices {
 	 */
 	public SearchResult getEntry(final String base, final String filter,
 					final SearchControls sc, final int scope) throws NamingException {
-		try {
-			return doGetEntry(base, filter, sc, scope);
-		} catch (NamingException nex) {
-			if (nex instanceof CommunicationException || nex instanceof ServiceUnavailableException) {
-				LOGGER.warn("Communication error, retrying: " + nex.getMessage());
-				LOGGER.debug(nex.getMessage(), nex);
-				try {
-					initConnection();
-				} catch (IOException ioex) {
-					LOGGER.error("I/O error: " + ioex.getMessage());
-					LOGGER.debug(ioex.getMessage(), ioex);
-					// throw the initial communication exception
-					throw nex;
-				}
-				return doGetEntry(base, filter, sc, scope);
-			} else {
-				throw nex;
+		return execute(new LdapOperation<SearchResult>() {
+			SearchResult run(LdapContext ctx) throws NamingException {
+				return doGetEntry(ctx, base, filter, sc, scope);
 			}
-		}
+		});
 	}
 
-	private SearchResult doGetEntry(final String base, final String filter,
+	private SearchResult doGetEntry(final LdapContext ctx, final String base, final String filter,
 			final SearchControls sc, final int scope) throws NamingException {
 		//sanity checks
 		String searchBase = base == null ? "" : base;
@@ -591,6 +575,61 @@ public final class JndiServices {
 		return sr;
 	}
 
+	/**
+	 * Search for several entries at once.
+	 *
+	 * This method is a single LDAP search operation returning every matching
+	 * entry, without paging nor sorting: it is meant for filters matching a
+	 * bounded number of entries, like a union of equality assertions.
+	 *
+	 * @param base the base of the search operation
+	 * @param filter the filter of the search operation
+	 * @param scope the scope of the search operation
+	 * @param attrsNames the attribute names to get, or null to get all of them
+	 * @return the search results (never null)
+	 * @throws NamingException thrown if something goes wrong
+	 */
+	public List<SearchResult> getEntries(final String base, final String filter,
+					final int scope, final List<String> attrsNames) throws NamingException {
+		return execute(new LdapOperation<List<SearchResult>>() {
+			List<SearchResult> run(LdapContext ctx) throws NamingException {
+				return doGetEntries(ctx, base, filter, scope, attrsNames);
+			}
+		});
+	}
+
+	private List<SearchResult> doGetEntries(final LdapContext ctx, final String base,
+			final String filter, final int scope, final List<String> attrsNames) throws NamingException {
+		String searchBase = base == null ? "" : rewriteBase(base);
+		String searchFilter = filter == null ? DEFAULT_FILTER : filter;
+
+		SearchControls constraints = new SearchControls();
+		constraints.setDerefLinkFlag(false);
+		if (attrsNames != null) {
+			constraints.setReturningAttributes(attrsNames.toArray(new String[attrsNames.size()]));
+		}
+		constraints.setSearchScope(scope);
+		constraints.setReturningObjFlag(true);
+
+		List<SearchResult> res = new ArrayList<SearchResult>();
+		NamingEnumeration<SearchResult> results = null;
+		try {
+			results = ctx.search(searchBase, searchFilter, constraints);
+			while (results.hasMore()) {
+				res.add(results.next());
+			}
+		} catch (NamingException nex) {
+			LOGGER.error("Error while looking for {} in {}: {}",
+							new Object[] { searchFilter, searchBase, nex });
+			throw nex;
+		} finally {
+			if (results != null) {
+				results.close();
+			}
+		}
+		return res;
+	}
+
 	/**
 	 * Check if the entry with the specified distinguish name exists (or
 	 * not).
@@ -664,28 +703,14 @@ public final class JndiServices {
 
 	public SearchResult readEntry(final String base, final String filter,
 					final boolean allowError, final SearchControls sc) throws NamingException {
-		try {
-			return doReadEntry(base, filter, allowError, sc);
-		} catch (NamingException nex) {
-			if (nex instanceof CommunicationException || nex instanceof ServiceUnavailableException) {
-				LOGGER.info("Communication error, retrying: " + nex.getMessage());
-				LOGGER.debug(nex.getMessage(), nex);
-				try {
-					initConnection();
-				} catch (IOException ioex) {
-					LOGGER.error("I/O error: " + ioex.getMessage());
-					LOGGER.debug(ioex.getMessage(), ioex);
-					// throw the initial communication exception
-					throw nex;
-				}
-				return doReadEntry(base, filter, allowError, sc);
-			} else {
-				throw nex;
+		return execute(new LdapOperation<SearchResult>() {
+			SearchResult run(LdapContext ctx) throws NamingException {
+				return doReadEntry(ctx, base, filter, allowError, sc);
 			}
-		}
+		});
 	}
 	
-	private SearchResult doReadEntry(final String base, final String filter,
+	private SearchResult doReadEntry(final LdapContext ctx, final String base, final String filter,
 			final boolean allowError, final SearchControls sc) throws NamingException {
 		NamingEnumeration<SearchResult> ne = null;
 		sc.setSearchScope(SearchControls.OBJECT_SCOPE);
@@ -732,28 +757,14 @@ public final class JndiServices {
 	 */
 	public List<String> getDnList(final String base, final String filter,
 					final int scope) throws NamingException {
-		try {
-			return doGetDnList(base, filter, scope);
-		} catch (NamingException nex) {
-			if (nex instanceof CommunicationException || nex instanceof ServiceUnavailableException) {
-				LOGGER.warn("Communication error, retrying: " + nex.getMessage());
-				LOGGER.debug(nex.getMessage(), nex);
-				try {
-					initConnection();
-				} catch (IOException ioex) {
-					LOGGER.error("I/O error: " + ioex.getMessage());
-					LOGGER.debug(ioex.getMessage(), ioex);
-					// throw the initial communication exception
-					throw nex;
-				}
-				return doGetDnList(base, filter, scope);
-			} else {
-				throw nex;
+		return execute(new LdapOperation<List<String>>() {
+			List<String> run(LdapContext ctx) throws NamingException {
+				return doGetDnList(ctx, base, filter, scope);
 			}
-		}
+		});
 	}
 	
-	private List<String> doGetDnList(final String base, final String filter,
+	private List<String> doGetDnList(final LdapContext ctx, final String base, final String filter,
 			final int scope) throws NamingException {
 		NamingEnumeration<SearchResult> ne = null;
 		List<String> iist = new ArrayList<String>();
@@ -791,28 +802,24 @@ public final class JndiServices {
 	 */
 	public boolean apply(final JndiModifications jm) throws CommunicationException {
 		try {
-			return doApply(jm);
+			return execute(new LdapOperation<Boolean>() {
+				Boolean run(LdapContext ctx) throws NamingException {
+					return doApply(ctx, jm);
+				}
+			});
 		} catch (CommunicationException cex) {
-			LOGGER.warn("Communication error, retrying: " + cex.getMessage());
-			LOGGER.debug(cex.getMessage(), cex);
-			try {
-				initConnection();
-			} catch (IOException ioex) {
-				LOGGER.error("I/O error: " + ioex.getMessage());
-				LOGGER.debug(ioex.getMessage(), ioex);
-				// throw the initial communication exception
-				throw cex;
-			} catch (NamingException nex) {
-				LOGGER.error("Naming error: " + nex.getMessage());
-				LOGGER.debug(nex.getMessage(), nex);
-				// throw the initial communication exception
-				throw cex;
-			}
-			return doApply(jm);
+			throw cex;
+		} catch (NamingException nex) {
+			// no connection could be borrowed from the pool
+			LOGGER.error("Naming error: " + nex.getMessage());
+			LOGGER.debug(nex.getMessage(), nex);
+			CommunicationException cex = new CommunicationException(nex.getExplanation());
+			cex.setRootCause(nex);
+			throw cex;
 		}
 	}
 
-	private boolean doApply(final JndiModifications jm) throws CommunicationException {
+	private boolean doApply(final LdapContext ctx, final JndiModifications jm) throws CommunicationException {
 		if (jm == null) {
 			return true;
 		}
@@ -828,7 +835,7 @@ public final class JndiServices {
 
 				case DELETE_ENTRY:
 					if (recursiveDelete) {
-						deleteChildrenRecursively(rewriteBase(jm.getDistinguishName()));
+						deleteChildrenRecursively(ctx, rewriteBase(jm.getDistinguishName()));
 					} else {
 						ctx.destroySubcontext(new LdapName(rewriteBase(jm.getDistinguishName())));
 					}
@@ -903,41 +910,18 @@ public final class JndiServices {
 
 	/**
 	 * Delete children recursively
+	 * @param ctx the context to use
 	 * @param distinguishName the tree head to delete
 	 * @throws NamingException thrown if an error is encountered
 	 */
-	private void deleteChildrenRecursively(String distinguishName) throws NamingException {
-		try {
-			doDeleteChildrenRecursively(distinguishName);
-			return;
-		} catch (NamingException nex) {
-			if (nex instanceof CommunicationException || nex instanceof ServiceUnavailableException) {
-				LOGGER.warn("Communication error, retrying: " + nex.getMessage());
-				LOGGER.debug(nex.getMessage(), nex);
-				try {
-					initConnection();
-				} catch (IOException ioex) {
-					LOGGER.error("I/O error: " + ioex.getMessage());
-					LOGGER.debug(ioex.getMessage(), ioex);
-					// throw the initial communication exception
-					throw nex;
-				}
-				doDeleteChildrenRecursively(distinguishName);
-				return;
-			} else {
-				throw nex;
-			}
-		}
-	}
-
-	private void doDeleteChildrenRecursively(String distinguishName) throws NamingException {
+	private void deleteChildrenRecursively(LdapContext ctx, String distinguishName) throws NamingException {
 		SearchControls sc = new SearchControls();
 		sc.setSearchScope(SearchControls.ONELEVEL_SCOPE);
 		NamingEnumeration<SearchResult> ne = ctx.search(distinguishName, DEFAULT_FILTER, sc);
 		while (ne.hasMore()) {
 			SearchResult sr = (SearchResult) ne.next();
 			String childrenDn = rewriteBase(sr.getName() + "," + distinguishName);
-			deleteChildrenRecursively(childrenDn);
+			deleteChildrenRecursively(ctx, childrenDn);
 		}
 		ctx.destroySubcontext(new LdapName(distinguishName));
 	}
@@ -978,7 +962,7 @@ public final class JndiServices {
 		Map<String, List<String>> attrsResult = new HashMap<String, List<String>>();
 
 		// connect to directory
-		Hashtable<String, String> props = (Hashtable<String, String>) ctx.getEnvironment();
+		Hashtable<Object, Object> props = new Hashtable<Object, Object>(connProps);
 		String baseUrl = (String) props.get(Context.PROVIDER_URL);
 		baseUrl = baseUrl.substring(0, baseUrl.lastIndexOf('/'));
 		props.put(Context.PROVIDER_URL, baseUrl);
@@ -1064,25 +1048,11 @@ public final class JndiServices {
 	public Map<String, LscDatasets> getAttrsList(final String base,
 					final String filter, final int scope, final List<String> attrsNames)
 					throws NamingException {
-		try {
-			return doGetAttrsList(base, filter, scope, attrsNames);
-		} catch (NamingException nex) {
-			if (nex instanceof CommunicationException || nex instanceof ServiceUnavailableException) {
-				LOGGER.warn("Communication error, retrying: " + nex.getMessage());
-				LOGGER.debug(nex.getMessage(), nex);
-				try {
-					initConnection();
-				} catch (IOException ioex) {
-					LOGGER.error("I/O error: " + ioex.getMessage());
-					LOGGER.debug(ioex.getMessage(), ioex);
-					// throw the initial communication exception
-					throw nex;
-				}
-				return doGetAttrsList(base, filter, scope, attrsNames);
-			} else {
-				throw nex;
+		return execute(new LdapOperation<Map<String, LscDatasets>>() {
+			Map<String, LscDatasets> run(LdapContext ctx) throws NamingException {
+				return doGetAttrsList(ctx, base, filter, scope, attrsNames);
 			}
-		}
+		});
 	}
 
     /**
@@ -1123,6 +1093,16 @@ public final class JndiServices {
 	public Map<String, LscDatasets> doGetAttrsList(final String base,
 			final String filter, final int scope, final List<String> attrsNames)
 			throws NamingException {
+		return executeOnce(new LdapOperation<Map<String, LscDatasets>>() {
+			Map<String, LscDatasets> run(LdapContext ctx) throws NamingException {
+				return doGetAttrsList(ctx, base, filter, scope, attrsNames);
+			}
+		});
+	}
+
+	private Map<String, LscDatasets> doGetAttrsList(final LdapContext ctx, final String base,
+			final String filter, final int scope, final List<String> attrsNames)
+			throws NamingException {
 
 		// sanity checks
 		String searchBase = base == null ? "" : rewriteBase(base);
@@ -1171,21 +1151,9 @@ public final class JndiServices {
 				NamingEnumeration<SearchResult> results = ctx.search(searchBase, searchFilter, constraints);
 
 				if (results != null) {
-					Map<String, Object> attrsValues = null;
 					while (results.hasMoreElements()) {
-						attrsValues = new HashMap<String, Object>();
-
 						SearchResult ldapResult = (SearchResult) results.next();
-
-						// get the value for each attribute requested
-						for (String attributeName : attrsNames) {
-							Attribute attr = ldapResult.getAttributes().get(attributeName);
-							if (attr != null && attr.get() != null) {
-								attrsValues.put(attributeName, attr.get());
-							}
-						}
-
-						res.put(ldapResult.getNameInNamespace(), new LscDatasets(attrsValues));
+						res.put(ldapResult.getNameInNamespace(), getDatasets(ldapResult, attrsNames));
 					}
 				}
 				
@@ -1230,6 +1198,248 @@ public final class JndiServices {
 		return res;
 	}
 
+	/**
+	 * Get the first value of each requested attribute of a search result.
+	 */
+	static LscDatasets getDatasets(SearchResult ldapResult, List<String> attrsNames) throws NamingException {
+		Map<String, Object> attrsValues = new HashMap<String, Object>();
+		for (String attributeName : attrsNames) {
+			Attribute attr = ldapResult.getAttributes().get(attributeName);
+			if (attr != null && attr.get() != null) {
+				attrsValues.put(attributeName, attr.get());
+			}
+		}
+		return new LscDatasets(attrsValues);
+	}
+
+	/**
+	 * Convert the search results read through a cursor.
+	 */
+	public interface SearchResultConverter {
+
+		/**
+		 * @param ldapResult the search result
+		 * @return the entry to be returned by the cursor
+		 * @throws NamingException thrown if the search result could not be read
+		 */
+		Entry<String, LscDatasets> convert(SearchResult ldapResult) throws NamingException;
+	}
+
+	/**
+	 * Search for a list of attribute values, reading the results while they
+	 * are consumed
+	 *
+	 * Same as {@link #getAttrsList(String, String, int, List)}, but the
+	 * results are returned through a cursor: the next page is only requested
+	 * from the directory once the previous one has been read. The cursor
+	 * holds a pooled connection until it is closed.
+	 *
+	 * @param base the base of the search operation
+	 * @param filter the filter of the search operation
+	 * @param scope the scope of the search operation
+	 * @param attrsNames table of attribute names to get
+	 * @return the cursor on the DNs of the returned entries with their attribute values
+	 * @throws NamingException thrown if the search could not be started
+	 */
+	public IPivotCursor getAttrsCursor(final String base, final String filter,
+					final int scope, final List<String> attrsNames) throws NamingException {
+		if (attrsNames == null || attrsNames.size() == 0) {
+			LOGGER.error("No attribute names to read! Check configuration.");
+			return AbstractPivotCursor.fromMap(Collections.<String, LscDatasets>emptyMap());
+		}
+		return getSearchCursor(base, filter, scope, attrsNames, new SearchResultConverter() {
+			public Entry<String, LscDatasets> convert(SearchResult ldapResult) throws NamingException {
+				return new SimpleImmutableEntry<String, LscDatasets>(ldapResult.getNameInNamespace(),
+								getDatasets(ldapResult, attrsNames));
+			}
+		});
+	}
+
+	/**
+	 * Search for entries, reading the results while they are consumed
+	 *
+	 * @param base the base of the search operation
+	 * @param filter the filter of the search operation
+	 * @param scope the scope of the search operation
+	 * @param attrsNames the attribute names to get, or null for all user attributes
+	 * @param converter builds the entries returned by the cursor
+	 * @return the cursor
+	 * @throws NamingException thrown if the search could not be started
+	 * @see #getAttrsCursor(String, String, int, List)
+	 */
+	public IPivotCursor getSearchCursor(final String base, final String filter,
+					final int scope, final List<String> attrsNames, SearchResultConverter converter)
+					throws NamingException {
+		return openCursor(base, filter, scope, attrsNames, sortedBy, converter);
+	}
+
+	/**
+	 * Search for entries sorted by the directory, reading the results while
+	 * they are consumed
+	 *
+	 * The directory is asked to sort the results on the given attribute with
+	 * the server side sort control, which is sent again with each page.
+	 *
+	 * @param base the base of the search operation
+	 * @param filter the filter of the search operation
+	 * @param scope the scope of the search operation
+	 * @param attrsNames the attribute names to get, or null for all user attributes
+	 * @param sortAttribute the attribute name to sort on
+	 * @param converter builds the entries returned by the cursor
+	 * @return the cursor, in the order returned by the directory
+	 * @throws NamingException thrown if the search could not be started
+	 */
+	public IPivotCursor getSortedSearchCursor(final String base, final String filter,
+					final int scope, final List<String> attrsNames, final String sortAttribute,
+					SearchResultConverter converter) throws NamingException {
+		return openCursor(base, filter, scope, attrsNames, sortAttribute, converter);
+	}
+
+	private IPivotCursor openCursor(final String base, final String filter,
+					final int scope, final List<String> attrsNames, final String sortAttribute,
+					SearchResultConverter converter) throws NamingException {
+		LdapContext ctx = pool.borrow();
+		try {
+			return new PagedSearchCursor(ctx, base, filter, scope, attrsNames, sortAttribute, converter);
+		} catch (NamingException e) {
+			if (isConnectionError(e)) {
+				pool.invalidate(ctx);
+			} else {
+				pool.release(ctx);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * The cursor returned by {@link JndiServices#getSearchCursor(String, String, int, List, SearchResultConverter)}.
+	 */
+	private final class PagedSearchCursor extends AbstractPivotCursor {
+
+		private LdapContext ctx;
+
+		private final String searchBase;
+
+		private final String searchFilter;
+
+		private final SearchControls constraints;
+
+		private final SearchResultConverter converter;
+
+		/** The server side sort control, null if the results are not sorted */
+		private final SortControl sortControl;
+
+		private NamingEnumeration<SearchResult> results;
+
+		private PagedSearchCursor(LdapContext ctx, String base, String filter, int scope,
+						List<String> attrsNames, String sortAttribute, SearchResultConverter converter)
+						throws NamingException {
+			this.ctx = ctx;
+			this.searchBase = base == null ? "" : rewriteBase(base);
+			this.searchFilter = filter == null ? DEFAULT_FILTER : filter;
+			this.converter = converter;
+
+			constraints = new SearchControls();
+			constraints.setDerefLinkFlag(false);
+			if (attrsNames != null) {
+				constraints.setReturningAttributes(attrsNames.toArray(new String[attrsNames.size()]));
+			}
+			constraints.setSearchScope(scope);
+			constraints.setReturningObjFlag(true);
+
+			List<Control> extControls = new ArrayList<Control>();
+			try {
+				if (pageSize > 0) {
+					LOGGER.debug("Using pagedResults control for {} entries at a time", pageSize);
+					extControls.add(new PagedResultsControl(pageSize, Control.CRITICAL));
+				}
+				sortControl = sortAttribute != null ? new SortControl(sortAttribute, Control.CRITICAL) : null;
+				if (sortControl != null) {
+					extControls.add(sortControl);
+				}
+			} catch (IOException e) {
+				NamingException ne = new NamingException(e.toString());
+				ne.setRootCause(e);
+				throw ne;
+			}
+			if (extControls.size() > 0) {
+				ctx.setRequestControls(extControls.toArray(new Control[extControls.size()]));
+			}
+			results = ctx.search(searchBase, searchFilter, constraints);
+		}
+
+		@Override
+		protected Entry<String, LscDatasets> fetch() throws LscServiceException {
+			try {
+				while (results != null) {
+					if (results.hasMore()) {
+						return converter.convert(results.next());
+					}
+					results = nextPage();
+				}
+				return null;
+			} catch (NamingException e) {
+				fail(e);
+				throw new LscServiceException(e);
+			} catch (IOException e) {
+				fail(e);
+				throw new LscServiceException(e);
+			}
+		}
+
+		/**
+		 * Request the next page of results, if any.
+		 */
+		private NamingEnumeration<SearchResult> nextPage() throws NamingException, IOException {
+			if (pageSize <= 0) {
+				return null;
+			}
+			byte[] cookie = null;
+			Control[] respCtls = ctx.getResponseControls();
+			if (respCtls != null) {
+				for (Control respCtl : respCtls) {
+					if (respCtl instanceof PagedResultsResponseControl) {
+						cookie = ((PagedResultsResponseControl) respCtl).getCookie();
+					}
+				}
+			}
+			if (cookie == null) {
+				return null;
+			}
+			Control pagedControl = new PagedResultsControl(pageSize, cookie, Control.CRITICAL);
+			// the sort control must be sent again with each page
+			ctx.setRequestControls(sortControl != null ? new Control[] { pagedControl, sortControl }
+							: new Control[] { pagedControl });
+			return ctx.search(searchBase, searchFilter, constraints);
+		}
+
+		private void fail(Exception e) {
+			results = null;
+			if (ctx != null && e instanceof NamingException && isConnectionError((NamingException) e)) {
+				pool.invalidate(ctx);
+				ctx = null;
+			} else {
+				close();
+			}
+		}
+
+		public void close() {
+			if (results != null) {
+				try {
+					// abandon the rest of the search
+					results.close();
+				} catch (NamingException e) {
+					LOGGER.debug(e.toString(), e);
+				}
+				results = null;
+			}
+			if (ctx != null) {
+				pool.release(ctx);
+				ctx = null;
+			}
+		}
+	}
+
 	/**
 	 * @return the contextDn
 	 */
@@ -1238,31 +1448,75 @@ public final class JndiServices {
 	}
 
 	/**
-	 * Close connection before this object is deleted by the garbage collector.
+	 * Close connections before this object is deleted by the garbage collector.
 	 * @see java.lang.Object#finalize()
 	 */
 	@Override
 	protected void finalize() throws Throwable {
-		// Close the TLS connection (revert back to the underlying LDAP association)
-		if (tlsResponse != null) {
-			tlsResponse.close();
+		// Close the pooled connections to the LDAP server
+		if (pool != null) {
+			pool.close();
 		}
 
-		// Close the connection to the LDAP server
-		if (ctx != null) {
-			ctx.close();
-			ctx = null;
+		if (dedicatedCtx != null) {
+			dedicatedCtx.close();
+			dedicatedCtx = null;
 		}
 
 		super.finalize();
 	}
 
 	/**
-	 * Get the JNDI context.
-	 * @return The LDAP context object in use by this class.
+	 * Borrow an LDAP context from the connection pool. It must be given back
+	 * with {@link #releaseContext(LdapContext)}, or with
+	 * {@link #invalidateContext(LdapContext)} if its connection was lost.
+	 * @return a connected LDAP context, for the use of the calling thread only
+	 * @throws NamingException if no connection is available
 	 */
-	public LdapContext getContext() {
-		return ctx;
+	public LdapContext borrowContext() throws NamingException {
+		return pool.borrow();
+	}
+
+	/**
+	 * Give a context back to the connection pool.
+	 * @param ctx the context returned by {@link #borrowContext()}
+	 */
+	public void releaseContext(LdapContext ctx) {
+		pool.release(ctx);
+	}
+
+	/**
+	 * Close a borrowed context whose connection is broken.
+	 * @param ctx the context returned by {@link #borrowContext()}
+	 */
+	public void invalidateContext(LdapContext ctx) {
+		pool.invalidate(ctx);
+	}
+
+	/**
+	 * Get a JNDI context which is not shared with the connection pool.
+	 *
+	 * This context is opened once and the same one is returned to every
+	 * caller of this instance, as before pooling. A JNDI context is not
+	 * thread-safe: its request controls and paged results cookies are shared,
+	 * so it must not be used by several threads at once, and it must not be
+	 * closed by the caller.
+	 * @return The LDAP context object shared by all the callers of this method.
+	 * @deprecated directory operations now use pooled contexts, use
+	 * {@link #borrowContext()} and {@link #releaseContext(LdapContext)} instead
+	 */
+	@Deprecated
+	public synchronized LdapContext getContext() {
+		if (dedicatedCtx == null) {
+			try {
+				dedicatedCtx = pool.open();
+			} catch (NamingException e) {
+				throw new RuntimeException(e);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return dedicatedCtx;
 	}
 
 	public String completeDn(String dn) {
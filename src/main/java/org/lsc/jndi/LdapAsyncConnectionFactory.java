@@ -0,0 +1,212 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.jndi;
+
+import java.io.File;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.naming.CommunicationException;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.apache.directory.api.ldap.codec.api.DefaultConfigurableBinaryAttributeDetector;
+import org.apache.directory.api.ldap.model.constants.SaslQoP;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapURLEncodingException;
+import org.apache.directory.api.ldap.model.message.BindResponse;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.url.LdapUrl;
+import org.apache.directory.ldap.client.api.LdapAsyncConnection;
+import org.apache.directory.ldap.client.api.LdapConnectionConfig;
+import org.apache.directory.ldap.client.api.LdapNetworkConnection;
+import org.apache.directory.ldap.client.api.SaslDigestMd5Request;
+import org.apache.directory.ldap.client.api.SaslGssApiRequest;
+import org.apache.directory.ldap.client.api.SaslRequest;
+import org.lsc.Configuration;
+import org.lsc.configuration.LdapAuthenticationType;
+import org.lsc.configuration.LdapConnectionType;
+import org.lsc.configuration.SaslQopType;
+import org.lsc.exception.LscServiceConfigurationException;
+import org.lsc.exception.LscServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Open asynchronous connections with the same settings as the JNDI
+ * connections of {@link JndiServices}: ldaps or StartTLS, binary
+ * attributes, and simple, DIGEST-MD5 or GSSAPI authentication with the
+ * configured quality of protection and mutual authentication.
+ */
+public final class LdapAsyncConnectionFactory {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LdapAsyncConnectionFactory.class);
+
+	private LdapAsyncConnectionFactory() {
+	}
+
+	/**
+	 * Connect and bind to a directory.
+	 *
+	 * @param ldapConn the connection settings
+	 * @return the bound connection, to be closed by the caller
+	 * @throws LscServiceConfigurationException if the settings are not usable
+	 * @throws LscServiceException wrapping a {@link CommunicationException}
+	 *             if the directory could not be reached or refused the bind
+	 */
+	public static LdapAsyncConnection open(LdapConnectionType ldapConn) throws LscServiceException {
+		LdapNetworkConnection conn = new LdapNetworkConnection(getConfig(ldapConn));
+		try {
+			if (!conn.connect()) {
+				throw new LdapException("Unable to connect to " + ldapConn.getUrl());
+			}
+			bind(conn, ldapConn);
+			return conn;
+		} catch (LdapException e) {
+			close(conn);
+			CommunicationException ce = new CommunicationException(e.toString());
+			ce.setRootCause(e);
+			throw new LscServiceException(ce);
+		} catch (RuntimeException e) {
+			close(conn);
+			throw e;
+		}
+	}
+
+	private static LdapConnectionConfig getConfig(LdapConnectionType ldapConn) throws LscServiceConfigurationException {
+		LdapUrl url;
+		try {
+			url = new LdapUrl(ldapConn.getUrl());
+		} catch (LdapURLEncodingException e) {
+			throw new LscServiceConfigurationException(e.toString(), e);
+		}
+		boolean isLdaps = "ldaps://".equalsIgnoreCase(url.getScheme());
+		int port = url.getPort();
+		if (port == -1) {
+			port = isLdaps ? 636 : 389;
+		}
+
+		LdapConnectionConfig lcc = new LdapConnectionConfig();
+		lcc.setLdapHost(url.getHost());
+		lcc.setLdapPort(port);
+		lcc.setUseSsl(isLdaps);
+		// StartTLS is negotiated by the connection before binding
+		lcc.setUseTls(Boolean.TRUE.equals(ldapConn.isTlsActivated()));
+
+		/* Use default SUN TrustManager. See https://issues.apache.org/jira/browse/DIRAPI-91 */
+		try {
+			TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+			tmf.init((KeyStore) null);
+			lcc.setTrustManagers(tmf.getTrustManagers());
+		} catch (NoSuchAlgorithmException e) {
+			throw new LscServiceConfigurationException(e.toString(), e);
+		} catch (KeyStoreException e) {
+			throw new LscServiceConfigurationException(e.toString(), e);
+		}
+
+		if (ldapConn.getBinaryAttributes() != null) {
+			DefaultConfigurableBinaryAttributeDetector bad = new DefaultConfigurableBinaryAttributeDetector();
+			bad.addBinaryAttribute(ldapConn.getBinaryAttributes().getString().toArray(new String[0]));
+			lcc.setBinaryAttributeDetector(bad);
+		}
+		return lcc;
+	}
+
+	private static void bind(LdapNetworkConnection conn, LdapConnectionType ldapConn)
+					throws LdapException, LscServiceConfigurationException {
+		LdapAuthenticationType authentication = ldapConn.getAuthentication();
+		if (ldapConn.getUsername() == null || authentication == LdapAuthenticationType.NONE) {
+			conn.anonymousBind();
+			return;
+		}
+		if (authentication == null || authentication == LdapAuthenticationType.SIMPLE) {
+			conn.bind(ldapConn.getUsername(), ldapConn.getPassword());
+			return;
+		}
+
+		BindResponse response;
+		if (authentication == LdapAuthenticationType.DIGEST_MD_5) {
+			SaslDigestMd5Request request = new SaslDigestMd5Request();
+			setSaslSettings(request, ldapConn);
+			response = conn.bind(request);
+		} else if (authentication == LdapAuthenticationType.GSSAPI) {
+			SaslGssApiRequest request = new SaslGssApiRequest();
+			setSaslSettings(request, ldapConn);
+			// same Kerberos and JAAS settings as the JNDI connections
+			request.setKrb5ConfFilePath(new File(Configuration.getConfigurationDirectory(), "krb5.ini").getAbsolutePath());
+			request.setLoginContextName(JndiServices.class.getName());
+			response = conn.bind(request);
+		} else {
+			throw new LscServiceConfigurationException("Authentication " + authentication.value()
+							+ " is not supported on asynchronous connections to " + ldapConn.getUrl());
+		}
+		if (response == null || response.getLdapResult().getResultCode() != ResultCodeEnum.SUCCESS) {
+			throw new LdapException("Unable to bind to " + ldapConn.getUrl() + " as " + ldapConn.getUsername()
+							+ (response != null ? ": " + response.getLdapResult().getResultCode() : ""));
+		}
+	}
+
+	private static void setSaslSettings(SaslRequest request, LdapConnectionType ldapConn) {
+		request.setUsername(ldapConn.getUsername());
+		request.setCredentials(ldapConn.getPassword());
+		request.setMutualAuthentication(Boolean.TRUE.equals(ldapConn.isSaslMutualAuthentication()));
+		if (ldapConn.getSaslQop() == SaslQopType.AUTH_INT) {
+			request.setQualityOfProtection(SaslQoP.AUTH_INT);
+		} else if (ldapConn.getSaslQop() == SaslQopType.AUTH_CONF) {
+			request.setQualityOfProtection(SaslQoP.AUTH_CONF);
+		} else {
+			request.setQualityOfProtection(SaslQoP.AUTH);
+		}
+	}
+
+	private static void close(LdapNetworkConnection conn) {
+		try {
+			conn.close();
+		} catch (Exception e) {
+			LOGGER.debug(e.toString(), e);
+		}
+	}
+}
@@ -0,0 +1,515 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ * Copyright (c) 2008 - 2011 LSC Project
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.jndi;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.CommunicationException;
+import javax.naming.Context;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.directory.SearchControls;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.StartTlsRequest;
+import javax.naming.ldap.StartTlsResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of LDAP contexts sharing the same connection properties.
+ *
+ * An LDAP context is not thread safe: request controls and paged results
+ * cookies are attached to the context itself. Each directory operation
+ * therefore borrows its own context from this pool and gives it back once
+ * done, so that parallel synchronization threads get parallel connections.
+ *
+ * Contexts are opened with the same properties as a single connection
+ * would be (StartTLS is negotiated before binding, SASL settings are passed
+ * through), they are checked with a base object search when they have been
+ * idle for too long, and are dropped when the connection is found broken.
+ */
+public class LdapContextPool {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LdapContextPool.class);
+
+	/** Connection property holding the minimum number of idle connections */
+	public static final String MIN_IDLE = "java.naming.ldap.pool.minIdle";
+
+	/** Connection property holding the maximum number of connections */
+	public static final String MAX_SIZE = "java.naming.ldap.pool.maxSize";
+
+	/** Connection property holding the idle time (ms) after which a connection is checked */
+	public static final String VALIDATION_INTERVAL = "java.naming.ldap.pool.validationInterval";
+
+	/** Connection property holding the maximum time (ms) to wait for a free connection */
+	public static final String MAX_WAIT = "java.naming.ldap.pool.maxWait";
+
+	public static final int DEFAULT_MIN_IDLE = 1;
+	public static final int DEFAULT_MAX_SIZE = 10;
+	public static final long DEFAULT_VALIDATION_INTERVAL = 60000;
+	public static final long DEFAULT_MAX_WAIT = 60000;
+
+	/** The properties used to open each connection */
+	private final Properties connProps;
+
+	private final int minIdle;
+	private final int maxSize;
+	private final long validationInterval;
+	private final long maxWait;
+
+	/** One permit per connection that may be borrowed */
+	private final Semaphore permits;
+
+	/** Connections ready to be borrowed */
+	private final ConcurrentLinkedQueue<PooledContext> idle;
+
+	/** Connections currently borrowed, by context */
+	private final Map<LdapContext, PooledContext> active;
+
+	/** Set once the pool is closed: the contexts given back are then closed too */
+	private volatile boolean closed;
+
+	private final AtomicLong created = new AtomicLong();
+	private final AtomicLong destroyed = new AtomicLong();
+	private final AtomicLong borrowed = new AtomicLong();
+	private final AtomicLong waited = new AtomicLong();
+	private final AtomicLong validationFailures = new AtomicLong();
+
+	/**
+	 * Create the pool and open the minimum number of idle connections.
+	 * At least one connection is opened so that configuration or network
+	 * errors are reported immediately.
+	 *
+	 * @param connProps the connection properties
+	 * @throws NamingException thrown if a directory error is encountered
+	 * @throws IOException thrown if an error occurs negotiating StartTLS operation
+	 */
+	public LdapContextPool(Properties connProps) throws NamingException, IOException {
+		this.connProps = connProps;
+		this.maxSize = Math.max(1, getInt(connProps, MAX_SIZE, DEFAULT_MAX_SIZE));
+		this.minIdle = Math.min(maxSize, Math.max(0, getInt(connProps, MIN_IDLE, DEFAULT_MIN_IDLE)));
+		this.validationInterval = getLong(connProps, VALIDATION_INTERVAL, DEFAULT_VALIDATION_INTERVAL);
+		this.maxWait = getLong(connProps, MAX_WAIT, DEFAULT_MAX_WAIT);
+		this.permits = new Semaphore(maxSize, true);
+		this.idle = new ConcurrentLinkedQueue<PooledContext>();
+		this.active = new ConcurrentHashMap<LdapContext, PooledContext>();
+
+		idle.add(create());
+		for (int i = 1; i < minIdle; i++) {
+			idle.add(create());
+		}
+	}
+
+	/**
+	 * Borrow a context. It must be handed back with {@link #release(LdapContext)}
+	 * or, if its connection is broken, with {@link #invalidate(LdapContext)}.
+	 *
+	 * @return a connected context
+	 * @throws NamingException if no connection can be opened, or none became
+	 *             available within the configured wait time
+	 */
+	public LdapContext borrow() throws NamingException {
+		acquirePermit();
+		try {
+			PooledContext pooled = null;
+			while (pooled == null) {
+				pooled = idle.poll();
+				if (pooled == null) {
+					pooled = create();
+				} else if (validationInterval >= 0
+								&& System.currentTimeMillis() - pooled.lastUsed > validationInterval
+								&& !isValid(pooled)) {
+					validationFailures.incrementAndGet();
+					destroy(pooled);
+					pooled = null;
+				}
+			}
+			active.put(pooled.ctx, pooled);
+			borrowed.incrementAndGet();
+			return pooled.ctx;
+		} catch (IOException e) {
+			permits.release();
+			CommunicationException ce = new CommunicationException(e.getMessage());
+			ce.setRootCause(e);
+			throw ce;
+		} catch (NamingException e) {
+			permits.release();
+			throw e;
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Give a borrowed context back to the pool.
+	 * @param ctx the context, as returned by {@link #borrow()}
+	 */
+	public void release(LdapContext ctx) {
+		PooledContext pooled = active.remove(ctx);
+		if (pooled == null) {
+			LOGGER.warn("Trying to release an LDAP context which does not belong to this pool");
+			return;
+		}
+		try {
+			// request controls are kept by the context, reset them for the next borrower
+			ctx.setRequestControls(null);
+			pooled.lastUsed = System.currentTimeMillis();
+			idle.add(pooled);
+			if (closed) {
+				// the pool may have been closed while the context was added
+				closeIdle();
+			}
+		} catch (NamingException e) {
+			LOGGER.debug(e.toString(), e);
+			destroy(pooled);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Close a borrowed context whose connection is broken instead of giving
+	 * it back, and reopen idle connections if we are under the minimum.
+	 * @param ctx the context, as returned by {@link #borrow()}
+	 */
+	public void invalidate(LdapContext ctx) {
+		PooledContext pooled = active.remove(ctx);
+		if (pooled == null) {
+			LOGGER.warn("Trying to invalidate an LDAP context which does not belong to this pool");
+			return;
+		}
+		destroy(pooled);
+		permits.release();
+		ensureMinIdle();
+	}
+
+	/**
+	 * A directory operation run on a borrowed context.
+	 */
+	abstract static class LdapOperation<T> {
+		abstract T run(LdapContext ctx) throws NamingException;
+	}
+
+	/**
+	 * Tell whether an error means that the connection itself is broken.
+	 */
+	static boolean isConnectionError(NamingException nex) {
+		return nex instanceof CommunicationException || nex instanceof ServiceUnavailableException;
+	}
+
+	/**
+	 * Run an operation on a pooled context, retrying once on a fresh
+	 * connection if the first one turns out to be broken.
+	 */
+	<T> T execute(LdapOperation<T> operation) throws NamingException {
+		try {
+			return executeOnce(operation);
+		} catch (NamingException nex) {
+			if (isConnectionError(nex)) {
+				LOGGER.warn("Communication error, retrying: " + nex.getMessage());
+				LOGGER.debug(nex.getMessage(), nex);
+				return executeOnce(operation);
+			} else {
+				throw nex;
+			}
+		}
+	}
+
+	/**
+	 * Run an operation on a pooled context, dropping the context if its
+	 * connection turns out to be broken.
+	 */
+	<T> T executeOnce(LdapOperation<T> operation) throws NamingException {
+		LdapContext ctx = borrow();
+		boolean broken = false;
+		try {
+			return operation.run(ctx);
+		} catch (NamingException nex) {
+			broken = isConnectionError(nex);
+			throw nex;
+		} finally {
+			if (broken) {
+				invalidate(ctx);
+			} else {
+				release(ctx);
+			}
+		}
+	}
+
+	/**
+	 * Close all idle connections. Borrowed ones are closed when given back.
+	 */
+	public void close() {
+		closed = true;
+		closeIdle();
+	}
+
+	private void closeIdle() {
+		PooledContext pooled = null;
+		while ((pooled = idle.poll()) != null) {
+			destroy(pooled);
+		}
+	}
+
+	/**
+	 * Open a context which is not managed by the pool, to be closed by the caller.
+	 * @return a new connected context
+	 * @throws NamingException thrown if a directory error is encountered
+	 * @throws IOException thrown if an error occurs negotiating StartTLS operation
+	 */
+	public LdapContext open() throws NamingException, IOException {
+		return create().ctx;
+	}
+
+	private void acquirePermit() throws NamingException {
+		if (permits.tryAcquire()) {
+			return;
+		}
+		waited.incrementAndGet();
+		LOGGER.debug("All {} LDAP connections to {} are busy, waiting", maxSize, connProps.getProperty(Context.PROVIDER_URL));
+		try {
+			if (maxWait < 0) {
+				permits.acquire();
+			} else if (!permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+				throw new ServiceUnavailableException("No LDAP connection to "
+								+ connProps.getProperty(Context.PROVIDER_URL) + " available after " + maxWait + " ms");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServiceUnavailableException("Interrupted while waiting for an LDAP connection");
+		}
+	}
+
+	private void ensureMinIdle() {
+		while (!closed && idle.size() < minIdle && idle.size() + active.size() < maxSize) {
+			try {
+				idle.add(create());
+			} catch (Exception e) {
+				LOGGER.debug("Unable to reopen an idle LDAP connection: " + e.toString(), e);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Check a connection with a base object search on the naming context.
+	 * Only connection errors make a context invalid: a missing base entry
+	 * still proves the server answered.
+	 */
+	private boolean isValid(PooledContext pooled) {
+		SearchControls sc = new SearchControls();
+		sc.setSearchScope(SearchControls.OBJECT_SCOPE);
+		sc.setReturningAttributes(new String[] { "1.1" });
+		try {
+			pooled.ctx.search("", JndiServices.DEFAULT_FILTER, sc).close();
+			return true;
+		} catch (CommunicationException e) {
+			LOGGER.debug("Dropping broken LDAP connection: " + e.toString(), e);
+			return false;
+		} catch (ServiceUnavailableException e) {
+			LOGGER.debug("Dropping broken LDAP connection: " + e.toString(), e);
+			return false;
+		} catch (NamingException e) {
+			return true;
+		}
+	}
+
+	private PooledContext create() throws NamingException, IOException {
+		LdapContext ctx = null;
+		StartTlsResponse tlsResponse = null;
+
+		/* should we negotiate TLS? */
+		if (connProps.get(JndiServices.TLS_CONFIGURATION) != null && (Boolean) connProps.get(JndiServices.TLS_CONFIGURATION)) {
+			/* if we're going to do TLS, we mustn't BIND before the STARTTLS operation
+			 * so we remove credentials from the properties to stop JNDI from binding */
+			/* duplicate properties to avoid changing them (they are used as a cache key in getInstance() */
+			Properties localConnProps = new Properties();
+			localConnProps.putAll(connProps);
+			String jndiContextAuthentication = localConnProps.getProperty(Context.SECURITY_AUTHENTICATION);
+			String jndiContextPrincipal = localConnProps.getProperty(Context.SECURITY_PRINCIPAL);
+			String jndiContextCredentials = localConnProps.getProperty(Context.SECURITY_CREDENTIALS);
+			localConnProps.remove(Context.SECURITY_AUTHENTICATION);
+			localConnProps.remove(Context.SECURITY_PRINCIPAL);
+			localConnProps.remove(Context.SECURITY_CREDENTIALS);
+
+			/* open the connection */
+			ctx = new InitialLdapContext(localConnProps, null);
+
+			/* initiate the STARTTLS extended operation */
+			try {
+				tlsResponse = (StartTlsResponse) ctx.extendedOperation(new StartTlsRequest());
+				tlsResponse.negotiate();
+			} catch (IOException e) {
+				LOGGER.error("Error starting TLS encryption on connection to {}", localConnProps.getProperty(Context.PROVIDER_URL));
+				LOGGER.debug(e.toString(), e);
+				ctx.close();
+				throw e;
+			} catch (NamingException e) {
+				LOGGER.error("Error starting TLS encryption on connection to {}", localConnProps.getProperty(Context.PROVIDER_URL));
+				LOGGER.debug(e.toString(), e);
+				ctx.close();
+				throw e;
+			}
+
+			/* now we add the credentials back to the context, to BIND once TLS is started */
+			if (jndiContextAuthentication != null) {
+				ctx.addToEnvironment(Context.SECURITY_AUTHENTICATION, jndiContextAuthentication);
+			}
+			if (jndiContextPrincipal != null) {
+				ctx.addToEnvironment(Context.SECURITY_PRINCIPAL, jndiContextPrincipal);
+			}
+			if (jndiContextCredentials != null) {
+				ctx.addToEnvironment(Context.SECURITY_CREDENTIALS, jndiContextCredentials);
+			}
+
+		} else {
+			/* don't start TLS, just connect normally (this can be on ldap:// or ldaps://) */
+			ctx = new InitialLdapContext(connProps, null);
+		}
+
+		created.incrementAndGet();
+		return new PooledContext(ctx, tlsResponse);
+	}
+
+	private void destroy(PooledContext pooled) {
+		destroyed.incrementAndGet();
+		try {
+			// Close the TLS connection (revert back to the underlying LDAP association)
+			if (pooled.tlsResponse != null) {
+				pooled.tlsResponse.close();
+			}
+		} catch (IOException e) {
+			LOGGER.debug(e.toString(), e);
+		}
+		try {
+			pooled.ctx.close();
+		} catch (NamingException e) {
+			LOGGER.debug(e.toString(), e);
+		}
+	}
+
+	private static int getInt(Properties props, String name, int defaultValue) {
+		String value = props.getProperty(name);
+		return value != null ? Integer.parseInt(value) : defaultValue;
+	}
+
+	private static long getLong(Properties props, String name, long defaultValue) {
+		String value = props.getProperty(name);
+		return value != null ? Long.parseLong(value) : defaultValue;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public int getActiveCount() {
+		return active.size();
+	}
+
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	public long getCreatedCount() {
+		return created.get();
+	}
+
+	public long getDestroyedCount() {
+		return destroyed.get();
+	}
+
+	public long getBorrowedCount() {
+		return borrowed.get();
+	}
+
+	public long getWaitedCount() {
+		return waited.get();
+	}
+
+	public long getValidationFailuresCount() {
+		return validationFailures.get();
+	}
+
+	/**
+	 * Get a one line summary of the pool usage.
+	 * @return the pool status
+	 */
+	public String getStatus() {
+		return connProps.getProperty(Context.PROVIDER_URL)
+						+ " active=" + getActiveCount() + "/" + maxSize
+						+ ", idle=" + getIdleCount()
+						+ ", borrowed=" + getBorrowedCount()
+						+ ", waited=" + getWaitedCount()
+						+ ", created=" + getCreatedCount()
+						+ ", destroyed=" + getDestroyedCount()
+						+ ", validationFailures=" + getValidationFailuresCount();
+	}
+
+	/**
+	 * A pooled connection, with its StartTLS session if any.
+	 */
+	private static final class PooledContext {
+		private final LdapContext ctx;
+		private final StartTlsResponse tlsResponse;
+		private volatile long lastUsed;
+
+		private PooledContext(LdapContext ctx, StartTlsResponse tlsResponse) {
+			this.ctx = ctx;
+			this.tlsResponse = tlsResponse;
+			this.lastUsed = System.currentTimeMillis();
+		}
+	}
+}
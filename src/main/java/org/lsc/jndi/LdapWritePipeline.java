@@ -0,0 +1,447 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.jndi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.DefaultModification;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.ModificationOperation;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.AddRequest;
+import org.apache.directory.api.ldap.model.message.AddRequestImpl;
+import org.apache.directory.api.ldap.model.message.DeleteRequest;
+import org.apache.directory.api.ldap.model.message.DeleteRequestImpl;
+import org.apache.directory.api.ldap.model.message.LdapResult;
+import org.apache.directory.api.ldap.model.message.ModifyRequest;
+import org.apache.directory.api.ldap.model.message.ModifyRequestImpl;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.ResultResponse;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.LdapAsyncConnection;
+import org.apache.directory.ldap.client.api.future.ResponseFuture;
+import org.lsc.LscModifications;
+import org.lsc.configuration.LdapConnectionType;
+import org.lsc.exception.LscServiceException;
+import org.lsc.service.IApplyListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Send directory modifications on an asynchronous connection, keeping up to
+ * a fixed number of operations outstanding instead of waiting for each
+ * response before sending the next request.
+ *
+ * A single thread collects the responses in the order the requests were
+ * sent, notifies the listener of each modification and frees its slot in
+ * the window. Adds, modifications and deletions are pipelined; renames and
+ * recursive deletions go through {@link #applySynchronously(JndiModifications)}.
+ *
+ * The server may process outstanding operations in any order, so an
+ * operation is only sent once no outstanding or synchronous operation
+ * touches the same entry, one of its parents or its subtree. DNs are
+ * compared ignoring case. A child entry added after its parent is therefore
+ * sent once the parent exists, and a rename waits for the modifications of
+ * the entry sent before it.
+ */
+public class LdapWritePipeline {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LdapWritePipeline.class);
+
+	/** The destination connection settings */
+	private final LdapConnectionType connectionType;
+
+	/** Used to get absolute DNs */
+	private final JndiServices jndiServices;
+
+	/** Maximum number of outstanding operations */
+	private final int window;
+
+	/** One permit per operation that may be outstanding */
+	private final Semaphore slots;
+
+	/** The outstanding operations, in the order they were sent */
+	private final BlockingQueue<PendingWrite> pending;
+
+	/** The DNs, in lower case, of the outstanding and synchronous operations */
+	private final List<String> busyDns;
+
+	/** Read without the lock by the collector */
+	private volatile LdapAsyncConnection connection;
+
+	private Thread collector;
+
+	public LdapWritePipeline(LdapConnectionType connectionType, JndiServices jndiServices, int window) {
+		this.connectionType = connectionType;
+		this.jndiServices = jndiServices;
+		this.window = window;
+		this.slots = new Semaphore(window);
+		this.pending = new LinkedBlockingQueue<PendingWrite>();
+		this.busyDns = new ArrayList<String>();
+	}
+
+	/**
+	 * Send the modifications, waiting first for the outstanding operations
+	 * on related entries to complete, and for a free slot in the window.
+	 *
+	 * @param jm the modifications to send
+	 * @param lm the original modifications, handed back to the listener
+	 * @param listener notified once the result is known
+	 * @throws LscServiceException if the request could not be sent
+	 */
+	public void submit(JndiModifications jm, LscModifications lm, IApplyListener listener) throws LscServiceException {
+		String[] dns = reserve(jm);
+		try {
+			slots.acquire();
+		} catch (InterruptedException e) {
+			free(dns);
+			Thread.currentThread().interrupt();
+			throw new LscServiceException("Interrupted while waiting to send modifications on " + jm.getDistinguishName(), e);
+		}
+		try {
+			ResponseFuture<? extends Response> future = send(getConnection(), jm);
+			pending.add(new PendingWrite(future, lm, listener, dns));
+		} catch (LdapException e) {
+			free(dns);
+			slots.release();
+			CommunicationException ce = new CommunicationException(e.toString());
+			ce.setRootCause(e);
+			throw new LscServiceException(ce);
+		} catch (NamingException e) {
+			free(dns);
+			slots.release();
+			throw new LscServiceException(e);
+		} catch (RuntimeException e) {
+			free(dns);
+			slots.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Apply modifications which can not be pipelined, such as renames and
+	 * recursive deletions, on the calling thread. They wait for the
+	 * outstanding operations on related entries, and later operations on
+	 * related entries wait for them.
+	 *
+	 * @param jm the modifications to apply
+	 * @return the operation status
+	 * @throws LscServiceException if the connection is lost or if interrupted
+	 *             while waiting
+	 */
+	public boolean applySynchronously(JndiModifications jm) throws LscServiceException {
+		String[] dns = reserve(jm);
+		try {
+			return jndiServices.apply(jm);
+		} catch (CommunicationException e) {
+			throw new LscServiceException(e);
+		} finally {
+			free(dns);
+		}
+	}
+
+	/**
+	 * Wait until no operation touches the entries of the modifications, their
+	 * parents or their subtrees, and mark these entries as busy.
+	 * @return the busy DNs, to be given to {@link #free(String[])}
+	 */
+	private String[] reserve(JndiModifications jm) throws LscServiceException {
+		String[] dns;
+		if (jm.getNewDistinguishName() != null) {
+			dns = new String[] { toKey(jm.getDistinguishName()), toKey(jm.getNewDistinguishName()) };
+		} else {
+			dns = new String[] { toKey(jm.getDistinguishName()) };
+		}
+		synchronized (busyDns) {
+			try {
+				while (isBusy(dns)) {
+					busyDns.wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new LscServiceException("Interrupted while waiting for the operations on " + jm.getDistinguishName(), e);
+			}
+			for (String dn : dns) {
+				busyDns.add(dn);
+			}
+		}
+		return dns;
+	}
+
+	private void free(String[] dns) {
+		synchronized (busyDns) {
+			for (String dn : dns) {
+				busyDns.remove(dn);
+			}
+			busyDns.notifyAll();
+		}
+	}
+
+	private boolean isBusy(String[] dns) {
+		for (String busyDn : busyDns) {
+			for (String dn : dns) {
+				if (dn.equals(busyDn) || dn.endsWith("," + busyDn) || busyDn.endsWith("," + dn)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private String toKey(String dn) {
+		return jndiServices.completeDn(dn).toLowerCase();
+	}
+
+	/**
+	 * Wait until all outstanding operations have been collected.
+	 * @throws LscServiceException if interrupted while waiting
+	 */
+	public void flush() throws LscServiceException {
+		try {
+			slots.acquire(window);
+			slots.release(window);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LscServiceException("Interrupted while waiting for outstanding modifications", e);
+		}
+	}
+
+	/**
+	 * Wait for the outstanding operations and close the connection.
+	 * @throws LscServiceException if interrupted while waiting
+	 */
+	public synchronized void close() throws LscServiceException {
+		flush();
+		if (collector != null) {
+			collector.interrupt();
+			collector = null;
+		}
+		if (connection != null) {
+			try {
+				connection.close();
+			} catch (Exception e) {
+				LOGGER.debug(e.toString(), e);
+			}
+			connection = null;
+		}
+	}
+
+	private synchronized LdapAsyncConnection getConnection() throws LscServiceException {
+		if (connection == null || !connection.isConnected()) {
+			connection = LdapAsyncConnectionFactory.open(connectionType);
+		}
+		if (collector == null) {
+			collector = new Thread(new Collector(), "LdapWritePipeline-" + connectionType.getName());
+			collector.setDaemon(true);
+			collector.start();
+		}
+		return connection;
+	}
+
+	private ResponseFuture<? extends Response> send(LdapAsyncConnection conn, JndiModifications jm)
+					throws LdapException, NamingException {
+		Dn dn = new Dn(jndiServices.completeDn(jm.getDistinguishName()));
+		switch (jm.getOperation()) {
+			case ADD_ENTRY:
+				Entry entry = new DefaultEntry(dn);
+				for (ModificationItem mi : jm.getModificationItems()) {
+					if (mi.getAttribute().size() > 0) {
+						entry.add(toAttribute(mi.getAttribute()));
+					}
+				}
+				AddRequest addRequest = new AddRequestImpl();
+				addRequest.setEntry(entry);
+				return conn.addAsync(addRequest);
+
+			case MODIFY_ENTRY:
+				ModifyRequest modifyRequest = new ModifyRequestImpl();
+				modifyRequest.setName(dn);
+				for (ModificationItem mi : jm.getModificationItems()) {
+					modifyRequest.addModification(new DefaultModification(
+									toOperation(mi.getModificationOp()), toAttribute(mi.getAttribute())));
+				}
+				return conn.modifyAsync(modifyRequest);
+
+			case DELETE_ENTRY:
+				DeleteRequest deleteRequest = new DeleteRequestImpl();
+				deleteRequest.setName(dn);
+				return conn.deleteAsync(deleteRequest);
+
+			default:
+				throw new IllegalArgumentException("Modification type " + jm.getOperation() + " can not be pipelined");
+		}
+	}
+
+	private static ModificationOperation toOperation(int jndiOperation) {
+		switch (jndiOperation) {
+			case DirContext.ADD_ATTRIBUTE:
+				return ModificationOperation.ADD_ATTRIBUTE;
+			case DirContext.REMOVE_ATTRIBUTE:
+				return ModificationOperation.REMOVE_ATTRIBUTE;
+			default:
+				return ModificationOperation.REPLACE_ATTRIBUTE;
+		}
+	}
+
+	private static Attribute toAttribute(javax.naming.directory.Attribute jndiAttribute)
+					throws LdapException, NamingException {
+		Attribute attribute = new DefaultAttribute(jndiAttribute.getID());
+		NamingEnumeration<?> values = jndiAttribute.getAll();
+		while (values.hasMore()) {
+			Object value = values.next();
+			if (value instanceof byte[]) {
+				attribute.add((byte[]) value);
+			} else {
+				attribute.add(value.toString());
+			}
+		}
+		return attribute;
+	}
+
+	/**
+	 * A request sent, waiting for its response.
+	 */
+	private static final class PendingWrite {
+		private final ResponseFuture<? extends Response> future;
+		private final LscModifications lm;
+		private final IApplyListener listener;
+		private final String[] dns;
+
+		private PendingWrite(ResponseFuture<? extends Response> future, LscModifications lm, IApplyListener listener,
+						String[] dns) {
+			this.future = future;
+			this.lm = lm;
+			this.listener = listener;
+			this.dns = dns;
+		}
+	}
+
+	/**
+	 * Collect the responses in order and notify the listeners.
+	 */
+	private final class Collector implements Runnable {
+
+		public void run() {
+			while (!Thread.currentThread().isInterrupted()) {
+				PendingWrite write;
+				try {
+					write = pending.take();
+				} catch (InterruptedException e) {
+					return;
+				}
+				try {
+					complete(write);
+				} finally {
+					free(write.dns);
+					slots.release();
+				}
+			}
+		}
+
+		private void complete(PendingWrite write) {
+			Exception failure = getFailure(write);
+			try {
+				if (failure == null) {
+					write.listener.applied(write.lm);
+				} else {
+					write.listener.failed(write.lm, failure);
+				}
+			} catch (RuntimeException e) {
+				// the write is notified once, whatever the listener does with it
+				LOGGER.error("Error while handling the result of the write of {}: {}", write.lm.getMainIdentifier(), e.toString());
+				LOGGER.debug(e.toString(), e);
+			}
+		}
+
+		/**
+		 * Wait for the result of a write.
+		 * @return the cause of its failure, or null if it has been applied
+		 */
+		private Exception getFailure(PendingWrite write) {
+			try {
+				LdapAsyncConnection conn = connection;
+				long timeout = conn != null ? conn.getConfig().getTimeout() : 30000;
+				Response response = write.future.get(timeout, TimeUnit.MILLISECONDS);
+				if (response == null) {
+					return new CommunicationException("No response received for " + write.lm.getMainIdentifier());
+				}
+				LdapResult result = ((ResultResponse) response).getLdapResult();
+				if (result.getResultCode() == ResultCodeEnum.SUCCESS) {
+					return null;
+				}
+				return new LscServiceException(result.getResultCode() + ": " + result.getDiagnosticMessage());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return e;
+			} catch (ExecutionException e) {
+				return e;
+			} catch (TimeoutException e) {
+				write.future.cancel(true);
+				return e;
+			} catch (RuntimeException e) {
+				LOGGER.debug(e.toString(), e);
+				return e;
+			}
+		}
+	}
+}
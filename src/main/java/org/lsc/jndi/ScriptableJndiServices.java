@@ -64,7 +64,9 @@ import javax.naming.directory.SearchResult;
  * 
  * <P>Based on Rhino (JavaScript interpreter), this class is able to understand your LQL requests.</P>
  * 
- * <P>All methods in the class use methods from {@link JndiServices}.</P>
+ * <P>All methods in the class use methods from {@link JndiServices}, so each
+ * call runs on a connection borrowed from its pool and can safely be made
+ * from several synchronization threads at once.</P>
  * 
  * @author Sebastien Bahloul &lt;seb@lsc-project.org&gt;
  */
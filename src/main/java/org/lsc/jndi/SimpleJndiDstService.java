@@ -45,10 +45,14 @@
  */
 package org.lsc.jndi;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.naming.CommunicationException;
 import javax.naming.NamingException;
@@ -58,12 +62,20 @@ import javax.naming.directory.SearchResult;
 import org.lsc.LscDatasets;
 import org.lsc.LscModifications;
 import org.lsc.beans.IBean;
+import org.lsc.configuration.LdapConnectionType;
+import org.lsc.configuration.LdapDestinationServiceType;
 import org.lsc.configuration.LdapServiceType;
 import org.lsc.configuration.TaskType;
 import org.lsc.exception.LscServiceCommunicationException;
 import org.lsc.exception.LscServiceConfigurationException;
 import org.lsc.exception.LscServiceException;
-import org.lsc.service.IWritableService;
+import org.lsc.service.AbstractPivotCursor;
+import org.lsc.service.IApplyListener;
+import org.lsc.service.IBatchLookupService;
+import org.lsc.service.IPipelinedWritableService;
+import org.lsc.service.IPivotCursor;
+import org.lsc.service.ISortedService;
+import org.lsc.service.IStreamingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,7 +87,7 @@ import org.slf4j.LoggerFactory;
  * 
  * @author Sebastien Bahloul &lt;seb@lsc-project.org&gt;
  */
-public class SimpleJndiDstService extends AbstractSimpleJndiService implements IWritableService {
+public class SimpleJndiDstService extends AbstractSimpleJndiService implements IPipelinedWritableService, ISortedService, IStreamingService, IBatchLookupService, Closeable {
 
 	/**
 	 * Preceding the object feeding, it will be instantiated from this class.
@@ -85,6 +97,15 @@ public class SimpleJndiDstService extends AbstractSimpleJndiService implements I
 	private static final Logger LOGGER = LoggerFactory.getLogger(SimpleJndiDstService.class);
 	
     private List<String> writableDatasetIds;
+
+	/** Asynchronous writer, when a pipeline window is configured */
+	private LdapWritePipeline pipeline;
+
+	/** Recursive deletions are not pipelined */
+	private boolean recursiveDelete;
+
+	/** Number of entries looked up by a single search */
+	private int lookupBatchSize;
 	
 	/**
 	 * Constructor adapted to the context properties and the bean class name to instantiate.
@@ -103,6 +124,7 @@ public class SimpleJndiDstService extends AbstractSimpleJndiService implements I
 			LOGGER.error("Bean class {} not found. Check this class name really exists.", task.getBean());
 			throw new LscServiceConfigurationException(e);
 		}
+		initPipeline(task.getLdapDestinationService());
 	}
 
     /**
@@ -115,8 +137,22 @@ public class SimpleJndiDstService extends AbstractSimpleJndiService implements I
         super(ldapService);
         this.writableDatasetIds = writableDatasetIds; 
         this.beanClass = beanClass;
+        initPipeline(ldapService);
     }
 
+	private void initPipeline(LdapServiceType ldapService) {
+		LdapConnectionType connection = (LdapConnectionType) ldapService.getConnection().getReference();
+		recursiveDelete = connection.isRecursiveDelete() != null && connection.isRecursiveDelete();
+		if (ldapService instanceof LdapDestinationServiceType) {
+			Integer window = ((LdapDestinationServiceType) ldapService).getPipelineWindow();
+			if (window != null && window > 0) {
+				pipeline = new LdapWritePipeline(connection, jndiServices, window);
+			}
+			Integer batchSize = ((LdapDestinationServiceType) ldapService).getLookupBatchSize();
+			lookupBatchSize = (batchSize != null ? batchSize : 0);
+		}
+	}
+
 	/**
 	 * The simple object getter according to its identifier.
 	 * 
@@ -132,7 +168,65 @@ public class SimpleJndiDstService extends AbstractSimpleJndiService implements I
 	 */
 	public final IBean getBean(String pivotName, LscDatasets pivotAttributes, boolean fromSameService) throws LscServiceException {
 		try {
-			SearchResult srObject = get(pivotName, pivotAttributes, filterIdSync);
+			return getInstance(get(pivotName, pivotAttributes, filterIdSync));
+		} catch (NamingException e) {
+			throw new LscServiceException(e);
+		}
+	}
+
+	/**
+	 * Look several entries up with a single search on the union of their filters.
+	 * 
+	 * @see org.lsc.service.IBatchLookupService#getBeans(java.util.List, boolean)
+	 */
+	public Map<String, IBean> getBeans(List<Entry<String, LscDatasets>> ids, boolean fromSameService) throws LscServiceException {
+		try {
+			Map<String, SearchResult> results = get(ids, filterIdSync);
+			Map<String, IBean> beans = new HashMap<String, IBean>(results.size());
+			for (Entry<String, SearchResult> result : results.entrySet()) {
+				beans.put(result.getKey(), getInstance(result.getValue()));
+			}
+			return beans;
+		} catch (NamingException e) {
+			throw new LscServiceException(e);
+		}
+	}
+
+	public int getLookupBatchSize() {
+		return lookupBatchSize;
+	}
+
+	/**
+	 * Returns a cursor on all the entries, sorted by the directory on the first pivot attribute.
+	 * 
+	 * @return the sorted cursor
+	 * @throws LscServiceException if an error occurs while searching the directory
+	 */
+	public IPivotCursor getSortedCursor() throws LscServiceException {
+		try {
+			return getSortedSearchCursor(new JndiServices.SearchResultConverter() {
+				public Entry<String, LscDatasets> convert(SearchResult sr) throws NamingException {
+					LscDatasets pivots = JndiServices.getDatasets(sr, getAttrsId());
+					IBean bean = getInstance(sr);
+					if (bean == null) {
+						throw new NamingException("Unable to instantiate " + beanClass.getName() + " for " + sr.getNameInNamespace());
+					}
+					return new AbstractPivotCursor.BeanEntry(sr.getNameInNamespace(), pivots, bean);
+				}
+			});
+		} catch (NamingException e) {
+			throw new LscServiceException(e);
+		}
+	}
+
+	/**
+	 * Map a search result to a bean with the static getInstance method of the bean class.
+	 * 
+	 * @param srObject the search result, may be null
+	 * @return the bean, or null if not found or if the bean class can not be used
+	 */
+	private IBean getInstance(SearchResult srObject) {
+		try {
 			Method method = beanClass.getMethod("getInstance", 
 							new Class[] { SearchResult.class, String.class, Class.class });
 			return (IBean) method.invoke(null, new Object[] { srObject, jndiServices.completeDn(getBaseDn()), beanClass });
@@ -156,8 +250,6 @@ public class SimpleJndiDstService extends AbstractSimpleJndiService implements I
 			LOGGER.error("Unable to get static method getInstance on {} ! This is probably a programmer's error ({})",
 							beanClass.getName(), e.toString());
 			LOGGER.debug(e.toString(), e);
-		} catch (NamingException e) {
-			throw new LscServiceException(e);
 		}
 		return null;
 	}
@@ -179,6 +271,22 @@ public class SimpleJndiDstService extends AbstractSimpleJndiService implements I
 		}
     }
 
+	/**
+	 * Returns a cursor on all the objects' identifiers, read from the
+	 * directory page by page while they are consumed.
+	 * 
+	 * @return the cursor on the entries names with their attribute names and values
+	 * @throws LscServiceException if the search could not be started
+	 */
+	public IPivotCursor getPivotCursor() throws LscServiceException {
+		try {
+			return jndiServices.getAttrsCursor(getBaseDn(), getFilterAll(),
+							SearchControls.SUBTREE_SCOPE, getAttrsId());
+		} catch (NamingException e) {
+			throw new LscServiceException(e);
+		}
+	}
+
 	/**
 	 * Apply directory modifications.
 	 *
@@ -204,14 +312,63 @@ public class SimpleJndiDstService extends AbstractSimpleJndiService implements I
 	 * and all other attempts to use this service should fail.
 	 */
 	public boolean apply(LscModifications lm) throws LscServiceException {
+		try {
+			return jndiServices.apply(getJndiModifications(lm));
+		} catch (CommunicationException e) {
+			throw new LscServiceException(e);
+		}
+	}
+
+	private JndiModifications getJndiModifications(LscModifications lm) {
 		JndiModifications jm = new JndiModifications(JndiModificationType.getFromLscModificationType(lm.getOperation()), lm.getTaskName());
 		jm.setDistinguishName(lm.getMainIdentifier());
 		jm.setNewDistinguishName(lm.getNewMainIdentifier());
 		jm.setModificationItems(JndiModifications.fromLscAttributeModifications(lm.getLscAttributeModifications()));
-		try {
-			return jndiServices.apply(jm);
-		} catch (CommunicationException e) {
-			throw new LscServiceException(e);
+		return jm;
+	}
+
+	public boolean isPipelined() {
+		return pipeline != null;
+	}
+
+	/**
+	 * Send directory modifications without waiting for their result. Renames
+	 * and recursive deletions are still applied synchronously, once the
+	 * operations sent before them on the same entries have completed.
+	 *
+	 * @param lm Modifications to apply in a {@link LscModifications} object.
+	 * @param listener Notified once the result is known
+	 * @throws LscServiceException If the modifications could not be sent
+	 */
+	public void applyAsync(LscModifications lm, IApplyListener listener) throws LscServiceException {
+		JndiModifications jm = getJndiModifications(lm);
+		if (pipeline != null
+						&& jm.getOperation() != JndiModificationType.MODRDN_ENTRY
+						&& !(jm.getOperation() == JndiModificationType.DELETE_ENTRY && recursiveDelete)) {
+			pipeline.submit(jm, lm, listener);
+			return;
+		}
+		boolean applied = (pipeline != null ? pipeline.applySynchronously(jm) : apply(lm));
+		if (applied) {
+			listener.applied(lm);
+		} else {
+			listener.failed(lm, new LscServiceException("Technical problem while applying modifications to the destination"));
+		}
+	}
+
+	public void flush() throws LscServiceException {
+		if (pipeline != null) {
+			pipeline.flush();
+		}
+	}
+
+	public void close() throws IOException {
+		if (pipeline != null) {
+			try {
+				pipeline.close();
+			} catch (LscServiceException e) {
+				throw new IOException(e.toString());
+			}
 		}
 	}
 	
@@ -45,11 +45,15 @@
  */
 package org.lsc.jndi;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
 
 import javax.naming.NamingException;
 import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
 
 import org.lsc.LscDatasets;
 import org.lsc.beans.IBean;
@@ -58,7 +62,10 @@ import org.lsc.configuration.LscConfiguration;
 import org.lsc.configuration.TaskType;
 import org.lsc.exception.LscServiceConfigurationException;
 import org.lsc.exception.LscServiceException;
-import org.lsc.service.IService;
+import org.lsc.service.AbstractPivotCursor;
+import org.lsc.service.IPivotCursor;
+import org.lsc.service.ISortedService;
+import org.lsc.service.IStreamingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,7 +77,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Sebastien Bahloul &lt;seb@lsc-project.org&gt;
  */
-public class SimpleJndiSrcService extends AbstractSimpleJndiService implements IService {
+public class SimpleJndiSrcService extends AbstractSimpleJndiService implements ISortedService, IStreamingService {
 
 	protected static final Logger LOGGER = LoggerFactory.getLogger(SimpleJndiSrcService.class);
 	/**
@@ -83,6 +90,13 @@ public class SimpleJndiSrcService extends AbstractSimpleJndiService implements I
 	 * entry. Use with destination attributes while getting the object to check for suppression
 	 */
 	protected String filterIdClean;
+
+	/**
+	 * Read all the fetched attributes while listing the entries, instead of
+	 * reading each entry again during its synchronization
+	 */
+	protected boolean listFullEntries;
+
 	/**
 	 * Constructor adapted to the context properties and the bean class name
 	 * to instantiate.
@@ -118,6 +132,7 @@ public class SimpleJndiSrcService extends AbstractSimpleJndiService implements I
 		if(filterIdClean == null) {
 		    LOGGER.warn("No clean filter has been specified for task=" + task.getName() + ". During the clean phase, LSC wouldn't be able to get the right entries and may delete all destination entries !");
 		}
+		listFullEntries = Boolean.TRUE.equals(((LdapSourceServiceType)LscConfiguration.getSourceService(task)).isListFullEntries());
 		try {
 			this.beanClass = (Class<IBean>) Class.forName(task.getBean());
 		} catch (ClassNotFoundException e) {
@@ -181,6 +196,91 @@ public class SimpleJndiSrcService extends AbstractSimpleJndiService implements I
 		}
 	}
 
+	/**
+	 * Returns a cursor on all the objects' identifiers, read from the
+	 * directory page by page while they are consumed. If listFullEntries is
+	 * set, the fetched attributes are read by the same search and the cursor
+	 * also returns the complete beans.
+	 * 
+	 * @return the cursor on the entries names with their attribute names and values
+	 * @throws LscServiceException if the search could not be started
+	 */
+	public IPivotCursor getPivotCursor() throws LscServiceException {
+		try {
+			if (!listFullEntries) {
+				return jndiServices.getAttrsCursor(getBaseDn(), getFilterAll(),
+								SearchControls.SUBTREE_SCOPE, getAttrsId());
+			}
+			// pivot attributes are also requested, but are not part of the bean
+			List<String> attributes = null;
+			final List<String> pivotsOnly = new ArrayList<String>();
+			if (getAttrs() != null) {
+				attributes = new ArrayList<String>(getAttrs());
+				for (String pivotAttr : getAttrsId()) {
+					boolean fetched = false;
+					for (String attr : getAttrs()) {
+						fetched |= attr.equalsIgnoreCase(pivotAttr);
+					}
+					if (!fetched) {
+						attributes.add(pivotAttr);
+						pivotsOnly.add(pivotAttr);
+					}
+				}
+			}
+			return jndiServices.getSearchCursor(getBaseDn(), getFilterAll(), SearchControls.SUBTREE_SCOPE,
+							attributes, new JndiServices.SearchResultConverter() {
+				public Entry<String, LscDatasets> convert(SearchResult ldapResult) throws NamingException {
+					LscDatasets pivots = JndiServices.getDatasets(ldapResult, getAttrsId());
+					for (String pivotAttr : pivotsOnly) {
+						ldapResult.getAttributes().remove(pivotAttr);
+					}
+					return new AbstractPivotCursor.BeanEntry(ldapResult.getNameInNamespace(), pivots,
+									getBeanFromSR(ldapResult, newBean()));
+				}
+			});
+		} catch (NamingException e) {
+			throw new LscServiceException(e);
+		}
+	}
+
+	/**
+	 * Returns a cursor on all the entries, sorted by the directory on the first pivot attribute.
+	 * 
+	 * @return the sorted cursor
+	 * @throws LscServiceException if an error occurs while searching the directory
+	 */
+	public IPivotCursor getSortedCursor() throws LscServiceException {
+		try {
+			return getSortedSearchCursor(new JndiServices.SearchResultConverter() {
+				public Entry<String, LscDatasets> convert(SearchResult sr) throws NamingException {
+					LscDatasets pivots = JndiServices.getDatasets(sr, getAttrsId());
+					return new AbstractPivotCursor.BeanEntry(sr.getNameInNamespace(), pivots, getBeanFromSR(sr, newBean()));
+				}
+			});
+		} catch (NamingException e) {
+			throw new LscServiceException(e);
+		}
+	}
+
+	/**
+	 * Instantiate the bean class, for an entry read by a cursor.
+	 * @return the new bean
+	 * @throws NamingException if the bean class can not be instantiated
+	 */
+	private IBean newBean() throws NamingException {
+		try {
+			return beanClass.newInstance();
+		} catch (InstantiationException e) {
+			NamingException ne = new NamingException("Bad class name: " + beanClass.getName());
+			ne.setRootCause(e);
+			throw ne;
+		} catch (IllegalAccessException e) {
+			NamingException ne = new NamingException("Bad class name: " + beanClass.getName());
+			ne.setRootCause(e);
+			throw ne;
+		}
+	}
+
 	/*
 	 * Default filter getter, for one corresponding entry.
 	 * @return the attrId value
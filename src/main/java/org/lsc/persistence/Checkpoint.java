@@ -0,0 +1,258 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.persistence;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.lsc.Task;
+import org.lsc.exception.LscConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Progress of the synchronization of a task, kept in a file so that an
+ * interrupted run can be resumed without synchronizing again the source
+ * entries it already completed.
+ * 
+ * The names of the completed entries are appended to the file, one per line,
+ * and written to disk at regular intervals. Names rather than a position in
+ * the source enumeration are recorded, because most sources do not guarantee
+ * the order of their entries from one run to the next. The file is deleted
+ * once a run completes without error.
+ */
+public final class Checkpoint {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(Checkpoint.class);
+
+	/** Maximum delay, in milliseconds, before the completed entries are written to disk */
+	private static final long SAVE_INTERVAL = 10000;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final String taskName;
+
+	private final File file;
+
+	/** Entries completed by the interrupted run */
+	private final Set<String> completed;
+
+	/** Names of the completed entries, waiting to be written */
+	private final Queue<String> pending = new ConcurrentLinkedQueue<String>();
+
+	/**
+	 * Held while writing to the file. The threads completing entries only
+	 * queue their names, and the one getting the lock writes the names queued
+	 * by all of them, so that they do not wait for each other. It is not a
+	 * monitor, which would pin a virtual thread to its carrier thread while
+	 * writing.
+	 */
+	private final Lock lock = new ReentrantLock();
+
+	private Writer writer;
+
+	private long lastSave;
+
+	private Checkpoint(String taskName, File file, Set<String> completed, Writer writer) {
+		this.taskName = taskName;
+		this.file = file;
+		this.completed = completed;
+		this.writer = writer;
+		this.lastSave = System.currentTimeMillis();
+	}
+
+	/**
+	 * Open the checkpoint configured for a task.
+	 * 
+	 * @param task the task, with a checkpoint file
+	 * @param resume true to skip the entries completed by the previous run,
+	 * 			false to start from the first entry
+	 * @return the checkpoint
+	 * @throws LscConfigurationException if the file can not be read or written
+	 */
+	public static Checkpoint open(Task task, boolean resume) throws LscConfigurationException {
+		File file = new File(task.getTaskType().getCheckpoint());
+		Set<String> completed = new HashSet<String>();
+		try {
+			if (resume && file.isFile()) {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+				try {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						completed.add(decode(line));
+					}
+				} finally {
+					reader.close();
+				}
+				LOGGER.info("Resuming task {}, {} entries were already synchronized", task.getName(), completed.size());
+			} else if (resume) {
+				LOGGER.warn("No checkpoint {} to resume task {} from", file.getAbsolutePath(), task.getName());
+			}
+			Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, resume), UTF8));
+			if (!completed.isEmpty()) {
+				// the last name may have been written partially
+				writer.write('\n');
+			}
+			return new Checkpoint(task.getName(), file, completed, writer);
+		} catch (IOException e) {
+			throw new LscConfigurationException("Unable to open the checkpoint " + file.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * @param name the source entry name
+	 * @return true if the entry was completed by the interrupted run
+	 */
+	public boolean isCompleted(String name) {
+		return completed.contains(name);
+	}
+
+	/**
+	 * Record a source entry as completed.
+	 * @param name the source entry name
+	 */
+	public void completed(String name) {
+		pending.add(name);
+		// a name queued while another thread releases the lock is not left behind
+		while (!pending.isEmpty() && lock.tryLock()) {
+			try {
+				write();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Write the queued names, holding the lock.
+	 */
+	private void write() {
+		if (writer == null) {
+			pending.clear();
+			return;
+		}
+		try {
+			String name;
+			while ((name = pending.poll()) != null) {
+				writer.write(encode(name));
+				writer.write('\n');
+			}
+			long now = System.currentTimeMillis();
+			if (now - lastSave >= SAVE_INTERVAL) {
+				writer.flush();
+				lastSave = now;
+			}
+		} catch (IOException e) {
+			LOGGER.error("Unable to write the checkpoint of task {}, it will not be updated anymore ({})", taskName, e.toString());
+			LOGGER.debug(e.toString(), e);
+			closeWriter();
+		}
+	}
+
+	/**
+	 * Write the completed entries to disk and close the checkpoint.
+	 * 
+	 * @param complete true if the run synchronized all the source entries
+	 * 			without error, so that there is nothing left to resume
+	 */
+	public void close(boolean complete) {
+		lock.lock();
+		try {
+			write();
+			closeWriter();
+			if (complete && !file.delete()) {
+				LOGGER.warn("Unable to delete the checkpoint {}", file.getAbsolutePath());
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void closeWriter() {
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				LOGGER.error("Unable to save the checkpoint of task {} ({})", taskName, e.toString());
+				LOGGER.debug(e.toString(), e);
+			}
+			writer = null;
+		}
+	}
+
+	/** Escape the line breaks of a name, to keep one name per line */
+	static String encode(String name) {
+		return name.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	static String decode(String line) {
+		StringBuilder name = new StringBuilder(line.length());
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '\\' && i + 1 < line.length()) {
+				c = line.charAt(++i);
+				name.append(c == 'n' ? '\n' : (c == 'r' ? '\r' : c));
+			} else {
+				name.append(c);
+			}
+		}
+		return name.toString();
+	}
+}
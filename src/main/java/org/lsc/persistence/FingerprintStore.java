@@ -0,0 +1,412 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.lsc.LscDatasetModification;
+import org.lsc.LscModifications;
+import org.lsc.Task;
+import org.lsc.beans.IBean;
+import org.lsc.configuration.JaxbXmlConfigurationHelper;
+import org.lsc.configuration.LscConfiguration;
+import org.lsc.configuration.ServiceType;
+import org.lsc.exception.LscConfigurationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sleepycat.je.Cursor;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseConfig;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import com.sleepycat.je.LockMode;
+import com.sleepycat.je.OperationStatus;
+
+/**
+ * Local Berkeley DB JE store keeping, for each source entry of a task, a
+ * fingerprint of the entry as it was last successfully synchronized. A
+ * source entry whose fingerprint did not change since does not need to be
+ * compared with the destination again.
+ * 
+ * Each record holds the run which last saw the entry, the fingerprint of the
+ * source entry, and the fingerprint of the modifications applied for it, if
+ * any. The records of the entries which disappeared from the source are
+ * purged at the end of a complete run, and all the records of a task are
+ * dropped as soon as its configuration changes.
+ */
+public final class FingerprintStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FingerprintStore.class);
+
+	/** Name of the database holding the configuration fingerprint of each task */
+	private static final String CONFIGURATIONS_DATABASE = "configurations";
+
+	private static final String DIGEST_ALGORITHM = "SHA-1";
+
+	private static final int DIGEST_LENGTH = 20;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** Values are compared as unsigned bytes to sort them */
+	private static final Comparator<byte[]> BYTES_ORDER = new Comparator<byte[]>() {
+		public int compare(byte[] a, byte[] b) {
+			for (int i = 0; i < Math.min(a.length, b.length); i++) {
+				int diff = (a[i] & 0xff) - (b[i] & 0xff);
+				if (diff != 0) {
+					return diff;
+				}
+			}
+			return a.length - b.length;
+		}
+	};
+
+	private final String taskName;
+
+	private final Environment environment;
+
+	private final Database database;
+
+	/** Identifies the current run in the records */
+	private final long generation;
+
+	/** Compare all the entries, but keep recording their fingerprints */
+	private final boolean fullVerify;
+
+	private FingerprintStore(String taskName, Environment environment, Database database, boolean fullVerify) {
+		this.taskName = taskName;
+		this.environment = environment;
+		this.database = database;
+		this.generation = System.currentTimeMillis();
+		this.fullVerify = fullVerify;
+	}
+
+	/**
+	 * Open the fingerprint store configured for a task, dropping its records
+	 * if the task configuration changed since they were recorded.
+	 * 
+	 * @param task the task, with a fingerprint store directory
+	 * @param fullVerify if true, no entry is considered unchanged
+	 * @return the store, to be closed at the end of the synchronization
+	 * @throws LscConfigurationException if the store can not be opened
+	 */
+	public static FingerprintStore open(Task task, boolean fullVerify) throws LscConfigurationException {
+		File directory = new File(task.getTaskType().getFingerprintStore());
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new LscConfigurationException("Unable to create the fingerprint store directory " + directory.getAbsolutePath());
+		}
+		byte[] configuration = getConfigurationFingerprint(task);
+
+		Environment environment = null;
+		try {
+			EnvironmentConfig environmentConfig = new EnvironmentConfig();
+			environmentConfig.setAllowCreate(true);
+			environment = new Environment(directory, environmentConfig);
+
+			String databaseName = "fingerprints-" + task.getName();
+			DatabaseConfig databaseConfig = new DatabaseConfig();
+			databaseConfig.setAllowCreate(true);
+			Database configurations = environment.openDatabase(null, CONFIGURATIONS_DATABASE, databaseConfig);
+			try {
+				DatabaseEntry key = new DatabaseEntry(task.getName().getBytes(UTF8));
+				DatabaseEntry data = new DatabaseEntry();
+				if (configurations.get(null, key, data, LockMode.DEFAULT) != OperationStatus.SUCCESS
+								|| !Arrays.equals(data.getData(), configuration)) {
+					if (environment.getDatabaseNames().contains(databaseName)) {
+						LOGGER.info("The configuration of task {} changed, all its entries will be compared", task.getName());
+						environment.removeDatabase(null, databaseName);
+					}
+					configurations.put(null, key, new DatabaseEntry(configuration));
+				}
+			} finally {
+				configurations.close();
+			}
+
+			// records are written to disk when the store is closed
+			databaseConfig.setDeferredWrite(true);
+			Database database = environment.openDatabase(null, databaseName, databaseConfig);
+			return new FingerprintStore(task.getName(), environment, database, fullVerify);
+		} catch (DatabaseException e) {
+			if (environment != null) {
+				try {
+					environment.close();
+				} catch (DatabaseException ce) {
+					LOGGER.debug(ce.toString(), ce);
+				}
+			}
+			throw new LscConfigurationException("Unable to open the fingerprint store " + directory.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * Check whether a source entry is unchanged since it was last
+	 * synchronized, and if so note that it is still in the source.
+	 * 
+	 * @param pivot the source entry identifier
+	 * @param fingerprint the source entry fingerprint
+	 * @return true if the entry does not need to be compared with the destination
+	 */
+	public boolean isUnchanged(String pivot, byte[] fingerprint) {
+		if (fullVerify) {
+			return false;
+		}
+		try {
+			DatabaseEntry key = new DatabaseEntry(pivot.getBytes(UTF8));
+			DatabaseEntry data = new DatabaseEntry();
+			if (database.get(null, key, data, LockMode.DEFAULT) != OperationStatus.SUCCESS) {
+				return false;
+			}
+			ByteBuffer record = ByteBuffer.wrap(data.getData());
+			byte[] previous = new byte[DIGEST_LENGTH];
+			record.position(8);
+			record.get(previous);
+			if (!Arrays.equals(previous, fingerprint)) {
+				return false;
+			}
+			record.putLong(0, generation);
+			database.put(null, key, new DatabaseEntry(record.array()));
+			return true;
+		} catch (DatabaseException e) {
+			LOGGER.warn("Unable to read the fingerprint of {} ({})", pivot, e.toString());
+			LOGGER.debug(e.toString(), e);
+			return false;
+		}
+	}
+
+	/**
+	 * Record the fingerprint of a source entry successfully synchronized.
+	 * 
+	 * @param pivot the source entry identifier
+	 * @param fingerprint the source entry fingerprint
+	 * @param applied the modifications applied to the destination, or null if it was up to date
+	 */
+	public void update(String pivot, byte[] fingerprint, LscModifications applied) {
+		ByteBuffer record = ByteBuffer.allocate(8 + DIGEST_LENGTH + (applied != null ? DIGEST_LENGTH : 0));
+		record.putLong(generation);
+		record.put(fingerprint);
+		if (applied != null) {
+			record.put(getFingerprint(applied));
+		}
+		try {
+			database.put(null, new DatabaseEntry(pivot.getBytes(UTF8)), new DatabaseEntry(record.array()));
+		} catch (DatabaseException e) {
+			LOGGER.warn("Unable to record the fingerprint of {} ({})", pivot, e.toString());
+			LOGGER.debug(e.toString(), e);
+		}
+	}
+
+	/**
+	 * Forget a source entry, so that it is compared again on the next run.
+	 * 
+	 * @param pivot the source entry identifier
+	 */
+	public void remove(String pivot) {
+		try {
+			database.delete(null, new DatabaseEntry(pivot.getBytes(UTF8)));
+		} catch (DatabaseException e) {
+			LOGGER.warn("Unable to remove the fingerprint of {} ({})", pivot, e.toString());
+			LOGGER.debug(e.toString(), e);
+		}
+	}
+
+	/**
+	 * Write the records to disk and close the store.
+	 * 
+	 * @param complete true if all the source entries have been read during
+	 * 			this run, so that the records of the other ones can be purged
+	 */
+	public void close(boolean complete) {
+		try {
+			if (complete) {
+				purge();
+			}
+			database.sync();
+			database.close();
+		} catch (DatabaseException e) {
+			LOGGER.error("Unable to save the fingerprints of task {} ({})", taskName, e.toString());
+			LOGGER.debug(e.toString(), e);
+		} finally {
+			try {
+				environment.close();
+			} catch (DatabaseException e) {
+				LOGGER.debug(e.toString(), e);
+			}
+		}
+	}
+
+	private void purge() {
+		int purged = 0;
+		DatabaseEntry key = new DatabaseEntry();
+		DatabaseEntry data = new DatabaseEntry();
+		Cursor cursor = database.openCursor(null, null);
+		try {
+			while (cursor.getNext(key, data, LockMode.DEFAULT) == OperationStatus.SUCCESS) {
+				if (ByteBuffer.wrap(data.getData()).getLong() != generation) {
+					cursor.delete();
+					purged++;
+				}
+			}
+		} finally {
+			cursor.close();
+		}
+		LOGGER.debug("{} fingerprints of entries no longer in the source purged for task {}", purged, taskName);
+	}
+
+	/**
+	 * Compute the fingerprint of a bean, which does not depend on the order
+	 * of its datasets and values.
+	 * 
+	 * @param bean the bean
+	 * @return the fingerprint
+	 */
+	public static byte[] getFingerprint(IBean bean) {
+		MessageDigest digest = getDigest();
+		update(digest, toBytes(bean.getMainIdentifier()));
+		TreeMap<String, Set<Object>> datasets = new TreeMap<String, Set<Object>>();
+		for (String name : bean.datasets().getAttributesNames()) {
+			datasets.put(name.toLowerCase(), bean.getDatasetById(name));
+		}
+		for (String name : datasets.keySet()) {
+			update(digest, toBytes(name));
+			Set<Object> values = datasets.get(name);
+			List<byte[]> sortedValues = new ArrayList<byte[]>(values != null ? values.size() : 0);
+			if (values != null) {
+				for (Object value : values) {
+					sortedValues.add(toBytes(value));
+				}
+			}
+			Collections.sort(sortedValues, BYTES_ORDER);
+			digest.update(ByteBuffer.allocate(4).putInt(sortedValues.size()).array());
+			for (byte[] value : sortedValues) {
+				update(digest, value);
+			}
+		}
+		return digest.digest();
+	}
+
+	private static byte[] getFingerprint(LscModifications lm) {
+		MessageDigest digest = getDigest();
+		update(digest, toBytes(lm.getOperation()));
+		update(digest, toBytes(lm.getMainIdentifier()));
+		update(digest, toBytes(lm.getNewMainIdentifier()));
+		for (LscDatasetModification modification : lm.getLscAttributeModifications()) {
+			update(digest, toBytes(modification.getOperation()));
+			update(digest, toBytes(modification.getAttributeName()));
+			digest.update(ByteBuffer.allocate(4).putInt(modification.getValues().size()).array());
+			for (Object value : modification.getValues()) {
+				update(digest, toBytes(value));
+			}
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * The task configuration covers the task itself, the connections of its
+	 * services and the content of its script includes.
+	 */
+	private static byte[] getConfigurationFingerprint(Task task) throws LscConfigurationException {
+		JaxbXmlConfigurationHelper helper = new JaxbXmlConfigurationHelper();
+		MessageDigest digest = getDigest();
+		update(digest, toBytes(helper.toXml("task", task.getTaskType())));
+		ServiceType[] services = new ServiceType[] {
+						LscConfiguration.getSourceService(task.getTaskType()),
+						LscConfiguration.getDestinationService(task.getTaskType()) };
+		for (ServiceType service : services) {
+			if (service != null && service.getConnection() != null && service.getConnection().getReference() != null) {
+				update(digest, toBytes(helper.toXml("connection", service.getConnection().getReference())));
+			}
+		}
+		if (task.getScriptIncludes() != null) {
+			for (File scriptInclude : task.getScriptIncludes()) {
+				try {
+					update(digest, FileUtils.readFileToByteArray(scriptInclude));
+				} catch (IOException e) {
+					throw new LscConfigurationException("Unable to read " + scriptInclude.getAbsolutePath(), e);
+				}
+			}
+		}
+		return digest.digest();
+	}
+
+	private static MessageDigest getDigest() {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Values are length prefixed, so that consecutive values can not be confused */
+	private static void update(MessageDigest digest, byte[] value) {
+		digest.update(ByteBuffer.allocate(4).putInt(value.length).array());
+		digest.update(value);
+	}
+
+	private static byte[] toBytes(Object value) {
+		if (value == null) {
+			return new byte[0];
+		} else if (value instanceof byte[]) {
+			return (byte[]) value;
+		}
+		return value.toString().getBytes(UTF8);
+	}
+}
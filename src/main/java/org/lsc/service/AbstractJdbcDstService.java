@@ -45,13 +45,29 @@
  */
 package org.lsc.service;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+
+import org.lsc.LscDatasets;
+import org.lsc.LscModificationType;
 import org.lsc.LscModifications;
+import org.lsc.beans.IBean;
 import org.lsc.exception.LscServiceConfigurationException;
 import org.lsc.exception.LscServiceException;
 
@@ -63,46 +79,163 @@ import com.ibatis.sqlmap.engine.mapping.parameter.ParameterMapping;
 /**
  * This class is a Database abstraction layour for a destination service
  * 
+ * When a batch size is set, modifications are grouped and sent in a single
+ * JDBC batch and transaction, either when the batch is full or when the
+ * batch timeout expires. If a batch fails, its modifications are applied
+ * again one by one, so that the error is reported for the right entries.
+ * 
  * @author Sebastien Bahloul &lt;seb@lsc-project.org&gt;
  */
-public abstract class AbstractJdbcDstService extends AbstractJdbcService implements IWritableService{
+public abstract class AbstractJdbcDstService extends AbstractJdbcService implements IPipelinedWritableService, IBatchLookupService, Closeable {
 
     private String serviceName;
+
+    /** Maximum number of modifications per batch (batching is disabled under 2) */
+    private int batchSize;
+
+    /** Maximum time (ms) a modification waits for its batch to be sent */
+    private long batchTimeout;
+
+    /** Modifications waiting to be sent */
+    private List<PendingModification> batch = new ArrayList<PendingModification>();
+
+    /** Protects the batch and its timer */
+    private final Object batchLock = new Object();
+
+    /**
+     * Only one batch is sent at a time. Not a monitor, since it is held while
+     * the batch is executed and would pin a virtual thread to its carrier.
+     */
+    private final Lock flushLock = new ReentrantLock();
+
+    /** Sends the batch when the timeout expires */
+    private ScheduledExecutorService batchTimer;
+
+    /** Request returning the records of several objects at once */
+    private String requestNameForObjectBatch;
+
+    /** Maximum number of objects looked up by a single request */
+    private int lookupBatchSize;
     
     public AbstractJdbcDstService(String serviceName, SqlMapClient sqlMapClient, String bean) throws LscServiceConfigurationException {
         super(sqlMapClient, bean);
         this.serviceName = serviceName;
     }
 
-    @Override
-    public boolean apply(LscModifications lm) throws LscServiceException {
-        Map<String, Object> attributeMap = getAttributesMap(lm.getLscAttributeModifications());
-        try {
-            sqlMapper.startTransaction();
-            switch(lm.getOperation()) {
-            case CHANGE_ID:
-                // Silently return without doing anything
-                break;
-            case CREATE_OBJECT:
-                for(String request: getRequestsNameForInsert()) {
-              	    LOGGER.debug("Executing " + request + "(" + attributeMap + ")");
-                    sqlMapper.insert(request, attributeMap);
+    /**
+     * Enable batched writes.
+     * @param batchSize maximum number of modifications per batch
+     * @param batchTimeout maximum time in milliseconds before a batch is sent
+     */
+    protected void setBatching(int batchSize, long batchTimeout) {
+        this.batchSize = batchSize;
+        this.batchTimeout = batchTimeout;
+    }
+
+    /**
+     * Enable batched lookups.
+     * @param requestNameForObjectBatch request receiving, for each pivot, the list of requested values
+     * @param lookupBatchSize maximum number of objects per request
+     */
+    protected void setLookupBatching(String requestNameForObjectBatch, int lookupBatchSize) {
+        this.requestNameForObjectBatch = requestNameForObjectBatch;
+        this.lookupBatchSize = lookupBatchSize;
+    }
+
+    public int getLookupBatchSize() {
+        return (requestNameForObjectBatch != null ? lookupBatchSize : 0);
+    }
+
+    /**
+     * Look several objects up with a single request, whose records are
+     * routed back to the objects by comparing their pivot columns.
+     * Objects without pivot values, or matching several records, are
+     * left to {@link #getBean(String, LscDatasets, boolean)}.
+     * 
+     * @see org.lsc.service.IBatchLookupService#getBeans(java.util.List, boolean)
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, IBean> getBeans(List<Entry<String, LscDatasets>> ids, boolean fromSameService) throws LscServiceException {
+        List<Map<String, String>> requested = new ArrayList<Map<String, String>>(ids.size());
+        Map<String, List<String>> parameters = new HashMap<String, List<String>>();
+        for (Entry<String, LscDatasets> id : ids) {
+            Map<String, String> pivots = getAttributesMap(id.getValue());
+            if (pivots.isEmpty() || pivots.containsValue(null)) {
+                pivots = null;
+            } else {
+                for (Entry<String, String> pivot : pivots.entrySet()) {
+                    List<String> values = parameters.get(pivot.getKey());
+                    if (values == null) {
+                        values = new ArrayList<String>();
+                        parameters.put(pivot.getKey(), values);
+                    }
+                    values.add(pivot.getValue());
                 }
-                break;
-            case DELETE_OBJECT:
-                for(String request: getRequestsNameForDelete()) {
-                	  LOGGER.debug("Executing " + request + "(" + attributeMap + ")");
-                    sqlMapper.delete(request, attributeMap);
+            }
+            requested.add(pivots);
+        }
+        Map<String, IBean> beans = new HashMap<String, IBean>();
+        if (parameters.isEmpty()) {
+            return beans;
+        }
+
+        try {
+            List<?> records = sqlMapper.queryForList(requestNameForObjectBatch, parameters);
+            int[] candidates = new int[ids.size()];
+            Map<String, Object>[] found = new Map[ids.size()];
+            boolean unrouted = false;
+            for (Object row : records) {
+                Map<String, Object> record = (Map<String, Object>) row;
+                Map<String, Object> columns = new TreeMap<String, Object>(String.CASE_INSENSITIVE_ORDER);
+                columns.putAll(record);
+                boolean routed = false;
+                for (int i = 0; i < ids.size(); i++) {
+                    if (requested.get(i) != null && matches(columns, requested.get(i))) {
+                        candidates[i]++;
+                        found[i] = record;
+                        routed = true;
+                    }
                 }
-                break;
-            case UPDATE_OBJECT:
-                // Push the destination value
-                attributeMap = fillAttributesMap(attributeMap, lm.getDestinationBean());
-                for(String request: getRequestsNameForUpdate()) {
-              	    LOGGER.debug("Executing " + request + "(" + attributeMap + ")");
-                    sqlMapper.update(request, attributeMap);
+                unrouted |= !routed;
+            }
+            for (int i = 0; i < ids.size(); i++) {
+                // a record we could not route may be the missing one
+                if (candidates[i] == 1) {
+                    beans.put(ids.get(i).getKey(), getBeanFromRecord(found[i], ids.get(i).getKey()));
+                } else if (candidates[i] == 0 && !unrouted && requested.get(i) != null) {
+                    beans.put(ids.get(i).getKey(), null);
                 }
             }
+            return beans;
+        } catch (SQLException e) {
+            LOGGER.warn("Error while looking for {} entries at once ({})", ids.size(), e);
+            LOGGER.debug(e.toString(), e);
+            throw new LscServiceException(new CommunicationException(e.getMessage()));
+        } catch (InstantiationException e) {
+            throw new LscServiceException(e);
+        } catch (IllegalAccessException e) {
+            throw new LscServiceException(e);
+        } catch (NamingException e) {
+            throw new LscServiceException(e);
+        }
+    }
+
+    private static boolean matches(Map<String, Object> columns, Map<String, String> pivots) {
+        for (Entry<String, String> pivot : pivots.entrySet()) {
+            Object value = columns.get(pivot.getKey());
+            if (value == null || !pivot.getValue().equals(getValue(value))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean apply(LscModifications lm) throws LscServiceException {
+        Map<String, Object> attributeMap = getRequestParameters(lm);
+        try {
+            sqlMapper.startTransaction();
+            execute(lm, attributeMap);
             sqlMapper.commitTransaction();
         } catch (SQLException e) {
             LOGGER.error(e.toString(), e);
@@ -118,6 +251,178 @@ public abstract class AbstractJdbcDstService extends AbstractJdbcService impleme
         }
         return true;
     }
+
+    private Map<String, Object> getRequestParameters(LscModifications lm) {
+        Map<String, Object> attributeMap = getAttributesMap(lm.getLscAttributeModifications());
+        if (lm.getOperation() == LscModificationType.UPDATE_OBJECT) {
+            // Push the destination value
+            attributeMap = fillAttributesMap(attributeMap, lm.getDestinationBean());
+        }
+        return attributeMap;
+    }
+
+    /**
+     * Run the requests for one modification, inside the current transaction.
+     */
+    private void execute(LscModifications lm, Map<String, Object> attributeMap) throws SQLException {
+        switch(lm.getOperation()) {
+        case CHANGE_ID:
+            // Silently return without doing anything
+            break;
+        case CREATE_OBJECT:
+            for(String request: getRequestsNameForInsert()) {
+                LOGGER.debug("Executing " + request + "(" + attributeMap + ")");
+                sqlMapper.insert(request, attributeMap);
+            }
+            break;
+        case DELETE_OBJECT:
+            for(String request: getRequestsNameForDelete()) {
+                LOGGER.debug("Executing " + request + "(" + attributeMap + ")");
+                sqlMapper.delete(request, attributeMap);
+            }
+            break;
+        case UPDATE_OBJECT:
+            for(String request: getRequestsNameForUpdate()) {
+                LOGGER.debug("Executing " + request + "(" + attributeMap + ")");
+                sqlMapper.update(request, attributeMap);
+            }
+        }
+    }
+
+    public boolean isPipelined() {
+        return batchSize > 1;
+    }
+
+    public void applyAsync(LscModifications lm, IApplyListener listener) throws LscServiceException {
+        if (!isPipelined()) {
+            if (apply(lm)) {
+                listener.applied(lm);
+            } else {
+                listener.failed(lm, new LscServiceException("Error caused by operation " + lm.getOperation().getDescription()));
+            }
+            return;
+        }
+        boolean full = false;
+        synchronized (batchLock) {
+            if (batchTimer == null) {
+                startBatchTimer();
+            }
+            batch.add(new PendingModification(lm, getRequestParameters(lm), listener));
+            full = batch.size() >= batchSize;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Send the pending modifications, and wait for any batch being sent.
+     */
+    public void flush() throws LscServiceException {
+        flushLock.lock();
+        try {
+            List<PendingModification> modifications;
+            synchronized (batchLock) {
+                if (batch.isEmpty()) {
+                    return;
+                }
+                modifications = batch;
+                batch = new ArrayList<PendingModification>();
+            }
+            executeBatch(modifications);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void executeBatch(List<PendingModification> modifications) {
+        boolean done = false;
+        try {
+            sqlMapper.startTransaction();
+            sqlMapper.startBatch();
+            for (PendingModification pending : modifications) {
+                execute(pending.lm, pending.attributeMap);
+            }
+            sqlMapper.executeBatch();
+            sqlMapper.commitTransaction();
+            done = true;
+        } catch (SQLException e) {
+            LOGGER.warn("Batch of {} modifications failed, applying them one by one ({})", modifications.size(), e.toString());
+            LOGGER.debug(e.toString(), e);
+        } finally {
+            try {
+                sqlMapper.endTransaction();
+            } catch (SQLException e) {
+                LOGGER.error(e.toString(), e);
+                done = false;
+            }
+        }
+
+        for (PendingModification pending : modifications) {
+            if (done) {
+                pending.listener.applied(pending.lm);
+                continue;
+            }
+            try {
+                if (apply(pending.lm)) {
+                    pending.listener.applied(pending.lm);
+                } else {
+                    pending.listener.failed(pending.lm, new LscServiceException("Error caused by operation "
+                                    + pending.lm.getOperation().getDescription() + ", attributes " + pending.attributeMap));
+                }
+            } catch (LscServiceException e) {
+                pending.listener.failed(pending.lm, e);
+            }
+        }
+    }
+
+    private void startBatchTimer() {
+        batchTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "jdbc-batch-" + serviceName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        batchTimer.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    flush();
+                } catch (Exception e) {
+                    LOGGER.error("Error while sending the pending modifications: " + e.toString(), e);
+                }
+            }
+        }, batchTimeout, batchTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    public void close() throws IOException {
+        synchronized (batchLock) {
+            if (batchTimer != null) {
+                batchTimer.shutdown();
+                batchTimer = null;
+            }
+        }
+        try {
+            flush();
+        } catch (LscServiceException e) {
+            throw new IOException(e.toString());
+        }
+    }
+
+    /**
+     * A modification waiting for its batch to be sent.
+     */
+    private static final class PendingModification {
+        private final LscModifications lm;
+        private final Map<String, Object> attributeMap;
+        private final IApplyListener listener;
+
+        private PendingModification(LscModifications lm, Map<String, Object> attributeMap, IApplyListener listener) {
+            this.lm = lm;
+            this.attributeMap = attributeMap;
+            this.listener = listener;
+        }
+    }
     
     /** Fetched attributes name cache */
     private static Map<String, List<String>> attributesNameCache = new HashMap<String, List<String>>();
@@ -46,6 +46,7 @@
 package org.lsc.service;
 
 import java.sql.SQLException;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -54,6 +55,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.naming.CommunicationException;
 import javax.naming.NamingException;
@@ -74,6 +79,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.ibatis.sqlmap.client.SqlMapClient;
+import com.ibatis.sqlmap.client.event.RowHandler;
 
 /**
  * Generic JDBC iBatis Service
@@ -82,13 +88,20 @@ import com.ibatis.sqlmap.client.SqlMapClient;
  * Get a look at org.lsc.service.StructureJdbcService class
  * @author Sebastien Bahloul <seb@lsc-project.org>
  */
-public abstract class AbstractJdbcService implements IService {
+public abstract class AbstractJdbcService implements IStreamingService {
 
 	protected static final Logger LOGGER = LoggerFactory.getLogger(AbstractJdbcService.class);
+
+	/** The maximum number of identifiers read ahead by {@link #getPivotCursor()} */
+	private static final int CURSOR_CAPACITY = 1000;
+
 	protected SqlMapClient sqlMapper;
 	
 	private Class<IBean> beanClass;
 
+	/** Use the records returned by the list request as complete beans */
+	private boolean listFullEntries;
+
 	public abstract String getRequestNameForList();
 
 	public abstract String getRequestNameForObject();
@@ -177,6 +190,159 @@ public abstract class AbstractJdbcService implements IService {
 		return ret;
 	}
 	
+	/**
+	 * Consider the records returned by the list request as complete entries:
+	 * {@link #getPivotCursor()} then also returns them as beans, and they are
+	 * not read again with the object request.
+	 * @param listFullEntries true if the list request returns all the fetched columns
+	 */
+	protected void setListFullEntries(boolean listFullEntries) {
+		this.listFullEntries = listFullEntries;
+	}
+
+	/**
+	 * Execute the same request as {@link #getListPivots()}, but hand over the
+	 * identifiers through a cursor while the rows are read: the request runs
+	 * in another thread, which waits when the cursor is not consumed fast
+	 * enough.
+	 * @return the cursor on the entries names with their attribute names and values
+	 */
+	public IPivotCursor getPivotCursor() {
+		return getRowCursor(getRequestNameForList(), listFullEntries, null);
+	}
+
+	/**
+	 * Hand over the records returned by a request through a cursor while the
+	 * rows are read.
+	 * @param requestName the request to execute
+	 * @param fullEntries true if the records are also returned as beans
+	 * @param keyColumn the column holding the entry names, or null to build
+	 *            them from all the returned columns
+	 * @return the cursor on the records, in the order returned by the database
+	 */
+	protected IPivotCursor getRowCursor(String requestName, boolean fullEntries, String keyColumn) {
+		RowHandlerCursor cursor = new RowHandlerCursor(requestName, fullEntries, keyColumn);
+		Thread thread = new Thread(cursor, "JDBC cursor " + requestName);
+		thread.setDaemon(true);
+		thread.start();
+		return cursor;
+	}
+
+	/**
+	 * The cursor returned by {@link AbstractJdbcService#getRowCursor(String, boolean, String)}.
+	 */
+	private final class RowHandlerCursor extends AbstractPivotCursor implements RowHandler, Runnable {
+
+		/** Marks the end of the rows in the queue */
+		private final Object end = new Object();
+
+		private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(CURSOR_CAPACITY);
+
+		private final String requestName;
+
+		private final boolean fullEntries;
+
+		private final String keyColumn;
+
+		private volatile boolean closed;
+
+		private int count;
+
+		private RowHandlerCursor(String requestName, boolean fullEntries, String keyColumn) {
+			this.requestName = requestName;
+			this.fullEntries = fullEntries;
+			this.keyColumn = keyColumn;
+		}
+
+		public void run() {
+			Object last = end;
+			try {
+				sqlMapper.queryWithRowHandler(requestName, this);
+			} catch (SQLException e) {
+				last = e;
+			} catch (RuntimeException e) {
+				last = e;
+			} catch (Error e) {
+				// the cursor would otherwise wait for rows which will never come
+				last = new ExecutionException(e);
+				throw e;
+			} finally {
+				if (!closed) {
+					put(last);
+				}
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		public void handleRow(Object row) {
+			if (closed) {
+				throw new IllegalStateException("Cursor closed");
+			}
+			Map<String, Object> idMap = (Map<String, Object>) row;
+			count++;
+			String key;
+			if (keyColumn == null) {
+				key = getMapKey(idMap, count);
+			} else {
+				Object value = idMap.get(keyColumn);
+				key = (value != null ? value.toString() : "(" + count + ")");
+			}
+			if (!fullEntries) {
+				put(new SimpleImmutableEntry<String, LscDatasets>(key, new LscDatasets(idMap)));
+				return;
+			}
+			try {
+				put(new BeanEntry(key, new LscDatasets(idMap), getBeanFromRecord(idMap, key)));
+			} catch (InstantiationException e) {
+				throw new IllegalStateException(e);
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			} catch (NamingException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		private void put(Object item) {
+			try {
+				while (!closed && !queue.offer(item, 1, TimeUnit.SECONDS)) {
+					// wait for the consumer
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for the cursor to be read");
+			}
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		protected Entry<String, LscDatasets> fetch() throws LscServiceException {
+			if (closed) {
+				return null;
+			}
+			Object item;
+			try {
+				item = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				close();
+				throw new LscServiceException(e);
+			}
+			if (item == end) {
+				return null;
+			} else if (item instanceof Exception) {
+				close();
+				LOGGER.warn("Error while looking for the entries list: {}", item.toString());
+				throw new LscServiceException((Exception) item);
+			}
+			return (Entry<String, LscDatasets>) item;
+		}
+
+		public void close() {
+			closed = true;
+			queue.clear();
+		}
+	}
+
 	protected String getMapKey(Map<String, Object> idMap, int count) {
 
 		String key;
@@ -200,9 +366,7 @@ public abstract class AbstractJdbcService implements IService {
 	@SuppressWarnings("unchecked")
 	@Override
 	public IBean getBean(String id, LscDatasets attributes, boolean fromSameService) throws LscServiceException {
-		IBean srcBean = null;
 		try {
-			srcBean = beanClass.newInstance();
 			List<?> records = sqlMapper.queryForList(getRequestNameForObjectOrClean(fromSameService), getAttributesMap(attributes));
 			if(records.size() > 1) {
 				throw new LscServiceException("Only a single record can be returned from a getObject request ! " +
@@ -210,16 +374,7 @@ public abstract class AbstractJdbcService implements IService {
 			} else if (records.size() == 0) {
 				return null;
 			}
-			Map<String, Object> record = (Map<String, Object>) records.get(0);
-			for(Entry<String, Object> entry: record.entrySet()) {
-				if(entry.getValue() != null) {
-					srcBean.setDataset(entry.getKey(), SetUtils.attributeToSet(new BasicAttribute(entry.getKey(), entry.getValue())));
-				} else {
-                    srcBean.setDataset(entry.getKey(), SetUtils.attributeToSet(new BasicAttribute(entry.getKey())));
-				}
-			}
-			srcBean.setMainIdentifier(id);
-			return srcBean;
+			return getBeanFromRecord((Map<String, Object>) records.get(0), id);
 		} catch (InstantiationException e) {
 			LOGGER.error("Unable to get static method getInstance on {} ! This is probably a programmer's error ({})",
 					beanClass.getName(), e.toString());
@@ -241,6 +396,27 @@ public abstract class AbstractJdbcService implements IService {
 		return null;
 	}
 
+	/**
+	 * Map a database record to a new bean.
+	 * @param record the record returned by an iBatis request
+	 * @param id the bean main identifier
+	 * @return the filled bean
+	 * @throws InstantiationException
+	 * @throws IllegalAccessException
+	 * @throws NamingException
+	 */
+	protected IBean getBeanFromRecord(Map<String, Object> record, String id) throws InstantiationException, IllegalAccessException, NamingException {
+		IBean bean = beanClass.newInstance();
+		for(Entry<String, Object> entry: record.entrySet()) {
+			if(entry.getValue() != null) {
+				bean.setDataset(entry.getKey(), SetUtils.attributeToSet(new BasicAttribute(entry.getKey(), entry.getValue())));
+			} else {
+				bean.setDataset(entry.getKey(), SetUtils.attributeToSet(new BasicAttribute(entry.getKey())));
+			}
+		}
+		bean.setMainIdentifier(id);
+		return bean;
+	}
 
 	public static Map<String, Object> fillAttributesMap(
 			Map<String, Object> datasets, IBean destinationBean) {
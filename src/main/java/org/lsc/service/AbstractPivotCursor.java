@@ -0,0 +1,146 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.service;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import org.lsc.LscDatasets;
+import org.lsc.beans.IBean;
+import org.lsc.exception.LscServiceException;
+
+/**
+ * Base implementation of {@link IPivotCursor}, reading one entry ahead.
+ */
+public abstract class AbstractPivotCursor implements IPivotCursor {
+
+	private Entry<String, LscDatasets> nextEntry;
+
+	private Entry<String, LscDatasets> currentEntry;
+
+	private boolean done;
+
+	/**
+	 * Read the next entry from the underlying search.
+	 * @return the entry, or null at the end of the results
+	 * @throws LscServiceException thrown if the entries could not be read
+	 */
+	protected abstract Entry<String, LscDatasets> fetch() throws LscServiceException;
+
+	public final boolean hasNext() throws LscServiceException {
+		if (nextEntry == null && !done) {
+			nextEntry = fetch();
+			if (nextEntry == null) {
+				done = true;
+				close();
+			}
+		}
+		return nextEntry != null;
+	}
+
+	public final Entry<String, LscDatasets> next() throws LscServiceException {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		currentEntry = nextEntry;
+		nextEntry = null;
+		return currentEntry;
+	}
+
+	public final IBean getBean() {
+		if (currentEntry instanceof BeanEntry) {
+			return ((BeanEntry) currentEntry).getBean();
+		}
+		return null;
+	}
+
+	/**
+	 * Get a cursor on an already built map of identifiers, for services which
+	 * do not implement {@link IStreamingService}.
+	 * @param pivots the identifiers
+	 * @return the cursor
+	 */
+	public static IPivotCursor fromMap(Map<String, LscDatasets> pivots) {
+		final Iterator<Entry<String, LscDatasets>> iterator = pivots.entrySet().iterator();
+		return new AbstractPivotCursor() {
+			@Override
+			protected Entry<String, LscDatasets> fetch() {
+				return iterator.hasNext() ? iterator.next() : null;
+			}
+
+			public void close() {
+			}
+		};
+	}
+
+	/**
+	 * An entry read with all its fetched datasets, to be returned by
+	 * {@link AbstractPivotCursor#fetch()}.
+	 */
+	public static final class BeanEntry extends SimpleImmutableEntry<String, LscDatasets> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient IBean bean;
+
+		/**
+		 * @param name the entry name
+		 * @param pivots the pivot attributes of the entry
+		 * @param bean the complete entry
+		 */
+		public BeanEntry(String name, LscDatasets pivots, IBean bean) {
+			super(name, pivots);
+			this.bean = bean;
+		}
+
+		public IBean getBean() {
+			return bean;
+		}
+	}
+}
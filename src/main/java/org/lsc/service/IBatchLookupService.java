@@ -0,0 +1,81 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.lsc.LscDatasets;
+import org.lsc.beans.IBean;
+import org.lsc.exception.LscServiceException;
+
+/**
+ * Extend default IService interface to look several objects up with a
+ * single request, instead of one request per object.
+ */
+public interface IBatchLookupService extends IService {
+
+	/**
+	 * Get the number of objects to look up together.
+	 * @return the block size, 0 or 1 if lookups should not be batched
+	 */
+	int getLookupBatchSize();
+
+	/**
+	 * Look several objects up at once. Each object found is the one that
+	 * {@link #getBean(String, LscDatasets, boolean)} would have returned.
+	 *
+	 * @param ids the objects' identifiers, as returned by getBean
+	 * @param fromSameService are the pivot attributes provided by the same service
+	 * @return the objects, indexed by main identifier; a null value means the
+	 * 		object was not found, and an identifier missing from the map has to
+	 * 		be looked up on its own (never null)
+	 * @throws LscServiceException thrown if the request failed
+	 */
+	Map<String, IBean> getBeans(List<Entry<String, LscDatasets>> ids, boolean fromSameService)
+			throws LscServiceException;
+}
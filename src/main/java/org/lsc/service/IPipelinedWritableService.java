@@ -0,0 +1,80 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.service;
+
+import org.lsc.LscModifications;
+import org.lsc.exception.LscServiceException;
+
+/**
+ * Extend default IWritableService interface to send modifications without
+ * waiting for the result of each one. A bounded number of operations may be
+ * outstanding at a time, and their outcome is reported to a listener.
+ */
+public interface IPipelinedWritableService extends IWritableService {
+
+	/**
+	 * Is the pipelined write mode activated for this service ?
+	 * @return true if {@link #applyAsync(LscModifications, IApplyListener)} should be used
+	 */
+	boolean isPipelined();
+
+	/**
+	 * Send lsc modifications. This method blocks only while the window of
+	 * outstanding operations is full.
+	 *
+	 * @param lm Modifications to apply in a {@link LscModifications} object.
+	 * @param listener Notified, from another thread, once the result is known
+	 * @throws LscServiceException thrown if the modifications could not be sent
+	 */
+	void applyAsync(LscModifications lm, IApplyListener listener) throws LscServiceException;
+
+	/**
+	 * Wait until all the outstanding operations have completed and their
+	 * listeners have been notified.
+	 * @throws LscServiceException thrown if interrupted while waiting
+	 */
+	void flush() throws LscServiceException;
+}
@@ -0,0 +1,92 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.service;
+
+import java.io.Closeable;
+import java.util.Map.Entry;
+
+import org.lsc.LscDatasets;
+import org.lsc.beans.IBean;
+import org.lsc.exception.LscServiceException;
+
+/**
+ * A cursor on the objects' identifiers of a service, read while the
+ * underlying search is still running. Entries are only fetched as fast as
+ * they are consumed, and the cursor must be closed to free its resources
+ * even if it was not read until its end.
+ */
+public interface IPivotCursor extends Closeable {
+
+	/**
+	 * Is there another entry ? This method blocks until the next entry is
+	 * received or the end of the results is reached.
+	 * @return true if {@link #next()} will return an entry
+	 * @throws LscServiceException thrown if the entries could not be read
+	 */
+	boolean hasNext() throws LscServiceException;
+
+	/**
+	 * Get the next entry.
+	 * @return the entry name with its associated map of attribute names and values
+	 * @throws LscServiceException thrown if the entries could not be read
+	 * @throws java.util.NoSuchElementException if there is no more entry
+	 */
+	Entry<String, LscDatasets> next() throws LscServiceException;
+
+	/**
+	 * Get the complete entry last returned by {@link #next()}, when the
+	 * service read all the fetched datasets while listing the entries.
+	 * @return the bean, or null if the entry has to be read with
+	 *         {@link IService#getBean(String, LscDatasets, boolean)}
+	 */
+	IBean getBean();
+
+	/**
+	 * Stop reading the entries and free the underlying resources. Calling
+	 * this method more than once has no effect.
+	 */
+	void close();
+}
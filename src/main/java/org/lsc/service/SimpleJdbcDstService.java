@@ -93,6 +93,12 @@ public class SimpleJdbcDstService extends AbstractJdbcDstService {
 		        DaoConfig.getSqlMapClient((DatabaseConnectionType)task.getDatabaseDestinationService().getConnection().getReference()),
 		        task.getBean());
 		serviceConf = task.getDatabaseDestinationService();
+		if (serviceConf.getBatchSize() != null && serviceConf.getBatchSize() > 1) {
+			setBatching(serviceConf.getBatchSize(), (serviceConf.getBatchTimeout() != null ? serviceConf.getBatchTimeout() : 1000));
+		}
+		if (serviceConf.getLookupBatchSize() != null && serviceConf.getLookupBatchSize() > 1) {
+			setLookupBatching(serviceConf.getRequestNameForObjectBatch(), serviceConf.getLookupBatchSize());
+		}
 	}
 
 	/* (non-Javadoc)
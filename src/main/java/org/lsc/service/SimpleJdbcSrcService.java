@@ -67,12 +67,14 @@ import org.lsc.persistence.DaoConfig;
  * @author Jonathan Clarke &lt;jonathan@phillipoux.net&gt;
  *
  */
-public class SimpleJdbcSrcService extends AbstractJdbcService implements IAsynchronousService {
+public class SimpleJdbcSrcService extends AbstractJdbcService implements IAsynchronousService, ISortedService {
 
 	private final String requestNameForList;
 	private final String requestNameForNextId;
 	private final String requestNameForObject;
 	private final String requestNameForClean;
+	private final String requestNameForSortedList;
+	private final String sortedBy;
 	
 	/** Period in (milliseconds) */
 	private int interval;
@@ -92,6 +94,8 @@ public class SimpleJdbcSrcService extends AbstractJdbcService implements IAsynch
 		requestNameForObject = props.getProperty("requestNameForObject");
 		requestNameForNextId = props.getProperty("requestNameForNextId");
 		requestNameForClean = props.getProperty("requestNameForClean");
+		requestNameForSortedList = props.getProperty("requestNameForSortedList");
+		sortedBy = props.getProperty("sortedBy");
 		
 		try {
 			// check that we have all parameters, or abort
@@ -125,6 +129,9 @@ public class SimpleJdbcSrcService extends AbstractJdbcService implements IAsynch
 		requestNameForObject = serviceConf.getRequestNameForObject();
         requestNameForNextId = serviceConf.getRequestNameForNextId();
 		requestNameForClean = serviceConf.getRequestNameForClean();
+		requestNameForSortedList = serviceConf.getRequestNameForSortedList();
+		sortedBy = serviceConf.getSortedBy();
+		setListFullEntries(Boolean.TRUE.equals(serviceConf.isListFullEntries()));
 		if(requestNameForClean == null) {
             LOGGER.warn("No clean request has been specified for task=" + task.getName() + ". During the clean phase, LSC wouldn't be able to get the right entries and may delete all destination entries !");
 		}
@@ -194,4 +201,22 @@ public class SimpleJdbcSrcService extends AbstractJdbcService implements IAsynch
 	public long getInterval() {
 		return interval;
 	}
+
+	public String getSortedBy() {
+		return sortedBy;
+	}
+
+	/**
+	 * Execute the requestNameForSortedList request, which must return complete
+	 * records ordered by the sortedBy column (i.e. ORDER BY sortedBy). The
+	 * records are handed over through the cursor while they are read.
+	 * @return the sorted cursor
+	 * @throws LscServiceException
+	 */
+	public IPivotCursor getSortedCursor() throws LscServiceException {
+		if (requestNameForSortedList == null || sortedBy == null) {
+			throw new LscServiceConfigurationException("Both requestNameForSortedList and sortedBy must be set to get sorted entries !");
+		}
+		return getRowCursor(requestNameForSortedList, true, sortedBy);
+	}
 }
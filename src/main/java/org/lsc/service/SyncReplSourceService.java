@@ -50,6 +50,7 @@ import java.io.IOException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -117,7 +118,7 @@ import org.slf4j.LoggerFactory;
  * to a compatible directory to get updates on the fly.
  * @author Sebastien Bahloul &lt;seb@lsc-project.org&gt;
  */
-public class SyncReplSourceService extends SimpleJndiSrcService implements IAsynchronousService, Closeable {
+public class SyncReplSourceService extends SimpleJndiSrcService implements IPushAsynchronousService, Closeable {
 
 	protected static final Logger LOGGER = LoggerFactory.getLogger(SyncReplSourceService.class);
 
@@ -130,7 +131,12 @@ public class SyncReplSourceService extends SimpleJndiSrcService implements IAsyn
 	/** The interval in milliseconds */
 	private int interval;
 	
-	private SearchFuture sf;
+	private volatile SearchFuture sf;
+
+	/** The thread pushing the changes, if they are listened to */
+	private Thread reader;
+
+	private volatile boolean stopped;
 
 	public SyncReplSourceService(final TaskType task)
 			throws LscServiceConfigurationException {
@@ -188,6 +194,7 @@ public class SyncReplSourceService extends SimpleJndiSrcService implements IAsyn
 	
 	@Override
 	public void close() throws IOException {
+		stop();
 		connection.close();
 	}
 	
@@ -206,6 +213,58 @@ public class SyncReplSourceService extends SimpleJndiSrcService implements IAsyn
 		}
 	}
 
+	/**
+	 * Returns a cursor on all the objects' identifiers, read from the
+	 * directory while they are consumed.
+	 * 
+	 * @return the cursor on the entries names with their attribute names and values
+	 * @throws LscServiceException if the search could not be started
+	 */
+	@Override
+	public IPivotCursor getPivotCursor() throws LscServiceException {
+		final EntryCursor entryCursor;
+		try {
+			if (!connection.isConnected()) {
+				connection = getConnection(ldapConn);
+			}
+			entryCursor = connection.search(getBaseDn(), getFilterAll(), SearchScope.SUBTREE,
+					getAttrsId().toArray(new String[getAttrsId().size()]));
+		} catch (RuntimeException e) {
+			throw new LscServiceException(e.toString(), e);
+		} catch (LdapException e) {
+			throw new LscServiceException(e.toString(), e);
+		}
+		return new AbstractPivotCursor() {
+			private boolean closed;
+
+			@Override
+			protected Map.Entry<String, LscDatasets> fetch() throws LscServiceException {
+				try {
+					if (entryCursor.next()) {
+						Entry entry = entryCursor.get();
+						return new SimpleImmutableEntry<String, LscDatasets>(entry.getDn().getName(), convertEntry(entry));
+					}
+					entryCursor.getSearchResultDone();
+					return null;
+				} catch (Exception e) {
+					close();
+					throw new LscServiceException("Error while performing search. Results may be incomplete." + e, e);
+				}
+			}
+
+			public void close() {
+				if (!closed) {
+					closed = true;
+					try {
+						entryCursor.close();
+					} catch (Exception e) {
+						LOGGER.debug(e.toString(), e);
+					}
+				}
+			}
+		};
+	}
+
 	/**
 	 * The simple object getter according to its identifier.
 	 * 
@@ -286,47 +345,155 @@ public class SyncReplSourceService extends SimpleJndiSrcService implements IAsyn
 
 	@Override
 	public java.util.Map.Entry<String, LscDatasets> getNextId() throws LscServiceException {
-		Map<String, LscDatasets> temporaryMap = new HashMap<String, LscDatasets>(1);
 		if(sf == null || sf.isCancelled()) {
-			try {
-				SearchRequest searchRequest = new SearchRequestImpl();
-				searchRequest.addControl(getSearchContinuationControl(srsc.getServerType()));
-				searchRequest.setBase(new Dn(getBaseDn()));
-				searchRequest.setFilter(getFilterAll());
-				searchRequest.setDerefAliases(getAlias(ldapConn.getDerefAliases()));
-				searchRequest.setScope(SearchScope.SUBTREE);
-				searchRequest.addAttributes(getAttrsId().toArray(new String[getAttrsId().size()]));
-				sf = getConnection(ldapConn).searchAsync(searchRequest);
-			} catch (LdapInvalidDnException e) {
-				throw new LscServiceException(e.toString(), e);
-			} catch (LdapException e) {
-				throw new LscServiceException(e.toString(), e);
-			}
+			sf = startSearch();
 		}
 		Response searchResponse = null;
 		try {
 			searchResponse = sf.get(1, TimeUnit.NANOSECONDS);
 		} catch (InterruptedException e) {
 			LOGGER.warn("Interrupted search !");
+			Thread.currentThread().interrupt();
 		} catch (ExecutionException e) {
 			LOGGER.warn("Execution exception while searching !");
 		} catch (TimeoutException e) {
-			LOGGER.warn("Timeout during search !");
+			// no change yet
 		}
 		if(checkSearchResponse(searchResponse)) {
-			SearchResultEntryDecorator sre = ((SearchResultEntryDecorator) searchResponse);
-			temporaryMap.put(sre.getObjectName().toString(), convertEntry(sre.getEntry(), true));
-			return temporaryMap.entrySet().iterator().next();
-		} else if(searchResponse != null && searchResponse.getType() == MessageTypeEnum.SEARCH_RESULT_DONE){
-			LdapResult result = ((SearchResultDone)searchResponse).getLdapResult();
-			if(result.getResultCode() != ResultCodeEnum.SUCCESS) {
-				throw new LscServiceCommunicationException(result.getDiagnosticMessage(), null);
-			}
+			return getId(searchResponse);
+		} else if(isSearchDone(searchResponse)) {
 			sf = null;
 		}
 		return null;
 	}
 
+	/**
+	 * Push the changes from a dedicated thread, as soon as the directory
+	 * sends them.
+	 * @param listener the listener the changes are pushed to
+	 * @throws LscServiceException if the search could not be started
+	 */
+	public synchronized void start(final IChangeListener listener) throws LscServiceException {
+		stopped = false;
+		sf = startSearch();
+		reader = new Thread(new Runnable() {
+			public void run() {
+				readChanges(listener);
+			}
+		}, "syncrepl-" + ldapConn.getName());
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	public synchronized void stop() {
+		stopped = true;
+		if (sf != null) {
+			sf.cancel(true);
+		}
+		if (reader != null) {
+			reader.interrupt();
+			try {
+				reader.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			reader = null;
+		}
+		sf = null;
+	}
+
+	/**
+	 * Wait for the changes and push them to the listener, until stopped. The
+	 * search is started again when the directory ends it successfully.
+	 * @param listener the listener
+	 */
+	private void readChanges(IChangeListener listener) {
+		try {
+			while (!stopped) {
+				Response searchResponse = null;
+				try {
+					// returns as soon as a change is received, the timeout
+					// only bounds the time to notice a stop
+					searchResponse = sf.get(1, TimeUnit.SECONDS);
+				} catch (TimeoutException e) {
+					continue;
+				}
+				if (checkSearchResponse(searchResponse)) {
+					listener.changed(getId(searchResponse));
+				} else if (isSearchDone(searchResponse)) {
+					Thread.sleep(interval);
+					sf = startSearch();
+				} else if (searchResponse == null && sf.isCancelled() && !stopped) {
+					throw new LscServiceCommunicationException("The search has been cancelled", null);
+				}
+			}
+		} catch (InterruptedException e) {
+			// stopped
+		} catch (ExecutionException e) {
+			failed(listener, new LscServiceCommunicationException(e.toString(), e));
+		} catch (LscServiceException e) {
+			failed(listener, e);
+		} catch (RuntimeException e) {
+			failed(listener, new LscServiceException(e.toString(), e));
+		}
+	}
+
+	private void failed(IChangeListener listener, LscServiceException e) {
+		if (!stopped) {
+			listener.failed(e);
+		}
+	}
+
+	/**
+	 * Start the persistent search on the connection of the service, which is
+	 * opened again if it has been lost.
+	 * @return the search
+	 * @throws LscServiceException if the search could not be started
+	 */
+	private SearchFuture startSearch() throws LscServiceException {
+		try {
+			if (!connection.isConnected()) {
+				connection = getConnection(ldapConn);
+			}
+			if (connection == null) {
+				throw new LscServiceCommunicationException("Unable to connect to " + ldapConn.getUrl(), null);
+			}
+			SearchRequest searchRequest = new SearchRequestImpl();
+			searchRequest.addControl(getSearchContinuationControl(srsc.getServerType()));
+			searchRequest.setBase(new Dn(getBaseDn()));
+			searchRequest.setFilter(getFilterAll());
+			searchRequest.setDerefAliases(getAlias(ldapConn.getDerefAliases()));
+			searchRequest.setScope(SearchScope.SUBTREE);
+			searchRequest.addAttributes(getAttrsId().toArray(new String[getAttrsId().size()]));
+			return connection.searchAsync(searchRequest);
+		} catch (LdapInvalidDnException e) {
+			throw new LscServiceException(e.toString(), e);
+		} catch (LdapException e) {
+			throw new LscServiceException(e.toString(), e);
+		}
+	}
+
+	/**
+	 * @param searchResponse a search response, or null
+	 * @return true if the directory ended the search successfully
+	 * @throws LscServiceCommunicationException if the directory ended the search with an error
+	 */
+	private boolean isSearchDone(Response searchResponse) throws LscServiceCommunicationException {
+		if (searchResponse == null || searchResponse.getType() != MessageTypeEnum.SEARCH_RESULT_DONE) {
+			return false;
+		}
+		LdapResult result = ((SearchResultDone)searchResponse).getLdapResult();
+		if(result.getResultCode() != ResultCodeEnum.SUCCESS) {
+			throw new LscServiceCommunicationException(result.getDiagnosticMessage(), null);
+		}
+		return true;
+	}
+
+	private java.util.Map.Entry<String, LscDatasets> getId(Response searchResponse) {
+		SearchResultEntryDecorator sre = ((SearchResultEntryDecorator) searchResponse);
+		return new SimpleImmutableEntry<String, LscDatasets>(sre.getObjectName().toString(), convertEntry(sre.getEntry(), true));
+	}
+
 	private boolean checkSearchResponse(Response searchResponse) {
 		if (searchResponse == null || searchResponse.getType() != MessageTypeEnum.SEARCH_RESULT_ENTRY) {
 			return false;
@@ -50,12 +50,16 @@ import java.io.FileReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import javax.script.Bindings;
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
+import javax.script.ScriptException;
 
 import org.apache.commons.io.FilenameUtils;
 import org.codehaus.groovy.jsr223.GroovyScriptEngineImpl;
@@ -67,7 +71,7 @@ import org.slf4j.LoggerFactory;
 
 /**
  * This is the Groovy Script evaluation context.
- * TODO: Reintroduce cache and imports
+ * TODO: Reintroduce imports
  * @author Sebastien Bahloul &lt;seb@lsc-project.org&gt;
  */
 public final class GroovyEvaluator implements ScriptableEvaluator {
@@ -75,13 +79,32 @@ public final class GroovyEvaluator implements ScriptableEvaluator {
 	// Logger
 	private static final Logger LOGGER = LoggerFactory.getLogger(GroovyEvaluator.class);
 
+	/** The maximum number of compiled expressions kept in cache */
+	private static final int CACHE_SIZE = 1000;
+
 	private GroovyScriptEngineImpl engine;
+
+	/** The precompiled Groovy cache, by expression, least recently used first */
+	private final Map<String, CompiledScript> cache;
+
+	/** The bindings of each task, where includes have already been evaluated */
+	private final Map<Task, TaskBindings> tasksBindings;
 	
 	/**
 	 * Default public constructor.
+	 * The evaluator is used by one thread at a time, see {@link ScriptingEvaluator}.
 	 */
 	public GroovyEvaluator(ScriptEngine se) {
 		this.engine = (GroovyScriptEngineImpl) se;
+		this.cache = new LinkedHashMap<String, CompiledScript>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CompiledScript> eldest) {
+				return size() > CACHE_SIZE;
+			}
+		};
+		this.tasksBindings = new WeakHashMap<Task, TaskBindings>();
 	}
 
 	/**
@@ -183,14 +206,66 @@ public final class GroovyEvaluator implements ScriptableEvaluator {
 	 */
 	private Object instanceEval(final Task task, final String expression,
 					final Map<String, Object> params) {
-		Bindings bindings = engine.createBindings();
+		Object ret = null;
+		TaskBindings taskBindings = null;
+		try {
+			taskBindings = getBindings(task);
+			Bindings bindings = taskBindings.getBindings();
+			if(params != null) {
+				bindings.putAll(params);
+			}
+			ret = compile(expression).eval(bindings);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			LOGGER.error(e.toString());
+			LOGGER.debug(e.toString(), e);
+			return null;
+		} finally {
+			// the bindings are reused by the next evaluations of this task,
+			// which must not see the parameters and variables set by this one
+			if (taskBindings != null) {
+				taskBindings.reset();
+			}
+		}
+
+		return ret;
+	}
 
+	/**
+	 * Get the compiled expression from the cache, compiling it on first use.
+	 * @param expression the expression
+	 * @return the compiled expression
+	 * @throws ScriptException if the expression does not compile
+	 */
+	private CompiledScript compile(final String expression) throws ScriptException {
+		CompiledScript script = cache.get(expression);
+		if (script == null) {
+			/* Allow to have shorter names for function in the package org.lsc.utils.directory */
+			String expressionImport =
+//							"import static org.lsc.utils.directory.*\n" +
+//							"import static org.lsc.utils.*\n" + 
+							expression;
+			script = engine.compile(expressionImport);
+			cache.put(expression, script);
+		}
+		return script;
+	}
 
-		/* Allow to have shorter names for function in the package org.lsc.utils.directory */
-		String expressionImport =
-//						"import static org.lsc.utils.directory.*\n" +
-//						"import static org.lsc.utils.*\n" + 
-						expression;
+	/**
+	 * Get the bindings of a task. They are created on first use with the LDAP
+	 * interfaces of the task services and the Groovy includes of the task are
+	 * evaluated once in them.
+	 * @param task the task
+	 * @return the task bindings
+	 * @throws Exception if an include could not be read or evaluated
+	 */
+	private TaskBindings getBindings(final Task task) throws Exception {
+		TaskBindings taskBindings = tasksBindings.get(task);
+		if (taskBindings != null) {
+			return taskBindings;
+		}
+		Bindings bindings = engine.createBindings();
 
 		// add LDAP interface for destination
 		if (!bindings.containsKey("ldap") && task.getDestinationService() instanceof AbstractSimpleJndiService) {
@@ -206,36 +281,21 @@ public final class GroovyEvaluator implements ScriptableEvaluator {
 			bindings.put("srcLdap", srcSjs);
 		}
 
-		if(params != null) {
-			for(String paramName: params.keySet()) {
-				bindings.put(paramName, params.get(paramName));
-			}
-		}
-		
-		Object ret = null;
-		try {
-			if (task.getScriptIncludes() != null) {
-				for (File scriptInclude: task.getScriptIncludes()) {
-					String extension = FilenameUtils.getExtension(scriptInclude.getAbsolutePath());
-					if ("groovy".equals(extension) || "gvy".equals(extension) || "gy".equals(extension) || "gsh".equals(extension)) {
-						FileReader reader = new FileReader(scriptInclude);
-						try {
-							engine.eval(reader, bindings);
-						} finally {
-							reader.close();
-						}					
-					}
+		if (task.getScriptIncludes() != null) {
+			for (File scriptInclude: task.getScriptIncludes()) {
+				String extension = FilenameUtils.getExtension(scriptInclude.getAbsolutePath());
+				if ("groovy".equals(extension) || "gvy".equals(extension) || "gy".equals(extension) || "gsh".equals(extension)) {
+					FileReader reader = new FileReader(scriptInclude);
+					try {
+						engine.eval(reader, bindings);
+					} finally {
+						reader.close();
+					}					
 				}
 			}
-			ret = engine.eval(expressionImport, bindings);
-		} catch (RuntimeException e) {
-			throw e;
-		} catch (Exception e) {
-			LOGGER.error(e.toString());
-			LOGGER.debug(e.toString(), e);
-			return null;
 		}
-
-		return ret;
+		taskBindings = new TaskBindings(bindings);
+		tasksBindings.put(task, taskBindings);
+		return taskBindings;
 	}
 }
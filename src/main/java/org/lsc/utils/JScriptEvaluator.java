@@ -50,11 +50,15 @@ import java.io.FileReader;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 
@@ -80,21 +84,51 @@ public final class JScriptEvaluator implements ScriptableEvaluator {
 	// Logger
 	private static final Logger LOGGER = LoggerFactory.getLogger(JScriptEvaluator.class);
 
-//	/** The precompiled Javascript cache. */
-//	private Map<String, Script> cache;
+	/** The maximum number of compiled expressions kept in cache */
+	private static final int CACHE_SIZE = 1000;
+
+	/** Allow to have shorter names for function in the package org.lsc.utils.directory */
+	private static final String IMPORTS =
+					"var version = java.lang.System.getProperty(\"java.version\");\n" +
+					"if (version.startsWith(\"1.8.0\")) { load(\"nashorn:mozilla_compat.js\"); }\n" +
+					"importPackage(org.lsc.utils.directory);\n" +
+					"importPackage(org.lsc.utils);\n";
+
+	/** The binding listing the variables to reset */
+	private static final String RESET_NAMES = "lscResetNames";
+
+	/**
+	 * Set to undefined the global variables which cannot be removed from the
+	 * bindings, as those declared with var
+	 */
+	private static final String RESET =
+					"(function(global, names) {\n" +
+					"  for (var i = 0; i < names.length; i++) { global[names[i]] = undefined; }\n" +
+					"})(this, " + RESET_NAMES + ");\n";
 
 	private ScriptEngine engine;
-	
-	/** The local Rhino context. */
-//	private ScriptContext cx;
+
+	/** The precompiled Javascript cache, by expression, least recently used first */
+	private final Map<String, CompiledScript> cache;
+
+	/** The bindings of each task, where imports and includes have already been evaluated */
+	private final Map<Task, TaskBindings> tasksBindings;
 
 	/**
 	 * Default public constructor.
+	 * The evaluator is used by one thread at a time, see {@link ScriptingEvaluator}.
 	 */
 	public JScriptEvaluator(ScriptEngine se) {
-//		cache = new HashMap<String, Script>();
 		this.engine = se;
-//		cx = se.getContext();//new ContextFactory().enterContext();
+		this.cache = new LinkedHashMap<String, CompiledScript>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CompiledScript> eldest) {
+				return size() > CACHE_SIZE;
+			}
+		};
+		this.tasksBindings = new WeakHashMap<Task, TaskBindings>();
 	}
 
     /** {@inheritDoc} */
@@ -255,23 +289,90 @@ public final class JScriptEvaluator implements ScriptableEvaluator {
 	 */
 	private Object instanceEval(final Task task, final String expression,
 					final Map<String, Object> params) throws LscServiceException {
-//		Script script = null;
-		Bindings bindings = engine.createBindings();
+		Object ret = null;
+		TaskBindings taskBindings = null;
+		try {
+			taskBindings = getBindings(task);
+			Bindings bindings = taskBindings.getBindings();
+			if(params != null) {
+				bindings.putAll(params);
+			}
+			ret = compile(expression).eval(bindings);
+		} catch (ScriptException e) {
+            LOGGER.error("Fail to compute expression: " + expression + " on " + 
+                    (params.containsKey("srcBean") && ((IBean)params.get("srcBean")).getMainIdentifier() != null ? "id=" + ((IBean)params.get("srcBean")).getMainIdentifier() : 
+                        ( params.containsKey("dstBean") && ((IBean)params.get("dstBean")).getMainIdentifier() != null ? "id=" + ((IBean)params.get("dstBean")).getMainIdentifier() :
+                            "unknown id !"))
+                    + "\nReason: " + e.toString());
+            LOGGER.debug(e.toString(), e);
+            throw new LscServiceException (e);
+		} catch (RuntimeException e) {
+            throw new LscServiceException (e);
+		} catch (Exception e) {
+			LOGGER.error(e.toString());
+			LOGGER.debug(e.toString(), e);
+			return null;
+		} finally {
+			// the bindings are reused by the next evaluations of this task
+			if (taskBindings != null) {
+				reset(taskBindings);
+			}
+		}
+
+		return ret;
+	}
 
+	/**
+	 * Reset the bindings of a task after an evaluation, so that the parameters
+	 * and the global variables it set are not seen by the next one.
+	 * @param taskBindings the bindings of the task
+	 */
+	private void reset(TaskBindings taskBindings) {
+		List<String> remaining = taskBindings.reset();
+		if (remaining.isEmpty()) {
+			return;
+		}
+		Bindings bindings = taskBindings.getBindings();
+		bindings.put(RESET_NAMES, remaining.toArray(new String[remaining.size()]));
+		try {
+			compile(RESET).eval(bindings);
+		} catch (ScriptException e) {
+			LOGGER.error("Unable to reset the variables {}: {}", remaining, e.toString());
+			LOGGER.debug(e.toString(), e);
+		} finally {
+			bindings.remove(RESET_NAMES);
+		}
+	}
 
-		/* Allow to have shorter names for function in the package org.lsc.utils.directory */
-		String expressionImport =
-                        "var version = java.lang.System.getProperty(\"java.version\");\n" +
-                        "if (version.startsWith(\"1.8.0\")) { load(\"nashorn:mozilla_compat.js\"); }\n" +
-                        "importPackage(org.lsc.utils.directory);\n" +
-                        "importPackage(org.lsc.utils);\n" + expression;
+	/**
+	 * Get the compiled expression from the cache, compiling it on first use.
+	 * @param expression the expression
+	 * @return the compiled expression
+	 * @throws ScriptException if the expression does not compile
+	 */
+	private CompiledScript compile(final String expression) throws ScriptException {
+		CompiledScript script = cache.get(expression);
+		if (script == null) {
+			script = ((Compilable) engine).compile(expression);
+			cache.put(expression, script);
+		}
+		return script;
+	}
 
-//		if (cache.containsKey(expressionImport)) {
-//			script = cache.get(expressionImport);
-//		} else {
-//			script = cx.compileString(expressionImport, "<cmd>", 1, null);
-//			cache.put(expressionImport, script);
-//		}
+	/**
+	 * Get the bindings of a task. They are created on first use with the LDAP
+	 * interfaces of the task services, the package imports and the Javascript
+	 * includes of the task, so that these are evaluated only once.
+	 * @param task the task
+	 * @return the task bindings
+	 * @throws Exception if an include could not be read or evaluated
+	 */
+	private TaskBindings getBindings(final Task task) throws Exception {
+		TaskBindings taskBindings = tasksBindings.get(task);
+		if (taskBindings != null) {
+			return taskBindings;
+		}
+		Bindings bindings = engine.createBindings();
 
 		// add LDAP interface for destination
 		if (!bindings.containsKey("ldap") && task.getDestinationService() instanceof AbstractSimpleJndiService) {
@@ -287,44 +388,22 @@ public final class JScriptEvaluator implements ScriptableEvaluator {
 			bindings.put("srcLdap", srcSjs);
 		}
 
-		if(params != null) {
-			for(String paramName: params.keySet()) {
-				bindings.put(paramName, params.get(paramName));
-			}
-		}
-		
-		Object ret = null;
-		try {
-			if (task.getScriptIncludes() != null) {
-				for (File scriptInclude: task.getScriptIncludes()) {
-					if ("js".equals(FilenameUtils.getExtension(scriptInclude.getAbsolutePath()))) {
-						FileReader reader = new FileReader(scriptInclude);
-						try {
-							engine.eval(reader, bindings);
-						} finally {
-							reader.close();
-						}
+		engine.eval(IMPORTS, bindings);
+		if (task.getScriptIncludes() != null) {
+			for (File scriptInclude: task.getScriptIncludes()) {
+				if ("js".equals(FilenameUtils.getExtension(scriptInclude.getAbsolutePath()))) {
+					FileReader reader = new FileReader(scriptInclude);
+					try {
+						engine.eval(reader, bindings);
+					} finally {
+						reader.close();
 					}
 				}
 			}
-			ret = engine.eval(expressionImport, bindings);
-		} catch (ScriptException e) {
-            LOGGER.error("Fail to compute expression: " + expression + " on " + 
-                    (params.containsKey("srcBean") && ((IBean)params.get("srcBean")).getMainIdentifier() != null ? "id=" + ((IBean)params.get("srcBean")).getMainIdentifier() : 
-                        ( params.containsKey("dstBean") && ((IBean)params.get("dstBean")).getMainIdentifier() != null ? "id=" + ((IBean)params.get("dstBean")).getMainIdentifier() :
-                            "unknown id !"))
-                    + "\nReason: " + e.toString());
-            LOGGER.debug(e.toString(), e);
-            throw new LscServiceException (e);
-		} catch (RuntimeException e) {
-            throw new LscServiceException (e);
-		} catch (Exception e) {
-			LOGGER.error(e.toString());
-			LOGGER.debug(e.toString(), e);
-			return null;
 		}
-
-		return ret;
+		taskBindings = new TaskBindings(bindings);
+		tasksBindings.put(task, taskBindings);
+		return taskBindings;
 	}
 	
 	private static Object convertJsToJava(Object src) {
@@ -0,0 +1,120 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.lsc.configuration.ConnectionType;
+
+/**
+ * Limit the number of operations per second sent to a connection. The
+ * operations are spaced evenly: each caller reserves the next free time slot
+ * and waits until it, so that no burst exceeds the rate.
+ * 
+ * A single limiter is shared by all the tasks using the same connection.
+ */
+public final class RateLimiter {
+
+	/** the limiters of the connections, by connection name */
+	private static final Map<String, RateLimiter> LIMITERS = new HashMap<String, RateLimiter>();
+
+	private final int operationsPerSecond;
+
+	/** Delay between two operations, in nanoseconds */
+	private final long interval;
+
+	/** Time of the next free slot, as given by {@link System#nanoTime()} */
+	private long next;
+
+	RateLimiter(int operationsPerSecond) {
+		this.operationsPerSecond = operationsPerSecond;
+		interval = TimeUnit.SECONDS.toNanos(1) / operationsPerSecond;
+		next = System.nanoTime();
+	}
+
+	/**
+	 * Get the limiter of a connection.
+	 * @param connection the connection
+	 * @return the limiter, or null if the operations on this connection are not limited
+	 */
+	public static synchronized RateLimiter get(ConnectionType connection) {
+		Integer operationsPerSecond = connection.getMaxOperationsPerSecond();
+		if (operationsPerSecond == null || operationsPerSecond <= 0) {
+			return null;
+		}
+		RateLimiter limiter = LIMITERS.get(connection.getName());
+		if (limiter == null || limiter.operationsPerSecond != operationsPerSecond) {
+			limiter = new RateLimiter(operationsPerSecond);
+			LIMITERS.put(connection.getName(), limiter);
+		}
+		return limiter;
+	}
+
+	/**
+	 * Wait until the next operation may be sent.
+	 */
+	public void acquire() {
+		long delay;
+		synchronized (this) {
+			long now = System.nanoTime();
+			if (next - now < 0) {
+				// unused slots are not kept for later
+				next = now;
+			}
+			delay = next - now;
+			next += interval;
+		}
+		if (delay > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -50,10 +50,12 @@ import java.io.FileReader;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.apache.commons.io.FilenameUtils;
 import org.lsc.Task;
@@ -81,17 +83,74 @@ public final class RhinoJScriptEvaluator implements ScriptableEvaluator {
     // Logger
     private static final Logger LOGGER = LoggerFactory.getLogger(RhinoJScriptEvaluator.class);
 
+    /** The system property to set the Rhino optimization level, from -1 (interpreted) to 9 */
+    public static final String OPTIMIZATION_LEVEL_PROPERTY = "LSC.RHINO.OPTIMIZATION_LEVEL";
+
+    /** The maximum number of compiled expressions kept in cache */
+    private static final int CACHE_SIZE = 1000;
+
     /** The local Rhino context. */
     private Context             cx;
 
     /** debug flag */
     private boolean debug;
+
+    /** The Rhino optimization level */
+    private final int optimizationLevel;
+
+    /**
+     * The context factory used without debugger: functions defined by the includes
+     * in the shared scope of a task see the variables of the evaluation scope.
+     */
+    private final ContextFactory factory;
+
+    /** The compiled expressions cache, by expression, least recently used first */
+    private final Map<String, Script> cache;
+
+    /** The sealed shared scope of each task, where the includes have already been run */
+    private final Map<Task, ScriptableObject> sharedScopes;
     
     /**
      * Default public constructor.
+     * The evaluator is used by one thread at a time, see {@link ScriptingEvaluator}.
      */
     public RhinoJScriptEvaluator(boolean debug) {
         this.debug = debug;
+        this.optimizationLevel = getOptimizationLevel();
+        this.factory = new ContextFactory() {
+            @Override
+            protected boolean hasFeature(Context cx, int featureIndex) {
+                if (featureIndex == Context.FEATURE_DYNAMIC_SCOPE) {
+                    return true;
+                }
+                return super.hasFeature(cx, featureIndex);
+            }
+        };
+        this.cache = new LinkedHashMap<String, Script>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Script> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+        this.sharedScopes = new WeakHashMap<Task, ScriptableObject>();
+    }
+
+    private static int getOptimizationLevel() {
+        String level = System.getProperty(OPTIMIZATION_LEVEL_PROPERTY);
+        if (level != null) {
+            try {
+                int optimizationLevel = Integer.parseInt(level.trim());
+                if (Context.isValidOptimizationLevel(optimizationLevel)) {
+                    return optimizationLevel;
+                }
+            } catch (NumberFormatException e) {
+                // warn below
+            }
+            LOGGER.warn("Invalid Rhino optimization level: {}, using default", level);
+        }
+        return 0;
     }
 
     /** {@inheritDoc} */
@@ -251,8 +310,111 @@ public final class RhinoJScriptEvaluator implements ScriptableEvaluator {
      */
     private Object instanceEval(final Task task, final String expression, final Map<String, Object> params)
             throws LscServiceException {
+        if (debug) {
+            return debugEval(task, expression, params);
+        }
+
+        /* Allow to have shorter names for function in the package org.lsc.utils.directory */
+        String expressionImport = 
+            "with (new JavaImporter(Packages.org.lsc.utils.directory)) {"
+            + "with (new JavaImporter(Packages.org.lsc.utils)) {\n" 
+            + expression + "\n}}";
+
+        cx = factory.enterContext();
+        cx.setOptimizationLevel(optimizationLevel);
+        try {
+            Scriptable sharedScope = getSharedScope(task);
+            Scriptable scope = cx.newObject(sharedScope);
+            scope.setPrototype(sharedScope);
+            scope.setParentScope(null);
+            if (params != null) {
+                for (Entry<String, Object> entry : params.entrySet()) {
+                    Object jsObj = Context.javaToJS(entry.getValue(), scope);
+                    ScriptableObject.putProperty(scope, entry.getKey(), jsObj);
+                }
+            }
+
+            Script script = cache.get(expressionImport);
+            if (script == null) {
+                script = cx.compileString(expressionImport, "<cmd>", 1, null);
+                cache.put(expressionImport, script);
+            }
+            return script.exec(cx, scope);
+        } catch (EcmaError e) {
+            LOGGER.error(e.toString());
+            LOGGER.debug(e.toString(), e);
+            return null;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            LOGGER.error(e.toString());
+            LOGGER.debug(e.toString(), e);
+            return null;
+        } finally {
+            Context.exit();
+        }
+    }
+
+    /**
+     * Get the shared scope of a task, creating it on first use: it holds the
+     * standard objects, the LDAP interfaces of the task services and the
+     * result of the Javascript includes of the task. It is sealed once
+     * initialized, evaluations write to their own scope.
+     * 
+     * @param task the task
+     * @return the shared scope
+     * @throws Exception if an include could not be read or run
+     */
+    private ScriptableObject getSharedScope(final Task task) throws Exception {
+        ScriptableObject sharedScope = sharedScopes.get(task);
+        if (sharedScope != null) {
+            return sharedScope;
+        }
+        sharedScope = cx.initStandardObjects(null, true);
+
+        // add LDAP interface for destination
+        if (task.getDestinationService() instanceof AbstractSimpleJndiService) {
+            ScriptableJndiServices dstSjs = new ScriptableJndiServices();
+            dstSjs.setJndiServices(((AbstractSimpleJndiService) task.getDestinationService()).getJndiServices());
+            ScriptableObject.putProperty(sharedScope, "ldap", Context.javaToJS(dstSjs, sharedScope));
+        }
+
+        // add LDAP interface for source
+        if (task.getSourceService() instanceof AbstractSimpleJndiService) {
+            ScriptableJndiServices srcSjs = new ScriptableJndiServices();
+            srcSjs.setJndiServices(((AbstractSimpleJndiService) task.getSourceService()).getJndiServices());
+            ScriptableObject.putProperty(sharedScope, "srcLdap", Context.javaToJS(srcSjs, sharedScope));
+        }
+
+        if (task.getScriptIncludes() != null) {
+            for (File scriptInclude: task.getScriptIncludes()) {
+                if ("js".equals(FilenameUtils.getExtension(scriptInclude.getAbsolutePath()))) {
+                    FileReader reader = new FileReader(scriptInclude);
+                    try {
+                        cx.evaluateReader(sharedScope, reader, scriptInclude.getAbsolutePath(), 1, null);
+                    } finally {
+                        reader.close();
+                    }
+                }
+            }
+        }
+        sharedScope.sealObject();
+        sharedScopes.put(task, sharedScope);
+        return sharedScope;
+    }
+
+    /**
+     * Local instance evaluation with the debugger: everything is compiled and
+     * initialized again for each evaluation.
+     * 
+     * @param expression the expression to eval
+     * @param params the keys are the name used in the
+     * @return the evaluation result
+     * @throws LscServiceException
+     */
+    private Object debugEval(final Task task, final String expression, final Map<String, Object> params)
+            throws LscServiceException {
 
-        RhinoDebugger rhinoDebugger = null;
         Map<String, Object> localParams = new HashMap<String, Object>();
         if (params != null) {
             localParams.putAll(params);
@@ -265,24 +427,14 @@ public final class RhinoJScriptEvaluator implements ScriptableEvaluator {
             + expression + "\n}}";
 
         ContextFactory factory = new ContextFactory();
-        
-        if(debug) {
-            rhinoDebugger = new RhinoDebugger(expressionImport, factory);
-        }
+        RhinoDebugger rhinoDebugger = new RhinoDebugger(expressionImport, factory);
 
         cx = factory.enterContext();
-        
-//        if(debug) {
-//            cx.setGeneratingDebug(true);
-//            cx.setGeneratingSource(true);
-//            cx.setOptimizationLevel(-1);
-//        }
 
         Scriptable scope = cx.initStandardObjects();
         Script script = cx.compileString(expressionImport, "<cmd>", 1, null);
 
-        
-     // add LDAP interface for destination
+        // add LDAP interface for destination
         if (!localParams.containsKey("ldap") && task.getDestinationService() instanceof AbstractSimpleJndiService) {
             ScriptableJndiServices dstSjs = new ScriptableJndiServices();
             dstSjs.setJndiServices(((AbstractSimpleJndiService) task.getDestinationService()).getJndiServices());
@@ -317,20 +469,13 @@ public final class RhinoJScriptEvaluator implements ScriptableEvaluator {
 					}
 				}
 			}
-            if(debug) {
-                rhinoDebugger.initContext(cx, scope, script);
-                Object jsObj = Context.javaToJS(rhinoDebugger, scope);
-                ScriptableObject.putProperty(scope, "rhinoDebugger", jsObj);
-                for (Script include: includes) {
-                	rhinoDebugger.execInclude(include);
-                }
-                ret = rhinoDebugger.exec();
-            } else {
-                for (Script include: includes) {
-                	include.exec(cx, scope);
-                }
-                ret = script.exec(cx, scope);
+            rhinoDebugger.initContext(cx, scope, script);
+            Object jsObj = Context.javaToJS(rhinoDebugger, scope);
+            ScriptableObject.putProperty(scope, "rhinoDebugger", jsObj);
+            for (Script include: includes) {
+            	rhinoDebugger.execInclude(include);
             }
+            ret = rhinoDebugger.exec();
         } catch (EcmaError e) {
             LOGGER.error(e.toString());
             LOGGER.debug(e.toString(), e);
@@ -342,9 +487,7 @@ public final class RhinoJScriptEvaluator implements ScriptableEvaluator {
             LOGGER.debug(e.toString(), e);
             return null;
         } finally {
-            if(debug) {
-                rhinoDebugger.run();
-            }
+            rhinoDebugger.run();
             Context.exit();
         }
         return ret;
@@ -3,6 +3,9 @@ package org.lsc.utils;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
 
 import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
@@ -12,18 +15,27 @@ import org.lsc.exception.LscServiceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-
 public class ScriptingEvaluator {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(ScriptingEvaluator.class);
 	
+	/** The system property to set the maximum number of instances */
+	public static final String INSTANCES_PROPERTY = "LSC.SCRIPTING.INSTANCES";
+
 	/**
-	 * The instances, one per thread to protect non thread safe engines like
-	 * Rhino.
+	 * The instances not used by any thread, most recently used first. Engines
+	 * like Rhino are not thread safe, so an instance is taken by one thread
+	 * for each evaluation and given back afterwards. Their number is bounded,
+	 * so that thousands of virtual threads share a few instances and their
+	 * compiled scripts.
 	 */
-	private static Cache<Object, Object> instancesCache;
+	private static BlockingDeque<ScriptingEvaluator> idleInstances;
+
+	/** The instances which may still be taken */
+	private static Semaphore instancesPermits;
+
+	/** The instance taken by the current thread, reused by nested evaluations */
+	private static final ThreadLocal<ScriptingEvaluator> currentInstance = new ThreadLocal<ScriptingEvaluator>();
 
 	private static Map<String, Class<? extends ScriptableEvaluator>> implementetionsCache;
 
@@ -33,9 +45,13 @@ public class ScriptingEvaluator {
 
 	private ScriptableEvaluator defaultImplementation;
 
+	/** The number of evaluations running with this instance in its thread */
+	private int depth;
+
 	static {
 		implementetionsCache = new HashMap<String, Class<? extends ScriptableEvaluator>>();
-        instancesCache = CacheBuilder.newBuilder().maximumSize(15).build();
+        idleInstances = new LinkedBlockingDeque<ScriptingEvaluator>();
+        instancesPermits = new Semaphore(getMaxInstances());
         mgr = new ScriptEngineManager();
 	}
 
@@ -71,16 +87,59 @@ public class ScriptingEvaluator {
 		defaultImplementation = instancesTypeCache.get("js");
 	}
 
-	public static ScriptingEvaluator getInstance() {
-        String threadName = Thread.currentThread().getName();
-        ScriptingEvaluator scriptingEvaluator = null;
+	private static int getMaxInstances() {
+		int maxInstances = Math.max(15, Runtime.getRuntime().availableProcessors() * 2);
+		String instances = System.getProperty(INSTANCES_PROPERTY);
+		if (instances != null) {
+			try {
+				int value = Integer.parseInt(instances.trim());
+				if (value > 0) {
+					return value;
+				}
+			} catch (NumberFormatException e) {
+				// warn below
+			}
+			LOGGER.warn("Invalid number of scripting instances: {}, using {}", instances, maxInstances);
+		}
+		return maxInstances;
+	}
 
-        scriptingEvaluator = (ScriptingEvaluator) instancesCache.getIfPresent(threadName);
-        if (scriptingEvaluator == null) {
-            scriptingEvaluator = new ScriptingEvaluator();
-            instancesCache.put(threadName, scriptingEvaluator);
-        }
-		return scriptingEvaluator;
+	/**
+	 * Take an instance for the current thread, waiting for one to be given
+	 * back if all of them are in use. An evaluation running in another one
+	 * keeps the instance of its thread.
+	 * @return the instance, to give back with {@link #release(ScriptingEvaluator)}
+	 */
+	private static ScriptingEvaluator acquire() {
+		ScriptingEvaluator instance = currentInstance.get();
+		if (instance == null) {
+			instancesPermits.acquireUninterruptibly();
+			try {
+				instance = idleInstances.pollFirst();
+				if (instance == null) {
+					instance = new ScriptingEvaluator();
+				}
+			} catch (RuntimeException e) {
+				instancesPermits.release();
+				throw e;
+			}
+			currentInstance.set(instance);
+		}
+		instance.depth++;
+		return instance;
+	}
+
+	/**
+	 * Give back an instance once an evaluation is over.
+	 * @param instance the instance taken by {@link #acquire()}
+	 */
+	private static void release(ScriptingEvaluator instance) {
+		if (--instance.depth > 0) {
+			return;
+		}
+		currentInstance.remove();
+		idleInstances.offerFirst(instance);
+		instancesPermits.release();
 	}
 
 	public static void contribute(String implementationName,
@@ -124,37 +183,57 @@ public class ScriptingEvaluator {
 	 */
 	public static String evalToString(final Task task, final String expression,
 			final Map<String, Object> params) throws LscServiceException {
-		ScriptableEvaluator se = getInstance().identifyScriptingEngine(
-				expression);
-		return se.evalToString(task, getInstance().removePrefix(expression), params);
+		ScriptingEvaluator instance = acquire();
+		try {
+			ScriptableEvaluator se = instance.identifyScriptingEngine(expression);
+			return se.evalToString(task, instance.removePrefix(expression), params);
+		} finally {
+			release(instance);
+		}
 	}
 
 	public static List<Object> evalToObjectList(final Task task,
 			final String expression, final Map<String, Object> params) throws LscServiceException {
-		ScriptableEvaluator se = getInstance().identifyScriptingEngine(
-				expression);
-		return se.evalToObjectList(task, getInstance().removePrefix(expression), params);
+		ScriptingEvaluator instance = acquire();
+		try {
+			ScriptableEvaluator se = instance.identifyScriptingEngine(expression);
+			return se.evalToObjectList(task, instance.removePrefix(expression), params);
+		} finally {
+			release(instance);
+		}
 	}
 
 	public static List<byte[]> evalToByteArrayList(final Task task,
 			final String expression, final Map<String, Object> params) throws LscServiceException {
-		ScriptableEvaluator se = getInstance().identifyScriptingEngine(
-				expression);
-		return se.evalToByteArrayList(task, getInstance().removePrefix(expression), params);
+		ScriptingEvaluator instance = acquire();
+		try {
+			ScriptableEvaluator se = instance.identifyScriptingEngine(expression);
+			return se.evalToByteArrayList(task, instance.removePrefix(expression), params);
+		} finally {
+			release(instance);
+		}
 	}
 
 	public static byte[] evalToByteArray(final Task task,
 			final String expression, final Map<String, Object> params) throws LscServiceException {
-		ScriptableEvaluator se = getInstance().identifyScriptingEngine(
-				expression);
-		return se.evalToByteArray(task, getInstance().removePrefix(expression), params);
+		ScriptingEvaluator instance = acquire();
+		try {
+			ScriptableEvaluator se = instance.identifyScriptingEngine(expression);
+			return se.evalToByteArray(task, instance.removePrefix(expression), params);
+		} finally {
+			release(instance);
+		}
 	}
 
 	public static Boolean evalToBoolean(final Task task,
 			final String expression, final Map<String, Object> params) throws LscServiceException {
-		ScriptableEvaluator se = getInstance().identifyScriptingEngine(
-				expression);
-		return se.evalToBoolean(task, getInstance().removePrefix(expression), params);
+		ScriptingEvaluator instance = acquire();
+		try {
+			ScriptableEvaluator se = instance.identifyScriptingEngine(expression);
+			return se.evalToBoolean(task, instance.removePrefix(expression), params);
+		} finally {
+			release(instance);
+		}
 	}
 
 }
@@ -49,6 +49,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.naming.NamingException;
 import javax.naming.directory.Attribute;
@@ -181,6 +183,12 @@ class Sequence {
 	
 	private JndiServices jndiServices;
 
+	/**
+	 * Serializes the increments, which read and write the directory: not a
+	 * monitor, so that a waiting virtual thread releases its carrier thread
+	 */
+	private final Lock lock = new ReentrantLock();
+
 	public Sequence(JndiServices jndiServices) {
 		this.jndiServices = jndiServices;
 	}
@@ -236,20 +244,25 @@ class Sequence {
 	 * Return the updated in directory new value
 	 * @return Next value to set, or -1 if an error occurred
 	 */
-	public synchronized int getNextValue() {
-		for (int i=0; i<INCREMENT_MAX_RETRY; i++) {
-			int newValue = incrementValue();
-			if (newValue != -1) {
-				return newValue;
-			} else {
-				LOGGER.warn("Failed to update the directory for the value of the sequence {}/{}, retrying: "+(i+1)+"/"+INCREMENT_MAX_RETRY, getDn(), getAttributeName());
+	public int getNextValue() {
+		lock.lock();
+		try {
+			for (int i=0; i<INCREMENT_MAX_RETRY; i++) {
+				int newValue = incrementValue();
+				if (newValue != -1) {
+					return newValue;
+				} else {
+					LOGGER.warn("Failed to update the directory for the value of the sequence {}/{}, retrying: "+(i+1)+"/"+INCREMENT_MAX_RETRY, getDn(), getAttributeName());
+				}
 			}
+			LOGGER.error("Maximum retry ("+INCREMENT_MAX_RETRY+") reached to increment sequence {}/{}", getDn(), getAttributeName());
+			return -1;
+		} finally {
+			lock.unlock();
 		}
-		LOGGER.error("Maximum retry ("+INCREMENT_MAX_RETRY+") reached to increment sequence {}/{}", getDn(), getAttributeName());
-		return -1;
 	}
 	
-	private synchronized int incrementValue() {
+	private int incrementValue() {
 		int newValue = 0;
 		try {
 			if (!readValue()) {
@@ -42,10 +42,12 @@
  */
 package org.lsc.utils;
 
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.naming.NamingEnumeration;
@@ -122,6 +124,8 @@ public class SetUtils {
 	 * new Set. This method is type-aware and will intelligently compare
 	 * byte[], String, etc.
 	 * 
+	 * The haystack is indexed once, so this runs in linear time.
+	 * 
 	 * @param haystack
 	 *            Set of Objects to find the needles in.
 	 * @param needles
@@ -141,60 +145,9 @@ public class SetUtils {
 			return needles;
 		}
 
+		ValueIndex index = new ValueIndex(haystack);
 		for (Object needle : needles) {
-			ByteBuffer needleBuff = null;
-
-			// use a byte buffer is needle is binary
-			if (needle.getClass().isAssignableFrom(byte[].class)) {
-				needleBuff = ByteBuffer.wrap((byte[]) needle);
-			}
-
-			boolean foundInHaystack = false;
-			for (Object haystackValue : haystack) {
-				ByteBuffer haystackValueBuff = null;
-
-				// use a byte buffer if haystack value is binary
-				if (haystackValue.getClass().isAssignableFrom(byte[].class)) {
-					haystackValueBuff = ByteBuffer.wrap((byte[]) haystackValue);
-
-					// make sure we have a byte buffer for the needle too
-					if (needleBuff == null) {
-						// if needle is binary, make this haystack value binary
-						if (needle.getClass().isAssignableFrom(String.class)) {
-							needleBuff = ByteBuffer.wrap(((String) needle).getBytes());
-						} else {
-							continue;
-						}
-					}
-				}
-
-				// needleBuff is set if either needle or haystack value are
-				// binary
-				// do a binary comparison
-				if (needleBuff != null) {
-					// make sure we have a byte buffer for haystack value too
-					if (haystackValueBuff == null) {
-						if (haystackValue.getClass().isAssignableFrom(String.class)) {
-							haystackValueBuff = ByteBuffer.wrap(((String) haystackValue).getBytes());
-						} else {
-							continue;
-						}
-					}
-
-					// binary comparison
-					if (haystackValueBuff.compareTo(needleBuff) == 0) {
-						foundInHaystack = true;
-					}
-				} else {
-					// fall back to standard compare (works well for String,
-					// int, boolean, etc)
-					if (haystackValue.equals(needle)) {
-						foundInHaystack = true;
-					}
-				}
-			}
-
-			if (!foundInHaystack) {
+			if (!index.contains(needle)) {
 				missingNeedles.add(needle);
 			}
 		}
@@ -220,59 +173,120 @@ public class SetUtils {
 
 		Iterator<Object> iterator = second.iterator();
 		for (Object element1: first) {
-			Object element2 = iterator.next(); 
-			
-			ByteBuffer element1Buff = null;
-			
-			// use a byte buffer is element1 is binary
-			if (element1.getClass().isAssignableFrom(byte[].class)) {
-				element1Buff = ByteBuffer.wrap((byte[]) element1);
+			if (!valuesMatch(element1, iterator.next())) {
+				return false;
 			}
-			
-			ByteBuffer element2Buff = null;
-			
-			// use a byte buffer if element2 value is binary
-			if (element2.getClass().isAssignableFrom(byte[].class)) {
-				element2Buff = ByteBuffer.wrap((byte[]) element2);
-				
-				// make sure we have a byte buffer for element1 too
-				if (element1Buff == null) {
-					// if element1 is binary, make this element2 value binary
-					if (element1.getClass().isAssignableFrom(String.class)) {
-						element1Buff = ByteBuffer.wrap(((String) element1).getBytes());
-					} else {
-						return false;
+		}
+		
+		return true;
+	}
+
+	/**
+	 * Compare two values: binary values are compared byte by byte, a String
+	 * being compared to a binary value through its bytes, and other values
+	 * with equals().
+	 */
+	private static boolean valuesMatch(Object value1, Object value2) {
+		if (value1 instanceof byte[]) {
+			if (value2 instanceof byte[]) {
+				return Arrays.equals((byte[]) value1, (byte[]) value2);
+			} else if (value2 instanceof String) {
+				return Arrays.equals((byte[]) value1, ((String) value2).getBytes());
+			}
+			return false;
+		} else if (value2 instanceof byte[]) {
+			if (value1 instanceof String) {
+				return Arrays.equals(((String) value1).getBytes(), (byte[]) value2);
+			}
+			return false;
+		}
+		return value2.equals(value1);
+	}
+
+	/**
+	 * Index of a set of values, matching values the same way as
+	 * {@link #valuesMatch(Object, Object)} does with hash lookups instead of
+	 * comparing each pair.
+	 */
+	private static final class ValueIndex {
+
+		/** Non binary values, compared with equals() */
+		private final Set<Object> values;
+
+		/** Binary values, by content */
+		private final Set<BinaryKey> binaries;
+
+		/** String values, to be matched by binary values */
+		private final List<String> strings;
+
+		/** Bytes of the string values, computed on first binary lookup */
+		private Set<BinaryKey> stringsBytes;
+
+		private ValueIndex(Set<?> haystack) {
+			values = new HashSet<Object>(haystack.size() * 2);
+			binaries = new HashSet<BinaryKey>();
+			strings = new ArrayList<String>();
+			for (Object value : haystack) {
+				if (value instanceof byte[]) {
+					binaries.add(new BinaryKey((byte[]) value));
+				} else {
+					values.add(value);
+					if (value instanceof String) {
+						strings.add((String) value);
 					}
 				}
 			}
-			
-			// element1Buff is set if either element1 or element2 value are
-			// binary
-			// do a binary comparison
-			if (element1Buff != null) {
-				// make sure we have a byte buffer for element2 value too
-				if (element2Buff == null) {
-					if (element2.getClass().isAssignableFrom(String.class)) {
-						element2Buff = ByteBuffer.wrap(((String) element2).getBytes());
-					} else {
-						return false;
-					}
+		}
+
+		private boolean contains(Object needle) {
+			if (needle instanceof byte[]) {
+				BinaryKey key = new BinaryKey((byte[]) needle);
+				if (binaries.contains(key)) {
+					return true;
 				}
-				
-				// binary comparison
-				if (element2Buff.compareTo(element1Buff) != 0) {
+				if (strings.isEmpty()) {
 					return false;
 				}
-			} else {
-				// fall back to standard compare (works well for String,
-				// int, boolean, etc)
-				if (!element2.equals(element1)) {
-					return false;
+				if (stringsBytes == null) {
+					stringsBytes = new HashSet<BinaryKey>(strings.size() * 2);
+					for (String value : strings) {
+						stringsBytes.add(new BinaryKey(value.getBytes()));
+					}
 				}
+				return stringsBytes.contains(key);
+			}
+			if (values.contains(needle)) {
+				return true;
 			}
+			return needle instanceof String && !binaries.isEmpty()
+							&& binaries.contains(new BinaryKey(((String) needle).getBytes()));
+		}
+	}
+
+	/**
+	 * A binary value, hashed on its content.
+	 */
+	private static final class BinaryKey {
+
+		private final byte[] value;
+
+		private final int hash;
+
+		private BinaryKey(byte[] value) {
+			this.value = value;
+			this.hash = Arrays.hashCode(value);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof BinaryKey && hash == ((BinaryKey) o).hash
+							&& Arrays.equals(value, ((BinaryKey) o).value);
 		}
-		
-		return true;
 	}
 
 	/**
@@ -0,0 +1,104 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.script.Bindings;
+
+/**
+ * The bindings of a task for a JSR 223 scripting engine. The LDAP interfaces,
+ * imports and includes of the task are set up once in them. The variables that
+ * an evaluation adds or changes are reset afterwards, so that each entry is
+ * evaluated as in fresh bindings.
+ */
+final class TaskBindings {
+
+	private final Bindings bindings;
+
+	/** The variables set up for the task, with their values */
+	private final Map<String, Object> base;
+
+	/**
+	 * @param bindings the bindings, once set up for the task
+	 */
+	TaskBindings(Bindings bindings) {
+		this.bindings = bindings;
+		this.base = new HashMap<String, Object>(bindings);
+	}
+
+	Bindings getBindings() {
+		return bindings;
+	}
+
+	/**
+	 * Remove the variables added since the bindings were set up, and restore
+	 * the variables that were changed or removed.
+	 * @return the names of the added variables that the engine did not let
+	 *         remove, as global variables declared with var in Javascript
+	 */
+	List<String> reset() {
+		List<String> remaining = new ArrayList<String>();
+		for (String name : new ArrayList<String>(bindings.keySet())) {
+			if (!base.containsKey(name)) {
+				bindings.remove(name);
+				if (bindings.containsKey(name)) {
+					remaining.add(name);
+				}
+			}
+		}
+		for (Map.Entry<String, Object> variable : base.entrySet()) {
+			Object value = bindings.get(variable.getKey());
+			if (value == null ? variable.getValue() != null : !value.equals(variable.getValue())) {
+				bindings.put(variable.getKey(), variable.getValue());
+			}
+		}
+		return remaining;
+	}
+}
@@ -142,29 +142,40 @@ public class LDAP {
 			throw e;
 		}
 
-		// check bind DN and password
-		LdapContext bindContext = bindJndiServices.getContext();
+		// check bind DN and password on a context of our own, since we change its identity
+		LdapContext bindContext = bindJndiServices.borrowContext();
+		boolean restored = false;
 		try {
-			bindContext.addToEnvironment(Context.SECURITY_AUTHENTICATION, "simple");
-			bindContext.addToEnvironment(Context.SECURITY_PRINCIPAL, dnToCheck);
-			bindContext.addToEnvironment(Context.SECURITY_CREDENTIALS, passwordToCheck);
-			bindContext.reconnect(bindContext.getConnectControls());
-		} catch (AuthenticationException e) {
-			// the bind failed
-			return false;
-		} catch (NamingException e) {
-			// some other LDAP related error occurred
-			// we throw it, since it may be connection related,
-			// and we don't want to return fake results
-			throw e;
+			try {
+				bindContext.addToEnvironment(Context.SECURITY_AUTHENTICATION, "simple");
+				bindContext.addToEnvironment(Context.SECURITY_PRINCIPAL, dnToCheck);
+				bindContext.addToEnvironment(Context.SECURITY_CREDENTIALS, passwordToCheck);
+				bindContext.reconnect(bindContext.getConnectControls());
+			} catch (AuthenticationException e) {
+				// the bind failed
+				return false;
+			} catch (NamingException e) {
+				// some other LDAP related error occurred
+				// we throw it, since it may be connection related,
+				// and we don't want to return fake results
+				throw e;
+			} finally {
+				// clean up and replace authentication on the context with original
+				// identity
+				Properties authProps = getJndiAuthenticationProperties(bindDn, bindPassword);
+				for (Entry<Object, Object> propertyEntry : authProps.entrySet()) {
+					bindContext.addToEnvironment(propertyEntry.getKey().toString(), propertyEntry.getValue());
+				}
+				bindContext.reconnect(bindContext.getConnectControls());
+				restored = true;
+			}
 		} finally {
-			// clean up and replace authentication on the context with original
-			// identity
-			Properties authProps = getJndiAuthenticationProperties(bindDn, bindPassword);
-			for (Entry<Object, Object> propertyEntry : authProps.entrySet()) {
-				bindContext.addToEnvironment(propertyEntry.getKey().toString(), propertyEntry.getValue());
+			// never give back a context bound with another identity
+			if (restored) {
+				bindJndiServices.releaseContext(bindContext);
+			} else {
+				bindJndiServices.invalidateContext(bindContext);
 			}
-			bindContext.reconnect(bindContext.getConnectControls());
 		}
 
 		// if we got here, the bind succeeded
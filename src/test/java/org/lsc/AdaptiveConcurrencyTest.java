@@ -0,0 +1,92 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test the adaptation of the number of threads to the destination.
+ */
+public class AdaptiveConcurrencyTest {
+
+	@Test
+	public final void testIncreaseAndDecrease() throws InterruptedException {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(8, 8, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		AdaptiveConcurrency concurrency = new AdaptiveConcurrency("test", pool, 2, 8);
+		assertEquals(2, concurrency.getThreads());
+		assertEquals(2, pool.getMaximumPoolSize());
+
+		// a responsive destination gets one more thread per measure
+		measure(concurrency, 1000, 0);
+		measure(concurrency, 1000, 0);
+		assertEquals(4, concurrency.getThreads());
+		assertEquals(4, pool.getCorePoolSize());
+
+		// a slower one loses a quarter of them
+		measure(concurrency, 5000, 0);
+		assertEquals(3, concurrency.getThreads());
+
+		// as well as one returning errors, down to the minimum
+		measure(concurrency, 1000, 10);
+		measure(concurrency, 1000, 10);
+		assertEquals(2, concurrency.getThreads());
+		assertEquals(2, pool.getMaximumPoolSize());
+		pool.shutdown();
+	}
+
+	private void measure(AdaptiveConcurrency concurrency, long latency, int errors) throws InterruptedException {
+		Thread.sleep(1100);
+		for (int i = 0; i < 20; i++) {
+			concurrency.sample(latency, i >= errors);
+		}
+	}
+}
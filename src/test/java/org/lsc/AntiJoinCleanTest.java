@@ -0,0 +1,230 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.configuration.CleanStrategyType;
+import org.lsc.configuration.LscConfiguration;
+import org.lsc.exception.LscServiceException;
+import org.lsc.service.AbstractPivotCursor;
+import org.lsc.service.IStreamingService;
+import org.lsc.service.IWritableService;
+
+/**
+ * Test the in memory anti-join of the source and destination pivots used by
+ * the ANTIJOIN clean strategy.
+ */
+public class AntiJoinCleanTest {
+
+	@Mocked Task task;
+	@Mocked IStreamingService srcService;
+	@Mocked IWritableService dstService;
+
+	private Map<String, LscDatasets> srcPivots;
+
+	private MapCursor srcCursor;
+
+	@Before
+	public void setup() throws LscServiceException {
+		LscConfiguration.reset();
+		srcPivots = new HashMap<String, LscDatasets>();
+		srcCursor = new MapCursor();
+		new NonStrictExpectations() {
+			{
+				task.getTaskType(); result = LscConfiguration.getTask("ldap2ldapTestTask");
+				task.getSourceService(); result = srcService;
+				srcService.getPivotCursor(); result = srcCursor;
+			}
+		};
+	}
+
+	@Test
+	public final void testMissingFromSource() throws LscServiceException {
+		srcPivots.put("cn=Alice", newPivots("cn", "Alice", "sn", "Doe"));
+		srcPivots.put("cn=Bob", newPivots("cn", "Bob", "sn", "Smith"));
+
+		Map<String, LscDatasets> dstPivots = new HashMap<String, LscDatasets>();
+		// pivots are compared ignoring case, on names and values
+		dstPivots.put("cn=alice", newPivots("CN", "alice", "SN", "DOE"));
+		dstPivots.put("cn=bob", newPivots("cn", "Bob", "sn", "Jones"));
+		dstPivots.put("cn=carol", newPivots("cn", "Carol", "sn", "White"));
+
+		Map<String, LscDatasets> missing = new SimpleSynchronize().getMissingFromSource(task, dstPivots.entrySet());
+		assertEquals(2, missing.size());
+		assertTrue(missing.containsKey("cn=bob"));
+		assertTrue(missing.containsKey("cn=carol"));
+		assertEquals("Carol", missing.get("cn=carol").getStringValueAttribute("cn"));
+	}
+
+	@Test
+	public final void testCommonAttributesOnly() throws LscServiceException {
+		srcPivots.put("uid=alice", newPivots("uid", "alice", "mail", "alice@example.com"));
+
+		Map<String, LscDatasets> dstPivots = new HashMap<String, LscDatasets>();
+		// the mail attribute is only known in the source
+		dstPivots.put("cn=alice", newPivots("uid", "alice"));
+		dstPivots.put("cn=bob", newPivots("uid", "bob"));
+
+		Map<String, LscDatasets> missing = new SimpleSynchronize().getMissingFromSource(task, dstPivots.entrySet());
+		assertEquals(1, missing.size());
+		assertTrue(missing.containsKey("cn=bob"));
+	}
+
+	@Test
+	public final void testEmptySource() throws LscServiceException {
+		Map<String, LscDatasets> dstPivots = new HashMap<String, LscDatasets>();
+		dstPivots.put("cn=alice", newPivots("cn", "alice"));
+
+		// an empty source must not delete the whole destination
+		assertNull(new SimpleSynchronize().getMissingFromSource(task, dstPivots.entrySet()));
+	}
+
+	@Test
+	public final void testNoCommonAttribute() throws LscServiceException {
+		srcPivots.put("uid=alice", newPivots("uid", "alice"));
+
+		Map<String, LscDatasets> dstPivots = new HashMap<String, LscDatasets>();
+		dstPivots.put("cn=alice", newPivots("cn", "alice"));
+
+		assertNull(new SimpleSynchronize().getMissingFromSource(task, dstPivots.entrySet()));
+	}
+
+	@Test
+	public final void testSourceListingFails() {
+		srcPivots.put("cn=Alice", newPivots("cn", "Alice"));
+		srcPivots.put("cn=Bob", newPivots("cn", "Bob"));
+		srcCursor.failAfter = 1;
+
+		Map<String, LscDatasets> dstPivots = new HashMap<String, LscDatasets>();
+		dstPivots.put("cn=alice", newPivots("cn", "Alice"));
+		dstPivots.put("cn=bob", newPivots("cn", "Bob"));
+
+		// a partial source list must not make the other entries missing
+		try {
+			new SimpleSynchronize().getMissingFromSource(task, dstPivots.entrySet());
+			fail("An incomplete source list must fail the comparison");
+		} catch (LscServiceException e) {
+			assertTrue(srcCursor.closed);
+		}
+	}
+
+	@Test
+	public final void testNothingCleanedWhenSourceListingFails() throws LscServiceException {
+		srcPivots.put("cn=Alice", newPivots("cn", "Alice"));
+		srcPivots.put("cn=Bob", newPivots("cn", "Bob"));
+		srcCursor.failAfter = 1;
+
+		final Map<String, LscDatasets> dstPivots = new HashMap<String, LscDatasets>();
+		dstPivots.put("cn=alice", newPivots("cn", "Alice"));
+		dstPivots.put("cn=bob", newPivots("cn", "Bob"));
+		dstPivots.put("cn=carol", newPivots("cn", "Carol"));
+		LscConfiguration.getTask("ldap2ldapTestTask").setCleanStrategy(CleanStrategyType.ANTIJOIN);
+
+		new NonStrictExpectations() {
+			{
+				task.getName(); result = "antiJoinTask";
+				task.getDestinationService(); result = dstService;
+				dstService.getListPivots(); result = dstPivots;
+				dstService.apply((LscModifications) any); times = 0;
+			}
+		};
+
+		assertFalse(new SimpleSynchronize().clean2Ldap(task));
+	}
+
+	/**
+	 * A cursor on the source pivots, which fails once it has returned
+	 * failAfter entries, if set.
+	 */
+	private final class MapCursor extends AbstractPivotCursor {
+
+		private Iterator<Entry<String, LscDatasets>> iterator;
+
+		private int failAfter = -1;
+
+		private int count;
+
+		private boolean closed;
+
+		@Override
+		protected Entry<String, LscDatasets> fetch() throws LscServiceException {
+			if (iterator == null) {
+				iterator = srcPivots.entrySet().iterator();
+			}
+			if (count++ == failAfter) {
+				throw new LscServiceException("Size limit exceeded");
+			}
+			return iterator.hasNext() ? iterator.next() : null;
+		}
+
+		public void close() {
+			closed = true;
+		}
+	}
+
+	private static LscDatasets newPivots(String... namesAndValues) {
+		LscDatasets pivots = new LscDatasets();
+		for (int i = 0; i < namesAndValues.length; i += 2) {
+			pivots.put(namesAndValues[i], namesAndValues[i + 1]);
+		}
+		return pivots;
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.naming.CommunicationException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.beans.IBean;
+import org.lsc.beans.SimpleBean;
+import org.lsc.configuration.LscConfiguration;
+import org.lsc.exception.LscServiceException;
+import org.lsc.service.IService;
+
+/**
+ * Test the cleaning tasks run by the synchronization thread pool.
+ */
+public class CleanTaskTest {
+
+	private Task task;
+
+	@Before
+	public void setup() throws Exception {
+		LscConfiguration.reset();
+		SimpleSynchronize sync = new SimpleSynchronize();
+		sync.init();
+		task = sync.getTask("ldap2ldapTestTask");
+	}
+
+	@Test
+	public final void testCleanInParallel() throws InterruptedException {
+		// each lookup in the source waits for another one to be running
+		final CountDownLatch lookups = new CountDownLatch(2);
+		FakeSynchronize sync = new FakeSynchronize() {
+			@Override
+			protected IBean getBean(Task task, IService service, String pivotName, LscDatasets pivotAttributes,
+							boolean fromSameService, boolean fromSource) throws LscServiceException {
+				lookups.countDown();
+				try {
+					if (!lookups.await(10, TimeUnit.SECONDS)) {
+						timedOut = true;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				// odd entries are still in the source
+				return Integer.parseInt(pivotName) % 2 == 1 ? new SimpleBean() : null;
+			}
+		};
+
+		InfoCounter counter = new InfoCounter();
+		AtomicBoolean aborted = new AtomicBoolean(false);
+		SynchronizeThreadPoolExecutor pool = new SynchronizeThreadPoolExecutor("test", 4);
+		for (int i = 0; i < 20; i++) {
+			pool.runTask(new CleanTask(task, counter, sync, newId(i), null, true, aborted));
+		}
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+		assertFalse(sync.timedOut);
+		assertFalse(aborted.get());
+		assertEquals(20, counter.getCountAll());
+		assertEquals(10, counter.getCountModifiable());
+		assertEquals(0, counter.getCountError());
+	}
+
+	@Test
+	public final void testAbortOnConnectionLost() {
+		FakeSynchronize sync = new FakeSynchronize() {
+			@Override
+			protected IBean getBean(Task task, IService service, String pivotName, LscDatasets pivotAttributes,
+							boolean fromSameService, boolean fromSource) throws LscServiceException {
+				throw new LscServiceException(new CommunicationException("connection lost"));
+			}
+		};
+
+		InfoCounter counter = new InfoCounter();
+		AtomicBoolean aborted = new AtomicBoolean(false);
+		new CleanTask(task, counter, sync, newId(0), null, true, aborted).run();
+		assertTrue(aborted.get());
+		assertEquals(1, counter.getCountAll());
+		assertEquals(1, counter.getCountError());
+
+		// the remaining entries are skipped
+		new CleanTask(task, counter, sync, newId(1), null, true, aborted).run();
+		assertEquals(1, counter.getCountAll());
+		assertEquals(0, counter.getCountModifiable());
+	}
+
+	@Test
+	public final void testNoLookupWhenMissing() {
+		FakeSynchronize sync = new FakeSynchronize() {
+			@Override
+			protected IBean getBean(Task task, IService service, String pivotName, LscDatasets pivotAttributes,
+							boolean fromSameService, boolean fromSource) throws LscServiceException {
+				throw new IllegalStateException("The source should not be read");
+			}
+		};
+
+		InfoCounter counter = new InfoCounter();
+		new CleanTask(task, counter, sync, newId(0), null, false, new AtomicBoolean(false)).run();
+		assertEquals(1, counter.getCountAll());
+		assertEquals(1, counter.getCountModifiable());
+	}
+
+	private static Entry<String, LscDatasets> newId(int i) {
+		LscDatasets pivots = new LscDatasets();
+		pivots.put("uid", Integer.toString(i));
+		return new SimpleEntry<String, LscDatasets>(Integer.toString(i), pivots);
+	}
+
+	/**
+	 * Only log the deletions instead of applying them.
+	 */
+	private static class FakeSynchronize extends SimpleSynchronize {
+
+		protected volatile boolean timedOut;
+
+		private FakeSynchronize() {
+			nodelete = true;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.beans.IBean;
+import org.lsc.beans.SimpleBean;
+import org.lsc.configuration.LscConfiguration;
+import org.lsc.exception.LscServiceException;
+import org.lsc.service.IBatchLookupService;
+
+/**
+ * Test the lookup of a block of destination entries before their
+ * synchronization tasks are run, and the fallback to the lookup of each entry.
+ */
+public class LookupBatchTaskTest {
+
+	@Mocked Task task;
+
+	private BatchLookup lookup;
+
+	private AbstractSynchronize synchronize;
+
+	private InfoCounter counter;
+
+	@Before
+	public void setup() {
+		LscConfiguration.reset();
+		new NonStrictExpectations() {
+			{
+				task.getName(); result = "lookupBatchTest";
+				task.getTaskType(); result = LscConfiguration.getTask("ldap2ldapTestTask");
+				task.getDestinationRateLimiter(); result = null;
+			}
+		};
+		lookup = new BatchLookup();
+		synchronize = new SimpleSynchronize();
+		counter = new InfoCounter();
+	}
+
+	@Test
+	public final void testResolved() {
+		SimpleBean alice = new SimpleBean();
+		lookup.beans.put("cn=alice", alice);
+		lookup.beans.put("cn=bob", null);
+		List<SynchronizeTask> tasks = newTasks("cn=alice", "cn=bob");
+
+		new LookupBatchTask(task, synchronize, lookup.newService(), tasks).prepare();
+		assertEquals(Arrays.asList("cn=alice", "cn=bob"), lookup.requested);
+		assertTrue(tasks.get(0).isDstBeanKnown());
+		assertSame(alice, tasks.get(0).getDstBean());
+		// known not to exist
+		assertTrue(tasks.get(1).isDstBeanKnown());
+		assertNull(tasks.get(1).getDstBean());
+	}
+
+	@Test
+	public final void testUnresolvedLookedUpByTheirTask() {
+		lookup.beans.put("cn=alice", new SimpleBean());
+		List<SynchronizeTask> tasks = newTasks("cn=alice", "cn=bob");
+
+		new LookupBatchTask(task, synchronize, lookup.newService(), tasks).prepare();
+		assertTrue(tasks.get(0).isDstBeanKnown());
+		assertFalse(tasks.get(1).isDstBeanKnown());
+	}
+
+	@Test
+	public final void testDuplicatedNamesLookedUpByTheirTask() {
+		List<SynchronizeTask> tasks = newTasks("cn=alice", "cn=bob", "cn=alice");
+
+		new LookupBatchTask(task, synchronize, lookup.newService(), tasks).prepare();
+		// results are indexed by name, which must be unique in the block
+		assertEquals(Arrays.asList("cn=bob"), lookup.requested);
+		assertFalse(tasks.get(0).isDstBeanKnown());
+		assertFalse(tasks.get(2).isDstBeanKnown());
+	}
+
+	@Test
+	public final void testFailureLookedUpByTheirTask() {
+		lookup.failure = new LscServiceException("Size limit exceeded");
+		List<SynchronizeTask> tasks = newTasks("cn=alice", "cn=bob");
+
+		// the error is left to each task, looking its own entry up
+		new LookupBatchTask(task, synchronize, lookup.newService(), tasks).prepare();
+		assertFalse(tasks.get(0).isDstBeanKnown());
+		assertFalse(tasks.get(1).isDstBeanKnown());
+	}
+
+	private List<SynchronizeTask> newTasks(String... names) {
+		List<SynchronizeTask> tasks = new ArrayList<SynchronizeTask>();
+		for (String name : names) {
+			LscDatasets pivots = new LscDatasets();
+			pivots.put("cn", name.substring(3));
+			tasks.add(new SynchronizeTask(task, counter, synchronize,
+							new SimpleImmutableEntry<String, LscDatasets>(name, pivots), true));
+		}
+		return tasks;
+	}
+
+	/**
+	 * A destination returning the given beans, or failing, when looked up by
+	 * blocks.
+	 */
+	private static class BatchLookup implements InvocationHandler {
+
+		private final Map<String, IBean> beans = new HashMap<String, IBean>();
+
+		private final List<String> requested = new ArrayList<String>();
+
+		private LscServiceException failure;
+
+		private IBatchLookupService newService() {
+			return (IBatchLookupService) Proxy.newProxyInstance(getClass().getClassLoader(),
+							new Class<?>[] { IBatchLookupService.class }, this);
+		}
+
+		@SuppressWarnings("unchecked")
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if ("getBeans".equals(method.getName())) {
+				for (Entry<String, LscDatasets> id : (List<Entry<String, LscDatasets>>) args[0]) {
+					requested.add(id.getKey());
+				}
+				if (failure != null) {
+					throw failure;
+				}
+				Map<String, IBean> found = new HashMap<String, IBean>();
+				for (Entry<String, LscDatasets> id : (List<Entry<String, LscDatasets>>) args[0]) {
+					if (beans.containsKey(id.getKey())) {
+						found.put(id.getKey(), beans.get(id.getKey()));
+					}
+				}
+				return found;
+			}
+			return (method.getReturnType() == int.class ? Integer.valueOf(0) : null);
+		}
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.lsc.beans.IBean;
+import org.lsc.beans.SimpleBean;
+import org.lsc.exception.LscServiceException;
+import org.lsc.service.AbstractPivotCursor;
+import org.lsc.service.IPivotCursor;
+
+/**
+ * Test the single pass reconciliation of two sorted cursors.
+ */
+public class MergeCursorTest {
+
+	private static final String SORTED_BY = "uid";
+
+	/**
+	 * Record the decisions of the merge as "create x", "update x" or "delete x".
+	 */
+	private static class Recorder implements MergeCursor.Handler {
+
+		private final List<String> actions = new ArrayList<String>();
+
+		private final List<Entry<String, LscDatasets>> deleted = new ArrayList<Entry<String, LscDatasets>>();
+
+		public void create(IBean srcBean) {
+			actions.add("create " + srcBean.getMainIdentifier());
+		}
+
+		public void update(IBean srcBean, IBean dstBean) {
+			actions.add("update " + srcBean.getMainIdentifier() + " " + dstBean.getMainIdentifier());
+		}
+
+		public void delete(Entry<String, LscDatasets> id, IBean dstBean) {
+			actions.add("delete " + dstBean.getMainIdentifier());
+			deleted.add(id);
+		}
+	}
+
+	/**
+	 * A sorted cursor on beans named side:uid, with the uid and cn datasets.
+	 */
+	private static final class ListCursor extends AbstractPivotCursor {
+
+		private final Iterator<String> uids;
+
+		private final String side;
+
+		private boolean closed;
+
+		private ListCursor(String side, String... uids) {
+			this.side = side;
+			this.uids = Arrays.asList(uids).iterator();
+		}
+
+		@Override
+		protected Entry<String, LscDatasets> fetch() throws LscServiceException {
+			if (closed || !uids.hasNext()) {
+				return null;
+			}
+			String uid = uids.next();
+			String name = "uid=" + uid + ",ou=" + side;
+			SimpleBean bean = new SimpleBean();
+			bean.setMainIdentifier(side + ":" + uid);
+			if (uid.length() > 0) {
+				bean.setDataset(SORTED_BY, new HashSet<Object>(Arrays.asList(uid)));
+			}
+			bean.setDataset("cn", new HashSet<Object>(Arrays.asList("cn of " + uid)));
+			LscDatasets pivots = new LscDatasets();
+			pivots.put(SORTED_BY, uid);
+			pivots.put("cn", "cn of " + uid);
+			return new BeanEntry(name, pivots, bean);
+		}
+
+		public void close() {
+			closed = true;
+		}
+	}
+
+	private static Recorder merge(InfoCounter counter, IPivotCursor src, IPivotCursor dst) throws LscServiceException {
+		Recorder recorder = new Recorder();
+		MergeCursor.merge(new MergeCursor(src, SORTED_BY, "source"), new MergeCursor(dst, SORTED_BY, "destination"),
+						counter, new AtomicBoolean(false), recorder);
+		return recorder;
+	}
+
+	@Test
+	public final void testInterleavedKeys() throws LscServiceException {
+		InfoCounter counter = new InfoCounter();
+		Recorder recorder = merge(counter, new ListCursor("src", "a", "B", "d", "f"),
+						new ListCursor("dst", "b", "c", "D", "e", "g"));
+
+		assertEquals(Arrays.asList("create src:a", "update src:B dst:b", "update src:d dst:D", "create src:f",
+						"delete dst:c", "delete dst:e", "delete dst:g"), recorder.actions);
+		assertEquals(0, counter.getCountError());
+	}
+
+	@Test
+	public final void testDeletedEntriesKeepTheirPivots() throws LscServiceException {
+		Recorder recorder = merge(new InfoCounter(), new ListCursor("src", "a"), new ListCursor("dst", "a", "b"));
+
+		assertEquals(1, recorder.deleted.size());
+		Entry<String, LscDatasets> id = recorder.deleted.get(0);
+		assertEquals("uid=b,ou=dst", id.getKey());
+		assertEquals("b", id.getValue().getStringValueAttribute(SORTED_BY));
+		assertEquals("cn of b", id.getValue().getStringValueAttribute("cn"));
+	}
+
+	@Test
+	public final void testDuplicatedKeys() throws LscServiceException {
+		InfoCounter counter = new InfoCounter();
+		Recorder recorder = merge(counter, new ListCursor("src", "a", "A", "b"),
+						new ListCursor("dst", "b", "b", "c"));
+
+		assertEquals(Arrays.asList("create src:a", "update src:b dst:b", "delete dst:c"), recorder.actions);
+		assertEquals(2, counter.getCountError());
+		assertEquals(2, counter.getCountAll());
+	}
+
+	@Test
+	public final void testMissingKey() throws LscServiceException {
+		InfoCounter counter = new InfoCounter();
+		Recorder recorder = merge(counter, new ListCursor("src", "", "a"), new ListCursor("dst", "a"));
+
+		assertEquals(Arrays.asList("update src:a dst:a"), recorder.actions);
+		assertEquals(1, counter.getCountError());
+	}
+
+	@Test
+	public final void testEmptyDestination() throws LscServiceException {
+		Recorder recorder = merge(new InfoCounter(), new ListCursor("src", "a", "b"), new ListCursor("dst"));
+
+		assertEquals(Arrays.asList("create src:a", "create src:b"), recorder.actions);
+	}
+
+	@Test
+	public final void testEmptySource() throws LscServiceException {
+		Recorder recorder = merge(new InfoCounter(), new ListCursor("src"), new ListCursor("dst", "a", "b"));
+
+		assertEquals(Arrays.asList("delete dst:a", "delete dst:b"), recorder.actions);
+	}
+
+	@Test
+	public final void testUnsorted() throws LscServiceException {
+		Recorder recorder = new Recorder();
+		try {
+			MergeCursor.merge(new MergeCursor(new ListCursor("src", "a", "c", "b"), SORTED_BY, "source"),
+							new MergeCursor(new ListCursor("dst", "c"), SORTED_BY, "destination"),
+							new InfoCounter(), new AtomicBoolean(false), recorder);
+			fail("Unsorted entries must abort the merge");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("not sorted"));
+		}
+		assertEquals(Arrays.asList("create src:a", "update src:c dst:c"), recorder.actions);
+	}
+
+	@Test
+	public final void testUnsortedSourceDeletesNothing() throws LscServiceException {
+		// sorted by a binary collation, the destination entry a first looks
+		// missing from the source
+		Recorder recorder = new Recorder();
+		try {
+			MergeCursor.merge(new MergeCursor(new ListCursor("src", "c", "a"), SORTED_BY, "source"),
+							new MergeCursor(new ListCursor("dst", "a", "c"), SORTED_BY, "destination"),
+							new InfoCounter(), new AtomicBoolean(false), recorder);
+			fail("Unsorted entries must abort the merge");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("not sorted"));
+		}
+		assertEquals(Arrays.asList("update src:c dst:c"), recorder.actions);
+		assertTrue(recorder.deleted.isEmpty());
+	}
+
+	@Test
+	public final void testAbortedBeforeDeleting() throws LscServiceException {
+		final AtomicBoolean aborted = new AtomicBoolean(false);
+		Recorder recorder = new Recorder() {
+			@Override
+			public void create(IBean srcBean) {
+				super.create(srcBean);
+				aborted.set(true);
+			}
+		};
+		MergeCursor.merge(new MergeCursor(new ListCursor("src", "b"), SORTED_BY, "source"),
+						new MergeCursor(new ListCursor("dst", "a"), SORTED_BY, "destination"),
+						new InfoCounter(), aborted, recorder);
+		assertEquals(Arrays.asList("create src:b"), recorder.actions);
+		assertTrue(recorder.deleted.isEmpty());
+	}
+
+	@Test
+	public final void testAborted() throws LscServiceException {
+		Recorder recorder = new Recorder();
+		MergeCursor.merge(new MergeCursor(new ListCursor("src", "a"), SORTED_BY, "source"),
+						new MergeCursor(new ListCursor("dst", "b"), SORTED_BY, "destination"),
+						new InfoCounter(), new AtomicBoolean(true), recorder);
+		assertTrue(recorder.actions.isEmpty());
+	}
+}
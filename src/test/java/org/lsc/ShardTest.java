@@ -0,0 +1,134 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.junit.Test;
+import org.lsc.exception.LscConfigurationException;
+
+/**
+ * Test the split of the entries of a task between several processes.
+ */
+public class ShardTest {
+
+	@Test
+	public final void testParse() {
+		Shard shard = Shard.parse("1/4");
+		assertEquals(1, shard.getIndex());
+		assertEquals(4, shard.getCount());
+		assertTrue(Shard.parse("*/4").isAny());
+		for (String invalid : new String[] { "4/4", "1", "a/2", "0/0" }) {
+			try {
+				Shard.parse(invalid);
+				fail(invalid + " should not be a valid shard");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public final void testPartition() {
+		Shard[] shards = new Shard[] { new Shard(0, 3), new Shard(1, 3), new Shard(2, 3) };
+		int[] sizes = new int[shards.length];
+		for (int i = 0; i < 3000; i++) {
+			String name = "uid=user" + i + ",ou=People,dc=lsc-project,dc=org";
+			int found = 0;
+			for (int s = 0; s < shards.length; s++) {
+				if (shards[s].contains(name)) {
+					found++;
+					sizes[s]++;
+				}
+			}
+			assertEquals(1, found);
+			assertTrue(shards[Shard.getIndex(name, 3)].contains(name.toUpperCase()));
+		}
+		for (int size : sizes) {
+			assertTrue(size > 800);
+		}
+	}
+
+	@Test
+	public final void testTakeOver() throws LscConfigurationException, IOException {
+		File directory = File.createTempFile("lsc-shards", "");
+		directory.delete();
+
+		// no process failed
+		assertNull(ShardLease.acquire(directory, "task.sync", Shard.parse("*/2")));
+
+		// a process holding shard 1 died
+		Properties lease = new Properties();
+		lease.setProperty("owner", "0@failed");
+		lease.setProperty("expires", Long.toString(System.currentTimeMillis() - 1));
+		OutputStream out = new FileOutputStream(new File(directory, "task.sync.1.lease"));
+		lease.store(out, null);
+		out.close();
+
+		ShardLease standIn = ShardLease.acquire(directory, "task.sync", Shard.parse("*/2"));
+		assertNotNull(standIn);
+		assertEquals(1, standIn.getShard().getIndex());
+		standIn.release(new InfoCounter());
+		assertFalse(new File(directory, "task.sync.1.lease").exists());
+		assertTrue(new File(directory, "task.sync.1.status").exists());
+
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+}
@@ -46,13 +46,23 @@
 package org.lsc;
 
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.lsc.beans.IBean;
 import org.lsc.configuration.LscConfiguration;
+import org.lsc.exception.LscServiceException;
+import org.lsc.service.IService;
 
 /**
  * Tests for the SimpleSynchronize class.
@@ -67,6 +77,12 @@ public class SimpleSynchronizeTest {
 	public void setup() {
 		LscConfiguration.reset();
 	}
+
+	@After
+	public void reset() {
+		// forget the dependencies added to the configuration
+		LscConfiguration.reset();
+	}
 	
 	@Test
 	public void testParameters() throws Exception {
@@ -82,5 +98,72 @@ public class SimpleSynchronizeTest {
 		
 		assertFalse(sync.launch(asyncTasks, syncTasks, cleanTasks));
 	}
-	
+
+	@Test
+	public void testParallelTasks() throws Exception {
+		RecordingSynchronize sync = new RecordingSynchronize(2);
+		sync.setParallelTasks(2);
+
+		List<String> syncTasks = new ArrayList<String>();
+		syncTasks.add("ldap2ldapTestTask");
+		syncTasks.add("ldap2ldapJmxTestTask");
+
+		assertTrue(sync.launch(new ArrayList<String>(), syncTasks, new ArrayList<String>()));
+		assertTrue(sync.reads.contains("ldap2ldapTestTask"));
+		assertTrue(sync.reads.contains("ldap2ldapJmxTestTask"));
+		// each task waited for the other one to start reading its entries
+		assertFalse(sync.timedOut);
+	}
+
+	@Test
+	public void testParallelDependentTasks() throws Exception {
+		LscConfiguration.getTask("ldap2ldapJmxTestTask").getDependsOn().add(LscConfiguration.getTask("ldap2ldapTestTask"));
+		RecordingSynchronize sync = new RecordingSynchronize(0);
+		sync.setParallelTasks(2);
+
+		List<String> syncTasks = new ArrayList<String>();
+		syncTasks.add("ldap2ldapJmxTestTask");
+		syncTasks.add("ldap2ldapTestTask");
+
+		assertTrue(sync.launch(new ArrayList<String>(), syncTasks, new ArrayList<String>()));
+		assertTrue(sync.reads.contains("ldap2ldapTestTask"));
+		assertTrue(sync.reads.contains("ldap2ldapJmxTestTask"));
+		assertTrue(sync.reads.lastIndexOf("ldap2ldapTestTask") < sync.reads.indexOf("ldap2ldapJmxTestTask"));
+	}
+
+	/**
+	 * Record the tasks in the order their entries are read. The first read of
+	 * a task may wait until a number of tasks have started.
+	 */
+	private static class RecordingSynchronize extends SimpleSynchronize {
+
+		private final List<String> reads = Collections.synchronizedList(new ArrayList<String>());
+
+		private final Set<String> started = Collections.synchronizedSet(new HashSet<String>());
+
+		private final CountDownLatch startedTasks;
+
+		private volatile boolean timedOut;
+
+		private RecordingSynchronize(int startedTasks) {
+			this.startedTasks = new CountDownLatch(startedTasks);
+		}
+
+		@Override
+		protected IBean getBean(Task task, IService service, String pivotName, LscDatasets pivotAttributes,
+						boolean fromSameService, boolean fromSource) throws LscServiceException {
+			reads.add(task.getName());
+			if (started.add(task.getName())) {
+				startedTasks.countDown();
+				try {
+					if (!startedTasks.await(30, TimeUnit.SECONDS)) {
+						timedOut = true;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return super.getBean(task, service, pivotName, pivotAttributes, fromSameService, fromSource);
+		}
+	}
 }
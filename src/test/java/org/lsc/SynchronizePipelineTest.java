@@ -0,0 +1,114 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test the stages of a pipelined synchronization.
+ */
+public class SynchronizePipelineTest {
+
+	@Test
+	public final void testStagesDrainedInOrder() throws InterruptedException {
+		final SynchronizePipeline pipeline = new SynchronizePipeline(newStage(4), newStage(2), newStage(3));
+		final AtomicInteger written = new AtomicInteger();
+
+		// each entry is handed over from one stage to the next one, late
+		for (int i = 0; i < 100; i++) {
+			pipeline.getReadStage().execute(new Runnable() {
+				public void run() {
+					sleep();
+					pipeline.getComputeStage().execute(new Runnable() {
+						public void run() {
+							sleep();
+							pipeline.getWriteStage().execute(new Runnable() {
+								public void run() {
+									sleep();
+									written.incrementAndGet();
+								}
+							});
+						}
+					});
+				}
+			});
+		}
+
+		assertTrue(pipeline.awaitTermination(60, TimeUnit.SECONDS));
+		assertEquals(100, written.get());
+		assertTrue(pipeline.getWriteStage().isTerminated());
+	}
+
+	@Test
+	public final void testParseThreads() {
+		assertArrayEquals(new int[] {8, 2, 4}, AbstractSynchronize.parsePipelineThreads("8, 2,4"));
+		assertNull(AbstractSynchronize.parsePipelineThreads("8,2"));
+		assertNull(AbstractSynchronize.parsePipelineThreads("8,0,4"));
+		assertNull(AbstractSynchronize.parsePipelineThreads("8,x,4"));
+	}
+
+	private static ThreadPoolExecutor newStage(int threads) {
+		return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+	}
+
+	private static void sleep() {
+		try {
+			Thread.sleep(1);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
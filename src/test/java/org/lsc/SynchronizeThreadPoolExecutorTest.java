@@ -0,0 +1,171 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test the lookups run in the background for the tasks of a pool.
+ */
+public class SynchronizeThreadPoolExecutorTest {
+
+	@Test
+	public final void testLookupInBackground() throws Exception {
+		SynchronizeThreadPoolExecutor pool = new SynchronizeThreadPoolExecutor("test", 2);
+		final CountDownLatch started = new CountDownLatch(1);
+		FutureTask<Thread> lookup = pool.submitLookup(new Callable<Thread>() {
+			public Thread call() {
+				started.countDown();
+				return Thread.currentThread();
+			}
+		});
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		assertNotSame(Thread.currentThread(), SynchronizeThreadPoolExecutor.join(lookup));
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public final void testLookupWithoutPermit() throws Exception {
+		// the destination permits are all taken by the tasks waiting for lookups
+		Semaphore permits = new Semaphore(0);
+		SynchronizeThreadPoolExecutor pool = new SynchronizeThreadPoolExecutor(2, Executors.defaultThreadFactory(), permits);
+		FutureTask<Thread> lookup = pool.submitLookup(new Callable<Thread>() {
+			public Thread call() {
+				return Thread.currentThread();
+			}
+		});
+		assertSame(Thread.currentThread(), SynchronizeThreadPoolExecutor.join(lookup));
+		assertEquals(0, permits.availablePermits());
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public final void testLookupsBounded() throws Exception {
+		SynchronizeThreadPoolExecutor pool = new SynchronizeThreadPoolExecutor("test", 2);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		List<FutureTask<Integer>> lookups = new ArrayList<FutureTask<Integer>>();
+		for (int i = 0; i < 10; i++) {
+			final int value = i;
+			lookups.add(pool.submitLookup(new Callable<Integer>() {
+				public Integer call() throws InterruptedException {
+					int now = running.incrementAndGet();
+					synchronized (maxRunning) {
+						maxRunning.set(Math.max(maxRunning.get(), now));
+					}
+					release.await(10, TimeUnit.SECONDS);
+					running.decrementAndGet();
+					return value;
+				}
+			}));
+		}
+		// two lookups are run by the two threads, the others wait
+		for (int i = 0; i < 100 && running.get() < 2; i++) {
+			Thread.sleep(100);
+		}
+		Thread.sleep(200);
+		assertEquals(2, maxRunning.get());
+
+		release.countDown();
+		// the lookups which found no idle thread are run here
+		for (int i = 0; i < 10; i++) {
+			assertEquals(Integer.valueOf(i), SynchronizeThreadPoolExecutor.join(lookups.get(i)));
+		}
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public final void testLookupsResizedWithThePool() throws Exception {
+		SynchronizeThreadPoolExecutor pool = new SynchronizeThreadPoolExecutor("test", 4);
+		// as adapted to the destination response time
+		pool.setCorePoolSize(1);
+		pool.setMaximumPoolSize(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger running = new AtomicInteger();
+		List<FutureTask<Integer>> lookups = new ArrayList<FutureTask<Integer>>();
+		for (int i = 0; i < 4; i++) {
+			final int value = i;
+			lookups.add(pool.submitLookup(new Callable<Integer>() {
+				public Integer call() throws InterruptedException {
+					running.incrementAndGet();
+					release.await(10, TimeUnit.SECONDS);
+					return value;
+				}
+			}));
+		}
+		for (int i = 0; i < 100 && running.get() < 1; i++) {
+			Thread.sleep(100);
+		}
+		Thread.sleep(200);
+		assertEquals(1, running.get());
+
+		release.countDown();
+		for (int i = 0; i < 4; i++) {
+			assertEquals(Integer.valueOf(i), SynchronizeThreadPoolExecutor.join(lookups.get(i)));
+		}
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+	}
+}
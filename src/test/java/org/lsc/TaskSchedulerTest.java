@@ -0,0 +1,144 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+import org.lsc.configuration.LscConfiguration;
+import org.lsc.configuration.TaskType;
+import org.lsc.exception.LscConfigurationException;
+
+/**
+ * Test the order in which dependent tasks are launched.
+ */
+public class TaskSchedulerTest {
+
+	private List<String> launched = Collections.synchronizedList(new ArrayList<String>());
+
+	@Test
+	public final void testDependenciesOrder() throws Exception {
+		TaskScheduler scheduler = new TaskScheduler(1);
+		scheduler.add("groups", task("groups", true), Arrays.asList("users", "ous"));
+		scheduler.add("ous", task("ous", true), Collections.<String>emptyList());
+		scheduler.add("users", task("users", true), Arrays.asList("ous", "unselected"));
+
+		assertTrue(scheduler.run());
+		assertEquals(Arrays.asList("ous", "users", "groups"), launched);
+	}
+
+	@Test
+	public final void testParallelDependencies() throws Exception {
+		TaskScheduler scheduler = new TaskScheduler(3);
+		scheduler.add("groups", task("groups", true), Arrays.asList("users"));
+		scheduler.add("ous", task("ous", true), Collections.<String>emptyList());
+		scheduler.add("users", task("users", true), Arrays.asList("ous"));
+		scheduler.add("others", task("others", true), Collections.<String>emptyList());
+
+		assertTrue(scheduler.run());
+		assertEquals(4, launched.size());
+		assertTrue(launched.indexOf("ous") < launched.indexOf("users"));
+		assertTrue(launched.indexOf("users") < launched.indexOf("groups"));
+	}
+
+	@Test
+	public final void testFailedDependency() throws Exception {
+		TaskScheduler scheduler = new TaskScheduler(2);
+		scheduler.add("groups", task("groups", true), Arrays.asList("users"));
+		scheduler.add("others", task("others", true), Collections.<String>emptyList());
+		scheduler.add("users", task("users", false), Collections.<String>emptyList());
+
+		assertFalse(scheduler.run());
+		assertFalse(launched.contains("groups"));
+		assertTrue(launched.contains("others"));
+	}
+
+	@Test
+	public final void testDependencyCycle() {
+		TaskType ous = task("ous");
+		TaskType users = task("users");
+		TaskType groups = task("groups");
+		users.getDependsOn().add(ous);
+		groups.getDependsOn().add(users);
+		try {
+			LscConfiguration.checkDependencies(Arrays.asList(groups, users, ous));
+		} catch (LscConfigurationException e) {
+			fail(e.toString());
+		}
+
+		ous.getDependsOn().add(groups);
+		try {
+			LscConfiguration.checkDependencies(Arrays.asList(groups, users, ous));
+			fail("The dependency cycle should have been detected");
+		} catch (LscConfigurationException e) {
+			assertTrue(e.getMessage().contains("groups -> users -> ous -> groups"));
+		}
+	}
+
+	private Callable<Boolean> task(final String name, final boolean success) {
+		return new Callable<Boolean>() {
+			public Boolean call() {
+				launched.add(name);
+				return success;
+			}
+		};
+	}
+
+	private TaskType task(String name) {
+		TaskType task = new TaskType();
+		task.setName(name);
+		return task;
+	}
+}
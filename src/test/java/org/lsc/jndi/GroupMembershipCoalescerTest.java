@@ -0,0 +1,233 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.jndi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.LscModificationType;
+import org.lsc.LscModifications;
+import org.lsc.configuration.LdapConnectionType;
+import org.lsc.configuration.LscConfiguration;
+import org.lsc.jndi.GroupMembershipCoalescer.MembershipUpdate;
+import org.lsc.service.IApplyListener;
+
+/**
+ * Test the coalescing of group membership changes against the destination
+ * directory.
+ */
+public class GroupMembershipCoalescerTest {
+
+	private static final String BASE_DN = "ou=ldap2ldap2TestTaskDst,ou=Test Data,dc=lsc-project,dc=org";
+
+	private static final String GROUP_DN = "cn=coalescedGroup," + BASE_DN;
+
+	private static final String INITIAL_MEMBER = "cn=member0000," + BASE_DN;
+
+	private JndiServices jndiServices;
+
+	private GroupMembershipCoalescer coalescer;
+
+	private RecordingListener listener;
+
+	@Before
+	public void setup() throws NamingException {
+		jndiServices = JndiServices.getInstance((LdapConnectionType) LscConfiguration.getConnection("dst-ldap"));
+		JndiModifications jm = new JndiModifications(JndiModificationType.ADD_ENTRY);
+		jm.setDistinguishName(GROUP_DN);
+		BasicAttribute objectClass = new BasicAttribute("objectClass");
+		objectClass.add("top");
+		objectClass.add("groupOfNames");
+		List<ModificationItem> items = new ArrayList<ModificationItem>();
+		items.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, objectClass));
+		items.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("cn", "coalescedGroup")));
+		items.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("member", INITIAL_MEMBER)));
+		jm.setModificationItems(items);
+		assertTrue(jndiServices.apply(jm));
+		listener = new RecordingListener();
+	}
+
+	@After
+	public void tearDown() throws NamingException {
+		if (coalescer != null) {
+			coalescer.close();
+		}
+		JndiModifications jm = new JndiModifications(JndiModificationType.DELETE_ENTRY);
+		jm.setDistinguishName(GROUP_DN);
+		jndiServices.apply(jm);
+	}
+
+	@Test
+	public final void testCoalesced() throws NamingException {
+		coalescer = new GroupMembershipCoalescer(jndiServices, "member", 10, 60000);
+		for (int i = 1; i <= 3; i++) {
+			MembershipUpdate update = newUpdate("member000" + i);
+			coalescer.addMember(GROUP_DN, "cn=member000" + i + "," + BASE_DN, update);
+			update.ready();
+		}
+		// nothing is sent until the group is flushed
+		assertTrue(listener.applied.isEmpty());
+		assertEquals(1, getMembers().size());
+
+		coalescer.flush();
+		assertEquals(3, listener.applied.size());
+		assertTrue(listener.failed.isEmpty());
+		assertEquals(4, getMembers().size());
+	}
+
+	@Test
+	public final void testFullGroupSent() throws NamingException {
+		coalescer = new GroupMembershipCoalescer(jndiServices, "member", 2, 60000);
+		for (int i = 1; i <= 2; i++) {
+			MembershipUpdate update = newUpdate("member000" + i);
+			coalescer.addMember(GROUP_DN, "cn=member000" + i + "," + BASE_DN, update);
+			update.ready();
+		}
+		assertEquals(2, listener.applied.size());
+		assertEquals(3, getMembers().size());
+	}
+
+	@Test
+	public final void testFailureAttributed() throws NamingException {
+		coalescer = new GroupMembershipCoalescer(jndiServices, "member", 10, 60000);
+		MembershipUpdate first = newUpdate("member0001");
+		coalescer.addMember(GROUP_DN, "cn=member0001," + BASE_DN, first);
+		first.ready();
+		// this value is already there and makes the whole modification fail
+		MembershipUpdate existing = newUpdate("member0000");
+		coalescer.addMember(GROUP_DN, INITIAL_MEMBER, existing);
+		existing.ready();
+		MembershipUpdate last = newUpdate("member0002");
+		coalescer.addMember(GROUP_DN, "cn=member0002," + BASE_DN, last);
+		last.ready();
+
+		coalescer.flush();
+		assertEquals(2, listener.applied.size());
+		assertTrue(listener.applied.contains("member0001"));
+		assertTrue(listener.applied.contains("member0002"));
+		assertEquals(Collections.singletonList("member0000"), listener.failed);
+		assertEquals(3, getMembers().size());
+	}
+
+	@Test
+	public final void testOppositeChangeSentFirst() throws NamingException {
+		coalescer = new GroupMembershipCoalescer(jndiServices, "member", 10, 60000);
+		MembershipUpdate added = newUpdate("member0001");
+		coalescer.addMember(GROUP_DN, "cn=member0001," + BASE_DN, added);
+		added.ready();
+		// the removal can only be applied once the addition is
+		MembershipUpdate removed = newUpdate("member0001");
+		coalescer.removeMember(GROUP_DN, "cn=member0001," + BASE_DN, removed);
+		removed.ready();
+		assertEquals(1, listener.applied.size());
+
+		coalescer.flush();
+		assertEquals(2, listener.applied.size());
+		assertTrue(listener.failed.isEmpty());
+		assertEquals(1, getMembers().size());
+		assertFalse(getMembers().contains("cn=member0001," + BASE_DN));
+	}
+
+	@Test
+	public final void testUpdateWithoutMembership() {
+		coalescer = new GroupMembershipCoalescer(jndiServices, "member", 10, 60000);
+		MembershipUpdate update = newUpdate("member0001");
+		update.ready();
+		assertEquals(Collections.singletonList("member0001"), listener.applied);
+		assertNull(listener.failure);
+	}
+
+	private MembershipUpdate newUpdate(String cn) {
+		LscModifications lm = new LscModifications(LscModificationType.UPDATE_OBJECT, "coalescerTest");
+		lm.setMainIdentifer(cn);
+		return new MembershipUpdate(lm, listener);
+	}
+
+	private List<String> getMembers() throws NamingException {
+		List<String> members = new ArrayList<String>();
+		Attribute member = jndiServices.readEntry(GROUP_DN, false).getAttributes().get("member");
+		for (int i = 0; member != null && i < member.size(); i++) {
+			members.add(member.get(i).toString());
+		}
+		return members;
+	}
+
+	/**
+	 * Record the identifiers of the applied and failed entries.
+	 */
+	private static class RecordingListener implements IApplyListener {
+
+		private final List<String> applied = Collections.synchronizedList(new ArrayList<String>());
+
+		private final List<String> failed = Collections.synchronizedList(new ArrayList<String>());
+
+		private volatile Exception failure;
+
+		public void applied(LscModifications lm) {
+			applied.add(lm.getMainIdentifier());
+		}
+
+		public void failed(LscModifications lm, Exception e) {
+			failed.add(lm.getMainIdentifier());
+			failure = e;
+		}
+	}
+}
@@ -163,4 +163,17 @@ public class JScriptEvaluatorTest {
 		List<Object> res = ScriptingEvaluator.evalToObjectList(task, "ldap.or(ldap.attribute('ou=People,dc=lsc-project,dc=org','ou'), ldap.fsup('ou=People,dc=lsc-project,dc=org','dc=*'))", table);
 		assertEquals("[People, dc=lsc-project,dc=org]", res.toString());
 	}
+
+	@Test
+	public void testVariablesNotSharedBetweenEntries() throws LscServiceException {
+		Map<String, Object> entryA = new HashMap<String, Object>();
+		entryA.put("uid", "a");
+		assertEquals("a", ScriptingEvaluator.evalToString(task, "var previous = uid; other = uid; uid", entryA));
+
+		Map<String, Object> entryB = new HashMap<String, Object>();
+		entryB.put("uid", "b");
+		assertEquals("undefined", ScriptingEvaluator.evalToString(task, "typeof previous", entryB));
+		assertEquals("undefined", ScriptingEvaluator.evalToString(task, "typeof other", entryB));
+		assertEquals("b", ScriptingEvaluator.evalToString(task, "var previous; previous = previous || uid; previous", entryB));
+	}
 }
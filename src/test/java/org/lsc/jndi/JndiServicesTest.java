@@ -48,6 +48,7 @@ package org.lsc.jndi;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.net.URL;
@@ -55,6 +56,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.naming.NamingException;
 import javax.naming.directory.Attribute;
@@ -62,6 +64,7 @@ import javax.naming.directory.BasicAttribute;
 import javax.naming.directory.DirContext;
 import javax.naming.directory.ModificationItem;
 import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
 import javax.security.auth.login.LoginContext;
 import javax.security.auth.login.LoginException;
 
@@ -70,6 +73,8 @@ import org.junit.Test;
 import org.lsc.LscDatasets;
 import org.lsc.configuration.LdapConnectionType;
 import org.lsc.configuration.LscConfiguration;
+import org.lsc.exception.LscServiceException;
+import org.lsc.service.IPivotCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -112,6 +117,40 @@ public class JndiServicesTest {
 						new String[]{"objectclasses"}));
 	}
 
+	@Test
+	public final void testAttrsCursor() throws NamingException, LscServiceException {
+		List<String> attrsName = new ArrayList<String>();
+		attrsName.add("cn");
+		attrsName.add("sn");
+		String base = "ou=ldap2ldap2TestTaskSrc,ou=Test Data,dc=lsc-project,dc=org";
+		Map<String, LscDatasets> values = dstJndiServices.getAttrsList(base,
+						"(sn=*)", SearchControls.SUBTREE_SCOPE, attrsName);
+		assertTrue(values.size() > 1);
+
+		// the cursor returns the same entries as the list
+		IPivotCursor cursor = dstJndiServices.getAttrsCursor(base,
+						"(sn=*)", SearchControls.SUBTREE_SCOPE, attrsName);
+		int count = 0;
+		while (cursor.hasNext()) {
+			Entry<String, LscDatasets> entry = cursor.next();
+			assertNotNull(values.get(entry.getKey()));
+			assertEquals(values.get(entry.getKey()).getStringValueAttribute("sn"),
+							entry.getValue().getStringValueAttribute("sn"));
+			count++;
+		}
+		cursor.close();
+		assertEquals(values.size(), count);
+
+		// a cursor closed early gives its connection back
+		for (int i = 0; i < 20; i++) {
+			cursor = dstJndiServices.getAttrsCursor(base,
+							"(sn=*)", SearchControls.SUBTREE_SCOPE, attrsName);
+			assertTrue(cursor.hasNext());
+			cursor.close();
+		}
+		assertTrue(dstJndiServices.exists(base));
+	}
+
 	@Test
 	public final void testSup() throws NamingException {
 		assertEquals(null, dstJndiServices.sup("", -1));
@@ -126,6 +165,17 @@ public class JndiServicesTest {
 						"ou=test1,ou=test2,ou=test3", 0));
 	}
 
+	@Test
+	public final void testGetEntries() throws NamingException {
+		List<String> attrsName = new ArrayList<String>();
+		attrsName.add("uid");
+		List<SearchResult> entries = dstJndiServices.getEntries("ou=People",
+						"(|(uid=00000001)(uid=unknown))", SearchControls.SUBTREE_SCOPE, attrsName);
+		assertEquals(1, entries.size());
+		assertEquals("00000001", entries.get(0).getAttributes().get("uid").get());
+		assertNull(entries.get(0).getAttributes().get("objectClass"));
+	}
+
 	@Test
 	public final void testGetDnList() throws NamingException {
 		List<String> test2list = new ArrayList<String>();
@@ -0,0 +1,242 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.jndi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.naming.CommunicationException;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.ldap.LdapContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.configuration.LdapConnectionType;
+import org.lsc.configuration.LscConfiguration;
+import org.lsc.exception.LscConfigurationException;
+import org.lsc.jndi.LdapContextPool.LdapOperation;
+
+/**
+ * Test the pool of LDAP contexts against the destination directory.
+ */
+public class LdapContextPoolTest {
+
+	private LdapContextPool pool;
+
+	@Before
+	public void setup() throws LscConfigurationException, NamingException, IOException {
+		Properties props = JndiServices.getLdapProperties((LdapConnectionType) LscConfiguration.getConnection("dst-ldap"));
+		props.setProperty(LdapContextPool.MIN_IDLE, "1");
+		props.setProperty(LdapContextPool.MAX_SIZE, "2");
+		props.setProperty(LdapContextPool.MAX_WAIT, "500");
+		pool = new LdapContextPool(props);
+	}
+
+	@After
+	public void tearDown() {
+		pool.close();
+	}
+
+	@Test
+	public final void testBorrowRelease() throws NamingException {
+		assertEquals(1, pool.getIdleCount());
+		LdapContext ctx = pool.borrow();
+		assertEquals(1, pool.getActiveCount());
+		assertEquals(0, pool.getIdleCount());
+		pool.release(ctx);
+		assertEquals(0, pool.getActiveCount());
+		assertEquals(1, pool.getIdleCount());
+
+		// the idle connection is reused
+		assertSame(ctx, pool.borrow());
+		pool.release(ctx);
+		assertEquals(1, pool.getCreatedCount());
+		assertEquals(2, pool.getBorrowedCount());
+	}
+
+	@Test
+	public final void testReleaseAfterClose() throws NamingException {
+		LdapContext ctx = pool.borrow();
+		pool.close();
+		assertEquals(0, pool.getDestroyedCount());
+
+		// the borrowed context is closed once given back
+		pool.release(ctx);
+		assertEquals(0, pool.getActiveCount());
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(1, pool.getDestroyedCount());
+	}
+
+	@Test
+	public final void testInvalidate() throws NamingException {
+		LdapContext ctx = pool.borrow();
+		pool.invalidate(ctx);
+		assertEquals(1, pool.getDestroyedCount());
+		assertEquals(0, pool.getActiveCount());
+
+		LdapContext other = pool.borrow();
+		assertNotSame(ctx, other);
+		pool.release(other);
+		assertEquals(2, pool.getCreatedCount());
+	}
+
+	@Test
+	public final void testExhausted() throws NamingException {
+		LdapContext first = pool.borrow();
+		LdapContext second = pool.borrow();
+		try {
+			pool.borrow();
+			fail("All connections are busy, borrowing should have timed out");
+		} catch (ServiceUnavailableException e) {
+			// expected
+		}
+		pool.release(first);
+		pool.release(second);
+		assertEquals(1, pool.getWaitedCount());
+		assertEquals(2, pool.getCreatedCount());
+	}
+
+	@Test
+	public final void testWaitForRelease() throws NamingException, InterruptedException {
+		LdapContext first = pool.borrow();
+		LdapContext second = pool.borrow();
+		final AtomicReference<LdapContext> waiter = new AtomicReference<LdapContext>();
+		final CountDownLatch done = new CountDownLatch(1);
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					waiter.set(pool.borrow());
+				} catch (NamingException e) {
+					// let the assertions fail
+				}
+				done.countDown();
+			}
+		});
+		thread.start();
+		for (int i = 0; i < 100 && pool.getWaitedCount() == 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, pool.getWaitedCount());
+		assertEquals(1, done.getCount());
+
+		pool.release(first);
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertSame(first, waiter.get());
+		pool.release(waiter.get());
+		pool.release(second);
+	}
+
+	@Test
+	public final void testExecuteRetriesOnce() throws NamingException {
+		final List<LdapContext> contexts = new ArrayList<LdapContext>();
+		String result = pool.execute(new LdapOperation<String>() {
+			String run(LdapContext ctx) throws NamingException {
+				contexts.add(ctx);
+				if (contexts.size() == 1) {
+					throw new CommunicationException("connection lost");
+				}
+				return "done";
+			}
+		});
+		assertEquals("done", result);
+		assertEquals(2, contexts.size());
+		assertNotSame(contexts.get(0), contexts.get(1));
+		assertEquals(1, pool.getDestroyedCount());
+		assertEquals(0, pool.getActiveCount());
+	}
+
+	@Test
+	public final void testExecuteRetriesOnlyOnce() {
+		final List<LdapContext> contexts = new ArrayList<LdapContext>();
+		try {
+			pool.execute(new LdapOperation<String>() {
+				String run(LdapContext ctx) throws NamingException {
+					contexts.add(ctx);
+					throw new CommunicationException("connection lost");
+				}
+			});
+			fail("The second communication error should be thrown");
+		} catch (NamingException e) {
+			assertTrue(e instanceof CommunicationException);
+		}
+		assertEquals(2, contexts.size());
+		assertEquals(2, pool.getDestroyedCount());
+		assertEquals(0, pool.getActiveCount());
+	}
+
+	@Test
+	public final void testExecuteNoRetryOnOtherErrors() {
+		final List<LdapContext> contexts = new ArrayList<LdapContext>();
+		try {
+			pool.execute(new LdapOperation<String>() {
+				String run(LdapContext ctx) throws NamingException {
+					contexts.add(ctx);
+					throw new NameNotFoundException("no such entry");
+				}
+			});
+			fail("The error should be thrown");
+		} catch (NamingException e) {
+			assertTrue(e instanceof NameNotFoundException);
+		}
+		assertEquals(1, contexts.size());
+		assertEquals(0, pool.getDestroyedCount());
+		assertEquals(1, pool.getIdleCount());
+	}
+}
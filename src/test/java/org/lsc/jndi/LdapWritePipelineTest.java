@@ -0,0 +1,331 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.jndi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.NamingException;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.LscModificationType;
+import org.lsc.LscModifications;
+import org.lsc.configuration.LdapConnectionType;
+import org.lsc.configuration.LscConfiguration;
+import org.lsc.exception.LscServiceException;
+import org.lsc.service.IApplyListener;
+
+/**
+ * Test the pipelined writes against the destination directory.
+ */
+public class LdapWritePipelineTest {
+
+	private static final String BASE_DN = "ou=ldap2ldap2TestTaskDst,ou=Test Data,dc=lsc-project,dc=org";
+
+	private JndiServices jndiServices;
+
+	private LdapWritePipeline pipeline;
+
+	private List<String> added;
+
+	@Before
+	public void setup() {
+		LdapConnectionType connection = (LdapConnectionType) LscConfiguration.getConnection("dst-ldap");
+		jndiServices = JndiServices.getInstance(connection);
+		pipeline = new LdapWritePipeline(connection, jndiServices, 2);
+		added = Collections.synchronizedList(new ArrayList<String>());
+	}
+
+	@After
+	public void tearDown() throws LscServiceException, NamingException {
+		pipeline.close();
+		// delete children before their parents
+		Collections.reverse(added);
+		for (String dn : added) {
+			if (jndiServices.exists(dn)) {
+				JndiModifications jm = new JndiModifications(JndiModificationType.DELETE_ENTRY);
+				jm.setDistinguishName(dn);
+				jndiServices.apply(jm);
+			}
+		}
+	}
+
+	@Test
+	public final void testApplied() throws LscServiceException {
+		RecordingListener listener = new RecordingListener(null);
+		for (int i = 1; i <= 3; i++) {
+			submit(newAdd("pipeline000" + i), listener);
+		}
+		submit(newModify("pipeline0001", "description", "pipelined"), listener);
+		pipeline.flush();
+
+		// results are reported in the order the requests were sent
+		assertEquals(4, listener.applied.size());
+		assertEquals("cn=pipeline0001," + BASE_DN, listener.applied.get(0));
+		assertEquals("cn=pipeline0003," + BASE_DN, listener.applied.get(2));
+		assertTrue(listener.failed.isEmpty());
+		assertTrue(jndiServices.exists("cn=pipeline0002," + BASE_DN));
+
+		submit(newDelete("pipeline0002"), listener);
+		pipeline.flush();
+		assertEquals(5, listener.applied.size());
+		assertFalse(jndiServices.exists("cn=pipeline0002," + BASE_DN));
+	}
+
+	@Test
+	public final void testFailed() throws LscServiceException {
+		RecordingListener listener = new RecordingListener(null);
+		submit(newModify("pipelineMissing", "description", "pipelined"), listener);
+		pipeline.flush();
+
+		assertTrue(listener.applied.isEmpty());
+		assertEquals(1, listener.failed.size());
+		assertEquals("cn=pipelineMissing," + BASE_DN, listener.failed.get(0));
+	}
+
+	@Test
+	public final void testListenerErrorNotifiedOnce() throws LscServiceException {
+		RecordingListener listener = new RecordingListener(null) {
+			@Override
+			public void applied(LscModifications lm) {
+				super.applied(lm);
+				throw new IllegalStateException("Unable to record " + lm.getMainIdentifier());
+			}
+		};
+		submit(newAdd("pipeline0001"), listener);
+		submit(newAdd("pipeline0002"), listener);
+		pipeline.flush();
+
+		// an applied write is not reported as failed too
+		assertEquals(2, listener.applied.size());
+		assertTrue(listener.failed.isEmpty());
+	}
+
+	@Test
+	public final void testWindowFull() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		RecordingListener listener = new RecordingListener(release);
+
+		// the collector holds the slot of the first write until it is released
+		submit(newAdd("pipeline0001"), listener);
+		assertTrue(listener.collecting.await(10, TimeUnit.SECONDS));
+		submit(newAdd("pipeline0002"), listener);
+
+		CountDownLatch sent = submitInBackground(newAdd("pipeline0003"), listener);
+		assertFalse("The window is full, the third write must wait", sent.await(500, TimeUnit.MILLISECONDS));
+
+		release.countDown();
+		assertTrue(sent.await(10, TimeUnit.SECONDS));
+		pipeline.flush();
+		assertEquals(3, listener.applied.size());
+		assertTrue(listener.failed.isEmpty());
+	}
+
+	@Test
+	public final void testChildWaitsForParent() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		RecordingListener listener = new RecordingListener(release);
+
+		submit(newAdd("pipeline0001"), listener);
+		assertTrue(listener.collecting.await(10, TimeUnit.SECONDS));
+		CountDownLatch sent = submitInBackground(newAdd("pipelineChild", "cn=pipeline0001," + BASE_DN), listener);
+		assertFalse("The parent is still being added, the child must wait", sent.await(500, TimeUnit.MILLISECONDS));
+
+		// unrelated entries are not delayed
+		submit(newAdd("pipeline0002"), listener);
+
+		release.countDown();
+		assertTrue(sent.await(10, TimeUnit.SECONDS));
+		pipeline.flush();
+		assertTrue(listener.failed.isEmpty());
+		assertEquals(3, listener.applied.size());
+		assertEquals("cn=pipelineChild,cn=pipeline0001," + BASE_DN, listener.applied.get(2));
+	}
+
+	@Test
+	public final void testRenameWaitsForModifications() throws Exception {
+		submit(newAdd("pipeline0001"), new RecordingListener(null));
+		pipeline.flush();
+
+		CountDownLatch release = new CountDownLatch(1);
+		RecordingListener listener = new RecordingListener(release);
+		submit(newModify("pipeline0001", "description", "before rename"), listener);
+		assertTrue(listener.collecting.await(10, TimeUnit.SECONDS));
+
+		final JndiModifications rename = new JndiModifications(JndiModificationType.MODRDN_ENTRY);
+		rename.setDistinguishName("cn=pipeline0001," + BASE_DN);
+		rename.setNewDistinguishName("cn=pipeline0004," + BASE_DN);
+		added.add(rename.getNewDistinguishName());
+		final CountDownLatch renamed = new CountDownLatch(1);
+		new Thread(new Runnable() {
+			public void run() {
+				try {
+					if (pipeline.applySynchronously(rename)) {
+						renamed.countDown();
+					}
+				} catch (LscServiceException e) {
+					// counted as not renamed
+				}
+			}
+		}).start();
+		assertFalse("The entry is being modified, the rename must wait", renamed.await(500, TimeUnit.MILLISECONDS));
+
+		release.countDown();
+		assertTrue(renamed.await(10, TimeUnit.SECONDS));
+		assertEquals(1, listener.applied.size());
+		assertTrue(jndiServices.exists("cn=pipeline0004," + BASE_DN));
+	}
+
+	private CountDownLatch submitInBackground(final JndiModifications jm, final IApplyListener listener) {
+		final CountDownLatch sent = new CountDownLatch(1);
+		new Thread(new Runnable() {
+			public void run() {
+				try {
+					submit(jm, listener);
+				} catch (LscServiceException e) {
+					// counted as not sent
+					return;
+				}
+				sent.countDown();
+			}
+		}).start();
+		return sent;
+	}
+
+	private void submit(JndiModifications jm, IApplyListener listener) throws LscServiceException {
+		LscModifications lm = new LscModifications(LscModificationType.UPDATE_OBJECT, "pipelineTest");
+		lm.setMainIdentifer(jm.getDistinguishName());
+		if (jm.getOperation() == JndiModificationType.ADD_ENTRY) {
+			added.add(jm.getDistinguishName());
+		}
+		pipeline.submit(jm, lm, listener);
+	}
+
+	private static JndiModifications newAdd(String cn) {
+		return newAdd(cn, BASE_DN);
+	}
+
+	private static JndiModifications newAdd(String cn, String parentDn) {
+		JndiModifications jm = new JndiModifications(JndiModificationType.ADD_ENTRY);
+		jm.setDistinguishName("cn=" + cn + "," + parentDn);
+		BasicAttribute objectClass = new BasicAttribute("objectClass");
+		objectClass.add("top");
+		objectClass.add("person");
+		List<ModificationItem> items = new ArrayList<ModificationItem>();
+		items.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, objectClass));
+		items.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("cn", cn)));
+		items.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("sn", cn)));
+		jm.setModificationItems(items);
+		return jm;
+	}
+
+	private static JndiModifications newModify(String cn, String attribute, String value) {
+		JndiModifications jm = new JndiModifications(JndiModificationType.MODIFY_ENTRY);
+		jm.setDistinguishName("cn=" + cn + "," + BASE_DN);
+		List<ModificationItem> items = new ArrayList<ModificationItem>();
+		items.add(new ModificationItem(DirContext.REPLACE_ATTRIBUTE, new BasicAttribute(attribute, value)));
+		jm.setModificationItems(items);
+		return jm;
+	}
+
+	private static JndiModifications newDelete(String cn) {
+		JndiModifications jm = new JndiModifications(JndiModificationType.DELETE_ENTRY);
+		jm.setDistinguishName("cn=" + cn + "," + BASE_DN);
+		return jm;
+	}
+
+	/**
+	 * Record the identifiers of the applied and failed modifications. The
+	 * first notification may wait until it is released.
+	 */
+	private static class RecordingListener implements IApplyListener {
+
+		private final List<String> applied = Collections.synchronizedList(new ArrayList<String>());
+
+		private final List<String> failed = Collections.synchronizedList(new ArrayList<String>());
+
+		private final CountDownLatch collecting = new CountDownLatch(1);
+
+		private final CountDownLatch release;
+
+		private RecordingListener(CountDownLatch release) {
+			this.release = release;
+		}
+
+		public void applied(LscModifications lm) {
+			notified();
+			applied.add(lm.getMainIdentifier());
+		}
+
+		public void failed(LscModifications lm, Exception e) {
+			notified();
+			failed.add(lm.getMainIdentifier());
+		}
+
+		private void notified() {
+			collecting.countDown();
+			if (release != null) {
+				try {
+					release.await(30, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+}
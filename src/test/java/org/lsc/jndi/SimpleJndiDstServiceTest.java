@@ -0,0 +1,219 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.jndi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.naming.NamingException;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+import javax.naming.directory.SearchResult;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.LscDatasets;
+import org.lsc.beans.IBean;
+import org.lsc.configuration.LdapConnectionType;
+import org.lsc.configuration.LscConfiguration;
+import org.lsc.exception.LscServiceException;
+
+/**
+ * Test the lookup of several destination entries with a single search, and
+ * the routing of the entries found back to their identifiers.
+ */
+public class SimpleJndiDstServiceTest {
+
+	private static final String BASE_DN = "ou=ldap2ldap2TestTaskDst,ou=Test Data,dc=lsc-project,dc=org";
+
+	private static final String PHONE = "+33 1 23 45 67 89";
+
+	private JndiServices jndiServices;
+
+	private SimpleJndiDstService service;
+
+	private List<String> added;
+
+	@Before
+	public void setup() throws NamingException, LscServiceException {
+		LscConfiguration.reset();
+		jndiServices = JndiServices.getInstance((LdapConnectionType) LscConfiguration.getConnection("dst-ldap"));
+		service = new SimpleJndiDstService(LscConfiguration.getTask("ldap2ldapTestTask"));
+		added = new ArrayList<String>();
+		addPerson("batchLookupA", "BatchLookupA", null);
+		addPerson("batchLookupB", "BatchLookupB", null);
+		addPerson("batchLookupDup1", "BatchLookupDup", null);
+		addPerson("batchLookupDup2", "BatchLookupDup", null);
+		addPerson("batchLookupPhone", "BatchLookupPhone", PHONE);
+	}
+
+	@After
+	public void tearDown() throws NamingException {
+		for (String dn : added) {
+			JndiModifications jm = new JndiModifications(JndiModificationType.DELETE_ENTRY);
+			jm.setDistinguishName(dn);
+			jndiServices.apply(jm);
+		}
+		LscConfiguration.reset();
+	}
+
+	@Test
+	public final void testRouted() throws NamingException {
+		List<Entry<String, LscDatasets>> ids = new ArrayList<Entry<String, LscDatasets>>();
+		ids.add(newId("a", "sn", "BatchLookupA"));
+		// values are compared ignoring case
+		ids.add(newId("b", "sn", "batchlookupb"));
+		ids.add(newId("missing", "sn", "BatchLookupMissing"));
+
+		Map<String, SearchResult> results = service.get(ids, "(sn={sn})");
+		assertEquals(3, results.size());
+		assertTrue(results.get("a").getNameInNamespace().equalsIgnoreCase("cn=batchLookupA," + BASE_DN));
+		assertTrue(results.get("b").getNameInNamespace().equalsIgnoreCase("cn=batchLookupB," + BASE_DN));
+		// not returned by the search, so it does not exist
+		assertTrue(results.containsKey("missing"));
+		assertNull(results.get("missing"));
+	}
+
+	@Test
+	public final void testSeveralEntriesLeftOut() throws NamingException {
+		List<Entry<String, LscDatasets>> ids = new ArrayList<Entry<String, LscDatasets>>();
+		ids.add(newId("a", "sn", "BatchLookupA"));
+		ids.add(newId("dup", "sn", "BatchLookupDup"));
+
+		Map<String, SearchResult> results = service.get(ids, "(sn={sn})");
+		assertNotNull(results.get("a"));
+		// matches two entries, to be looked up on its own
+		assertFalse(results.containsKey("dup"));
+	}
+
+	@Test
+	public final void testAmbiguousValuesLeftOut() throws NamingException {
+		List<Entry<String, LscDatasets>> ids = new ArrayList<Entry<String, LscDatasets>>();
+		ids.add(newId("a1", "sn", "BatchLookupA"));
+		ids.add(newId("a2", "sn", "batchlookupa"));
+		ids.add(newId("b", "sn", "BatchLookupB"));
+
+		Map<String, SearchResult> results = service.get(ids, "(sn={sn})");
+		// values only differing by their case may designate the same entry
+		assertFalse(results.containsKey("a1"));
+		assertFalse(results.containsKey("a2"));
+		assertNotNull(results.get("b"));
+	}
+
+	@Test
+	public final void testUnroutedEntry() throws NamingException {
+		List<Entry<String, LscDatasets>> ids = new ArrayList<Entry<String, LscDatasets>>();
+		// the directory ignores the spaces of phone numbers, the routing does not
+		ids.add(newId("phone", "telephonenumber", PHONE.replace(" ", "")));
+		ids.add(newId("missing", "telephonenumber", "+33000000000"));
+
+		Map<String, SearchResult> results = service.get(ids, "(telephoneNumber={telephonenumber})");
+		// the entry found may be the one of any identifier, none is missing
+		assertTrue(results.isEmpty());
+	}
+
+	@Test
+	public final void testUnsupportedTemplates() throws NamingException {
+		List<Entry<String, LscDatasets>> ids = new ArrayList<Entry<String, LscDatasets>>();
+		ids.add(newId("a", "sn", "BatchLookupA"));
+
+		assertTrue(service.get(ids, "(!(sn={sn}))").isEmpty());
+		assertTrue(service.get(ids, "(sn={sn}*)").isEmpty());
+		assertTrue(service.get(ids, "(sn>={sn})").isEmpty());
+		// the static parts of the template are kept
+		assertNotNull(service.get(ids, "(&(objectClass=person)(sn={sn}))").get("a"));
+		// an identifier without value for the placeholder is left out
+		assertTrue(service.get(ids, "(cn={cn})").isEmpty());
+	}
+
+	@Test
+	public final void testGetBeans() throws LscServiceException, NamingException {
+		List<Entry<String, LscDatasets>> ids = new ArrayList<Entry<String, LscDatasets>>();
+		ids.add(newId("a", "sn", "BatchLookupA"));
+		ids.add(newId("missing", "sn", "BatchLookupMissing"));
+
+		Map<String, IBean> beans = service.getBeans(ids, false);
+		assertEquals(2, beans.size());
+		assertEquals("BatchLookupA", beans.get("a").getDatasetFirstValueById("sn"));
+		assertNull(beans.get("missing"));
+	}
+
+	private static Entry<String, LscDatasets> newId(String name, String pivot, String value) {
+		LscDatasets pivots = new LscDatasets();
+		pivots.put(pivot, value);
+		return new SimpleImmutableEntry<String, LscDatasets>(name, pivots);
+	}
+
+	private void addPerson(String cn, String sn, String telephoneNumber) throws NamingException {
+		String dn = "cn=" + cn + "," + BASE_DN;
+		JndiModifications jm = new JndiModifications(JndiModificationType.ADD_ENTRY);
+		jm.setDistinguishName(dn);
+		BasicAttribute objectClass = new BasicAttribute("objectClass");
+		objectClass.add("top");
+		objectClass.add("person");
+		List<ModificationItem> items = new ArrayList<ModificationItem>();
+		items.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, objectClass));
+		items.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("cn", cn)));
+		items.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("sn", sn)));
+		if (telephoneNumber != null) {
+			items.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("telephoneNumber", telephoneNumber)));
+		}
+		jm.setModificationItems(items);
+		assertTrue(jndiServices.apply(jm));
+		added.add(dn);
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.jndi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map.Entry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.LscDatasets;
+import org.lsc.beans.IBean;
+import org.lsc.configuration.LscConfiguration;
+import org.lsc.configuration.TaskType;
+import org.lsc.exception.LscServiceException;
+import org.lsc.service.IPivotCursor;
+
+/**
+ * Test the listing of the source entries, with or without their fetched
+ * attributes.
+ */
+public class SimpleJndiSrcServiceTest {
+
+	private TaskType task;
+
+	@Before
+	public void setup() {
+		LscConfiguration.reset();
+		task = LscConfiguration.getTask("ldap2ldapTestTask");
+	}
+
+	@After
+	public void tearDown() {
+		LscConfiguration.reset();
+	}
+
+	@Test
+	public final void testPivotsOnly() throws LscServiceException {
+		SimpleJndiSrcService service = new SimpleJndiSrcService(task);
+		IPivotCursor cursor = service.getPivotCursor();
+		try {
+			assertTrue(cursor.hasNext());
+			assertNotNull(cursor.next().getValue().getStringValueAttribute("sn"));
+			// the entry has to be read on its own
+			assertNull(cursor.getBean());
+		} finally {
+			cursor.close();
+		}
+	}
+
+	@Test
+	public final void testFullEntries() throws LscServiceException {
+		task.getLdapSourceService().setListFullEntries(true);
+		SimpleJndiSrcService service = new SimpleJndiSrcService(task);
+		IPivotCursor cursor = service.getPivotCursor();
+		int count = 0;
+		try {
+			while (cursor.hasNext()) {
+				Entry<String, LscDatasets> entry = cursor.next();
+				IBean listed = cursor.getBean();
+				assertNotNull(listed);
+
+				// the listed entry is the one read on its own
+				IBean read = service.getBean(entry.getKey(), entry.getValue(), true);
+				assertEquals(read.getMainIdentifier(), listed.getMainIdentifier());
+				assertEquals(read.datasets().getAttributesNames().size(), listed.datasets().getAttributesNames().size());
+				for (String name : new String[] { "cn", "sn", "description", "telephoneNumber" }) {
+					assertEquals(read.getDatasetById(name), listed.getDatasetById(name));
+				}
+				count++;
+			}
+		} finally {
+			cursor.close();
+		}
+		assertEquals(service.getListPivots().size(), count);
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.Task;
+import org.lsc.configuration.TaskType;
+import org.lsc.exception.LscConfigurationException;
+
+import mockit.Injectable;
+import mockit.NonStrict;
+import mockit.NonStrictExpectations;
+
+/**
+ * Test the record of the entries synchronized by an interrupted run.
+ */
+public class CheckpointTest {
+
+	@Injectable @NonStrict Task task;
+	private File file;
+
+	@Before
+	public void setup() throws Exception {
+		file = File.createTempFile("lsc-checkpoint", ".txt");
+		file.deleteOnExit();
+		final TaskType taskType = new TaskType();
+		taskType.setCheckpoint(file.getAbsolutePath());
+		new NonStrictExpectations() {
+			{
+				task.getName(); result = "test";
+				task.getTaskType(); result = taskType;
+			}
+		};
+	}
+
+	@Test
+	public final void testResume() throws LscConfigurationException {
+		Checkpoint checkpoint = Checkpoint.open(task, false);
+		checkpoint.completed("uid=1");
+		checkpoint.completed("cn=multi\nline\\");
+		checkpoint.close(false);
+
+		checkpoint = Checkpoint.open(task, true);
+		assertTrue(checkpoint.isCompleted("uid=1"));
+		assertTrue(checkpoint.isCompleted("cn=multi\nline\\"));
+		assertFalse(checkpoint.isCompleted("uid=2"));
+		checkpoint.completed("uid=2");
+		checkpoint.close(false);
+
+		checkpoint = Checkpoint.open(task, true);
+		assertTrue(checkpoint.isCompleted("uid=1"));
+		assertTrue(checkpoint.isCompleted("uid=2"));
+		checkpoint.close(true);
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public final void testRestart() throws LscConfigurationException {
+		Checkpoint checkpoint = Checkpoint.open(task, false);
+		checkpoint.completed("uid=1");
+		checkpoint.close(false);
+
+		checkpoint = Checkpoint.open(task, false);
+		checkpoint.close(false);
+		checkpoint = Checkpoint.open(task, true);
+		assertFalse(checkpoint.isCompleted("uid=1"));
+		checkpoint.close(true);
+	}
+
+	@Test
+	public final void testConcurrentEntries() throws Exception {
+		final Checkpoint checkpoint = Checkpoint.open(task, false);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int offset = t * 1000;
+			threads[t] = new Thread(new Runnable() {
+				public void run() {
+					for (int i = 0; i < 1000; i++) {
+						checkpoint.completed("uid=" + (offset + i));
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		checkpoint.close(false);
+
+		// every name is written once, on its own line
+		Checkpoint resumed = Checkpoint.open(task, true);
+		for (int i = 0; i < 4000; i++) {
+			assertTrue(resumed.isCompleted("uid=" + i));
+		}
+		resumed.close(true);
+	}
+
+	@Test
+	public final void testEncoding() {
+		for (String name : new String[] { "uid=1", "a\\nb", "a\nb\rc", "\\" }) {
+			assertEquals(name, Checkpoint.decode(Checkpoint.encode(name)));
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.persistence;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.lsc.beans.IBean;
+import org.lsc.beans.SimpleBean;
+
+/**
+ * Test the fingerprints of the source entries.
+ */
+public class FingerprintStoreTest {
+
+	@Test
+	public final void testFingerprintIgnoresOrder() {
+		IBean bean = new SimpleBean();
+		bean.setMainIdentifier("uid=1");
+		bean.setDataset("cn", values("a", "b"));
+		bean.setDataset("sn", values("c"));
+
+		IBean sameBean = new SimpleBean();
+		sameBean.setMainIdentifier("uid=1");
+		sameBean.setDataset("SN", values("c"));
+		sameBean.setDataset("cn", values("b", "a"));
+
+		assertArrayEquals(FingerprintStore.getFingerprint(bean), FingerprintStore.getFingerprint(sameBean));
+	}
+
+	@Test
+	public final void testFingerprintChanges() {
+		IBean bean = new SimpleBean();
+		bean.setMainIdentifier("uid=1");
+		bean.setDataset("cn", values("ab"));
+		byte[] fingerprint = FingerprintStore.getFingerprint(bean);
+
+		IBean otherValues = new SimpleBean();
+		otherValues.setMainIdentifier("uid=1");
+		otherValues.setDataset("cn", values("a", "b"));
+		assertFalse(Arrays.equals(fingerprint, FingerprintStore.getFingerprint(otherValues)));
+
+		IBean otherIdentifier = new SimpleBean();
+		otherIdentifier.setMainIdentifier("uid=2");
+		otherIdentifier.setDataset("cn", values("ab"));
+		assertFalse(Arrays.equals(fingerprint, FingerprintStore.getFingerprint(otherIdentifier)));
+	}
+
+	private static Set<Object> values(Object... values) {
+		return new LinkedHashSet<Object>(Arrays.asList(values));
+	}
+}
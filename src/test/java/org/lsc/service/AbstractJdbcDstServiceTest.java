@@ -0,0 +1,388 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.naming.NamingException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.LscDatasetModification;
+import org.lsc.LscDatasets;
+import org.lsc.LscDatasetModification.LscDatasetModificationType;
+import org.lsc.LscModificationType;
+import org.lsc.LscModifications;
+import org.lsc.beans.IBean;
+import org.lsc.exception.LscServiceConfigurationException;
+import org.lsc.exception.LscServiceException;
+
+import com.ibatis.sqlmap.client.SqlMapClient;
+
+/**
+ * Test the batched writes, lookups and cursors of JDBC destinations, on a SQL
+ * map recording the requests instead of running them.
+ */
+public class AbstractJdbcDstServiceTest {
+
+	private RecordingSqlMap sqlMap;
+
+	private BatchedJdbcDstService service;
+
+	private RecordingListener listener;
+
+	@Before
+	public void setup() throws LscServiceConfigurationException {
+		sqlMap = new RecordingSqlMap();
+		service = new BatchedJdbcDstService(sqlMap.newClient());
+		listener = new RecordingListener();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		service.close();
+	}
+
+	@Test
+	public final void testBatch() throws LscServiceException {
+		service.setBatching(3, 60000);
+		assertTrue(service.isPipelined());
+
+		service.applyAsync(newCreate("alice"), listener);
+		service.applyAsync(newCreate("bob"), listener);
+		assertTrue(listener.applied.isEmpty());
+		// the batch is full and sent at once
+		service.applyAsync(newCreate("carol"), listener);
+
+		assertEquals(3, listener.applied.size());
+		assertTrue(listener.failed.isEmpty());
+		assertEquals(1, sqlMap.count("executeBatch"));
+		assertEquals(1, sqlMap.count("commitTransaction"));
+		assertEquals(3, sqlMap.count("insert"));
+	}
+
+	@Test
+	public final void testBatchErrorAttributed() throws LscServiceException {
+		service.setBatching(3, 60000);
+		sqlMap.rejected = "bob";
+
+		service.applyAsync(newCreate("alice"), listener);
+		service.applyAsync(newCreate("bob"), listener);
+		service.applyAsync(newCreate("carol"), listener);
+
+		// the batch failed and its modifications were applied one by one
+		assertEquals(1, sqlMap.count("executeBatch"));
+		assertEquals(2, listener.applied.size());
+		assertTrue(listener.applied.contains("alice"));
+		assertTrue(listener.applied.contains("carol"));
+		assertEquals(Collections.singletonList("bob"), listener.failed);
+	}
+
+	@Test
+	public final void testBatchTimeout() throws LscServiceException, InterruptedException {
+		service.setBatching(10, 100);
+
+		service.applyAsync(newCreate("alice"), listener);
+		for (int i = 0; i < 100 && listener.applied.isEmpty(); i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(Collections.singletonList("alice"), listener.applied);
+	}
+
+	@Test
+	public final void testNoBatch() throws LscServiceException {
+		sqlMap.rejected = "bob";
+
+		service.applyAsync(newCreate("alice"), listener);
+		service.applyAsync(newCreate("bob"), listener);
+
+		assertEquals(Collections.singletonList("alice"), listener.applied);
+		assertEquals(Collections.singletonList("bob"), listener.failed);
+		assertEquals(0, sqlMap.count("executeBatch"));
+	}
+
+	@Test
+	public final void testBatchLookupRouted() throws LscServiceException, NamingException {
+		service.setLookupBatching("getInetOrgPersonBatch", 10);
+		sqlMap.records.add(newRecord("alice"));
+		sqlMap.records.add(newRecord("bob"));
+
+		Map<String, IBean> beans = service.getBeans(Arrays.asList(newId("alice"), newId("bob"), newId("carol")), false);
+		// the values of each pivot are requested at once
+		assertEquals(Collections.singletonMap("cn", Arrays.asList("alice", "bob", "carol")), sqlMap.parameters);
+		assertEquals(3, beans.size());
+		assertEquals("alice", beans.get("alice").getDatasetFirstValueById("sn"));
+		assertEquals("bob", beans.get("bob").getDatasetFirstValueById("sn"));
+		// not returned by the request, so it does not exist
+		assertTrue(beans.containsKey("carol"));
+		assertNull(beans.get("carol"));
+	}
+
+	@Test
+	public final void testBatchLookupSeveralRecords() throws LscServiceException {
+		service.setLookupBatching("getInetOrgPersonBatch", 10);
+		sqlMap.records.add(newRecord("alice"));
+		sqlMap.records.add(newRecord("alice"));
+		sqlMap.records.add(newRecord("bob"));
+
+		Map<String, IBean> beans = service.getBeans(Arrays.asList(newId("alice"), newId("bob")), false);
+		// matches two records, to be looked up on its own
+		assertFalse(beans.containsKey("alice"));
+		assertTrue(beans.get("bob") != null);
+	}
+
+	@Test
+	public final void testBatchLookupUnroutedRecord() throws LscServiceException {
+		service.setLookupBatching("getInetOrgPersonBatch", 10);
+		// the database may compare the values ignoring case, the routing does not
+		sqlMap.records.add(newRecord("ALICE"));
+		sqlMap.records.add(newRecord("bob"));
+
+		Map<String, IBean> beans = service.getBeans(Arrays.asList(newId("alice"), newId("bob"), newId("carol")), false);
+		// the record found may be the one of any object, none is missing
+		assertFalse(beans.containsKey("alice"));
+		assertFalse(beans.containsKey("carol"));
+		assertTrue(beans.get("bob") != null);
+	}
+
+	@Test
+	public final void testBatchLookupWithoutPivots() throws LscServiceException {
+		service.setLookupBatching("getInetOrgPersonBatch", 10);
+		sqlMap.records.add(newRecord("bob"));
+
+		Entry<String, LscDatasets> noPivots = new SimpleImmutableEntry<String, LscDatasets>("nopivots", new LscDatasets());
+		Map<String, IBean> beans = service.getBeans(Arrays.asList(noPivots, newId("bob")), false);
+		assertFalse(beans.containsKey("nopivots"));
+		assertTrue(beans.get("bob") != null);
+
+		// nothing to request at all
+		sqlMap.calls.clear();
+		assertTrue(service.getBeans(Collections.singletonList(noPivots), false).isEmpty());
+		assertEquals(0, sqlMap.count("queryForList"));
+	}
+
+	@Test(timeout = 10000)
+	public final void testCursorOnError() {
+		sqlMap.queryError = new LinkageError("Driver class not found");
+
+		IPivotCursor cursor = service.getPivotCursor();
+		try {
+			cursor.hasNext();
+			fail("The error of the request must be reported by the cursor");
+		} catch (LscServiceException e) {
+			assertTrue(e.toString().contains("Driver class not found"));
+		}
+	}
+
+	private static Entry<String, LscDatasets> newId(String cn) {
+		LscDatasets pivots = new LscDatasets();
+		pivots.put("cn", cn);
+		return new SimpleImmutableEntry<String, LscDatasets>(cn, pivots);
+	}
+
+	private static Map<String, Object> newRecord(String cn) {
+		Map<String, Object> record = new HashMap<String, Object>();
+		record.put("cn", cn);
+		record.put("sn", cn);
+		return record;
+	}
+
+	private static LscModifications newCreate(String cn) {
+		LscModifications lm = new LscModifications(LscModificationType.CREATE_OBJECT, "jdbcBatchTest");
+		lm.setMainIdentifer(cn);
+		List<LscDatasetModification> modifications = new ArrayList<LscDatasetModification>();
+		modifications.add(new LscDatasetModification(LscDatasetModificationType.REPLACE_VALUES, "cn",
+						Collections.<Object>singletonList(cn)));
+		lm.setLscAttributeModifications(modifications);
+		return lm;
+	}
+
+	/**
+	 * Record the requests run through the SQL map. A batch, or a single
+	 * insert outside of a batch, fails when it contains the rejected value.
+	 * Queries return the given records.
+	 */
+	private static class RecordingSqlMap implements InvocationHandler {
+
+		private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+
+		private volatile String rejected;
+
+		private final List<Map<String, Object>> records = new ArrayList<Map<String, Object>>();
+
+		private Object parameters;
+
+		private volatile Error queryError;
+
+		private boolean batched;
+
+		private boolean batchRejected;
+
+		private SqlMapClient newClient() {
+			return (SqlMapClient) Proxy.newProxyInstance(getClass().getClassLoader(),
+							new Class<?>[] { SqlMapClient.class }, this);
+		}
+
+		private int count(String method) {
+			return Collections.frequency(calls, method);
+		}
+
+		public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			calls.add(name);
+			if ("startBatch".equals(name)) {
+				batched = true;
+				batchRejected = false;
+			} else if ("endTransaction".equals(name)) {
+				batched = false;
+			} else if ("insert".equals(name)) {
+				boolean isRejected = rejected != null && rejected.equals(((Map<?, ?>) args[1]).get("cn"));
+				if (isRejected && !batched) {
+					throw new SQLException("Duplicate entry " + rejected);
+				}
+				batchRejected |= isRejected;
+			} else if ("queryWithRowHandler".equals(name) && queryError != null) {
+				throw queryError;
+			} else if ("queryForList".equals(name)) {
+				parameters = args[1];
+				return records;
+			} else if ("executeBatch".equals(name)) {
+				batched = false;
+				if (batchRejected) {
+					throw new SQLException("Duplicate entry " + rejected);
+				}
+			}
+			return (method.getReturnType() == int.class ? Integer.valueOf(0) : null);
+		}
+	}
+
+	/**
+	 * Record the identifiers of the applied and failed modifications.
+	 */
+	private static class RecordingListener implements IApplyListener {
+
+		private final List<String> applied = Collections.synchronizedList(new ArrayList<String>());
+
+		private final List<String> failed = Collections.synchronizedList(new ArrayList<String>());
+
+		public void applied(LscModifications lm) {
+			applied.add(lm.getMainIdentifier());
+		}
+
+		public void failed(LscModifications lm, Exception e) {
+			failed.add(lm.getMainIdentifier());
+		}
+	}
+
+	/**
+	 * A JDBC destination with an insert request only.
+	 */
+	private static class BatchedJdbcDstService extends AbstractJdbcDstService {
+
+		private BatchedJdbcDstService(SqlMapClient sqlMapClient) throws LscServiceConfigurationException {
+			super("jdbcBatchTest", sqlMapClient, "org.lsc.beans.SimpleBean");
+		}
+
+		@Override
+		public String getRequestNameForList() {
+			return "getInetOrgPersonList";
+		}
+
+		@Override
+		public String getRequestNameForObject() {
+			return "getInetOrgPerson";
+		}
+
+		@Override
+		public String getRequestNameForNextId() {
+			return null;
+		}
+
+		@Override
+		public String getRequestNameForClean() {
+			return "getInetOrgPersonClean";
+		}
+
+		@Override
+		public String getRequestNameForObjectOrClean(boolean fromSameService) {
+			return (fromSameService ? getRequestNameForObject() : getRequestNameForClean());
+		}
+
+		@Override
+		public List<String> getRequestsNameForInsert() {
+			return Collections.singletonList("insertInetOrgPerson");
+		}
+
+		@Override
+		public List<String> getRequestsNameForUpdate() {
+			return Collections.singletonList("updateInetOrgPerson");
+		}
+
+		@Override
+		public List<String> getRequestsNameForDelete() {
+			return Collections.singletonList("deleteInetOrgPerson");
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+import org.lsc.LscDatasets;
+import org.lsc.exception.LscServiceException;
+
+/**
+ * Test the read ahead of the pivot cursors.
+ */
+public class AbstractPivotCursorTest {
+
+	@Test
+	public final void testReadAhead() throws LscServiceException {
+		CountingCursor cursor = new CountingCursor(3);
+		assertEquals(0, cursor.fetched);
+
+		// an entry is only fetched once it is asked for
+		assertTrue(cursor.hasNext());
+		assertTrue(cursor.hasNext());
+		assertEquals(1, cursor.fetched);
+		assertEquals("uid=0", cursor.next().getKey());
+		assertEquals("uid=1", cursor.next().getKey());
+		assertEquals(2, cursor.fetched);
+		assertNull(cursor.getBean());
+
+		assertEquals("uid=2", cursor.next().getKey());
+		assertFalse(cursor.closed);
+		assertFalse(cursor.hasNext());
+		// the cursor is closed as soon as the end is reached
+		assertTrue(cursor.closed);
+		assertFalse(cursor.hasNext());
+		assertEquals(4, cursor.fetched);
+	}
+
+	@Test
+	public final void testEnd() throws LscServiceException {
+		CountingCursor cursor = new CountingCursor(0);
+		try {
+			cursor.next();
+			fail("There is no entry to return");
+		} catch (NoSuchElementException e) {
+			// expected
+		}
+		assertTrue(cursor.closed);
+	}
+
+	@Test
+	public final void testFromMap() throws LscServiceException {
+		Map<String, LscDatasets> pivots = new LinkedHashMap<String, LscDatasets>();
+		pivots.put("uid=a", new LscDatasets());
+		pivots.put("uid=b", new LscDatasets());
+
+		IPivotCursor cursor = AbstractPivotCursor.fromMap(pivots);
+		List<String> names = new ArrayList<String>();
+		while (cursor.hasNext()) {
+			names.add(cursor.next().getKey());
+		}
+		cursor.close();
+		assertEquals(new ArrayList<String>(pivots.keySet()), names);
+	}
+
+	/**
+	 * A cursor on generated entries, counting the calls to fetch.
+	 */
+	private static class CountingCursor extends AbstractPivotCursor {
+
+		private final int size;
+
+		private int fetched;
+
+		private boolean closed;
+
+		private CountingCursor(int size) {
+			this.size = size;
+		}
+
+		@Override
+		protected Entry<String, LscDatasets> fetch() {
+			int i = fetched++;
+			if (i >= size) {
+				return null;
+			}
+			LscDatasets pivots = new LscDatasets();
+			pivots.put("uid", Integer.toString(i));
+			return new SimpleImmutableEntry<String, LscDatasets>("uid=" + i, pivots);
+		}
+
+		public void close() {
+			closed = true;
+		}
+	}
+}
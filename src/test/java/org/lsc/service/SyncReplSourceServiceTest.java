@@ -0,0 +1,211 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.NamingException;
+import javax.naming.directory.BasicAttribute;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.ModificationItem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.LscDatasets;
+import org.lsc.configuration.AsyncLdapSourceServiceType;
+import org.lsc.configuration.LdapConnectionType;
+import org.lsc.configuration.LdapServerType;
+import org.lsc.configuration.LdapSourceServiceType;
+import org.lsc.configuration.LscConfiguration;
+import org.lsc.configuration.TaskType;
+import org.lsc.exception.LscServiceException;
+import org.lsc.jndi.JndiModificationType;
+import org.lsc.jndi.JndiModifications;
+import org.lsc.jndi.JndiServices;
+
+/**
+ * Test the changes pushed by the persistent search of the embedded source
+ * directory.
+ */
+public class SyncReplSourceServiceTest {
+
+	private static final String ENTRY_DN = "cn=syncReplTest,ou=ldap2ldap2TestTaskSrc,ou=Test Data,dc=lsc-project,dc=org";
+
+	private SyncReplSourceService service;
+
+	private JndiServices jndiServices;
+
+	private RecordingListener listener;
+
+	@Before
+	public void setup() throws LscServiceException, NamingException {
+		LscConfiguration.reset();
+		LdapSourceServiceType ldapService = LscConfiguration.getTask("ldap2ldapTestTask").getLdapSourceService();
+		AsyncLdapSourceServiceType asyncService = new AsyncLdapSourceServiceType();
+		asyncService.setName("syncReplTestTask-src");
+		asyncService.setConnection(ldapService.getConnection());
+		asyncService.setBaseDn(ldapService.getBaseDn());
+		asyncService.setPivotAttributes(ldapService.getPivotAttributes());
+		asyncService.setFetchedAttributes(ldapService.getFetchedAttributes());
+		asyncService.setGetAllFilter(ldapService.getGetAllFilter());
+		asyncService.setGetOneFilter(ldapService.getGetOneFilter());
+		asyncService.setCleanFilter(ldapService.getCleanFilter());
+		asyncService.setInterval(1);
+		asyncService.setServerType(LdapServerType.OPEN_DJ);
+
+		TaskType task = new TaskType();
+		task.setName("syncReplTestTask");
+		task.setBean("org.lsc.beans.SimpleBean");
+		task.setAsyncLdapSourceService(asyncService);
+		service = new SyncReplSourceService(task);
+
+		jndiServices = JndiServices.getInstance((LdapConnectionType) ldapService.getConnection().getReference());
+		JndiModifications jm = new JndiModifications(JndiModificationType.ADD_ENTRY);
+		jm.setDistinguishName(ENTRY_DN);
+		BasicAttribute objectClass = new BasicAttribute("objectClass");
+		objectClass.add("top");
+		objectClass.add("person");
+		List<ModificationItem> items = new ArrayList<ModificationItem>();
+		items.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, objectClass));
+		items.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("cn", "syncReplTest")));
+		items.add(new ModificationItem(DirContext.ADD_ATTRIBUTE, new BasicAttribute("sn", "syncReplTest")));
+		jm.setModificationItems(items);
+		assertTrue(jndiServices.apply(jm));
+
+		listener = new RecordingListener();
+	}
+
+	@After
+	public void tearDown() throws IOException, NamingException {
+		service.close();
+		JndiModifications jm = new JndiModifications(JndiModificationType.DELETE_ENTRY);
+		jm.setDistinguishName(ENTRY_DN);
+		jndiServices.apply(jm);
+		LscConfiguration.reset();
+	}
+
+	@Test
+	public final void testChangesPushed() throws Exception {
+		service.start(listener);
+
+		// the search may not be registered by the directory yet, modify the
+		// entry until the change is received
+		Entry<String, LscDatasets> change = null;
+		for (int i = 0; i < 20 && change == null; i++) {
+			modify("change " + i);
+			change = listener.changes.poll(500, TimeUnit.MILLISECONDS);
+		}
+		assertNotNull(change);
+		assertEquals(ENTRY_DN.toLowerCase(), change.getKey().toLowerCase());
+		assertEquals("syncReplTest", change.getValue().getStringValueAttribute("sn"));
+
+		// no change is pushed once stopped
+		service.stop();
+		listener.changes.clear();
+		modify("after stop");
+		assertNull(listener.changes.poll(1, TimeUnit.SECONDS));
+		assertTrue(listener.failures.isEmpty());
+	}
+
+	@Test
+	public final void testStop() throws Exception {
+		service.start(listener);
+		long start = System.currentTimeMillis();
+		service.stop();
+		// the reader notices the stop within its polling timeout
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		// stopping is not reported as a failure
+		assertTrue(listener.failures.isEmpty());
+
+		// the changes can be listened to again
+		service.start(listener);
+		Entry<String, LscDatasets> change = null;
+		for (int i = 0; i < 20 && change == null; i++) {
+			modify("restart " + i);
+			change = listener.changes.poll(500, TimeUnit.MILLISECONDS);
+		}
+		assertNotNull(change);
+	}
+
+	private void modify(String description) throws NamingException {
+		JndiModifications jm = new JndiModifications(JndiModificationType.MODIFY_ENTRY);
+		jm.setDistinguishName(ENTRY_DN);
+		List<ModificationItem> items = new ArrayList<ModificationItem>();
+		items.add(new ModificationItem(DirContext.REPLACE_ATTRIBUTE, new BasicAttribute("description", description)));
+		jm.setModificationItems(items);
+		assertTrue(jndiServices.apply(jm));
+	}
+
+	/**
+	 * Record the pushed changes and failures.
+	 */
+	private static class RecordingListener implements IChangeListener {
+
+		private final BlockingQueue<Entry<String, LscDatasets>> changes = new LinkedBlockingQueue<Entry<String, LscDatasets>>();
+
+		private final BlockingQueue<LscServiceException> failures = new LinkedBlockingQueue<LscServiceException>();
+
+		public void changed(Entry<String, LscDatasets> id) {
+			changes.add(id);
+		}
+
+		public void failed(LscServiceException e) {
+			failures.add(e);
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package org.lsc.utils;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -57,4 +58,17 @@ public class GroovyEvaluatorTest {
 		  	"dataToStringEquality a, b";
 		assertEquals(false, evaluator.evalToBoolean(task, complexExpression, params));
 	}
+
+	@Test
+	public void testVariablesNotSharedBetweenEntries() throws LscServiceException {
+		Map<String, Object> entryA = new HashMap<String, Object>();
+		entryA.put("uid", "a");
+		assertEquals("a", evaluator.evalToString(task, "previous = uid", entryA));
+
+		Map<String, Object> entryB = new HashMap<String, Object>();
+		entryB.put("name", "b");
+		assertNull(evaluator.evalToString(task, "previous", entryB));
+		assertNull(evaluator.evalToString(task, "uid", entryB));
+		assertEquals("b", evaluator.evalToString(task, "name", entryB));
+	}
 }
@@ -0,0 +1,136 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lsc.Task;
+import org.lsc.exception.LscServiceException;
+import org.mozilla.javascript.EvaluatorException;
+
+/**
+ * Test the reuse of the task scopes and of the compiled expressions by the
+ * Rhino evaluator.
+ */
+public class RhinoJScriptEvaluatorTest {
+
+	@Mocked Task task;
+
+	private RhinoJScriptEvaluator evaluator;
+
+	@Before
+	public void setup() {
+		evaluator = new RhinoJScriptEvaluator(false);
+	}
+
+	@Test
+	public final void testCompiledExpressionReused() throws LscServiceException {
+		// the same compiled expression is run with the variables of each entry
+		assertEquals("entry a", evaluator.evalToString(task, "'entry ' + uid", newParams("a")));
+		assertEquals("entry b", evaluator.evalToString(task, "'entry ' + uid", newParams("b")));
+	}
+
+	@Test
+	public final void testVariablesNotSharedBetweenEntries() throws LscServiceException {
+		assertEquals("a", evaluator.evalToString(task, "previous = uid; previous", newParams("a")));
+		assertEquals("undefined", evaluator.evalToString(task, "typeof previous", newParams("b")));
+	}
+
+	@Test
+	public final void testIncludesRunOnce() throws IOException, LscServiceException {
+		File include = File.createTempFile("include", ".js");
+		include.deleteOnExit();
+		FileWriter writer = new FileWriter(include);
+		try {
+			writer.write("var loaded = (typeof loaded == 'undefined' ? 0 : loaded) + 1;\n");
+			writer.write("function describe() { return 'entry ' + uid; }\n");
+		} finally {
+			writer.close();
+		}
+		final File scriptInclude = include;
+		new NonStrictExpectations() {
+			{
+				task.getScriptIncludes(); result = Collections.singletonList(scriptInclude);
+			}
+		};
+
+		// functions of the includes see the variables of the evaluation
+		assertEquals("entry a", evaluator.evalToString(task, "describe()", newParams("a")));
+		assertEquals("entry b", evaluator.evalToString(task, "describe()", newParams("b")));
+		assertEquals("1", evaluator.evalToString(task, "String(loaded)", newParams("c")));
+	}
+
+	@Test
+	public final void testSharedScopeSealed() throws LscServiceException {
+		// an expression can not change what other entries see
+		try {
+			evaluator.evalToString(task, "Math.answer = 42; 'done'", newParams("a"));
+			fail("The standard objects of the shared scope should be sealed");
+		} catch (EvaluatorException e) {
+			// expected
+		}
+		assertEquals("undefined", evaluator.evalToString(task, "String(Math.answer)", newParams("b")));
+	}
+
+	private static Map<String, Object> newParams(String uid) {
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("uid", uid);
+		return params;
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ ****************************************************************************
+ * Ldap Synchronization Connector provides tools to synchronize
+ * electronic identities from a list of data sources including
+ * any database with a JDBC connector, another LDAP directory,
+ * flat files...
+ *
+ *                  ==LICENSE NOTICE==
+ * 
+ * Copyright (c) 2008 - 2011 LSC Project 
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+
+ *    * Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the LSC Project nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *                  ==LICENSE NOTICE==
+ *
+ *               (c) 2008 - 2011 LSC Project
+ *         Sebastien Bahloul <seb@lsc-project.org>
+ *         Thomas Chemineau <thomas@lsc-project.org>
+ *         Jonathan Clarke <jon@lsc-project.org>
+ *         Remy-Christophe Schermesser <rcs@lsc-project.org>
+ ****************************************************************************
+ */
+package org.lsc.utils;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test value comparisons of SetUtils.
+ */
+public class SetUtilsTest {
+
+	@Test
+	public final void testFindMissingNeedles() {
+		Set<Object> haystack = new HashSet<Object>();
+		haystack.add("a");
+		haystack.add("b");
+		haystack.add(new byte[] { 1, 2 });
+		haystack.add(Integer.valueOf(3));
+
+		Set<Object> needles = new HashSet<Object>();
+		needles.add("a");
+		needles.add("c");
+		needles.add(new byte[] { 1, 2 });
+		needles.add(Integer.valueOf(3));
+		needles.add(Integer.valueOf(4));
+
+		Set<Object> missing = SetUtils.findMissingNeedles(haystack, needles);
+		assertEquals(2, missing.size());
+		assertTrue(missing.contains("c"));
+		assertTrue(missing.contains(Integer.valueOf(4)));
+
+		assertTrue(SetUtils.findMissingNeedles(haystack, null).isEmpty());
+		assertEquals(needles, SetUtils.findMissingNeedles(null, needles));
+	}
+
+	@Test
+	public final void testMixedStringAndBinary() {
+		Set<Object> strings = new HashSet<Object>();
+		strings.add("value");
+		Set<Object> binaries = new HashSet<Object>();
+		binaries.add("value".getBytes());
+
+		assertTrue(SetUtils.findMissingNeedles(strings, binaries).isEmpty());
+		assertTrue(SetUtils.findMissingNeedles(binaries, strings).isEmpty());
+		assertTrue(SetUtils.doSetsMatch(strings, binaries));
+
+		// only strings can be compared to binary values
+		Set<Object> numbers = new HashSet<Object>();
+		numbers.add(Integer.valueOf(1));
+		Set<Object> binaryNumbers = new HashSet<Object>();
+		binaryNumbers.add("1".getBytes());
+		assertEquals(1, SetUtils.findMissingNeedles(numbers, binaryNumbers).size());
+		assertEquals(1, SetUtils.findMissingNeedles(binaryNumbers, numbers).size());
+	}
+
+	@Test
+	public final void testCheckOrder() {
+		Set<Object> first = new LinkedHashSet<Object>();
+		first.add("a");
+		first.add(new byte[] { 1 });
+		Set<Object> second = new LinkedHashSet<Object>();
+		second.add("a".getBytes());
+		second.add(new byte[] { 1 });
+		assertTrue(SetUtils.checkOrder(first, second));
+		assertTrue(SetUtils.doSetsMatchWithOrder(first, second));
+
+		Set<Object> reversed = new LinkedHashSet<Object>();
+		reversed.add(new byte[] { 1 });
+		reversed.add("a");
+		assertFalse(SetUtils.checkOrder(first, reversed));
+		assertTrue(SetUtils.doSetsMatch(first, reversed));
+	}
+
+	/**
+	 * Compare large multi-valued attributes: each value must be compared to a
+	 * bounded number of other values, not to all the values of the other set.
+	 */
+	@Test
+	public final void testComparisonsGrowLinearly() {
+		int size = 5000;
+		Set<Object> source = new HashSet<Object>(size * 2);
+		Set<Object> destination = new HashSet<Object>(size * 2);
+		for (int i = 0; i < size; i++) {
+			source.add(new CountingValue(i));
+			destination.add(new CountingValue(i));
+		}
+		Set<Object> larger = new HashSet<Object>(destination);
+		larger.add(new CountingValue(size));
+
+		CountingValue.comparisons = 0;
+		assertTrue(SetUtils.doSetsMatch(source, destination));
+		assertEquals(1, SetUtils.findMissingNeedles(source, larger).size());
+		// a pairwise comparison would need size * size / 2 calls to equals()
+		assertTrue("Too many comparisons: " + CountingValue.comparisons, CountingValue.comparisons < size * 10);
+	}
+
+	/**
+	 * A value counting how many times it is compared to another one.
+	 */
+	private static final class CountingValue {
+
+		private static int comparisons;
+
+		private final int value;
+
+		private CountingValue(int value) {
+			this.value = value;
+		}
+
+		@Override
+		public int hashCode() {
+			return value;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			comparisons++;
+			return o instanceof CountingValue && ((CountingValue) o).value == value;
+		}
+	}
+}